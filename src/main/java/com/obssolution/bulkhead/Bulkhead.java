@@ -0,0 +1,6 @@
+package com.obssolution.bulkhead;
+
+public enum Bulkhead {
+    READ,
+    WRITE
+}
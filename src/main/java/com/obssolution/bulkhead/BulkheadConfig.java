@@ -0,0 +1,100 @@
+package com.obssolution.bulkhead;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+@Configuration
+public class BulkheadConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private BulkheadInterceptor bulkheadInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(bulkheadInterceptor).addPathPatterns("/api/**");
+    }
+
+    /**
+     * Splits the connection pool into one Hikari pool per bulkhead plus one for work outside any request, all
+     * built from spring.datasource.* and tuned by spring.datasource.hikari.*, except for their size. Replaces
+     * the auto-configured single pool while bulkheads are enabled.
+     * <p>
+     * A bulkhead may not admit more requests than its slice has connections, and a request that still has to
+     * wait for one (a listing whose queries run in parallel, say) gives up after the bulkhead's max-wait-ms
+     * rather than Hikari's default 30 seconds.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "inventory.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+    static class PoolSlices {
+
+        @Value("${inventory.bulkhead.read.pool-size:8}")
+        private int readPoolSize;
+
+        @Value("${inventory.bulkhead.read.max-concurrent:8}")
+        private int readMaxConcurrent;
+
+        @Value("${inventory.bulkhead.read.max-wait-ms:500}")
+        private long readMaxWaitMs;
+
+        @Value("${inventory.bulkhead.write.pool-size:10}")
+        private int writePoolSize;
+
+        @Value("${inventory.bulkhead.write.max-concurrent:10}")
+        private int writeMaxConcurrent;
+
+        @Value("${inventory.bulkhead.write.max-wait-ms:2000}")
+        private long writeMaxWaitMs;
+
+        @Value("${inventory.bulkhead.background.pool-size:4}")
+        private int backgroundPoolSize;
+
+        @Autowired
+        private Environment environment;
+
+        @Bean
+        @Primary
+        DataSource dataSource(DataSourceProperties properties) {
+            HikariDataSource read = slice(properties, "read", readPoolSize, readMaxConcurrent, readMaxWaitMs);
+            HikariDataSource write = slice(properties, "write", writePoolSize, writeMaxConcurrent, writeMaxWaitMs);
+            HikariDataSource background = pool(properties, "background", backgroundPoolSize);
+
+            BulkheadRoutingDataSource routing = new BulkheadRoutingDataSource();
+            routing.setTargetDataSources(Map.of(Bulkhead.READ, read, Bulkhead.WRITE, write));
+            routing.setDefaultTargetDataSource(background);
+            return routing;
+        }
+
+        private HikariDataSource slice(DataSourceProperties properties, String name, int size, int maxConcurrent, long maxWaitMs) {
+            if (size < maxConcurrent) {
+                throw new IllegalStateException("inventory.bulkhead." + name + ".pool-size (" + size + ") must be at least "
+                        + "inventory.bulkhead." + name + ".max-concurrent (" + maxConcurrent + ")");
+            }
+            HikariDataSource pool = pool(properties, name, size);
+            // Hikari rejects connection timeouts below 250 ms
+            pool.setConnectionTimeout(Math.min(pool.getConnectionTimeout(), Math.max(250, maxWaitMs)));
+            return pool;
+        }
+
+        private HikariDataSource pool(DataSourceProperties properties, String name, int size) {
+            HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+            pool.setPoolName("inventory-" + name);
+            pool.setMaximumPoolSize(size);
+            return pool;
+        }
+    }
+}
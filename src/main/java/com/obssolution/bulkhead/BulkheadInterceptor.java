@@ -0,0 +1,137 @@
+package com.obssolution.bulkhead;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Runs every API request inside the read or the write bulkhead (GET/HEAD and {@link ReadOnlyRequest}
+ * handlers are reads, everything else a write) and binds the matching connection pool slice for its duration. A bulkhead that is full answers
+ * 503 with Retry-After, so a flood of list queries cannot take the threads or connections order placement
+ * needs.
+ */
+@Component
+public class BulkheadInterceptor implements HandlerInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkheadInterceptor.class);
+
+    private static final String ENTERED = BulkheadInterceptor.class.getName() + ".ENTERED";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventory.bulkhead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inventory.bulkhead.read.max-concurrent:8}")
+    private int readMaxConcurrent;
+
+    @Value("${inventory.bulkhead.read.max-queue:72}")
+    private int readMaxQueue;
+
+    @Value("${inventory.bulkhead.read.max-wait-ms:500}")
+    private long readMaxWaitMs;
+
+    @Value("${inventory.bulkhead.write.max-concurrent:10}")
+    private int writeMaxConcurrent;
+
+    @Value("${inventory.bulkhead.write.max-queue:130}")
+    private int writeMaxQueue;
+
+    @Value("${inventory.bulkhead.write.max-wait-ms:2000}")
+    private long writeMaxWaitMs;
+
+    @Value("${inventory.bulkhead.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    private final Map<Bulkhead, RequestBulkhead> bulkheads = new EnumMap<>(Bulkhead.class);
+    private final Map<Bulkhead, Counter> rejected = new EnumMap<>(Bulkhead.class);
+
+    @PostConstruct
+    void init() {
+        bulkheads.put(Bulkhead.READ, new RequestBulkhead(readMaxConcurrent, readMaxQueue, readMaxWaitMs));
+        bulkheads.put(Bulkhead.WRITE, new RequestBulkhead(writeMaxConcurrent, writeMaxQueue, writeMaxWaitMs));
+        bulkheads.forEach((type, bulkhead) -> {
+            String tag = type.name().toLowerCase();
+            Gauge.builder("inventory.bulkhead.queue-depth", bulkhead, RequestBulkhead::queueDepth)
+                    .description("Requests waiting for a slot in the bulkhead")
+                    .tag("bulkhead", tag)
+                    .register(meterRegistry);
+            Gauge.builder("inventory.bulkhead.active", bulkhead, RequestBulkhead::active)
+                    .description("Requests currently running in the bulkhead")
+                    .tag("bulkhead", tag)
+                    .register(meterRegistry);
+            rejected.put(type, Counter.builder("inventory.bulkhead.rejected")
+                    .description("Requests turned away because the bulkhead was full")
+                    .tag("bulkhead", tag)
+                    .register(meterRegistry));
+        });
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!enabled) {
+            return true;
+        }
+        Bulkhead type = classify(request, handler);
+        boolean entered;
+        try {
+            entered = bulkheads.get(type).tryEnter();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entered = false;
+        }
+        if (!entered) {
+            rejected.get(type).increment();
+            log.debug("Rejected {} {}: {} bulkhead full", request.getMethod(), request.getRequestURI(), type);
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            response.getWriter().write("Server busy, retry later");
+            return false;
+        }
+        request.setAttribute(ENTERED, type);
+        BulkheadRoutingDataSource.bind(type);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object type = request.getAttribute(ENTERED);
+        if (type instanceof Bulkhead bulkhead) {
+            request.removeAttribute(ENTERED);
+            BulkheadRoutingDataSource.clear();
+            bulkheads.get(bulkhead).exit();
+        }
+    }
+
+    static Bulkhead classify(HttpServletRequest request, Object handler) {
+        if (handler instanceof HandlerMethod method && method.hasMethodAnnotation(ReadOnlyRequest.class)) {
+            return Bulkhead.READ;
+        }
+        return classify(request);
+    }
+
+    static Bulkhead classify(HttpServletRequest request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) ? Bulkhead.READ : Bulkhead.WRITE;
+    }
+
+    RequestBulkhead bulkhead(Bulkhead type) {
+        return bulkheads.get(type);
+    }
+}
@@ -0,0 +1,30 @@
+package com.obssolution.bulkhead;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out connections from the pool slice of the bulkhead the current request runs in. Threads
+ * outside any request (schedulers, pollers, startup jobs) use the default target, a background pool of
+ * their own, so they neither take connections from order placement nor get starved by it.
+ */
+public class BulkheadRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+
+    public static void bind(Bulkhead bulkhead) {
+        CURRENT.set(bulkhead);
+    }
+
+    public static Bulkhead current() {
+        return CURRENT.get();
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return CURRENT.get();
+    }
+}
@@ -0,0 +1,15 @@
+package com.obssolution.bulkhead;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a handler in the read bulkhead whatever its HTTP method, for queries that take their input in a
+ * request body.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadOnlyRequest {
+}
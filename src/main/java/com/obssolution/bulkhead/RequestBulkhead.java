@@ -0,0 +1,50 @@
+package com.obssolution.bulkhead;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed number of request slots plus a bounded wait queue. Requests beyond the queue are turned away
+ * immediately, and queued requests give up after {@code maxWaitMs}, so one class of traffic can never
+ * hold more than {@code maxConcurrent + maxQueue} request threads.
+ */
+public class RequestBulkhead {
+
+    private final Semaphore slots;
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long maxWaitMs;
+
+    public RequestBulkhead(int maxConcurrent, int maxQueue, long maxWaitMs) {
+        if (maxConcurrent < 1 || maxQueue < 0) {
+            throw new IllegalArgumentException("Bulkhead needs at least one slot and a non-negative queue");
+        }
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueue = maxQueue;
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public boolean tryEnter() throws InterruptedException {
+        if (slots.tryAcquire()) {
+            return true;
+        }
+        // Approximate under contention, which is fine for a bound on waiting threads
+        if (slots.getQueueLength() >= maxQueue) {
+            return false;
+        }
+        return slots.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void exit() {
+        slots.release();
+    }
+
+    public int queueDepth() {
+        return slots.getQueueLength();
+    }
+
+    public int active() {
+        return maxConcurrent - slots.availablePermits();
+    }
+}
@@ -0,0 +1,300 @@
+package com.obssolution.cache;
+
+import com.obssolution.readmodel.ReadModel;
+import com.obssolution.readmodel.WatermarkTail;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.OffHeapStockStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the node-local caches coherent across instances. Writers append what they changed to the
+ * CACHE_INVALIDATION table in their own transaction; every node tails the table by sequence number and
+ * evicts or re-reads the affected entries for changes made by other nodes. Its own changes are already
+ * applied locally after commit, so they are skipped. The lag is bounded by the poll interval. With database
+ * sharding each shard's transactions write to that shard's table, so every shard is tailed on its own.
+ */
+@Component
+public class CacheInvalidationLog {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationLog.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO CACHE_INVALIDATION (NODE_ID, KIND, CACHE_KEY) VALUES (?, ?, ?)";
+    private static final String COLUMNS = "SELECT SEQ, NODE_ID, KIND, CACHE_KEY FROM CACHE_INVALIDATION ";
+    private static final String TAIL_SQL = COLUMNS + "WHERE SEQ > ? ORDER BY SEQ LIMIT ?";
+    private static final String START_SQL =
+            "SELECT COALESCE(MAX(SEQ), 0) FROM CACHE_INVALIDATION WHERE CREATE_DATE < ?";
+    private static final String PRUNE_SQL = "DELETE FROM CACHE_INVALIDATION WHERE CREATE_DATE < ?";
+
+    private static final RowMapper<Entry> ENTRY = (rs, rowNum) -> new Entry(rs.getLong("SEQ"),
+            rs.getString("NODE_ID"), Kind.valueOf(rs.getString("KIND")), rs.getString("CACHE_KEY"));
+
+    enum Kind {
+        ITEM, STOCK, ORDER
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PageCache pageCache;
+
+    @Autowired
+    private ItemCatalog itemCatalog;
+
+    @Autowired
+    private OrderNumberBloomFilter orderNumberFilter;
+
+    @Autowired
+    private OffHeapStockStore stockStore;
+
+    @Autowired
+    private ReadModel readModel;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${inventory.invalidation-log.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.invalidation-log.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    @Value("${inventory.invalidation-log.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${inventory.invalidation-log.gap-grace-ms:10000}")
+    private long gapGraceMs = 10000;
+
+    @Value("${inventory.invalidation-log.max-gaps:10000}")
+    private int maxGaps = 10000;
+
+    @Value("${inventory.invalidation-log.retention-minutes:60}")
+    private long retentionMinutes = 60;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Poller state, only touched by the polling thread; a shard's tail is created once its log is first read
+    private WatermarkTail[] tails;
+    private boolean failing;
+    private long lastPruneAt;
+
+    private volatile long lastPollAt;
+
+    private ScheduledExecutorService poller;
+    private Counter applied;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("inventory.invalidation-log.lag", this,
+                        l -> l.lastPollAt == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - l.lastPollAt))
+                .description("Time since this node last read the invalidation log, -1 before the first poll")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        applied = Counter.builder("inventory.invalidation-log.applied")
+                .description("Invalidations from other nodes applied to the local caches")
+                .register(meterRegistry);
+
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-invalidation-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Cache invalidation log enabled (node: {}, poll interval: {} ms)", nodeId, pollIntervalMs);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * An item row was created, updated or deleted.
+     */
+    public void itemChanged(Integer itemId) {
+        append(Kind.ITEM, List.of(itemId));
+    }
+
+    /**
+     * Ledger rows of the item were written, changed or deleted.
+     */
+    public void stockChanged(Integer itemId) {
+        append(Kind.STOCK, List.of(itemId));
+    }
+
+    public void stockChanged(Collection<Integer> itemIds) {
+        append(Kind.STOCK, new LinkedHashSet<>(itemIds));
+    }
+
+    /**
+     * An order, basket order or backorder was created, updated or deleted.
+     */
+    public void orderChanged(String orderNo) {
+        append(Kind.ORDER, List.of(orderNo));
+    }
+
+    public void orderChanged(Collection<String> orderNos) {
+        append(Kind.ORDER, new LinkedHashSet<>(orderNos));
+    }
+
+    // Joins the caller's transaction, so the entry commits (or rolls back) with the change it describes;
+    // every writer that logs a change runs in one
+    private void append(Kind kind, Collection<?> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, keys.stream()
+                .map(key -> new Object[]{nodeId, kind.name(), String.valueOf(key)})
+                .toList());
+    }
+
+    void poll() {
+        long now = System.nanoTime();
+        try {
+            if (tails == null) {
+                tails = new WatermarkTail[shardRouter.shardCount()];
+            }
+            Set<Entry> entries = new LinkedHashSet<>();
+            for (int shard = 0; shard < tails.length; shard++) {
+                int target = shard;
+                entries.addAll(shardRouter.onShard(shard, () -> read(target, now)));
+            }
+
+            apply(entries);
+            lastPollAt = now;
+            prune(now);
+            if (failing) {
+                failing = false;
+                log.info("Cache invalidation log readable again");
+            }
+        } catch (RuntimeException e) {
+            if (!failing) {
+                failing = true;
+                log.warn("Failed to read the cache invalidation log, caches may serve other nodes' stale data: {}",
+                        e.getMessage());
+            }
+        }
+    }
+
+    private Set<Entry> read(int shard, long now) {
+        WatermarkTail tail = tails[shard];
+        if (tail == null) {
+            // Caches are loaded from the database at startup; entries from just before it are replayed,
+            // which is harmless, so none written while they loaded are missed
+            LocalDateTime replayFrom = LocalDateTime.now().minusNanos(TimeUnit.MILLISECONDS.toNanos(gapGraceMs));
+            tail = new WatermarkTail();
+            tail.startAt(jdbcTemplate.queryForObject(START_SQL, Long.class, Timestamp.valueOf(replayFrom)));
+            tails[shard] = tail;
+        }
+
+        Set<Entry> entries = new LinkedHashSet<>();
+        for (List<Long> seqs : tail.awaited()) {
+            String sql = COLUMNS + "WHERE SEQ IN (" + WatermarkTail.placeholders(seqs.size()) + ")";
+            for (Entry entry : jdbcTemplate.query(sql, ENTRY, seqs.toArray())) {
+                tail.resolve(entry.seq());
+                entries.add(entry);
+            }
+        }
+        tail.expire(now, TimeUnit.MILLISECONDS.toNanos(gapGraceMs));
+
+        List<Entry> rows;
+        do {
+            rows = jdbcTemplate.query(TAIL_SQL, ENTRY, tail.watermark(), batchSize);
+            for (Entry entry : rows) {
+                tail.advance(entry.seq(), now, maxGaps);
+                entries.add(entry);
+            }
+        } while (rows.size() == batchSize);
+        return entries;
+    }
+
+    private void apply(Set<Entry> entries) {
+        Set<Kind> listings = EnumSet.noneOf(Kind.class);
+        Set<String> seen = new LinkedHashSet<>();
+        for (Entry entry : entries) {
+            if (nodeId.equals(entry.nodeId()) || !seen.add(entry.kind() + ":" + entry.key())) {
+                continue;
+            }
+            listings.add(entry.kind());
+            switch (entry.kind()) {
+                case ITEM -> {
+                    Integer itemId = Integer.valueOf(entry.key());
+                    itemCatalog.refresh(itemId);
+                    pageCache.invalidateRow(Listing.ITEM.key(itemId));
+                }
+                case STOCK -> {
+                    Integer itemId = Integer.valueOf(entry.key());
+                    if (stockStore.tracks(itemId)) {
+                        stockStore.resync(itemId);
+                    }
+                    readModel.refreshItem(itemId);
+                }
+                case ORDER -> {
+                    orderNumberFilter.put(entry.key());
+                    readModel.refreshOrder(entry.key());
+                }
+            }
+            applied.increment();
+        }
+        if (listings.contains(Kind.ITEM)) {
+            pageCache.invalidate(Listing.ITEM);
+        }
+        if (listings.contains(Kind.STOCK)) {
+            pageCache.invalidate(Listing.INVENTORY);
+        }
+        if (listings.contains(Kind.ORDER)) {
+            pageCache.invalidate(Listing.ORDER);
+        }
+    }
+
+    private void prune(long now) {
+        if (now - lastPruneAt < TimeUnit.MINUTES.toNanos(1) && lastPruneAt != 0) {
+            return;
+        }
+        lastPruneAt = now;
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusMinutes(retentionMinutes));
+        long pruned = shardRouter.sum(() -> (long) jdbcTemplate.update(PRUNE_SQL, cutoff));
+        if (pruned > 0) {
+            log.debug("Pruned {} cache invalidation log entries", pruned);
+        }
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    private record Entry(long seq, String nodeId, Kind kind, String key) {
+    }
+}
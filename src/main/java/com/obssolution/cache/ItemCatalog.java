@@ -0,0 +1,316 @@
+package com.obssolution.cache;
+
+import com.obssolution.model.Item;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-memory copy of the active item catalog, held as an immutable column-per-array snapshot sorted by id
+ * and swapped in one volatile write. Readers binary-search the current snapshot without locks or database
+ * calls; writers build the next version copy-on-write. Loaded in the background at startup; until it is
+ * ready, and for ids it does not hold (deleted or unknown items), callers go to the database.
+ */
+@Component
+public class ItemCatalog implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemCatalog.class);
+
+    private static final String ACTIVE_ITEMS_SQL =
+            "SELECT ID, NAME, PRICE, CREATE_BY, CREATE_DATE, VERSION FROM ITEM WHERE IS_DELETED = FALSE ORDER BY ID";
+    private static final String ITEM_BY_ID_SQL =
+            "SELECT ID, NAME, PRICE, CREATE_BY, CREATE_DATE, VERSION, IS_DELETED FROM ITEM WHERE ID = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventory.item-catalog.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inventory.item-catalog.fetch-size:10000}")
+    private int fetchSize = 10000;
+
+    private volatile Snapshot snapshot;
+
+    // Writer state, guarded by this
+    private boolean loading;
+    private final Map<Integer, Change> changedWhileLoading = new HashMap<>();
+    private final Set<Integer> deletedIds = new HashSet<>();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("inventory.item-catalog.version", this, c -> c.snapshot == null ? 0 : c.snapshot.version)
+                .description("Version of the item catalog snapshot, bumped on every published change")
+                .register(meterRegistry);
+        Gauge.builder("inventory.item-catalog.size", this, c -> c.snapshot == null ? 0 : c.snapshot.ids.length)
+                .description("Active items held in the item catalog snapshot")
+                .register(meterRegistry);
+
+        synchronized (this) {
+            loading = true;
+        }
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(fetchSize);
+        CompletableFuture.runAsync(() -> load(streaming)).exceptionally(e -> {
+            log.error("Failed to load item catalog, item reads stay on the database: {}", e.getMessage(), e);
+            synchronized (this) {
+                loading = false;
+                changedWhileLoading.clear();
+            }
+            return null;
+        });
+    }
+
+    void load(JdbcTemplate streaming) {
+        long start = System.currentTimeMillis();
+        List<Change> rows = new ArrayList<>();
+        streaming.query(ACTIVE_ITEMS_SQL, rs -> {
+            rows.add(toChange(rs, false));
+        });
+
+        synchronized (this) {
+            Snapshot loaded = Snapshot.of(rows);
+            // Writes that committed while the rows were streamed may or may not be in them; replaying is safe
+            for (Change change : changedWhileLoading.values()) {
+                loaded = loaded.apply(change);
+            }
+            changedWhileLoading.clear();
+            loading = false;
+            snapshot = loaded;
+        }
+        log.info("Item catalog loaded {} items in {} ms", rows.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * The active item with this id, or null when the catalog is not loaded or does not hold it.
+     */
+    public CatalogItem find(Integer id) {
+        Snapshot current = snapshot;
+        if (current == null || id == null) {
+            return null;
+        }
+        int index = Arrays.binarySearch(current.ids, id);
+        if (index < 0) {
+            return null;
+        }
+        return new CatalogItem(current.ids[index], current.names[index], BigDecimal.valueOf(current.priceCents[index], 2),
+                current.createBy[index], current.createDate[index], current.versions[index]);
+    }
+
+    /**
+     * Name of the item from the catalog, so a lazy item reference is only loaded for items it does not hold.
+     */
+    public String nameOf(Item item) {
+        Snapshot current = snapshot;
+        if (current != null) {
+            int index = Arrays.binarySearch(current.ids, item.getId());
+            if (index >= 0) {
+                return current.names[index];
+            }
+        }
+        return item.getName();
+    }
+
+    /**
+     * Publishes the saved state of an item (soft-deleted items leave the catalog) once the writing
+     * transaction, if any, has committed.
+     */
+    public void publish(Item item) {
+        if (!enabled) {
+            return;
+        }
+        Change change = new Change(item.getId(), item.getName(), toCents(item.getPrice()), item.getCreateBy(),
+                item.getCreateDate(), item.getVersion(), Boolean.TRUE.equals(item.getIsDeleted()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    /**
+     * Re-reads one item from the database, for changes written by another node.
+     */
+    public void refresh(Integer id) {
+        if (!enabled) {
+            return;
+        }
+        List<Change> rows = jdbcTemplate.query(ITEM_BY_ID_SQL,
+                (rs, rowNum) -> toChange(rs, rs.getBoolean("IS_DELETED")), id);
+        apply(rows.isEmpty() ? new Change(id, null, 0, null, null, null, true) : rows.get(0));
+    }
+
+    private static Change toChange(ResultSet rs, boolean deleted) throws SQLException {
+        Timestamp created = rs.getTimestamp("CREATE_DATE");
+        return new Change(rs.getInt("ID"), rs.getString("NAME"), toCents(rs.getBigDecimal("PRICE")),
+                rs.getString("CREATE_BY"), created == null ? null : created.toLocalDateTime(),
+                rs.getObject("VERSION", Long.class), deleted);
+    }
+
+    private synchronized void apply(Change change) {
+        if (change.deleted()) {
+            deletedIds.add(change.id());
+        } else if (deletedIds.contains(change.id())) {
+            // An update that lost the race against the item's deletion
+            return;
+        }
+        if (loading) {
+            changedWhileLoading.merge(change.id(), change, Change::newer);
+        } else if (snapshot != null) {
+            snapshot = snapshot.apply(change);
+        }
+    }
+
+    private static long toCents(BigDecimal price) {
+        return price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public record CatalogItem(Integer id, String name, BigDecimal price, String createBy, LocalDateTime createDate,
+                              Long version) {
+    }
+
+    private record Change(int id, String name, long priceCents, String createBy, LocalDateTime createDate,
+                          Long version, boolean deleted) {
+
+        Change newer(Change other) {
+            if (deleted || other.deleted) {
+                return deleted ? this : other;
+            }
+            return versionOf(other) > versionOf(this) ? other : this;
+        }
+    }
+
+    private static long versionOf(Change change) {
+        return change.version() == null ? -1 : change.version();
+    }
+
+    private static final class Snapshot {
+
+        private final long version;
+        private final int[] ids;
+        private final String[] names;
+        private final long[] priceCents;
+        private final String[] createBy;
+        private final LocalDateTime[] createDate;
+        private final Long[] versions;
+
+        private Snapshot(long version, int[] ids, String[] names, long[] priceCents, String[] createBy,
+                         LocalDateTime[] createDate, Long[] versions) {
+            this.version = version;
+            this.ids = ids;
+            this.names = names;
+            this.priceCents = priceCents;
+            this.createBy = createBy;
+            this.createDate = createDate;
+            this.versions = versions;
+        }
+
+        static Snapshot of(List<Change> rows) {
+            int n = rows.size();
+            Snapshot s = new Snapshot(1, new int[n], new String[n], new long[n], new String[n],
+                    new LocalDateTime[n], new Long[n]);
+            for (int i = 0; i < n; i++) {
+                Change row = rows.get(i);
+                s.ids[i] = row.id();
+                s.createBy[i] = row.createBy();
+                s.createDate[i] = row.createDate();
+                s.set(i, row);
+            }
+            return s;
+        }
+
+        Snapshot apply(Change change) {
+            int index = Arrays.binarySearch(ids, change.id());
+            if (change.deleted()) {
+                return index < 0 ? this : without(index);
+            }
+            if (index < 0) {
+                return with(-index - 1, change);
+            }
+            if (versions[index] != null && versionOf(change) < versions[index]) {
+                return this;
+            }
+            Snapshot next = new Snapshot(version + 1, ids, names.clone(), priceCents.clone(), createBy,
+                    createDate, versions.clone());
+            next.set(index, change);
+            return next;
+        }
+
+        private Snapshot with(int at, Change change) {
+            int n = ids.length + 1;
+            Snapshot next = new Snapshot(version + 1, new int[n], new String[n], new long[n], new String[n],
+                    new LocalDateTime[n], new Long[n]);
+            next.copyFrom(this, 0, 0, at);
+            next.copyFrom(this, at, at + 1, ids.length - at);
+            next.ids[at] = change.id();
+            next.createBy[at] = change.createBy();
+            next.createDate[at] = change.createDate();
+            next.set(at, change);
+            return next;
+        }
+
+        private Snapshot without(int at) {
+            int n = ids.length - 1;
+            Snapshot next = new Snapshot(version + 1, new int[n], new String[n], new long[n], new String[n],
+                    new LocalDateTime[n], new Long[n]);
+            next.copyFrom(this, 0, 0, at);
+            next.copyFrom(this, at + 1, at, n - at);
+            return next;
+        }
+
+        private void copyFrom(Snapshot source, int from, int to, int length) {
+            System.arraycopy(source.ids, from, ids, to, length);
+            System.arraycopy(source.names, from, names, to, length);
+            System.arraycopy(source.priceCents, from, priceCents, to, length);
+            System.arraycopy(source.createBy, from, createBy, to, length);
+            System.arraycopy(source.createDate, from, createDate, to, length);
+            System.arraycopy(source.versions, from, versions, to, length);
+        }
+
+        // Only used while a snapshot is being built, before it is published; ids and creation fields are
+        // shared between versions and never written here
+        private void set(int index, Change change) {
+            names[index] = change.name();
+            priceCents[index] = change.priceCents();
+            versions[index] = change.version();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.obssolution.cache;
+
+/**
+ * The paginated listings held by {@link PageCache}.
+ */
+public enum Listing {
+    ITEM,
+    INVENTORY,
+    ORDER;
+
+    /**
+     * Key of one row of this listing, as recorded against the cached pages it appears on.
+     */
+    public String key(Object id) {
+        return name() + ":" + id;
+    }
+}
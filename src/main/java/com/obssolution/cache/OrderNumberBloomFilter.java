@@ -0,0 +1,181 @@
+package com.obssolution.cache;
+
+import com.obssolution.shard.ShardRouter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over every order number in CUSTOMER_ORDER, ORDER_HEADER and BACKORDER, used to skip the
+ * existsById round trips when an order number has certainly never been used. Built in the background at
+ * startup by streaming the keys; until then every lookup answers "maybe" and falls through to the database.
+ */
+@Component
+public class OrderNumberBloomFilter implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderNumberBloomFilter.class);
+
+    private static final String ORDER_NO_SQL =
+            "SELECT ORDER_NO FROM CUSTOMER_ORDER UNION ALL SELECT ORDER_NO FROM ORDER_HEADER " +
+            "UNION ALL SELECT ORDER_NO FROM BACKORDER WHERE STATUS = 'WAITING'";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${inventory.order-bloom.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.order-bloom.expected-insertions:10000000}")
+    private long expectedInsertions;
+
+    @Value("${inventory.order-bloom.fpp:0.01}")
+    private double fpp;
+
+    @Value("${inventory.order-bloom.fetch-size:10000}")
+    private int fetchSize;
+
+    private AtomicLongArray bits;
+    private long bitCount;
+    private int hashCount;
+    private volatile boolean ready;
+
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        allocate();
+        registerMetrics();
+
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getDataSource());
+        streaming.setFetchSize(fetchSize);
+        CompletableFuture.runAsync(() -> load(streaming)).exceptionally(e -> {
+            log.error("Failed to build order number Bloom filter, duplicate checks stay on the database: {}",
+                    e.getMessage(), e);
+            return null;
+        });
+    }
+
+    void allocate() {
+        bitCount = Math.max(64, (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        bits = new AtomicLongArray((int) Math.min(Integer.MAX_VALUE - 8, (bitCount + 63) / 64));
+        bitCount = bits.length() * 64L;
+    }
+
+    void load(JdbcTemplate streaming) {
+        long start = System.currentTimeMillis();
+        long[] loaded = {0};
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shardRouter.onShard(shard, () -> streaming.query(ORDER_NO_SQL, rs -> {
+                put(rs.getString(1));
+                loaded[0]++;
+            }));
+        }
+        ready = true;
+        log.info("Order number Bloom filter loaded {} keys in {} ms ({} bits, {} hashes)",
+                loaded[0], System.currentTimeMillis() - start, bitCount, hashCount);
+    }
+
+    /**
+     * Returns false only when the order number has certainly not been inserted.
+     */
+    public boolean mightContain(String orderNo) {
+        if (!ready) {
+            return true;
+        }
+        long h1 = hash(orderNo, 0x9E3779B97F4A7C15L);
+        long h2 = hash(orderNo, 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                negatives.increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records an order number inserted after (or while) the filter was built.
+     */
+    public void put(String orderNo) {
+        if (bits == null || orderNo == null) {
+            return;
+        }
+        long h1 = hash(orderNo, 0x9E3779B97F4A7C15L);
+        long h2 = hash(orderNo, 0xC2B2AE3D27D4EB4FL);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = bits.get(index);
+            } while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    /**
+     * Called when the filter answered "maybe" but the database check found no such order.
+     */
+    public void recordFalsePositive() {
+        if (ready) {
+            falsePositives.increment();
+        }
+    }
+
+    void registerMetrics() {
+        FunctionCounter.builder("inventory.order-bloom.negatives", negatives, LongAdder::sum)
+                .description("Order number checks answered by the Bloom filter without a database call")
+                .register(meterRegistry);
+        FunctionCounter.builder("inventory.order-bloom.false-positives", falsePositives, LongAdder::sum)
+                .description("Order number checks that fell through to the database needlessly")
+                .register(meterRegistry);
+        Gauge.builder("inventory.order-bloom.false-positive-rate", this, OrderNumberBloomFilter::observedFalsePositiveRate)
+                .description("Share of unused order numbers that still needed a database check")
+                .register(meterRegistry);
+    }
+
+    double observedFalsePositiveRate() {
+        double fp = falsePositives.sum();
+        double total = fp + negatives.sum();
+        return total == 0 ? 0.0 : fp / total;
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, finished with a murmur3 mix; the seed gives two independent hashes
+    private static long hash(String value, long seed) {
+        long h = 0xCBF29CE484222325L ^ seed;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
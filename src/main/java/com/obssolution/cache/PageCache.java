@@ -0,0 +1,171 @@
+package com.obssolution.cache;
+
+import com.obssolution.dto.PageResponseDTO;
+import com.obssolution.replica.ReplicaRoutingDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Caches the first pages of each listing, keyed by page and size. Every cached page remembers the row
+ * keys it shows: a create or soft-delete changes the total of every page and drops the whole listing,
+ * an in-place update only drops the pages showing that row. Invalidation runs after the writing
+ * transaction commits, and a load that was already running when it happened is not stored, so a page
+ * read before the commit never outlives it. Misses are loaded through {@link SingleFlight}, from the
+ * primary even for requests that may read a replica, since a lagging page would be served until the next write.
+ */
+@Component
+public class PageCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Value("${inventory.page-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inventory.page-cache.max-pages:3}")
+    private int maxPages = 3;
+
+    @Value("${inventory.page-cache.max-size:100}")
+    private int maxSize = 100;
+
+    private final Map<Listing, Pages> listings = new EnumMap<>(Listing.class);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PageCache() {
+        for (Listing listing : Listing.values()) {
+            listings.put(listing, new Pages());
+        }
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        FunctionCounter.builder("inventory.page-cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Listing pages answered from the page cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("inventory.page-cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Cacheable listing pages that had to be loaded")
+                .register(meterRegistry);
+    }
+
+    public <T> PageResponseDTO<T> get(Listing listing, int page, int size, Function<T, Collection<String>> rowKeys,
+                                      Supplier<PageResponseDTO<T>> load) {
+        return get(listing, page, size, rowKeys, load, UnaryOperator.identity());
+    }
+
+    /**
+     * Returns the cached page, passed through {@code onHit}, or loads and caches it. Pages deeper than
+     * the configured limit, or larger than the maximum size, are always loaded.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> PageResponseDTO<T> get(Listing listing, int page, int size, Function<T, Collection<String>> rowKeys,
+                                      Supplier<PageResponseDTO<T>> load, UnaryOperator<PageResponseDTO<T>> onHit) {
+        if (!enabled || page > maxPages || size > maxSize) {
+            return load.get();
+        }
+
+        Pages pages = listings.get(listing);
+        PageKey key = new PageKey(page, size);
+        Entry cached = pages.entries.get(key);
+        if (cached != null) {
+            hits.increment();
+            return onHit.apply((PageResponseDTO<T>) cached.page());
+        }
+
+        misses.increment();
+        long generation = pages.generation;
+        // The generation is part of the key, so nobody joins a load that started before an invalidation;
+        // joiners get the page like a hit does
+        return singleFlight.execute("page:" + listing + ":" + generation + ":" + page + ":" + size, () -> {
+            PageResponseDTO<T> loaded = ReplicaRoutingDataSource.onPrimary(load);
+            Set<String> keys = new HashSet<>();
+            for (T row : loaded.getContent()) {
+                keys.addAll(rowKeys.apply(row));
+            }
+            synchronized (pages) {
+                if (pages.generation == generation) {
+                    pages.entries.put(key, new Entry(loaded, keys));
+                }
+            }
+            return loaded;
+        }, onHit);
+    }
+
+    /**
+     * For writes that add or remove rows: every page of the listing shows the total, so all of them go.
+     */
+    public void invalidate(Listing listing) {
+        afterCommit(() -> {
+            Pages pages = listings.get(listing);
+            synchronized (pages) {
+                pages.generation++;
+                pages.entries.clear();
+            }
+        });
+    }
+
+    /**
+     * For in-place updates: drops only the pages, of any listing, that show the row.
+     */
+    public void invalidateRow(String rowKey) {
+        afterCommit(() -> {
+            for (Pages pages : listings.values()) {
+                synchronized (pages) {
+                    pages.generation++;
+                    pages.entries.values().removeIf(entry -> entry.rowKeys().contains(rowKey));
+                }
+            }
+        });
+    }
+
+    int size(Listing listing) {
+        return listings.get(listing).entries.size();
+    }
+
+    private static void afterCommit(Runnable invalidation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidation.run();
+                }
+            });
+        } else {
+            invalidation.run();
+        }
+    }
+
+    private static final class Pages {
+        private final ConcurrentMap<PageKey, Entry> entries = new ConcurrentHashMap<>();
+        private volatile long generation;
+    }
+
+    private record PageKey(int page, int size) {
+    }
+
+    private record Entry(PageResponseDTO<?> page, Set<String> rowKeys) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.obssolution.cache;
+
+import com.obssolution.deadline.RequestDeadline;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent identical reads: the first caller for a key runs the load, callers arriving while
+ * it is in flight wait for and share its result. Nothing is kept once the load finishes. A joiner may still
+ * get a result read before a write that committed after the load started, so it can be as old as the
+ * leader's start, never older. Joiners receive their own copy of the result, so no two requests share
+ * a mutable object.
+ * <p>
+ * A joiner waits no longer than its own request deadline. If the load fails because the leader's deadline
+ * ran out, the joiner loads again under its own.
+ */
+@Component
+public class SingleFlight {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventory.single-flight.enabled:true}")
+    private boolean enabled = true;
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder shared = new LongAdder();
+
+    @PostConstruct
+    void registerMetrics() {
+        FunctionCounter.builder("inventory.single-flight.shared", shared, LongAdder::sum)
+                .description("Reads answered by joining a load already in flight for the same key")
+                .register(meterRegistry);
+    }
+
+    /**
+     * For loads whose result is immutable and can be handed to every caller as is.
+     */
+    public <T> T execute(String key, Supplier<T> load) {
+        return execute(key, load, UnaryOperator.identity());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> load, UnaryOperator<T> copy) {
+        if (!enabled) {
+            return load.get();
+        }
+
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            shared.increment();
+            try {
+                return copy.apply((T) await(existing));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof QueryTimeoutException) {
+                    return execute(key, load, copy);
+                }
+                throw rethrow(e.getCause());
+            }
+        }
+
+        try {
+            T value = load.get();
+            // Removed before completing, so nobody can join a load whose result is already out
+            inFlight.remove(key, own);
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> load) throws ExecutionException {
+        long remaining = RequestDeadline.remainingMillis();
+        try {
+            return remaining == Long.MAX_VALUE ? load.get() : load.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Request deadline exceeded while waiting for a shared load");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Interrupted while waiting for a shared load");
+        }
+    }
+
+    long sharedCount() {
+        return shared.sum();
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new CompletionException(cause);
+    }
+}
@@ -0,0 +1,119 @@
+package com.obssolution.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Admission control for {@link AdmissionControlled} endpoints. All of them share one
+ * {@link AdaptiveConcurrencyLimit}, since they compete for the same connection pool; requests over the
+ * limit fail fast with 429 and a Retry-After header so reads keep their share of the pool.
+ * <p>
+ * Time a request spends waiting on another one (see {@link #excludeFromLatency}) is left out of its
+ * latency sample, since it says nothing about how loaded the database is.
+ */
+@Aspect
+@Component
+public class AdmissionControlAspect {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControlAspect.class);
+
+    private static final ThreadLocal<long[]> EXCLUDED_NANOS = new ThreadLocal<>();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventory.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inventory.admission.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${inventory.admission.min-limit:2}")
+    private int minLimit;
+
+    @Value("${inventory.admission.max-limit:100}")
+    private int maxLimit;
+
+    @Value("${inventory.admission.target-latency-ms:200}")
+    private long targetLatencyMs;
+
+    @Value("${inventory.admission.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Value("${inventory.admission.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    private AdaptiveConcurrencyLimit limit;
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit,
+                targetLatencyMs * 1_000_000L, backoffRatio);
+        Gauge.builder("inventory.admission.limit", limit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Current concurrency limit for write endpoints")
+                .register(meterRegistry);
+        Gauge.builder("inventory.admission.in-flight", limit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Write requests currently admitted")
+                .register(meterRegistry);
+        rejected = Counter.builder("inventory.admission.rejected")
+                .description("Write requests turned away with 429")
+                .register(meterRegistry);
+    }
+
+    @Around("@annotation(com.obssolution.concurrency.AdmissionControlled)")
+    public Object admit(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!enabled) {
+            return joinPoint.proceed();
+        }
+        if (!limit.tryAcquire()) {
+            rejected.increment();
+            log.debug("Rejected {} at concurrency limit {}", joinPoint.getSignature().toShortString(), limit.getLimit());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .body("Too many concurrent write requests, retry later");
+        }
+
+        long[] excluded = new long[1];
+        long[] outer = EXCLUDED_NANOS.get();
+        EXCLUDED_NANOS.set(excluded);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = joinPoint.proceed();
+            // Handlers turn database errors into 500 responses rather than throwing
+            failed = result instanceof ResponseEntity<?> response && response.getStatusCode().is5xxServerError();
+            return result;
+        } finally {
+            EXCLUDED_NANOS.set(outer);
+            limit.release(Math.max(0, System.nanoTime() - start - excluded[0]), failed);
+        }
+    }
+
+    /**
+     * Leaves time the current request spent waiting on another request out of its latency sample.
+     */
+    public static void excludeFromLatency(long nanos) {
+        long[] excluded = EXCLUDED_NANOS.get();
+        if (excluded != null) {
+            excluded[0] += nanos;
+        }
+    }
+
+    AdaptiveConcurrencyLimit limit() {
+        return limit;
+    }
+}
@@ -0,0 +1,15 @@
+package com.obssolution.concurrency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Puts a write endpoint behind the shared adaptive concurrency limit. When the limit is reached the
+ * request is answered with 429 instead of queueing for a database connection.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdmissionControlled {
+}
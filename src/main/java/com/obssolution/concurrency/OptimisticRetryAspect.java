@@ -0,0 +1,76 @@
+package com.obssolution.concurrency;
+
+import com.obssolution.exceptions.StaleVersionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries {@link RetryOnConflict} methods on optimistic-locking failures with jittered exponential
+ * backoff. Ordered ahead of the transaction interceptor so every attempt runs in a fresh transaction.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+public class OptimisticRetryAspect {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticRetryAspect.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventory.optimistic-retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${inventory.optimistic-retry.backoff-ms:20}")
+    private long backoffMs;
+
+    @Value("${inventory.optimistic-retry.max-backoff-ms:200}")
+    private long maxBackoffMs;
+
+    @Around("@annotation(retryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint, RetryOnConflict retryOnConflict) throws Throwable {
+        String entity = retryOnConflict.entity();
+        meterRegistry.counter("inventory.optimistic.updates", "entity", entity).increment();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (StaleVersionException e) {
+                conflict(entity, "stale-version");
+                throw e;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    conflict(entity, "exhausted");
+                    log.warn("Giving up on {} after {} conflicting attempts: {}", entity, attempt, e.getMessage());
+                    throw e;
+                }
+                conflict(entity, "retried");
+                log.debug("Optimistic conflict on {} (attempt {}), retrying", entity, attempt);
+                sleep(attempt);
+            }
+        }
+    }
+
+    private void conflict(String entity, String outcome) {
+        meterRegistry.counter("inventory.optimistic.conflicts", "entity", entity, "outcome", outcome).increment();
+    }
+
+    private void sleep(int attempt) throws InterruptedException {
+        long cap = Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 20));
+        if (cap > 0) {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        }
+    }
+}
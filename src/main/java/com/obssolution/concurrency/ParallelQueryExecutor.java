@@ -0,0 +1,129 @@
+package com.obssolution.concurrency;
+
+import com.obssolution.bulkhead.Bulkhead;
+import com.obssolution.bulkhead.BulkheadRoutingDataSource;
+import com.obssolution.deadline.RequestDeadline;
+import com.obssolution.shard.ShardRoutingDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent queries of one request side by side, each on its own connection. Tasks carry the
+ * caller's deadline, bulkhead, database shard and request attributes over to the worker, and run read-only
+ * if the caller's transaction is, so they get the same query timeout, pool slice and routing as if the
+ * request thread had run them. When the pool is saturated a task runs on the caller instead.
+ */
+@Component
+public class ParallelQueryExecutor {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.parallel-query.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${inventory.parallel-query.pool-size:4}")
+    private int poolSize = 4;
+
+    @Value("${inventory.parallel-query.queue-capacity:50}")
+    private int queueCapacity = 50;
+
+    private ThreadPoolExecutor executor;
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> query) {
+        if (!enabled) {
+            try {
+                return CompletableFuture.completedFuture(query.get());
+            } catch (RuntimeException | Error e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        Long deadline = RequestDeadline.current();
+        Bulkhead bulkhead = BulkheadRoutingDataSource.current();
+        Integer shard = ShardRoutingDataSource.current();
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        boolean readOnly = TransactionSynchronizationManager.isActualTransactionActive()
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        return CompletableFuture.supplyAsync(() -> {
+            Long callerDeadline = RequestDeadline.current();
+            Bulkhead callerBulkhead = BulkheadRoutingDataSource.current();
+            Integer callerShard = ShardRoutingDataSource.current();
+            RequestAttributes callerRequest = RequestContextHolder.getRequestAttributes();
+            RequestDeadline.restore(deadline);
+            BulkheadRoutingDataSource.bind(bulkhead);
+            ShardRoutingDataSource.bind(shard);
+            RequestContextHolder.setRequestAttributes(request);
+            try {
+                return readOnly ? readOnly(query) : query.get();
+            } finally {
+                // Puts back whatever was bound, in case the task ran on the caller under CallerRunsPolicy
+                RequestDeadline.restore(callerDeadline);
+                BulkheadRoutingDataSource.bind(callerBulkhead);
+                ShardRoutingDataSource.bind(callerShard);
+                RequestContextHolder.setRequestAttributes(callerRequest);
+            }
+        }, executor());
+    }
+
+    /**
+     * Waits for a result, rethrowing the query's own exception rather than a {@link CompletionException}.
+     */
+    public <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    // Joins the caller's transaction when the task ended up running on the caller
+    private <T> T readOnly(Supplier<T> query) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> query.get());
+    }
+
+    private synchronized ThreadPoolExecutor executor() {
+        if (executor == null) {
+            AtomicInteger sequence = new AtomicInteger();
+            executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), r -> {
+                        Thread thread = new Thread(r, "parallel-query-" + sequence.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,20 @@
+package com.obssolution.concurrency;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Re-runs a service mutation when it loses an optimistic-locking race. The retry wraps the
+ * transaction, so each attempt re-reads the entity.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+
+    /**
+     * Entity name used to tag the conflict metrics.
+     */
+    String entity();
+}
@@ -0,0 +1,51 @@
+package com.obssolution.controller;
+
+import com.obssolution.concurrency.AdmissionControlled;
+import com.obssolution.dto.admin.ReconciliationReportDTO;
+import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.service.impl.ReconciliationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminController.class);
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @PostMapping("/reconcile")
+    @AdmissionControlled
+    public ResponseEntity<?> startReconciliation(@RequestParam(defaultValue = "false") boolean repair) {
+        try {
+            log.info("Starting stock reconciliation (repair: {})", repair);
+            ReconciliationReportDTO report = reconciliationService.startReconciliation(repair);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(report);
+        } catch (IllegalStateException e) {
+            log.warn("Reconciliation not started: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error starting reconciliation: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Failed to start reconciliation: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/reconcile/{jobId}")
+    public ResponseEntity<?> getReconciliation(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(reconciliationService.getReconciliation(jobId));
+        } catch (ResourceNotFoundException e) {
+            log.warn("Reconciliation job not found: {}", jobId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error fetching reconciliation {}: {}", jobId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Error retrieving reconciliation: " + e.getMessage());
+        }
+    }
+}
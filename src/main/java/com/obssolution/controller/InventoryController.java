@@ -1,19 +1,25 @@
 package com.obssolution.controller;
 
+import com.obssolution.concurrency.AdmissionControlled;
+import com.obssolution.deadline.RequestTimeout;
 import com.obssolution.dto.inventory.InventoryRequestDTO;
 import com.obssolution.dto.inventory.InventoryResponseDTO;
 import com.obssolution.dto.inventory.InventoryUpdateRequestDTO;
 import com.obssolution.dto.PageResponseDTO;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.idempotency.IdempotencyStore;
 import com.obssolution.service.impl.InventoryService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/inventory")
 public class InventoryController {
@@ -23,7 +29,11 @@ public class InventoryController {
     @Autowired
     private InventoryService inventoryService;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     @GetMapping
+    @RequestTimeout(millis = 5000)
     public ResponseEntity<?> getAllInventories(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size) {
@@ -56,19 +66,40 @@ public class InventoryController {
         }
     }
 
-    @PostMapping("/save")
-    public ResponseEntity<?> createInventory(@RequestBody @Valid InventoryRequestDTO requestDTO) {
+    @GetMapping("/item/{itemId}/recent")
+    public ResponseEntity<?> getRecentMovements(@PathVariable Integer itemId) {
         try {
-            InventoryResponseDTO createdInventory = inventoryService.createInventory(requestDTO);
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdInventory);
+            log.info("Fetching recent movements for item ID: {}", itemId);
+            List<InventoryResponseDTO> movements = inventoryService.getRecentMovements(itemId);
+            return ResponseEntity.ok(movements);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid recent movements request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Invalid item ID: " + e.getMessage());
         } catch (Exception e) {
-            log.error("Error creating inventory: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Failed to create inventory: " + e.getMessage());
+            log.error("Error fetching recent movements for item {}: {}", itemId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Error retrieving recent movements: " + e.getMessage());
         }
     }
 
+    @PostMapping("/save")
+    @AdmissionControlled
+    public ResponseEntity<?> createInventory(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid InventoryRequestDTO requestDTO) {
+        return idempotencyStore.execute("inventory", idempotencyKey, requestDTO, () -> {
+            try {
+                InventoryResponseDTO createdInventory = inventoryService.createInventory(requestDTO);
+                return ResponseEntity.status(HttpStatus.CREATED).body(createdInventory);
+            } catch (Exception e) {
+                log.error("Error creating inventory: {}", e.getMessage(), e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Failed to create inventory: " + e.getMessage());
+            }
+        });
+    }
+
     @PutMapping("/edit")
+    @AdmissionControlled
     public ResponseEntity<?> updateInventory(@RequestBody @Valid InventoryUpdateRequestDTO requestDTO) {
         try {
             InventoryResponseDTO updatedInventory = inventoryService.updateInventory(requestDTO);
@@ -79,6 +110,9 @@ public class InventoryController {
         } catch (ResourceNotFoundException e) {
             log.warn("Inventory not found: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Concurrent update on inventory: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             log.error("Error updating inventory: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to update inventory: " + e.getMessage());
@@ -86,6 +120,7 @@ public class InventoryController {
     }
 
     @PutMapping("/delete/{id}")
+    @AdmissionControlled
     public ResponseEntity<?> deleteInventory(@PathVariable Integer id) {
         try {
             inventoryService.deleteInventoryById(id);
@@ -96,6 +131,9 @@ public class InventoryController {
         } catch (ResourceNotFoundException e) {
             log.warn("Inventory not found during delete: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Concurrent delete on inventory: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             log.error("Unexpected error during delete: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().body("Error deleting inventory: " + e.getMessage());
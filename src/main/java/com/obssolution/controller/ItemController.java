@@ -1,19 +1,29 @@
 package com.obssolution.controller;
 
+import com.obssolution.bulkhead.ReadOnlyRequest;
+import com.obssolution.concurrency.AdmissionControlled;
+import com.obssolution.deadline.RequestTimeout;
+import com.obssolution.dto.item.AvailabilityLineResponseDTO;
+import com.obssolution.dto.item.AvailabilityRequestDTO;
 import com.obssolution.dto.item.ItemRequestDTO;
 import com.obssolution.dto.item.ItemResponseDTO;
 import com.obssolution.dto.item.ItemUpdateRequestDTO;
+import com.obssolution.dto.MultiGetResponseDTO;
 import com.obssolution.dto.PageResponseDTO;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.idempotency.IdempotencyStore;
 import com.obssolution.service.impl.ItemService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/item")
 public class ItemController {
@@ -21,9 +31,13 @@ public class ItemController {
     @Autowired
     ItemService itemService;
 
+    @Autowired
+    IdempotencyStore idempotencyStore;
+
     private static final Logger log = LoggerFactory.getLogger(ItemController.class);
 
     @GetMapping
+    @RequestTimeout(millis = 5000)
     public ResponseEntity<?> getAllItems(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "5") int size) {
@@ -37,6 +51,20 @@ public class ItemController {
         }
     }
 
+    @GetMapping(params = "ids")
+    public ResponseEntity<?> getItemsByIds(@RequestParam List<Integer> ids) {
+        try {
+            MultiGetResponseDTO<ItemResponseDTO, Integer> response = itemService.getItemsByIds(ids);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid item IDs request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Invalid item IDs: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("Error fetching items {}: {}", ids, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Error retrieving items: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<?> getItemById(@PathVariable Integer id) {
         try {
@@ -56,18 +84,39 @@ public class ItemController {
     }
 
     @PostMapping("/save")
-    public ResponseEntity<?> createItem(@RequestBody @Valid ItemRequestDTO requestDTO) {
+    @AdmissionControlled
+    public ResponseEntity<?> createItem(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid ItemRequestDTO requestDTO) {
+        return idempotencyStore.execute("item", idempotencyKey, requestDTO, () -> {
+            try {
+                ItemResponseDTO createdItem = itemService.createItem(requestDTO);
+                return ResponseEntity.status(HttpStatus.CREATED).body(createdItem);
+            } catch (Exception e) {
+                log.error("Error creating item: {}", e.getMessage(), e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Failed to create item: " + e.getMessage());
+            }
+        });
+    }
+
+    @PostMapping("/availability")
+    @ReadOnlyRequest
+    public ResponseEntity<?> checkAvailability(@RequestBody @Valid AvailabilityRequestDTO requestDTO) {
         try {
-            ItemResponseDTO createdItem = itemService.createItem(requestDTO);
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdItem);
+            List<AvailabilityLineResponseDTO> lines = itemService.checkAvailability(requestDTO.getLines());
+            return ResponseEntity.ok(lines);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid availability request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Invalid data: " + e.getMessage());
         } catch (Exception e) {
-            log.error("Error creating item: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Failed to create item: " + e.getMessage());
+            log.error("Error checking availability: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Error checking availability: " + e.getMessage());
         }
     }
 
     @PutMapping("/edit")
+    @AdmissionControlled
     public ResponseEntity<?> updateItem(@RequestBody @Valid ItemUpdateRequestDTO requestDTO) {
         try {
             ItemResponseDTO updatedItem = itemService.updateItem(requestDTO);
@@ -78,6 +127,9 @@ public class ItemController {
         } catch (ResourceNotFoundException e) {
             log.warn("Item not found: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Concurrent update on item: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             log.error("Error updating item: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to update item: " + e.getMessage());
@@ -85,6 +137,7 @@ public class ItemController {
     }
 
     @PutMapping("/delete/{id}")
+    @AdmissionControlled
     public ResponseEntity<?> deleteItem(@PathVariable Integer id) {
         try {
             itemService.deleteItemById(id);
@@ -95,6 +148,9 @@ public class ItemController {
         } catch (ResourceNotFoundException e) {
             log.warn("Item not found during delete: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Concurrent delete on item: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             log.error("Unexpected error during delete: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().body("Error deleting item: " + e.getMessage());
@@ -1,19 +1,30 @@
 package com.obssolution.controller;
 
+import com.obssolution.concurrency.AdmissionControlled;
+import com.obssolution.deadline.RequestTimeout;
+import com.obssolution.dto.order.BasketOrderRequestDTO;
+import com.obssolution.dto.order.BasketOrderResponseDTO;
 import com.obssolution.dto.order.OrderRequestDTO;
 import com.obssolution.dto.order.OrderResponseDTO;
+import com.obssolution.dto.order.OrderStatusDTO;
 import com.obssolution.dto.order.OrderUpdateRequestDTO;
+import com.obssolution.dto.MultiGetResponseDTO;
 import com.obssolution.dto.PageResponseDTO;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.idempotency.IdempotencyStore;
 import com.obssolution.service.impl.OrderService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/orders")
 public class OrderController {
@@ -23,7 +34,11 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     @GetMapping
+    @RequestTimeout(millis = 5000)
     public ResponseEntity<?> getAllOrders(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int size) {
@@ -38,6 +53,20 @@ public class OrderController {
         }
     }
 
+    @GetMapping(params = "orderNos")
+    public ResponseEntity<?> getOrdersByOrderNos(@RequestParam List<String> orderNos) {
+        try {
+            MultiGetResponseDTO<OrderResponseDTO, String> response = orderService.getOrdersByOrderNos(orderNos);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid orderNos request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Invalid orderNos: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("Error fetching orders {}: {}", orderNos, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Error retrieving orders: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/{orderNo}")
     public ResponseEntity<?> getOrderByOrderNo(@PathVariable String orderNo) {
         try {
@@ -56,19 +85,93 @@ public class OrderController {
         }
     }
 
+    @GetMapping("/status/{orderNo}")
+    public ResponseEntity<?> getOrderStatus(@PathVariable String orderNo) {
+        try {
+            OrderStatusDTO status = orderService.getOrderStatus(orderNo);
+            return ResponseEntity.ok(status);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid order status request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Invalid orderNo: " + e.getMessage());
+        } catch (ResourceNotFoundException e) {
+            log.warn("Order not found with orderNo: {}", orderNo);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error fetching status of order {}: {}", orderNo, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Error retrieving order status: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/save")
-    public ResponseEntity<?> createOrder(@RequestBody @Valid OrderRequestDTO requestDTO) {
+    @AdmissionControlled
+    public ResponseEntity<?> createOrder(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid OrderRequestDTO requestDTO) {
+        return idempotencyStore.execute("orders", idempotencyKey, requestDTO, () -> {
+            try {
+                OrderResponseDTO createdOrder = orderService.createOrder(requestDTO);
+                // Queued for stock, not yet an order; progress is read from /status/{orderNo}
+                HttpStatus status = OrderService.STATUS_BACKORDERED.equals(createdOrder.getStatus())
+                        ? HttpStatus.ACCEPTED : HttpStatus.CREATED;
+                return ResponseEntity.status(status).body(createdOrder);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid order request: {}", e.getMessage());
+                return ResponseEntity.badRequest().body("Invalid data: " + e.getMessage());
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Order {} rejected by the database: {}", requestDTO.getOrderNo(), e.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body("Order with orderNo " + requestDTO.getOrderNo() + " already exists");
+            } catch (Exception e) {
+                log.error("Error creating order: {}", e.getMessage(), e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Failed to create order: " + e.getMessage());
+            }
+        });
+    }
+
+    @PostMapping("/basket")
+    @AdmissionControlled
+    public ResponseEntity<?> createBasketOrder(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid BasketOrderRequestDTO requestDTO) {
+        return idempotencyStore.execute("orders-basket", idempotencyKey, requestDTO, () -> {
+            try {
+                BasketOrderResponseDTO createdOrder = orderService.createBasketOrder(requestDTO);
+                return ResponseEntity.status(HttpStatus.CREATED).body(createdOrder);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid basket order request: {}", e.getMessage());
+                return ResponseEntity.badRequest().body("Invalid data: " + e.getMessage());
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Basket order {} rejected by the database: {}", requestDTO.getOrderNo(), e.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body("Order with orderNo " + requestDTO.getOrderNo() + " already exists");
+            } catch (Exception e) {
+                log.error("Error creating basket order: {}", e.getMessage(), e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Failed to create basket order: " + e.getMessage());
+            }
+        });
+    }
+
+    @GetMapping("/basket/{orderNo}")
+    public ResponseEntity<?> getBasketOrder(@PathVariable String orderNo) {
         try {
-            OrderResponseDTO createdOrder = orderService.createOrder(requestDTO);
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdOrder);
+            BasketOrderResponseDTO order = orderService.getBasketOrder(orderNo);
+            return ResponseEntity.ok(order);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid basket order request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Invalid orderNo: " + e.getMessage());
+        } catch (ResourceNotFoundException e) {
+            log.warn("Basket order not found with orderNo: {}", orderNo);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
         } catch (Exception e) {
-            log.error("Error creating order: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Failed to create order: " + e.getMessage());
+            log.error("Error fetching basket order {}: {}", orderNo, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Error retrieving basket order: " + e.getMessage());
         }
     }
 
     @PutMapping("/edit")
+    @AdmissionControlled
     public ResponseEntity<?> updateOrder(@RequestBody @Valid OrderUpdateRequestDTO requestDTO) {
         try {
             OrderResponseDTO updatedOrder = orderService.updateOrder(requestDTO);
@@ -79,6 +182,9 @@ public class OrderController {
         } catch (ResourceNotFoundException e) {
             log.warn("Order not found: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Concurrent update on order: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             log.error("Error updating order: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to update order: " + e.getMessage());
@@ -86,6 +192,7 @@ public class OrderController {
     }
 
     @PutMapping("/delete/{orderNo}")
+    @AdmissionControlled
     public ResponseEntity<?> deleteOrder(@PathVariable String orderNo) {
         try {
             orderService.deleteOrderByOrderNo(orderNo);
@@ -96,6 +203,9 @@ public class OrderController {
         } catch (ResourceNotFoundException e) {
             log.warn("Order not found during delete: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (OptimisticLockingFailureException e) {
+            log.warn("Concurrent delete on order: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (Exception e) {
             log.error("Unexpected error during delete: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().body("Error deleting order: " + e.getMessage());
@@ -0,0 +1,104 @@
+package com.obssolution.controller;
+
+import com.obssolution.concurrency.AdmissionControlled;
+import com.obssolution.dto.reservation.ReservationConfirmRequestDTO;
+import com.obssolution.dto.reservation.ReservationRequestDTO;
+import com.obssolution.dto.reservation.ReservationResponseDTO;
+import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.idempotency.IdempotencyStore;
+import com.obssolution.service.impl.ReservationService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/reservations")
+public class ReservationController {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationController.class);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @GetMapping("/{reservationId}")
+    public ResponseEntity<?> getReservation(@PathVariable String reservationId) {
+        try {
+            return ResponseEntity.ok(reservationService.getReservation(reservationId));
+        } catch (ResourceNotFoundException e) {
+            log.warn("Reservation not found: {}", reservationId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error fetching reservation {}: {}", reservationId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Error retrieving reservation: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/save")
+    @AdmissionControlled
+    public ResponseEntity<?> reserve(
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestBody @Valid ReservationRequestDTO requestDTO) {
+        return idempotencyStore.execute("reservations", idempotencyKey, requestDTO, () -> {
+            try {
+                ReservationResponseDTO reservation = reservationService.reserve(requestDTO);
+                return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid reservation request: {}", e.getMessage());
+                return ResponseEntity.badRequest().body("Invalid data: " + e.getMessage());
+            } catch (IllegalStateException e) {
+                log.warn("Reservation rejected: {}", e.getMessage());
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+            } catch (Exception e) {
+                log.error("Error creating reservation: {}", e.getMessage(), e);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body("Failed to create reservation: " + e.getMessage());
+            }
+        });
+    }
+
+    @PutMapping("/confirm/{reservationId}")
+    @AdmissionControlled
+    public ResponseEntity<?> confirm(@PathVariable String reservationId,
+                                     @RequestBody(required = false) @Valid ReservationConfirmRequestDTO requestDTO) {
+        try {
+            return ResponseEntity.ok(reservationService.confirm(reservationId, requestDTO));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid confirm request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Invalid data: " + e.getMessage());
+        } catch (ResourceNotFoundException e) {
+            log.warn("Reservation not found: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException | DataIntegrityViolationException e) {
+            log.warn("Reservation {} not confirmed: {}", reservationId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error confirming reservation {}: {}", reservationId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Failed to confirm reservation: " + e.getMessage());
+        }
+    }
+
+    @PutMapping("/release/{reservationId}")
+    @AdmissionControlled
+    public ResponseEntity<?> release(@PathVariable String reservationId) {
+        try {
+            return ResponseEntity.ok(reservationService.release(reservationId));
+        } catch (ResourceNotFoundException e) {
+            log.warn("Reservation not found: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            log.warn("Reservation {} not released: {}", reservationId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            log.error("Error releasing reservation {}: {}", reservationId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body("Failed to release reservation: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.obssolution.deadline;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Starts the request deadline around every REST handler: the client's {@value #HEADER} header (capped at
+ * inventory.deadline.max-ms), else the handler's {@link RequestTimeout}, else inventory.deadline.default-ms.
+ * Handlers that fail after the deadline has passed are answered with 504 instead of their generic 500.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DeadlineAspect {
+
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    private static final Logger log = LoggerFactory.getLogger(DeadlineAspect.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventory.deadline.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inventory.deadline.default-ms:10000}")
+    private long defaultMs;
+
+    @Value("${inventory.deadline.max-ms:30000}")
+    private long maxMs;
+
+    @Around("within(@org.springframework.web.bind.annotation.RestController *)")
+    public Object withDeadline(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!enabled || RequestDeadline.isSet()) {
+            return joinPoint.proceed();
+        }
+
+        RequestDeadline.start(budgetMs(joinPoint));
+        try {
+            Object result = joinPoint.proceed();
+            if (RequestDeadline.isExpired() && result instanceof ResponseEntity<?> response
+                    && response.getStatusCode().is5xxServerError()) {
+                return deadlineExceeded(joinPoint);
+            }
+            return result;
+        } catch (QueryTimeoutException e) {
+            return deadlineExceeded(joinPoint);
+        } finally {
+            RequestDeadline.clear();
+        }
+    }
+
+    long budgetMs(ProceedingJoinPoint joinPoint) {
+        String header = currentHeader();
+        if (header != null) {
+            try {
+                long requested = Long.parseLong(header.trim());
+                if (requested > 0) {
+                    return Math.min(requested, maxMs);
+                }
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring malformed {} header: {}", HEADER, header);
+            }
+        }
+        RequestTimeout timeout = ((MethodSignature) joinPoint.getSignature()).getMethod().getAnnotation(RequestTimeout.class);
+        return timeout != null ? timeout.millis() : defaultMs;
+    }
+
+    private ResponseEntity<?> deadlineExceeded(ProceedingJoinPoint joinPoint) {
+        meterRegistry.counter("inventory.deadline.exceeded", "handler", joinPoint.getSignature().toShortString()).increment();
+        log.warn("Deadline exceeded in {}", joinPoint.getSignature().toShortString());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body("Request deadline exceeded");
+    }
+
+    private static String currentHeader() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes servlet) {
+            HttpServletRequest request = servlet.getRequest();
+            return request.getHeader(HEADER);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,30 @@
+package com.obssolution.deadline;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application DataSource in a {@link DeadlineAwareDataSource}, whichever configuration created it.
+ */
+@Component
+public class DeadlineDataSourcePostProcessor implements BeanPostProcessor, EnvironmentAware {
+
+    private boolean enabled = true;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        enabled = environment.getProperty("inventory.deadline.enabled", Boolean.class, true);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (enabled && bean instanceof DataSource dataSource && !(bean instanceof DeadlineAwareDataSource)) {
+            return new DeadlineAwareDataSource(dataSource);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,57 @@
+package com.obssolution.deadline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline of the request the current thread is serving. Unset outside requests (schedulers, startup
+ * jobs), which then run without a time budget.
+ */
+public final class RequestDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void start(long budgetMs) {
+        DEADLINE_NANOS.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs));
+    }
+
+    /**
+     * The raw deadline, for handing the request's budget to a worker thread via {@link #restore(Long)}.
+     */
+    public static Long current() {
+        return DEADLINE_NANOS.get();
+    }
+
+    public static void restore(Long deadlineNanos) {
+        if (deadlineNanos == null) {
+            DEADLINE_NANOS.remove();
+        } else {
+            DEADLINE_NANOS.set(deadlineNanos);
+        }
+    }
+
+    public static void clear() {
+        DEADLINE_NANOS.remove();
+    }
+
+    public static boolean isSet() {
+        return DEADLINE_NANOS.get() != null;
+    }
+
+    /**
+     * Milliseconds left, or {@link Long#MAX_VALUE} when no deadline is set.
+     */
+    public static long remainingMillis() {
+        Long deadline = DEADLINE_NANOS.get();
+        if (deadline == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    public static boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+}
@@ -0,0 +1,17 @@
+package com.obssolution.deadline;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Default time budget of an endpoint when the client sends no timeout header; overrides
+ * inventory.deadline.default-ms.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequestTimeout {
+
+    long millis();
+}
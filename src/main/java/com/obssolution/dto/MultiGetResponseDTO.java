@@ -0,0 +1,32 @@
+package com.obssolution.dto;
+
+import java.util.List;
+
+public class MultiGetResponseDTO<T, K> {
+    // Found entries, in the order their keys were requested
+    private List<T> results;
+    private List<K> missing;
+
+    public MultiGetResponseDTO() {}
+
+    public MultiGetResponseDTO(List<T> results, List<K> missing) {
+        this.results = results;
+        this.missing = missing;
+    }
+
+    public List<T> getResults() {
+        return results;
+    }
+
+    public void setResults(List<T> results) {
+        this.results = results;
+    }
+
+    public List<K> getMissing() {
+        return missing;
+    }
+
+    public void setMissing(List<K> missing) {
+        this.missing = missing;
+    }
+}
@@ -19,6 +19,14 @@ public class PageResponseDTO<T> {
         this.pageSize = pageSize;
     }
 
+    /**
+     * Builds a page from its content and a separately counted total, with {@code page} 1-based.
+     */
+    public static <T> PageResponseDTO<T> of(List<T> content, int page, int size, long totalElements) {
+        int totalPages = (int) ((totalElements + size - 1) / size);
+        return new PageResponseDTO<>(content, page, totalPages, totalElements, size);
+    }
+
     public List<T> getContent() {
         return content;
     }
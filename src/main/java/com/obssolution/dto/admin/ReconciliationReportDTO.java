@@ -0,0 +1,51 @@
+package com.obssolution.dto.admin;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class ReconciliationReportDTO {
+    private String jobId;
+    private String status;
+    private Boolean repair;
+    private Integer totalRanges;
+    private Integer completedRanges;
+    private Long itemsChecked;
+    private Long driftCount;
+    private List<StockDriftDTO> drifts;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Boolean getRepair() { return repair; }
+    public void setRepair(Boolean repair) { this.repair = repair; }
+
+    public Integer getTotalRanges() { return totalRanges; }
+    public void setTotalRanges(Integer totalRanges) { this.totalRanges = totalRanges; }
+
+    public Integer getCompletedRanges() { return completedRanges; }
+    public void setCompletedRanges(Integer completedRanges) { this.completedRanges = completedRanges; }
+
+    public Long getItemsChecked() { return itemsChecked; }
+    public void setItemsChecked(Long itemsChecked) { this.itemsChecked = itemsChecked; }
+
+    public Long getDriftCount() { return driftCount; }
+    public void setDriftCount(Long driftCount) { this.driftCount = driftCount; }
+
+    public List<StockDriftDTO> getDrifts() { return drifts; }
+    public void setDrifts(List<StockDriftDTO> drifts) { this.drifts = drifts; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -0,0 +1,28 @@
+package com.obssolution.dto.admin;
+
+public class StockDriftDTO {
+    private Integer itemId;
+    private Long ledgerTopUp;
+    private Long ledgerWithdrawal;
+    private Long storedTopUp;
+    private Long storedWithdrawal;
+    private Boolean repaired;
+
+    public Integer getItemId() { return itemId; }
+    public void setItemId(Integer itemId) { this.itemId = itemId; }
+
+    public Long getLedgerTopUp() { return ledgerTopUp; }
+    public void setLedgerTopUp(Long ledgerTopUp) { this.ledgerTopUp = ledgerTopUp; }
+
+    public Long getLedgerWithdrawal() { return ledgerWithdrawal; }
+    public void setLedgerWithdrawal(Long ledgerWithdrawal) { this.ledgerWithdrawal = ledgerWithdrawal; }
+
+    public Long getStoredTopUp() { return storedTopUp; }
+    public void setStoredTopUp(Long storedTopUp) { this.storedTopUp = storedTopUp; }
+
+    public Long getStoredWithdrawal() { return storedWithdrawal; }
+    public void setStoredWithdrawal(Long storedWithdrawal) { this.storedWithdrawal = storedWithdrawal; }
+
+    public Boolean getRepaired() { return repaired; }
+    public void setRepaired(Boolean repaired) { this.repaired = repaired; }
+}
@@ -11,6 +11,8 @@ public class InventoryResponseDTO {
     private String type;
     private String createBy;
     private LocalDateTime createDate;
+    private String batchRef;
+    private Long version;
 
     public Integer getId() {
         return id;
@@ -67,5 +69,20 @@ public class InventoryResponseDTO {
     public void setCreateDate(LocalDateTime createDate) {
         this.createDate = createDate;
     }
-}
 
+    public String getBatchRef() {
+        return batchRef;
+    }
+
+    public void setBatchRef(String batchRef) {
+        this.batchRef = batchRef;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -18,6 +18,8 @@ public class InventoryUpdateRequestDTO {
     @Pattern(regexp = "[TW]")
     private String type;
 
+    private Long version;
+
     public Integer getId() {
         return id;
     }
@@ -49,4 +51,12 @@ public class InventoryUpdateRequestDTO {
     public void setType(String type) {
         this.type = type;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
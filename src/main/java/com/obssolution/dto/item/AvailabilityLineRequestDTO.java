@@ -0,0 +1,29 @@
+package com.obssolution.dto.item;
+
+import jakarta.validation.constraints.*;
+
+public class AvailabilityLineRequestDTO {
+
+    @NotNull
+    private Integer itemId;
+
+    @NotNull
+    @Min(1)
+    private Integer qty;
+
+    public Integer getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Integer itemId) {
+        this.itemId = itemId;
+    }
+
+    public Integer getQty() {
+        return qty;
+    }
+
+    public void setQty(Integer qty) {
+        this.qty = qty;
+    }
+}
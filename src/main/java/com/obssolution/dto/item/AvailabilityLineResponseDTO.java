@@ -0,0 +1,41 @@
+package com.obssolution.dto.item;
+
+public class AvailabilityLineResponseDTO {
+
+    private Integer itemId;
+    private Integer qty;
+    private Integer available;
+    private boolean sufficient;
+
+    public Integer getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Integer itemId) {
+        this.itemId = itemId;
+    }
+
+    public Integer getQty() {
+        return qty;
+    }
+
+    public void setQty(Integer qty) {
+        this.qty = qty;
+    }
+
+    public Integer getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(Integer available) {
+        this.available = available;
+    }
+
+    public boolean isSufficient() {
+        return sufficient;
+    }
+
+    public void setSufficient(boolean sufficient) {
+        this.sufficient = sufficient;
+    }
+}
@@ -0,0 +1,21 @@
+package com.obssolution.dto.item;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+
+import java.util.List;
+
+public class AvailabilityRequestDTO {
+
+    @NotEmpty
+    @Size(max = 500)
+    private List<@Valid @NotNull AvailabilityLineRequestDTO> lines;
+
+    public List<AvailabilityLineRequestDTO> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<AvailabilityLineRequestDTO> lines) {
+        this.lines = lines;
+    }
+}
@@ -10,6 +10,7 @@ public class ItemResponseDTO {
     private LocalDateTime createDate;
     private String createBy;
     private Integer remainingStock;
+    private Long version;
 
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
@@ -28,4 +29,7 @@ public class ItemResponseDTO {
 
     public Integer getRemainingStock() { return remainingStock; }
     public void setRemainingStock(Integer remainingStock) { this.remainingStock = remainingStock; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
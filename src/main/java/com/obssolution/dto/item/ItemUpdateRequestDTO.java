@@ -17,6 +17,9 @@ public class ItemUpdateRequestDTO {
     @Digits(integer = 8, fraction = 2, message = "Invalid price format")
     private BigDecimal price;
 
+    // Version the client last read; when given, the update is rejected if the item has changed since
+    private Long version;
+
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
 
@@ -25,4 +28,7 @@ public class ItemUpdateRequestDTO {
 
     public BigDecimal getPrice() { return price; }
     public void setPrice(BigDecimal price) { this.price = price; }
+
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
 }
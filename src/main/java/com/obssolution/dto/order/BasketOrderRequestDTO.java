@@ -0,0 +1,33 @@
+package com.obssolution.dto.order;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+
+import java.util.List;
+
+public class BasketOrderRequestDTO {
+
+    // Optional when the server-side order number allocator is enabled
+    @Size(max = 10)
+    private String orderNo;
+
+    @NotEmpty
+    @Size(max = 100)
+    private List<@Valid @NotNull BasketLineRequestDTO> lines;
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public void setOrderNo(String orderNo) {
+        this.orderNo = orderNo;
+    }
+
+    public List<BasketLineRequestDTO> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<BasketLineRequestDTO> lines) {
+        this.lines = lines;
+    }
+}
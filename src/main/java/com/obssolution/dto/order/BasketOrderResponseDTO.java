@@ -0,0 +1,63 @@
+package com.obssolution.dto.order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class BasketOrderResponseDTO {
+
+    private String orderNo;
+    private List<BasketLineResponseDTO> lines;
+    private BigDecimal totalPrice;
+    private String createBy;
+    private LocalDateTime createDate;
+    private Long version;
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public void setOrderNo(String orderNo) {
+        this.orderNo = orderNo;
+    }
+
+    public List<BasketLineResponseDTO> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<BasketLineResponseDTO> lines) {
+        this.lines = lines;
+    }
+
+    public BigDecimal getTotalPrice() {
+        return totalPrice;
+    }
+
+    public void setTotalPrice(BigDecimal totalPrice) {
+        this.totalPrice = totalPrice;
+    }
+
+    public String getCreateBy() {
+        return createBy;
+    }
+
+    public void setCreateBy(String createBy) {
+        this.createBy = createBy;
+    }
+
+    public LocalDateTime getCreateDate() {
+        return createDate;
+    }
+
+    public void setCreateDate(LocalDateTime createDate) {
+        this.createDate = createDate;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
@@ -5,7 +5,7 @@ import java.math.BigDecimal;
 
 public class OrderRequestDTO {
 
-    @NotBlank
+    // Optional when the server-side order number allocator is enabled
     @Size(max = 10)
     private String orderNo;
 
@@ -16,6 +16,9 @@ public class OrderRequestDTO {
     @Min(1)
     private Integer qty;
 
+    // Queue the order until stock arrives instead of rejecting it (needs inventory.backorder.enabled)
+    private Boolean backorder;
+
     public String getOrderNo() {
         return orderNo;
     }
@@ -39,4 +42,12 @@ public class OrderRequestDTO {
     public void setQty(Integer qty) {
         this.qty = qty;
     }
+
+    public Boolean getBackorder() {
+        return backorder;
+    }
+
+    public void setBackorder(Boolean backorder) {
+        this.backorder = backorder;
+    }
 }
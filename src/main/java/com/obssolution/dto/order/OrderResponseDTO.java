@@ -12,6 +12,8 @@ public class OrderResponseDTO {
     private BigDecimal price;
     private String createBy;
     private LocalDateTime createDate;
+    private Long version;
+    private String status;
 
     public String getOrderNo() {
         return orderNo;
@@ -68,4 +70,20 @@ public class OrderResponseDTO {
     public void setCreateDate(LocalDateTime createDate) {
         this.createDate = createDate;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
 }
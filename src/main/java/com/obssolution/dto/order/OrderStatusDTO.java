@@ -0,0 +1,71 @@
+package com.obssolution.dto.order;
+
+import java.time.LocalDateTime;
+
+public class OrderStatusDTO {
+
+    private String orderNo;
+    private String status;
+    private Integer itemId;
+    private Integer qty;
+    // Orders ahead of this one in the item's backorder queue, plus one; only set while BACKORDERED
+    private Long queuePosition;
+    private LocalDateTime createDate;
+    private LocalDateTime fulfilledDate;
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public void setOrderNo(String orderNo) {
+        this.orderNo = orderNo;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Integer itemId) {
+        this.itemId = itemId;
+    }
+
+    public Integer getQty() {
+        return qty;
+    }
+
+    public void setQty(Integer qty) {
+        this.qty = qty;
+    }
+
+    public Long getQueuePosition() {
+        return queuePosition;
+    }
+
+    public void setQueuePosition(Long queuePosition) {
+        this.queuePosition = queuePosition;
+    }
+
+    public LocalDateTime getCreateDate() {
+        return createDate;
+    }
+
+    public void setCreateDate(LocalDateTime createDate) {
+        this.createDate = createDate;
+    }
+
+    public LocalDateTime getFulfilledDate() {
+        return fulfilledDate;
+    }
+
+    public void setFulfilledDate(LocalDateTime fulfilledDate) {
+        this.fulfilledDate = fulfilledDate;
+    }
+}
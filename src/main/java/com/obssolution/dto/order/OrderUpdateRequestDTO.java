@@ -20,6 +20,8 @@ public class OrderUpdateRequestDTO {
     @DecimalMin(value = "0.01", inclusive = true)
     private BigDecimal price;
 
+    private Long version;
+
     public String getOrderNo() {
         return orderNo;
     }
@@ -51,4 +53,12 @@ public class OrderUpdateRequestDTO {
     public void setPrice(BigDecimal price) {
         this.price = price;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
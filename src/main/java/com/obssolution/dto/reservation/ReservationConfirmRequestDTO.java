@@ -0,0 +1,18 @@
+package com.obssolution.dto.reservation;
+
+import jakarta.validation.constraints.*;
+
+public class ReservationConfirmRequestDTO {
+
+    // Optional when the server-side order number allocator is enabled
+    @Size(max = 10)
+    private String orderNo;
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public void setOrderNo(String orderNo) {
+        this.orderNo = orderNo;
+    }
+}
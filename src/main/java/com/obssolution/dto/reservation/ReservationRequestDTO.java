@@ -0,0 +1,41 @@
+package com.obssolution.dto.reservation;
+
+import jakarta.validation.constraints.*;
+
+public class ReservationRequestDTO {
+
+    @NotNull
+    private Integer itemId;
+
+    @NotNull
+    @Min(1)
+    private Integer qty;
+
+    // Defaults to inventory.reservation.default-hold-seconds
+    @Min(1)
+    private Integer holdSeconds;
+
+    public Integer getItemId() {
+        return itemId;
+    }
+
+    public void setItemId(Integer itemId) {
+        this.itemId = itemId;
+    }
+
+    public Integer getQty() {
+        return qty;
+    }
+
+    public void setQty(Integer qty) {
+        this.qty = qty;
+    }
+
+    public Integer getHoldSeconds() {
+        return holdSeconds;
+    }
+
+    public void setHoldSeconds(Integer holdSeconds) {
+        this.holdSeconds = holdSeconds;
+    }
+}
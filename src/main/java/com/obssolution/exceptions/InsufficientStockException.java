@@ -0,0 +1,19 @@
+package com.obssolution.exceptions;
+
+/**
+ * Not enough stock for the requested quantity. Still an IllegalArgumentException, so existing
+ * handlers keep answering 400.
+ */
+public class InsufficientStockException extends IllegalArgumentException {
+
+    private final Integer itemId;
+
+    public InsufficientStockException(Integer itemId, int available, int required) {
+        super("Insufficient stock for item ID " + itemId + ". Available: " + available + ", Required: " + required);
+        this.itemId = itemId;
+    }
+
+    public Integer getItemId() {
+        return itemId;
+    }
+}
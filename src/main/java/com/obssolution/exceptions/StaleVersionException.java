@@ -0,0 +1,14 @@
+package com.obssolution.exceptions;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+/**
+ * The client updated a record using a version that is no longer current. Unlike a conflict detected
+ * at flush time this is never retried, since retrying cannot make the client's copy current again.
+ */
+public class StaleVersionException extends OptimisticLockingFailureException {
+    public StaleVersionException(String entity, Object id, Long expectedVersion, Long actualVersion) {
+        super(entity + " " + id + " has been modified (version " + actualVersion
+                + ", request was based on version " + expectedVersion + ")");
+    }
+}
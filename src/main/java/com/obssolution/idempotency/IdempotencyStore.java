@@ -0,0 +1,363 @@
+package com.obssolution.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.obssolution.concurrency.AdmissionControlAspect;
+import com.obssolution.deadline.RequestDeadline;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.shard.ShardRoutingDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the response of a POST sent with an {@code Idempotency-Key} header so a retried request
+ * gets the same response without running again. Keys live in a bounded in-memory map with a TTL and
+ * are also written to the IDEMPOTENCY_KEY table, so a replay still works after a restart.
+ * <p>
+ * The key row is inserted by the first write transaction the request starts, so it commits exactly when
+ * the business write does; the response is filled in once the request has produced it. A key whose write
+ * committed but whose response never got stored is answered with 409 rather than run again.
+ * <p>
+ * A duplicate arriving while the first request is still running waits for its result. Error responses
+ * (4xx and 5xx) are handed to the waiting duplicates but not remembered, so the client can retry them.
+ */
+@Component
+public class IdempotencyStore implements TransactionExecutionListener {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotency-Replayed";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final long PURGE_INTERVAL_MS = 60_000;
+
+    private static final String SELECT_SQL =
+            "SELECT REQUEST_HASH, STATUS_CODE, CONTENT_TYPE, RESPONSE_BODY FROM IDEMPOTENCY_KEY " +
+            "WHERE IDEM_KEY = ? AND CREATE_DATE > ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO IDEMPOTENCY_KEY (IDEM_KEY, REQUEST_HASH, STATUS_CODE, CONTENT_TYPE, RESPONSE_BODY, CREATE_DATE) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL =
+            "UPDATE IDEMPOTENCY_KEY SET STATUS_CODE = ?, CONTENT_TYPE = ?, RESPONSE_BODY = ? WHERE IDEM_KEY = ?";
+    private static final String PURGE_SQL = "DELETE FROM IDEMPOTENCY_KEY WHERE CREATE_DATE <= ?";
+
+    // Status of a key row whose write committed before its response was stored
+    private static final int NO_RESPONSE = 0;
+
+    private static final ThreadLocal<Claim> CLAIM = new ThreadLocal<>();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Lazy, since the transaction manager this listener is registered with is itself a dependency of the router
+    @Lazy
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${inventory.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${inventory.idempotency.persist:true}")
+    private boolean persist;
+
+    @Value("${inventory.idempotency.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${inventory.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${inventory.idempotency.wait-ms:5000}")
+    private long waitMs;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong lastPurge = new AtomicLong();
+
+    /**
+     * Runs the action once per scope and key; without a key the action simply runs.
+     */
+    public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (!enabled || key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(HEADER + " must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String id = scope + ":" + key;
+        String fingerprint = fingerprint(request);
+        long now = System.currentTimeMillis();
+        evict(now);
+
+        Entry entry = new Entry(id, now);
+        Entry existing = entries.putIfAbsent(id, entry);
+        if (existing != null && existing.result.isDone() && existing.isExpired(now, ttlMillis())) {
+            entries.remove(id, existing);
+            existing = entries.putIfAbsent(id, entry);
+        }
+        if (existing != null) {
+            return replay(existing, fingerprint);
+        }
+        insertionOrder.add(entry);
+
+        StoredResponse stored = persist ? load(id, now) : null;
+        if (stored != null) {
+            entry.result.complete(stored);
+            return replay(entry, fingerprint);
+        }
+
+        Claim claim = persist ? new Claim(id, fingerprint, now) : null;
+        ResponseEntity<?> response;
+        CLAIM.set(claim);
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            entries.remove(id, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            CLAIM.remove();
+        }
+
+        StoredResponse result = StoredResponse.of(fingerprint, response);
+        entry.result.complete(result);
+        if (response.getStatusCode().isError()) {
+            entries.remove(id, entry);
+        } else if (persist) {
+            save(claim, result);
+        }
+        return response;
+    }
+
+    /**
+     * Inserts the key row of the request running on this thread when its first write transaction commits.
+     */
+    @Override
+    public void afterBegin(TransactionExecution transaction, Throwable beginFailure) {
+        Claim claim = CLAIM.get();
+        if (claim == null || claim.shard != null || beginFailure != null || transaction.isReadOnly()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        claim.shard = ShardRoutingDataSource.currentOrPrimary();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                jdbcTemplate.update(INSERT_SQL, claim.id, claim.requestHash, NO_RESPONSE, null, null,
+                        new Timestamp(claim.createdAt));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    claim.committed = true;
+                } else {
+                    claim.shard = null;
+                }
+            }
+        });
+    }
+
+    private ResponseEntity<?> replay(Entry entry, String fingerprint) {
+        try {
+            StoredResponse stored = await(entry);
+            if (!stored.requestHash().equals(fingerprint)) {
+                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                        .body(HEADER + " was already used for a different request");
+            }
+            if (stored.status() == NO_RESPONSE) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body("A request with this " + HEADER + " was already processed, but its response was not kept");
+            }
+            log.info("Replaying response for idempotent request {}", entry.id);
+            return stored.toResponse();
+        } catch (TimeoutException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("A request with this " + HEADER + " is still being processed");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("A request with this " + HEADER + " is still being processed");
+        } catch (ExecutionException e) {
+            return ResponseEntity.internalServerError()
+                    .body("Original request failed: " + e.getCause().getMessage());
+        }
+    }
+
+    private StoredResponse await(Entry entry) throws InterruptedException, ExecutionException, TimeoutException {
+        if (entry.result.isDone()) {
+            return entry.result.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return entry.result.get(waitMs, TimeUnit.MILLISECONDS);
+        } finally {
+            AdmissionControlAspect.excludeFromLatency(System.nanoTime() - start);
+        }
+    }
+
+    // A request still running keeps its key even past the cap, or a duplicate would run it a second time
+    private void evict(long now) {
+        for (Iterator<Entry> it = insertionOrder.iterator(); it.hasNext(); ) {
+            Entry oldest = it.next();
+            if (!oldest.isExpired(now, ttlMillis()) && entries.size() <= maxEntries) {
+                return;
+            }
+            if (oldest.result.isDone()) {
+                it.remove();
+                entries.remove(oldest.id, oldest);
+            }
+        }
+    }
+
+    private StoredResponse load(String id, long now) {
+        try {
+            // The key row lives on the shard of the write it was committed with
+            List<StoredResponse> rows = shardRouter.everyShard(() -> jdbcTemplate.query(SELECT_SQL,
+                    (rs, rowNum) -> new StoredResponse(rs.getString("REQUEST_HASH"), rs.getInt("STATUS_CODE"),
+                            rs.getString("CONTENT_TYPE"), rs.getString("RESPONSE_BODY")),
+                    id, new Timestamp(now - ttlMillis())));
+            return rows.isEmpty() ? null : rows.get(0);
+        } catch (DataAccessException e) {
+            log.warn("Could not read idempotency key {}, handling request as new: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    // The response has already been produced, so storing it runs outside the request's deadline. A request
+    // that wrote nothing in a transaction has no key row yet and gets one here.
+    private void save(Claim claim, StoredResponse result) {
+        Long deadline = RequestDeadline.current();
+        RequestDeadline.clear();
+        try {
+            String contentType = result.body() instanceof String ? MediaType.TEXT_PLAIN_VALUE : MediaType.APPLICATION_JSON_VALUE;
+            String body = result.body() instanceof String text ? text : objectMapper.writeValueAsString(result.body());
+            if (claim.committed) {
+                shardRouter.onShard(claim.shard, () -> jdbcTemplate.update(UPDATE_SQL, result.status(), contentType, body, claim.id));
+            } else {
+                jdbcTemplate.update(INSERT_SQL, claim.id, result.requestHash(), result.status(), contentType, body,
+                        new Timestamp(claim.createdAt));
+            }
+        } catch (DuplicateKeyException e) {
+            // Another node answered this key first; its row is what later replays will see
+            log.debug("Idempotency key {} already stored", claim.id);
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Could not store idempotency key {}: {}", claim.id, e.getMessage());
+        } finally {
+            RequestDeadline.restore(deadline);
+        }
+        purgeExpired(claim.createdAt);
+    }
+
+    private void purgeExpired(long now) {
+        long last = lastPurge.get();
+        if (now - last < PURGE_INTERVAL_MS || !lastPurge.compareAndSet(last, now)) {
+            return;
+        }
+        try {
+            long purged = shardRouter.sum(() -> (long) jdbcTemplate.update(PURGE_SQL, new Timestamp(now - ttlMillis())));
+            if (purged > 0) {
+                log.info("Purged {} expired idempotency keys", purged);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not purge expired idempotency keys: {}", e.getMessage());
+        }
+    }
+
+    String fingerprint(Object request) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot fingerprint request: " + e.getMessage(), e);
+        }
+    }
+
+    private long ttlMillis() {
+        return TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    private static final class Entry {
+
+        private final String id;
+        private final long createdAt;
+        private final CompletableFuture<StoredResponse> result = new CompletableFuture<>();
+
+        Entry(String id, long createdAt) {
+            this.id = id;
+            this.createdAt = createdAt;
+        }
+
+        boolean isExpired(long now, long ttlMillis) {
+            return now - createdAt >= ttlMillis;
+        }
+    }
+
+    private static final class Claim {
+
+        private final String id;
+        private final String requestHash;
+        private final long createdAt;
+        // Shard of the transaction the key row was added to, while it has not rolled back
+        private Integer shard;
+        private boolean committed;
+
+        Claim(String id, String requestHash, long createdAt) {
+            this.id = id;
+            this.requestHash = requestHash;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * A remembered response. Read back from the database the body is the serialized text, with its content type.
+     */
+    record StoredResponse(String requestHash, int status, String contentType, Object body) {
+
+        static StoredResponse of(String requestHash, ResponseEntity<?> response) {
+            return new StoredResponse(requestHash, response.getStatusCode().value(), null, response.getBody());
+        }
+
+        ResponseEntity<?> toResponse() {
+            ResponseEntity.BodyBuilder builder = ResponseEntity.status(status).header(REPLAYED_HEADER, "true");
+            if (contentType != null) {
+                builder.contentType(MediaType.parseMediaType(contentType));
+            }
+            return builder.body(body);
+        }
+    }
+}
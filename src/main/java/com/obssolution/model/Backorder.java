@@ -0,0 +1,89 @@
+package com.obssolution.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "BACKORDER")
+public class Backorder extends BaseAuditEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID")
+    private Integer id;
+
+    @NotBlank
+    @Size(max = 10)
+    @Column(name = "ORDER_NO", nullable = false, unique = true, length = 10)
+    private String orderNo;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ITEM_ID", nullable = false)
+    private Item item;
+
+    @NotNull
+    @Min(1)
+    @Column(name = "QTY", nullable = false)
+    private Integer qty;
+
+    @NotBlank
+    @Pattern(regexp = "WAITING|FULFILLED")
+    @Column(name = "STATUS", nullable = false, length = 10)
+    private String status;
+
+    @Column(name = "FULFILLED_DATE")
+    private LocalDateTime fulfilledDate;
+
+    public Backorder() {
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public void setOrderNo(String orderNo) {
+        this.orderNo = orderNo;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public void setItem(Item item) {
+        this.item = item;
+    }
+
+    public Integer getQty() {
+        return qty;
+    }
+
+    public void setQty(Integer qty) {
+        this.qty = qty;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getFulfilledDate() {
+        return fulfilledDate;
+    }
+
+    public void setFulfilledDate(LocalDateTime fulfilledDate) {
+        this.fulfilledDate = fulfilledDate;
+    }
+}
@@ -32,6 +32,10 @@ public abstract class BaseAuditEntity {
     @Column(name = "IS_DELETED", columnDefinition = "boolean default false")
     private Boolean isDeleted = false;
 
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    private Long version;
+
     // Getters and Setters
 
     public String getCreateBy() {
@@ -89,4 +93,12 @@ public abstract class BaseAuditEntity {
     public void setIsDeleted(Boolean isDeleted) {
         this.isDeleted = isDeleted;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
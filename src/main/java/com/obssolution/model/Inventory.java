@@ -26,6 +26,10 @@ public class Inventory extends BaseAuditEntity {
     @Column(name = "TYPE", nullable = false, length = 1)
     private String type;
 
+    @Size(max = 40)
+    @Column(name = "BATCH_REF", length = 40)
+    private String batchRef;
+
     // No-argument constructor
     public Inventory() {
     }
@@ -70,4 +74,12 @@ public class Inventory extends BaseAuditEntity {
     public void setType(String type) {
         this.type = type;
     }
+
+    public String getBatchRef() {
+        return batchRef;
+    }
+
+    public void setBatchRef(String batchRef) {
+        this.batchRef = batchRef;
+    }
 }
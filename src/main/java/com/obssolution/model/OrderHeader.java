@@ -0,0 +1,46 @@
+package com.obssolution.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@Table(name = "ORDER_HEADER")
+public class OrderHeader extends BaseAuditEntity {
+
+    @Id
+    @NotBlank
+    @Size(max = 10)
+    @Column(name = "ORDER_NO", nullable = false, unique = true)
+    private String orderNo;
+
+    // Lines are inserted in one JDBC batch by the service, so they are read-only from this side
+    @OneToMany(mappedBy = "header", fetch = FetchType.LAZY)
+    @OrderBy("lineNo ASC")
+    private List<OrderLine> lines = new ArrayList<>();
+
+    public OrderHeader() {
+    }
+
+    public OrderHeader(String orderNo) {
+        this.orderNo = orderNo;
+    }
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public void setOrderNo(String orderNo) {
+        this.orderNo = orderNo;
+    }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<OrderLine> lines) {
+        this.lines = lines;
+    }
+}
@@ -0,0 +1,89 @@
+package com.obssolution.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "STOCK_RESERVATION")
+public class StockReservation extends BaseAuditEntity {
+
+    @Id
+    @Size(max = 36)
+    @Column(name = "ID", nullable = false, length = 36)
+    private String id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "ITEM_ID", nullable = false)
+    private Item item;
+
+    @NotNull
+    @Min(1)
+    @Column(name = "QTY", nullable = false)
+    private Integer qty;
+
+    @NotBlank
+    @Pattern(regexp = "HELD|CONFIRMED|RELEASED|EXPIRED")
+    @Column(name = "STATUS", nullable = false, length = 10)
+    private String status;
+
+    @NotNull
+    @Column(name = "EXPIRES_AT", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Size(max = 10)
+    @Column(name = "ORDER_NO", length = 10)
+    private String orderNo;
+
+    public StockReservation() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Item getItem() {
+        return item;
+    }
+
+    public void setItem(Item item) {
+        this.item = item;
+    }
+
+    public Integer getQty() {
+        return qty;
+    }
+
+    public void setQty(Integer qty) {
+        this.qty = qty;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public void setOrderNo(String orderNo) {
+        this.orderNo = orderNo;
+    }
+}
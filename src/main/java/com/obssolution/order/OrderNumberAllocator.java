@@ -0,0 +1,139 @@
+package com.obssolution.order;
+
+import com.obssolution.shard.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out server-side order numbers from blocks reserved through the ORDER_NO_SEQ sequence, so
+ * nodes sharing the database never collide. Within a block numbers are taken with a single atomic
+ * increment; the next block is fetched in the background once the current one is mostly used.
+ * <p>
+ * Numbers are the reserved prefix followed by the base-36 sequence value, padded to fit ORDER_NO (10 chars).
+ */
+@Component
+public class OrderNumberAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderNumberAllocator.class);
+
+    private static final int ORDER_NO_LENGTH = 10;
+    private static final String NEXT_BLOCK_SQL = "SELECT NEXT VALUE FOR ORDER_NO_SEQ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${inventory.order-number.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.order-number.prefix:N}")
+    private String prefix;
+
+    @Value("${inventory.order-number.block-size:1000}")
+    private int blockSize;
+
+    private final AtomicReference<Block> current = new AtomicReference<>(Block.EMPTY);
+    private final AtomicReference<CompletableFuture<Block>> prefetch = new AtomicReference<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns true for numbers in the server-allocated range, which clients may not use themselves.
+     */
+    public boolean isReserved(String orderNo) {
+        return enabled && orderNo != null && orderNo.startsWith(prefix);
+    }
+
+    public String next() {
+        while (true) {
+            Block block = current.get();
+            long value = block.next.getAndIncrement();
+            if (value < block.end) {
+                if (value == block.prefetchAt) {
+                    prefetchNextBlock();
+                }
+                return format(value);
+            }
+            refill(block);
+        }
+    }
+
+    private synchronized void refill(Block exhausted) {
+        if (current.get() != exhausted) {
+            return;
+        }
+        CompletableFuture<Block> pending = prefetch.getAndSet(null);
+        Block next = null;
+        if (pending != null) {
+            try {
+                next = pending.join();
+            } catch (CompletionException e) {
+                // Prefetch failed and was logged; reserve the block inline instead
+            }
+        }
+        current.set(next != null ? next : reserveBlock());
+    }
+
+    private void prefetchNextBlock() {
+        CompletableFuture<Block> future = new CompletableFuture<>();
+        if (prefetch.compareAndSet(null, future)) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    future.complete(reserveBlock());
+                } catch (RuntimeException e) {
+                    log.warn("Failed to prefetch order number block: {}", e.getMessage());
+                    future.completeExceptionally(e);
+                    prefetch.compareAndSet(future, null);
+                }
+            });
+        }
+    }
+
+    private Block reserveBlock() {
+        // ORDER_NO_SEQ lives on shard 0 only, so numbers stay unique across shards
+        Long blockNo = shardRouter.onPrimary(() -> jdbcTemplate.queryForObject(NEXT_BLOCK_SQL, Long.class));
+        if (blockNo == null) {
+            throw new IllegalStateException("ORDER_NO_SEQ returned no value");
+        }
+        long start = blockNo * blockSize;
+        log.debug("Reserved order number block {} ({} - {})", blockNo, start, start + blockSize - 1);
+        return new Block(start, start + blockSize, start + (blockSize * 3L) / 4);
+    }
+
+    String format(long value) {
+        String digits = Long.toString(value, 36).toUpperCase();
+        int width = ORDER_NO_LENGTH - prefix.length();
+        if (digits.length() > width) {
+            throw new IllegalStateException("Order number space exhausted for prefix " + prefix);
+        }
+        return prefix + "0".repeat(width - digits.length()) + digits;
+    }
+
+    private static final class Block {
+
+        static final Block EMPTY = new Block(0, 0, -1);
+
+        final AtomicLong next;
+        final long end;
+        final long prefetchAt;
+
+        Block(long start, long end, long prefetchAt) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+            this.prefetchAt = prefetchAt;
+        }
+    }
+}
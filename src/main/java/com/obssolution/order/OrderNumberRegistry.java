@@ -0,0 +1,136 @@
+package com.obssolution.order;
+
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.shard.ShardRoutingDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLStateSQLExceptionTranslator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Claims client-supplied order numbers in ORDER_NO_CLAIM on shard 0, whose primary key spans customer orders,
+ * basket orders and backorders on every shard. Server-allocated numbers are unique by construction and are
+ * not claimed.
+ * <p>
+ * On shard 0 the claim joins the order's transaction. An order on another shard claims its number on a
+ * connection of its own that stays open with the order's transaction: the claim commits just before the order
+ * does and rolls back if the order does not get that far. Only an order whose own commit fails after that
+ * leaves a claim behind, which is then deleted on a best-effort basis.
+ */
+@Component
+public class OrderNumberRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderNumberRegistry.class);
+
+    private static final String CLAIM_SQL = "INSERT INTO ORDER_NO_CLAIM (ORDER_NO) VALUES (?)";
+    private static final String RELEASE_SQL = "DELETE FROM ORDER_NO_CLAIM WHERE ORDER_NO = ?";
+
+    private final SQLExceptionTranslator exceptionTranslator = new SQLStateSQLExceptionTranslator();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    /**
+     * Claims the order number, or throws if any order, basket order or backorder already uses it.
+     */
+    public void claim(String orderNo) {
+        if (ShardRoutingDataSource.currentOrPrimary() == ShardRoutingDataSource.PRIMARY
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            insert(() -> shardRouter.onPrimary(() -> jdbcTemplate.update(CLAIM_SQL, orderNo)), orderNo);
+            return;
+        }
+
+        Connection connection = primaryConnection();
+        try {
+            connection.setAutoCommit(false);
+            JdbcTemplate claimTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            insert(() -> claimTemplate.update(CLAIM_SQL, orderNo), orderNo);
+        } catch (SQLException | RuntimeException e) {
+            close(connection, false);
+            throw e instanceof SQLException sql ? translate("claim", sql) : (RuntimeException) e;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean claimCommitted;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                try {
+                    connection.commit();
+                    claimCommitted = true;
+                } catch (SQLException e) {
+                    throw translate("commit the claim on", e);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                close(connection, claimCommitted);
+                if (claimCommitted && status != STATUS_COMMITTED) {
+                    release(orderNo);
+                }
+            }
+        });
+    }
+
+    private void insert(Runnable insert, String orderNo) {
+        try {
+            insert.run();
+        } catch (DuplicateKeyException e) {
+            throw new IllegalArgumentException("Order with orderNo " + orderNo + " already exists");
+        }
+    }
+
+    private Connection primaryConnection() {
+        Integer shard = ShardRoutingDataSource.current();
+        ShardRoutingDataSource.bind(ShardRoutingDataSource.PRIMARY);
+        try {
+            return jdbcTemplate.getDataSource().getConnection();
+        } catch (SQLException e) {
+            throw translate("open a connection for", e);
+        } finally {
+            ShardRoutingDataSource.bind(shard);
+        }
+    }
+
+    private RuntimeException translate(String task, SQLException e) {
+        RuntimeException translated = exceptionTranslator.translate("Failed to " + task + " order number", CLAIM_SQL, e);
+        return translated != null ? translated : new IllegalStateException(e);
+    }
+
+    private void close(Connection connection, boolean committed) {
+        try {
+            if (!committed) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to roll back an order number claim: {}", e.getMessage());
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                log.warn("Failed to close the order number claim connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void release(String orderNo) {
+        try {
+            shardRouter.onPrimary(() -> jdbcTemplate.update(RELEASE_SQL, orderNo));
+        } catch (RuntimeException e) {
+            log.warn("Failed to release the claim on order number {}, it stays taken: {}", orderNo, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.obssolution.readmodel;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read side for the busiest GET endpoints. One background thread tails new INVENTORY and CUSTOMER_ORDER
+ * rows by ID watermark and folds them into in-memory projections: ledger stock and recent movements per
+ * item, and the most recently used orders by orderNo (a miss is read from the database). IDs skipped by the
+ * watermark are re-checked for a grace period, since a lower ID can commit after a higher one, and then once
+ * per grace period while they are among the most recent late IDs. A row found that late rebuilds its item.
+ * Rows changed in place are re-read when their writer asks for it after commit. Reads use the projections
+ * only while the last completed poll is within the staleness bound; past it, or before the first poll, they
+ * go to the database. The tail follows the ID sequences of one database, so the model stays off when the
+ * tables are sharded across several.
+ */
+@Component
+public class ReadModel {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadModel.class);
+
+    public static final String HEADER = "X-Read-Model";
+    public static final String STALENESS_HEADER = "X-Read-Model-Staleness-Ms";
+    public static final String PROJECTION = "projection";
+    public static final String DATABASE = "database";
+
+    static final String SERVED_BY_ATTRIBUTE = ReadModel.class.getName() + ".servedBy";
+
+    private static final String MOVEMENT_COLUMNS = "SELECT i.ID, i.ITEM_ID, it.NAME AS ITEM_NAME, i.QTY, i.TYPE, " +
+            "i.BATCH_REF, i.CREATE_BY, i.CREATE_DATE, i.VERSION, i.IS_DELETED " +
+            "FROM INVENTORY i JOIN ITEM it ON it.ID = i.ITEM_ID ";
+    private static final String ORDER_COLUMNS = "SELECT o.ID, o.ORDER_NO, o.ITEM_ID, it.NAME AS ITEM_NAME, o.QTY, " +
+            "o.PRICE, o.CREATE_BY, o.CREATE_DATE, o.VERSION " +
+            "FROM CUSTOMER_ORDER o JOIN ITEM it ON it.ID = o.ITEM_ID ";
+
+    private static final String INVENTORY_TAIL_SQL = MOVEMENT_COLUMNS + "WHERE i.ID > ? ORDER BY i.ID LIMIT ?";
+    private static final String ORDER_TAIL_SQL = ORDER_COLUMNS + "WHERE o.ID > ? ORDER BY o.ID LIMIT ?";
+    private static final String ORDER_BY_NO_SQL = ORDER_COLUMNS + "WHERE o.ORDER_NO = ?";
+    private static final String LATE_INVENTORY_SQL = "SELECT ID, ITEM_ID FROM INVENTORY WHERE ID IN (";
+    private static final String ITEM_TOTALS_SQL = "SELECT " +
+            "COALESCE(SUM(CASE WHEN TYPE = 'T' THEN QTY ELSE 0 END), 0) AS TOP_UP, " +
+            "COALESCE(SUM(CASE WHEN TYPE = 'W' THEN QTY ELSE 0 END), 0) AS WITHDRAWAL " +
+            "FROM INVENTORY i WHERE i.ITEM_ID = ? AND i.ID <= ? AND i.IS_DELETED = FALSE";
+    private static final String ITEM_RECENT_SQL = MOVEMENT_COLUMNS +
+            "WHERE i.ITEM_ID = ? AND i.ID <= ? AND i.IS_DELETED = FALSE";
+
+    private static final RowMapper<LedgerRow> LEDGER_ROW = (rs, rowNum) -> new LedgerRow(
+            new Movement(rs.getInt("ID"), rs.getInt("ITEM_ID"), rs.getString("ITEM_NAME"), rs.getInt("QTY"),
+                    rs.getString("TYPE"), rs.getString("BATCH_REF"), rs.getString("CREATE_BY"),
+                    toLocalDateTime(rs.getTimestamp("CREATE_DATE")), rs.getObject("VERSION", Long.class)),
+            rs.getBoolean("IS_DELETED"));
+
+    private static final RowMapper<OrderRow> ORDER_ROW = (rs, rowNum) -> new OrderRow(rs.getLong("ID"),
+            new OrderView(rs.getString("ORDER_NO"), rs.getInt("ITEM_ID"), rs.getString("ITEM_NAME"), rs.getInt("QTY"),
+                    rs.getBigDecimal("PRICE"), rs.getString("CREATE_BY"),
+                    toLocalDateTime(rs.getTimestamp("CREATE_DATE")), rs.getObject("VERSION", Long.class)));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventory.read-model.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.read-model.poll-interval-ms:100}")
+    private long pollIntervalMs;
+
+    @Value("${inventory.read-model.max-staleness-ms:1000}")
+    private long maxStalenessMs = 1000;
+
+    @Value("${inventory.read-model.batch-size:5000}")
+    private int batchSize = 5000;
+
+    @Value("${inventory.read-model.recent-movements:20}")
+    private int recentLimit = 20;
+
+    @Value("${inventory.read-model.gap-grace-ms:10000}")
+    private long gapGraceMs = 10000;
+
+    @Value("${inventory.read-model.max-gaps:10000}")
+    private int maxGaps = 10000;
+
+    @Value("${inventory.read-model.max-orders:100000}")
+    private int maxOrders = 100000;
+
+    @Value("${inventory.db-sharding.enabled:false}")
+    private boolean shardedDatabase;
+
+    private final Map<Integer, ItemLedger> ledgers = new ConcurrentHashMap<>();
+    private final Map<String, OrderView> orders = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, OrderView> eldest) {
+            return size() > maxOrders;
+        }
+    });
+    private final Set<Integer> itemsToRefresh = ConcurrentHashMap.newKeySet();
+    private final Set<String> ordersToRefresh = ConcurrentHashMap.newKeySet();
+
+    // Tailer state, only touched by the polling thread
+    private final WatermarkTail inventoryTail = new WatermarkTail();
+    private final WatermarkTail orderTail = new WatermarkTail();
+    private boolean failing;
+    private long lateCheckedAt = System.nanoTime();
+
+    private volatile boolean ready;
+    private volatile long syncedAt;
+
+    private ScheduledExecutorService tailer;
+    private Counter projectionReads;
+    private Counter databaseReads;
+
+    @PostConstruct
+    void start() {
+        if (enabled && shardedDatabase) {
+            log.warn("Read model disabled: it tails a single database, but inventory.db-sharding.enabled is true");
+            enabled = false;
+        }
+        if (!enabled) {
+            return;
+        }
+        registerMeters();
+        tailer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "read-model-tailer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        tailer.scheduleWithFixedDelay(this::poll, 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Read model enabled (poll interval: {} ms, max staleness: {} ms)", pollIntervalMs, maxStalenessMs);
+    }
+
+    void registerMeters() {
+        Gauge.builder("inventory.read-model.staleness", this, ReadModel::stalenessMillis)
+                .description("Time since the read model last caught up with the ledger, -1 before the first poll")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("inventory.read-model.orders", orders, Map::size)
+                .description("Orders held in the read model")
+                .register(meterRegistry);
+        projectionReads = Counter.builder("inventory.read-model.reads").tag("model", PROJECTION)
+                .description("Reads answered by the in-memory read model or by the database").register(meterRegistry);
+        databaseReads = Counter.builder("inventory.read-model.reads").tag("model", DATABASE)
+                .description("Reads answered by the in-memory read model or by the database").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (tailer != null) {
+            tailer.shutdownNow();
+        }
+    }
+
+    /**
+     * Whether the projections may answer reads: the model has caught up at least once and its last
+     * completed poll started no longer than the staleness bound ago.
+     */
+    public boolean isFresh() {
+        return ready && System.nanoTime() - syncedAt <= TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+    }
+
+    public long stalenessMillis() {
+        return ready ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - syncedAt) : -1;
+    }
+
+    public int recentLimit() {
+        return recentLimit;
+    }
+
+    /**
+     * Ledger stock of the item (committed top-ups minus withdrawals), without pending movements.
+     */
+    public int ledgerStock(Integer itemId) {
+        ItemLedger ledger = ledgers.get(itemId);
+        return ledger == null ? 0 : (int) (ledger.topUp() - ledger.withdrawal());
+    }
+
+    /**
+     * The item's most recent active movements, newest first.
+     */
+    public List<Movement> recentMovements(Integer itemId) {
+        ItemLedger ledger = ledgers.get(itemId);
+        return ledger == null ? List.of() : ledger.recent();
+    }
+
+    public OrderView order(String orderNo) {
+        return orders.get(orderNo);
+    }
+
+    /**
+     * Records which model answered the current request, for the {@link #HEADER} response header. A request
+     * that went to the database for any part of its answer is reported as served by the database.
+     */
+    public void served(boolean fromProjection) {
+        if (!enabled) {
+            return;
+        }
+        (fromProjection ? projectionReads : databaseReads).increment();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null
+                && !DATABASE.equals(attributes.getAttribute(SERVED_BY_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST))) {
+            attributes.setAttribute(SERVED_BY_ATTRIBUTE, fromProjection ? PROJECTION : DATABASE,
+                    RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    /**
+     * Asks for the item's ledger projection to be rebuilt once the writing transaction, if any, has
+     * committed. Needed for updates and soft-deletes of existing INVENTORY rows, which the tail does not see.
+     */
+    public void refreshItem(Integer itemId) {
+        if (enabled) {
+            afterCommit(() -> itemsToRefresh.add(itemId));
+        }
+    }
+
+    /**
+     * Asks for the order to be re-read once the writing transaction, if any, has committed.
+     */
+    public void refreshOrder(String orderNo) {
+        if (enabled) {
+            afterCommit(() -> ordersToRefresh.add(orderNo));
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    void poll() {
+        long started = System.nanoTime();
+        try {
+            checkLateRows(started);
+            refreshRequested();
+            fillInventoryGaps(started);
+            tailInventory(started);
+            fillOrderGaps(started);
+            tailOrders(started);
+
+            syncedAt = started;
+            if (!ready) {
+                ready = true;
+                log.info("Read model caught up: {} items, {} orders in {} ms", ledgers.size(), orders.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            } else if (failing) {
+                log.info("Read model caught up again after poll failures");
+            }
+            failing = false;
+        } catch (RuntimeException e) {
+            if (!failing) {
+                failing = true;
+                log.warn("Read model poll failed, reads go to the database once it is stale: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void refreshRequested() {
+        for (Iterator<Integer> it = itemsToRefresh.iterator(); it.hasNext(); ) {
+            Integer itemId = it.next();
+            it.remove();
+            refreshItemNow(itemId);
+        }
+        for (Iterator<String> it = ordersToRefresh.iterator(); it.hasNext(); ) {
+            String orderNo = it.next();
+            it.remove();
+            for (OrderRow row : jdbcTemplate.query(ORDER_BY_NO_SQL, ORDER_ROW, orderNo)) {
+                orders.put(row.view().orderNo(), row.view());
+            }
+        }
+    }
+
+    // Rebuilds from the rows the tail has already applied; rows above the watermark or still awaited as
+    // gaps are left to the tail so they are not counted twice
+    private void refreshItemNow(Integer itemId) {
+        List<Object> args = new ArrayList<>(List.of(itemId, inventoryTail.watermark()));
+        String notAwaited = "";
+        if (!inventoryTail.gaps().isEmpty()) {
+            notAwaited = " AND i.ID NOT IN (" + WatermarkTail.placeholders(inventoryTail.gaps().size()) + ")";
+            args.addAll(inventoryTail.gaps());
+        }
+        long[] totals = jdbcTemplate.queryForObject(ITEM_TOTALS_SQL + notAwaited,
+                (rs, rowNum) -> new long[]{rs.getLong("TOP_UP"), rs.getLong("WITHDRAWAL")}, args.toArray());
+        args.add(recentLimit);
+        List<Movement> recent = jdbcTemplate.query(ITEM_RECENT_SQL + notAwaited + " ORDER BY i.ID DESC LIMIT ?",
+                LEDGER_ROW, args.toArray()).stream().map(LedgerRow::movement).toList();
+        ledgers.put(itemId, new ItemLedger(totals[0], totals[1], recent));
+    }
+
+    // A late row is below the watermark and no longer awaited, so rebuilding its item counts it exactly once
+    private void checkLateRows(long now) {
+        if (now - lateCheckedAt < TimeUnit.MILLISECONDS.toNanos(gapGraceMs)) {
+            return;
+        }
+        lateCheckedAt = now;
+        for (List<Long> ids : inventoryTail.late()) {
+            String sql = LATE_INVENTORY_SQL + WatermarkTail.placeholders(ids.size()) + ")";
+            jdbcTemplate.query(sql, rs -> {
+                inventoryTail.resolveLate(rs.getLong("ID"));
+                itemsToRefresh.add(rs.getInt("ITEM_ID"));
+            }, ids.toArray());
+        }
+        for (List<Long> ids : orderTail.late()) {
+            String sql = ORDER_COLUMNS + "WHERE o.ID IN (" + WatermarkTail.placeholders(ids.size()) + ")";
+            for (OrderRow row : jdbcTemplate.query(sql, ORDER_ROW, ids.toArray())) {
+                orderTail.resolveLate(row.id());
+                orders.put(row.view().orderNo(), row.view());
+            }
+        }
+    }
+
+    private void tailInventory(long now) {
+        List<LedgerRow> rows;
+        do {
+            rows = jdbcTemplate.query(INVENTORY_TAIL_SQL, LEDGER_ROW, inventoryTail.watermark(), batchSize);
+            for (LedgerRow row : rows) {
+                inventoryTail.advance(row.movement().id(), now, maxGaps);
+                apply(row);
+            }
+        } while (rows.size() == batchSize);
+    }
+
+    private void fillInventoryGaps(long now) {
+        for (List<Long> ids : inventoryTail.awaited()) {
+            String sql = MOVEMENT_COLUMNS + "WHERE i.ID IN (" + WatermarkTail.placeholders(ids.size()) + ")";
+            for (LedgerRow row : jdbcTemplate.query(sql, LEDGER_ROW, ids.toArray())) {
+                inventoryTail.resolve(row.movement().id());
+                apply(row);
+            }
+        }
+        inventoryTail.expire(now, TimeUnit.MILLISECONDS.toNanos(gapGraceMs), maxGaps);
+    }
+
+    private void tailOrders(long now) {
+        List<OrderRow> rows;
+        do {
+            rows = jdbcTemplate.query(ORDER_TAIL_SQL, ORDER_ROW, orderTail.watermark(), batchSize);
+            for (OrderRow row : rows) {
+                orderTail.advance(row.id(), now, maxGaps);
+                orders.put(row.view().orderNo(), row.view());
+            }
+        } while (rows.size() == batchSize);
+    }
+
+    private void fillOrderGaps(long now) {
+        for (List<Long> ids : orderTail.awaited()) {
+            String sql = ORDER_COLUMNS + "WHERE o.ID IN (" + WatermarkTail.placeholders(ids.size()) + ")";
+            for (OrderRow row : jdbcTemplate.query(sql, ORDER_ROW, ids.toArray())) {
+                orderTail.resolve(row.id());
+                orders.put(row.view().orderNo(), row.view());
+            }
+        }
+        orderTail.expire(now, TimeUnit.MILLISECONDS.toNanos(gapGraceMs), maxGaps);
+    }
+
+    private void apply(LedgerRow row) {
+        if (row.deleted()) {
+            return;
+        }
+        Movement movement = row.movement();
+        ItemLedger current = ledgers.getOrDefault(movement.itemId(), ItemLedger.EMPTY);
+        ledgers.put(movement.itemId(), current.plus(movement, recentLimit));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+
+    public record Movement(Integer id, Integer itemId, String itemName, Integer qty, String type, String batchRef,
+                           String createBy, LocalDateTime createDate, Long version) {
+    }
+
+    public record OrderView(String orderNo, Integer itemId, String itemName, Integer qty, BigDecimal price,
+                            String createBy, LocalDateTime createDate, Long version) {
+    }
+
+    private record LedgerRow(Movement movement, boolean deleted) {
+    }
+
+    private record OrderRow(long id, OrderView view) {
+    }
+
+    private record ItemLedger(long topUp, long withdrawal, List<Movement> recent) {
+
+        static final ItemLedger EMPTY = new ItemLedger(0, 0, List.of());
+
+        ItemLedger plus(Movement movement, int limit) {
+            long nextTopUp = "T".equals(movement.type()) ? topUp + movement.qty() : topUp;
+            long nextWithdrawal = "W".equals(movement.type()) ? withdrawal + movement.qty() : withdrawal;
+
+            // Newest first; a late gap row can land anywhere in the list
+            List<Movement> next = new ArrayList<>(recent.size() + 1);
+            boolean added = false;
+            for (Movement existing : recent) {
+                if (!added && movement.id() > existing.id()) {
+                    next.add(movement);
+                    added = true;
+                }
+                next.add(existing);
+            }
+            if (!added) {
+                next.add(movement);
+            }
+            return new ItemLedger(nextTopUp, nextWithdrawal,
+                    List.copyOf(next.size() > limit ? next.subList(0, limit) : next));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.obssolution.readmodel;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Tells clients which model answered a read: {@value ReadModel#HEADER} is "projection" or "database", and
+ * for projection reads {@value ReadModel#STALENESS_HEADER} says how far behind the ledger the answer may be.
+ */
+@ControllerAdvice
+public class ReadModelHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    @Autowired
+    private ReadModel readModel;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest servletRequest) {
+            Object servedBy = servletRequest.getServletRequest().getAttribute(ReadModel.SERVED_BY_ATTRIBUTE);
+            if (servedBy != null) {
+                response.getHeaders().set(ReadModel.HEADER, servedBy.toString());
+                if (ReadModel.PROJECTION.equals(servedBy)) {
+                    response.getHeaders().set(ReadModel.STALENESS_HEADER, String.valueOf(readModel.stalenessMillis()));
+                }
+            }
+        }
+        return body;
+    }
+}
@@ -0,0 +1,109 @@
+package com.obssolution.readmodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Position of a tail over an identity column. IDs the tail skipped are kept as gaps for a grace period,
+ * since a lower ID can commit after a higher one. IDs still missing after it mostly belong to rolled-back
+ * inserts; the most recent of them can be kept as late IDs for a slower re-check.
+ * Not thread-safe: meant to be owned by the single thread that polls the table.
+ */
+public final class WatermarkTail {
+
+    private static final int MAX_IN_LIST = 500;
+
+    private long watermark;
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+    private final Set<Long> late = new LinkedHashSet<>();
+
+    public long watermark() {
+        return watermark;
+    }
+
+    public void startAt(long id) {
+        watermark = id;
+        gaps.clear();
+        late.clear();
+    }
+
+    /**
+     * Moves past a row the tail has read, recording the IDs it jumped over (at most maxGaps in total).
+     */
+    public void advance(long id, long now, int maxGaps) {
+        for (long missing = watermark + 1; missing < id && gaps.size() < maxGaps; missing++) {
+            gaps.put(missing, now);
+        }
+        watermark = Math.max(watermark, id);
+    }
+
+    /**
+     * Marks an awaited ID as read; returns false if it was not awaited (or has already expired).
+     */
+    public boolean resolve(long id) {
+        return gaps.remove(id) != null;
+    }
+
+    public Set<Long> gaps() {
+        return Collections.unmodifiableSet(gaps.keySet());
+    }
+
+    /**
+     * The awaited IDs in chunks small enough for an IN list.
+     */
+    public List<List<Long>> awaited() {
+        return chunks(gaps.keySet());
+    }
+
+    public void expire(long now, long graceNanos) {
+        expire(now, graceNanos, 0);
+    }
+
+    /**
+     * Stops awaiting IDs older than the grace period, keeping the most recent maxLate of them as late IDs.
+     */
+    public void expire(long now, long graceNanos, int maxLate) {
+        for (Iterator<Map.Entry<Long, Long>> it = gaps.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Long> gap = it.next();
+            if (now - gap.getValue() > graceNanos) {
+                it.remove();
+                late.add(gap.getKey());
+            }
+        }
+        for (Iterator<Long> it = late.iterator(); late.size() > maxLate && it.hasNext(); ) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * The late IDs in chunks small enough for an IN list.
+     */
+    public List<List<Long>> late() {
+        return chunks(late);
+    }
+
+    public boolean resolveLate(long id) {
+        return late.remove(id);
+    }
+
+    private static List<List<Long>> chunks(Collection<Long> source) {
+        List<List<Long>> chunks = new ArrayList<>();
+        List<Long> ids = new ArrayList<>(source);
+        for (int from = 0; from < ids.size(); from += MAX_IN_LIST) {
+            chunks.add(ids.subList(from, Math.min(from + MAX_IN_LIST, ids.size())));
+        }
+        return chunks;
+    }
+
+    public static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
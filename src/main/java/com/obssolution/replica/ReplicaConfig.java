@@ -0,0 +1,18 @@
+package com.obssolution.replica;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class ReplicaConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private ReplicaRoutingInterceptor replicaRoutingInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(replicaRoutingInterceptor).addPathPatterns("/api/**");
+    }
+}
@@ -0,0 +1,83 @@
+package com.obssolution.replica;
+
+import com.obssolution.replica.ReplicaRoutingDataSource.Route;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Wraps the application DataSource in a {@link LazyConnectionDataSourceProxy}: a transaction only takes a
+ * connection once it runs its first statement, by which time its read-only flag is known. With replicas
+ * enabled, read-only transactions get their connection from a {@link ReplicaRoutingDataSource} over a
+ * separate replica pool; everything else stays on the primary. Runs before the deadline wrapper, so
+ * replica statements get the request deadline as well.
+ */
+@Component
+public class ReplicaDataSourcePostProcessor implements BeanPostProcessor, EnvironmentAware, Ordered, DisposableBean {
+
+    private Environment environment;
+    private HikariDataSource replicaPool;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource primary) || bean instanceof LazyConnectionDataSourceProxy) {
+            return bean;
+        }
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primary);
+        if (environment.getProperty("inventory.replica.enabled", Boolean.class, false)) {
+            ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource();
+            routing.setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replicaPool()));
+            routing.setDefaultTargetDataSource(primary);
+            routing.afterPropertiesSet();
+            proxy.setReadOnlyDataSource(routing);
+        }
+        return proxy;
+    }
+
+    // Connects on first use, so an unreachable replica does not fail startup
+    private HikariDataSource replicaPool() {
+        String url = environment.getProperty("inventory.replica.url");
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("inventory.replica.url must be set when inventory.replica.enabled is true");
+        }
+        replicaPool = new HikariDataSource();
+        replicaPool.setPoolName("inventory-replica");
+        replicaPool.setJdbcUrl(url);
+        replicaPool.setUsername(environment.getProperty("inventory.replica.username",
+                environment.getProperty("spring.datasource.username", "")));
+        replicaPool.setPassword(environment.getProperty("inventory.replica.password",
+                environment.getProperty("spring.datasource.password", "")));
+        String driver = environment.getProperty("spring.datasource.driver-class-name");
+        if (driver != null) {
+            replicaPool.setDriverClassName(driver);
+        }
+        replicaPool.setMaximumPoolSize(environment.getProperty("inventory.replica.pool-size", Integer.class, 4));
+        replicaPool.setReadOnly(true);
+        return replicaPool;
+    }
+
+    @Override
+    public void destroy() {
+        if (replicaPool != null) {
+            replicaPool.close();
+        }
+    }
+}
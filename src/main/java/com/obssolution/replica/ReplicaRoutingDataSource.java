@@ -0,0 +1,56 @@
+package com.obssolution.replica;
+
+import com.obssolution.shard.ShardRoutingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.function.Supplier;
+
+/**
+ * Source of the connections for read-only transactions: the replica pool when the current request may
+ * read from it, the primary otherwise. The decision is a request attribute rather than a thread-local, so
+ * queries a request hands to worker threads follow it too. Threads outside any request use the primary.
+ * The replica copies shard 0 only, so work bound to another database shard reads that shard.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String ROUTE_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".ROUTE";
+
+    enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    static void route(RequestAttributes request, Route route) {
+        request.setAttribute(ROUTE_ATTRIBUTE, route, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    public static boolean replicaAllowed() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        return request != null && request.getAttribute(ROUTE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) == Route.REPLICA;
+    }
+
+    /**
+     * Runs a load on the primary even if the request may read the replica, for results that outlive the
+     * request (cache fills) and so must not be behind the last commit.
+     */
+    public static <T> T onPrimary(Supplier<T> load) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null || !replicaAllowed()) {
+            return load.get();
+        }
+        route(request, Route.PRIMARY);
+        try {
+            return load.get();
+        } finally {
+            route(request, Route.REPLICA);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return replicaAllowed() && ShardRoutingDataSource.currentOrPrimary() == ShardRoutingDataSource.PRIMARY
+                ? Route.REPLICA : Route.PRIMARY;
+    }
+}
@@ -0,0 +1,82 @@
+package com.obssolution.replica;
+
+import com.obssolution.replica.ReplicaRoutingDataSource.Route;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Decides per request whether its read-only transactions may use the replica. Only reads (GET/HEAD) may;
+ * writes, and the stock checks they run, always stay on the primary. Every write answers with
+ * {@value #LAST_WRITE_HEADER}; a client that echoes it on its next reads is kept on the primary for
+ * {@code read-your-writes-ms}, so it sees its own write even while the replica lags behind.
+ */
+@Component
+public class ReplicaRoutingInterceptor implements HandlerInterceptor {
+
+    public static final String LAST_WRITE_HEADER = "X-Last-Write";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${inventory.replica.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.replica.read-your-writes-ms:5000}")
+    private long readYourWritesMs = 5000;
+
+    private Counter replicaReads;
+    private Counter pinnedReads;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        replicaReads = Counter.builder("inventory.replica.reads")
+                .description("Read requests allowed to use the replica")
+                .tag("route", "replica")
+                .register(meterRegistry);
+        pinnedReads = Counter.builder("inventory.replica.reads")
+                .description("Read requests kept on the primary after the client's own write")
+                .tag("route", "primary")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!enabled) {
+            return true;
+        }
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            response.setHeader(LAST_WRITE_HEADER, String.valueOf(System.currentTimeMillis()));
+            return true;
+        }
+        if (wroteRecently(request.getHeader(LAST_WRITE_HEADER))) {
+            pinnedReads.increment();
+            return true;
+        }
+        request.setAttribute(ReplicaRoutingDataSource.ROUTE_ATTRIBUTE, Route.REPLICA);
+        replicaReads.increment();
+        return true;
+    }
+
+    private boolean wroteRecently(String lastWrite) {
+        if (lastWrite == null || lastWrite.isBlank()) {
+            return false;
+        }
+        try {
+            return System.currentTimeMillis() - Long.parseLong(lastWrite.trim()) < readYourWritesMs;
+        } catch (NumberFormatException e) {
+            // A client sending something it did not get from us still gets a consistent read
+            return true;
+        }
+    }
+}
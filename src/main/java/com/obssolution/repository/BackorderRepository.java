@@ -0,0 +1,20 @@
+package com.obssolution.repository;
+
+import com.obssolution.model.Backorder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BackorderRepository extends JpaRepository<Backorder, Integer> {
+
+    boolean existsByOrderNo(String orderNo);
+
+    Optional<Backorder> findByOrderNo(String orderNo);
+
+    @Query("SELECT COUNT(b) FROM Backorder b WHERE b.item.id = :itemId AND b.status = 'WAITING' AND b.id < :id")
+    long countWaitingAhead(@Param("itemId") Integer itemId, @Param("id") Integer id);
+}
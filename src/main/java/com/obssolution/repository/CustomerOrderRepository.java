@@ -1,18 +1,24 @@
 package com.obssolution.repository;
 
 import com.obssolution.model.Order;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface CustomerOrderRepository extends JpaRepository<Order, String> {
-    Page<Order> findAllByIsDeletedFalse(Pageable pageable);
+    @Query("SELECT o FROM Order o JOIN FETCH o.item WHERE o.isDeleted = false ORDER BY o.orderNo")
+    List<Order> findPageWithItem(Pageable pageable);
+
+    long countByIsDeletedFalse();
 
     Order findByOrderNo(String orderNo);
+
+    @Query("SELECT o FROM Order o JOIN FETCH o.item WHERE o.orderNo IN :orderNos")
+    List<Order> findWithItemByOrderNoIn(@Param("orderNos") Collection<String> orderNos);
 }
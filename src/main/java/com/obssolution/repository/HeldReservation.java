@@ -0,0 +1,14 @@
+package com.obssolution.repository;
+
+import java.time.LocalDateTime;
+
+public interface HeldReservation {
+
+    String getId();
+
+    Integer getItemId();
+
+    Integer getQty();
+
+    LocalDateTime getExpiresAt();
+}
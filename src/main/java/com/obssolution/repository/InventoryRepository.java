@@ -1,20 +1,39 @@
 package com.obssolution.repository;
 
 import com.obssolution.model.Inventory;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface InventoryRepository extends JpaRepository<Inventory, Integer> {
-    Page<Inventory> findAllByIsDeletedFalse(Pageable pageable);
+    @Query("SELECT i FROM Inventory i JOIN FETCH i.item WHERE i.isDeleted = false ORDER BY i.id")
+    List<Inventory> findPageWithItem(Pageable pageable);
+
+    @Query("SELECT i FROM Inventory i JOIN FETCH i.item WHERE i.item.id = :itemId AND i.isDeleted = false ORDER BY i.id DESC")
+    List<Inventory> findRecentWithItem(@Param("itemId") Integer itemId, Pageable pageable);
+
+    long countByIsDeletedFalse();
 
     @Query("SELECT SUM(i.qty) FROM Inventory i WHERE i.item.id = :itemId AND i.type = :type AND i.isDeleted = false")
     Optional<Integer> sumQtyByItemIdAndType(@Param("itemId") Integer itemId, @Param("type") String type);
 
+    @Query("SELECT i.item.id AS itemId, " +
+            "SUM(CASE WHEN i.type = 'T' THEN i.qty ELSE 0 END) AS topUp, " +
+            "SUM(CASE WHEN i.type = 'W' THEN i.qty ELSE 0 END) AS withdrawal " +
+            "FROM Inventory i WHERE i.isDeleted = false GROUP BY i.item.id")
+    List<ItemStockTotals> sumStockGroupedByItem();
+
+    @Query("SELECT i.item.id AS itemId, " +
+            "SUM(CASE WHEN i.type = 'T' THEN i.qty ELSE 0 END) AS topUp, " +
+            "SUM(CASE WHEN i.type = 'W' THEN i.qty ELSE 0 END) AS withdrawal " +
+            "FROM Inventory i WHERE i.item.id IN :itemIds AND i.isDeleted = false GROUP BY i.item.id")
+    List<ItemStockTotals> sumStockByItemIds(@Param("itemIds") Collection<Integer> itemIds);
+
 }
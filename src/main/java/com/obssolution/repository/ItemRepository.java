@@ -3,11 +3,13 @@ package com.obssolution.repository;
 import com.obssolution.model.Item;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
 
 @Repository
 public interface ItemRepository extends JpaRepository<Item, Integer> {
-    Page<Item> findAllByIsDeletedFalse(Pageable pageable);
+    List<Item> findPageByIsDeletedFalse(Pageable pageable);
+
+    long countByIsDeletedFalse();
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.obssolution.repository;
+
+public interface ItemStockTotals {
+
+    Integer getItemId();
+
+    Long getTopUp();
+
+    Long getWithdrawal();
+}
@@ -0,0 +1,17 @@
+package com.obssolution.repository;
+
+import com.obssolution.model.OrderHeader;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface OrderHeaderRepository extends JpaRepository<OrderHeader, String> {
+
+    @Query("SELECT DISTINCT h FROM OrderHeader h LEFT JOIN FETCH h.lines l LEFT JOIN FETCH l.item " +
+            "WHERE h.orderNo = :orderNo AND h.isDeleted = false")
+    Optional<OrderHeader> findWithLinesByOrderNo(@Param("orderNo") String orderNo);
+}
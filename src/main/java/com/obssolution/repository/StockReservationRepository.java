@@ -0,0 +1,24 @@
+package com.obssolution.repository;
+
+import com.obssolution.model.StockReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, String> {
+
+    @Query("SELECT r.id AS id, r.item.id AS itemId, r.qty AS qty, r.expiresAt AS expiresAt " +
+            "FROM StockReservation r WHERE r.status = 'HELD' AND r.expiresAt > :now")
+    List<HeldReservation> findHeld(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.status = :status, r.orderNo = :orderNo, r.updateBy = 'system', " +
+            "r.updateDate = CURRENT_TIMESTAMP, r.version = r.version + 1 WHERE r.id = :id AND r.status = 'HELD'")
+    int finish(@Param("id") String id, @Param("status") String status, @Param("orderNo") String orderNo);
+}
@@ -0,0 +1,10 @@
+package com.obssolution.service;
+
+import com.obssolution.model.Backorder;
+import com.obssolution.model.Item;
+
+public interface IBackorderService {
+    boolean isEnabled();
+    Backorder enqueue(String orderNo, Item item, int qty);
+    void onTopUp(Integer itemId);
+}
@@ -5,12 +5,16 @@ import com.obssolution.dto.inventory.InventoryResponseDTO;
 import com.obssolution.dto.inventory.InventoryUpdateRequestDTO;
 import com.obssolution.dto.PageResponseDTO;
 
+import java.util.List;
+
 public interface IInventoryService {
 
     PageResponseDTO<InventoryResponseDTO> getAllInventoriesPaginated(int page, int size);
 
     InventoryResponseDTO getInventoryById(Integer id);
 
+    List<InventoryResponseDTO> getRecentMovements(Integer itemId);
+
     InventoryResponseDTO createInventory(InventoryRequestDTO requestDTO);
 
     InventoryResponseDTO updateInventory(InventoryUpdateRequestDTO requestDTO);
@@ -1,16 +1,25 @@
 package com.obssolution.service;
 
+import com.obssolution.dto.item.AvailabilityLineRequestDTO;
+import com.obssolution.dto.item.AvailabilityLineResponseDTO;
 import com.obssolution.dto.item.ItemRequestDTO;
 import com.obssolution.dto.item.ItemResponseDTO;
+import com.obssolution.dto.MultiGetResponseDTO;
 import com.obssolution.dto.PageResponseDTO;
 
+import java.util.List;
+
 public interface IItemService {
 
     public PageResponseDTO<ItemResponseDTO> getAllItemsPaginated(int page, int size);
 
     public ItemResponseDTO getItemById(Integer id);
 
+    public MultiGetResponseDTO<ItemResponseDTO, Integer> getItemsByIds(List<Integer> ids);
+
     public ItemResponseDTO createItem(ItemRequestDTO requestDTO);
 
     public void deleteItemById(Integer id);
+
+    public List<AvailabilityLineResponseDTO> checkAvailability(List<AvailabilityLineRequestDTO> lines);
 }
\ No newline at end of file
@@ -1,14 +1,25 @@
 package com.obssolution.service;
 
+import com.obssolution.dto.order.BasketOrderRequestDTO;
+import com.obssolution.dto.order.BasketOrderResponseDTO;
 import com.obssolution.dto.order.OrderRequestDTO;
 import com.obssolution.dto.order.OrderResponseDTO;
+import com.obssolution.dto.order.OrderStatusDTO;
 import com.obssolution.dto.order.OrderUpdateRequestDTO;
+import com.obssolution.dto.MultiGetResponseDTO;
 import com.obssolution.dto.PageResponseDTO;
 
+import java.util.List;
+
 public interface IOrderService {
     PageResponseDTO<OrderResponseDTO> getAllOrdersPaginated(int page, int size);
     OrderResponseDTO getOrderByOrderNo(String orderNo);
+    MultiGetResponseDTO<OrderResponseDTO, String> getOrdersByOrderNos(List<String> orderNos);
     OrderResponseDTO createOrder(OrderRequestDTO requestDTO);
+    OrderStatusDTO getOrderStatus(String orderNo);
+    OrderResponseDTO createOrderFromReservation(String orderNo, Integer itemId, Integer qty);
+    BasketOrderResponseDTO createBasketOrder(BasketOrderRequestDTO requestDTO);
+    BasketOrderResponseDTO getBasketOrder(String orderNo);
     OrderResponseDTO updateOrder(OrderUpdateRequestDTO requestDTO);
     void deleteOrderByOrderNo(String orderNo);
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.obssolution.service;
+
+import com.obssolution.dto.admin.ReconciliationReportDTO;
+
+public interface IReconciliationService {
+
+    public ReconciliationReportDTO startReconciliation(boolean repair);
+
+    public ReconciliationReportDTO getReconciliation(String jobId);
+}
@@ -0,0 +1,16 @@
+package com.obssolution.service;
+
+import com.obssolution.dto.reservation.ReservationConfirmRequestDTO;
+import com.obssolution.dto.reservation.ReservationRequestDTO;
+import com.obssolution.dto.reservation.ReservationResponseDTO;
+
+public interface IReservationService {
+
+    public ReservationResponseDTO reserve(ReservationRequestDTO requestDTO);
+
+    public ReservationResponseDTO confirm(String reservationId, ReservationConfirmRequestDTO requestDTO);
+
+    public ReservationResponseDTO release(String reservationId);
+
+    public ReservationResponseDTO getReservation(String reservationId);
+}
@@ -0,0 +1,254 @@
+package com.obssolution.service.impl;
+
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.Listing;
+import com.obssolution.cache.PageCache;
+import com.obssolution.model.Backorder;
+import com.obssolution.model.Item;
+import com.obssolution.repository.BackorderRepository;
+import com.obssolution.repository.InventoryRepository;
+import com.obssolution.repository.ItemRepository;
+import com.obssolution.service.IBackorderService;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Orders that could not be filled are queued per item in the BACKORDER table (FIFO by ID). After a
+ * top-up is recorded the item's queue is worked off on a background thread: waiting orders are
+ * filled strictly in arrival order while stock lasts, and all of them are written in one transaction
+ * with batched inserts.
+ */
+@Service
+public class BackorderService implements IBackorderService {
+
+    private static final Logger log = LoggerFactory.getLogger(BackorderService.class);
+
+    static final String WAITING = "WAITING";
+    static final String FULFILLED = "FULFILLED";
+
+    // Row locks keep two nodes from filling the same backorders
+    private static final String SELECT_WAITING_SQL =
+            "SELECT ID, ORDER_NO, QTY FROM BACKORDER WHERE ITEM_ID = ? AND STATUS = 'WAITING' " +
+            "ORDER BY ID FETCH FIRST ? ROWS ONLY FOR UPDATE";
+    private static final String INSERT_ORDER_SQL =
+            "INSERT INTO CUSTOMER_ORDER (ORDER_NO, ITEM_ID, QTY, PRICE, CREATE_BY, CREATE_DATE, IS_DELETED) " +
+            "VALUES (?, ?, ?, ?, 'system', ?, FALSE)";
+    private static final String INSERT_WITHDRAWAL_SQL =
+            "INSERT INTO INVENTORY (ITEM_ID, QTY, TYPE, CREATE_BY, CREATE_DATE, IS_DELETED) " +
+            "VALUES (?, ?, 'W', 'system', ?, FALSE)";
+    private static final String MARK_FULFILLED_SQL =
+            "UPDATE BACKORDER SET STATUS = 'FULFILLED', FULFILLED_DATE = ?, UPDATE_BY = 'system', UPDATE_DATE = ?, " +
+            "VERSION = VERSION + 1 WHERE ID = ?";
+
+    @Autowired
+    private BackorderRepository backorderRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private PendingStockTracker pendingStockTracker;
+
+    @Autowired
+    private PageCache pageCache;
+
+    @Autowired
+    private CacheInvalidationLog invalidationLog;
+
+    @Autowired
+    private OffHeapStockStore stockStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${inventory.backorder.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.backorder.batch-size:500}")
+    private int batchSize;
+
+    private final Set<Integer> scheduledItems = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public Backorder enqueue(String orderNo, Item item, int qty) {
+        Backorder backorder = new Backorder();
+        backorder.setOrderNo(orderNo);
+        backorder.setItem(item);
+        backorder.setQty(qty);
+        backorder.setStatus(WAITING);
+        backorder.setCreateBy("system");
+        Backorder saved = backorderRepository.save(backorder);
+        log.info("Order {} backordered: {} x item {}", orderNo, qty, item.getId());
+        // A top-up committing while this backorder was being written would not see it, so look once more
+        scheduleAfterCommit(item.getId());
+        return saved;
+    }
+
+    @Override
+    public void onTopUp(Integer itemId) {
+        if (enabled) {
+            scheduleAfterCommit(itemId);
+        }
+    }
+
+    private void scheduleAfterCommit(Integer itemId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            schedule(itemId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                schedule(itemId);
+            }
+        });
+    }
+
+    private void schedule(Integer itemId) {
+        if (!scheduledItems.add(itemId)) {
+            return;
+        }
+        executor().execute(() -> {
+            // Cleared before running, so a top-up that lands during this run schedules another one
+            scheduledItems.remove(itemId);
+            try {
+                int fulfilled;
+                do {
+                    fulfilled = fulfill(itemId);
+                } while (fulfilled == batchSize);
+            } catch (RuntimeException e) {
+                log.error("Failed to fulfil backorders for item {}: {}", itemId, e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Fills waiting backorders of the item in arrival order and returns how many were filled. Stops at
+     * the first order that does not fit, so later, smaller orders never overtake it.
+     */
+    int fulfill(Integer itemId) {
+        Integer fulfilled = shardRouter.forItem(itemId, () -> new TransactionTemplate(transactionManager).execute(status -> {
+            List<Waiting> waiting = jdbcTemplate.query(SELECT_WAITING_SQL,
+                    (rs, rowNum) -> new Waiting(rs.getInt("ID"), rs.getString("ORDER_NO"), rs.getInt("QTY")),
+                    itemId, batchSize);
+            if (waiting.isEmpty()) {
+                return 0;
+            }
+            Item item = findPrimaryItem(itemId).orElse(null);
+            if (item == null) {
+                return 0;
+            }
+
+            long available = available(itemId);
+            List<Waiting> filled = new ArrayList<>();
+            long total = 0;
+            for (Waiting order : waiting) {
+                if (total + order.qty() > available) {
+                    break;
+                }
+                total += order.qty();
+                filled.add(order);
+            }
+            if (filled.isEmpty()) {
+                return 0;
+            }
+            // A direct order may have taken the stock since it was read; the next top-up tries again
+            if (stockStore.tracks(itemId) && !stockStore.tryWithdraw(itemId, total)) {
+                return 0;
+            }
+
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            jdbcTemplate.batchUpdate(INSERT_ORDER_SQL, filled.stream()
+                    .map(order -> new Object[]{order.orderNo(), itemId, order.qty(), item.getPrice(), now})
+                    .toList());
+            jdbcTemplate.batchUpdate(INSERT_WITHDRAWAL_SQL, filled.stream()
+                    .map(order -> new Object[]{itemId, order.qty(), now})
+                    .toList());
+            jdbcTemplate.batchUpdate(MARK_FULFILLED_SQL, filled.stream()
+                    .map(order -> new Object[]{now, now, order.id()})
+                    .toList());
+            pageCache.invalidate(Listing.ORDER);
+            pageCache.invalidate(Listing.INVENTORY);
+            invalidationLog.orderChanged(filled.stream().map(Waiting::orderNo).toList());
+            invalidationLog.stockChanged(itemId);
+            return filled.size();
+        }));
+
+        if (fulfilled != null && fulfilled > 0) {
+            log.info("Fulfilled {} backorders for item {}", fulfilled, itemId);
+        }
+        return fulfilled == null ? 0 : fulfilled;
+    }
+
+    private long available(Integer itemId) {
+        if (stockStore.tracks(itemId)) {
+            return stockStore.available(itemId);
+        }
+        int topUp = pendingStockTracker.sum(itemId, "T",
+                () -> inventoryRepository.sumQtyByItemIdAndType(itemId, "T").orElse(0));
+        int withdrawal = pendingStockTracker.sum(itemId, "W",
+                () -> inventoryRepository.sumQtyByItemIdAndType(itemId, "W").orElse(0));
+        return topUp - withdrawal;
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "backorder-fulfilment");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private Optional<Item> findPrimaryItem(Integer itemId) {
+        return shardRouter.onPrimary(() -> itemRepository.findById(itemId));
+    }
+
+    private record Waiting(int id, String orderNo, int qty) {
+    }
+}
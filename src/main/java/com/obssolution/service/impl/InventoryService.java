@@ -4,20 +4,42 @@ import com.obssolution.dto.inventory.InventoryRequestDTO;
 import com.obssolution.dto.inventory.InventoryResponseDTO;
 import com.obssolution.dto.inventory.InventoryUpdateRequestDTO;
 import com.obssolution.dto.PageResponseDTO;
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.ItemCatalog;
+import com.obssolution.cache.ItemCatalog.CatalogItem;
+import com.obssolution.cache.Listing;
+import com.obssolution.cache.PageCache;
+import com.obssolution.concurrency.ParallelQueryExecutor;
+import com.obssolution.concurrency.RetryOnConflict;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.exceptions.StaleVersionException;
 import com.obssolution.model.Inventory;
 import com.obssolution.model.Item;
+import com.obssolution.readmodel.ReadModel;
+import com.obssolution.readmodel.ReadModel.Movement;
 import com.obssolution.repository.InventoryRepository;
 import com.obssolution.repository.ItemRepository;
 import com.obssolution.service.IInventoryService;
+import com.obssolution.shard.ShardKey;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.shard.ShardedBy;
+import com.obssolution.stock.InventoryJournal;
+import com.obssolution.stock.InventoryTopUpCoalescer;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class InventoryService implements IInventoryService {
@@ -28,29 +50,74 @@ public class InventoryService implements IInventoryService {
     @Autowired
     private ItemRepository itemRepository;
 
+    @Autowired
+    private PendingStockTracker pendingStockTracker;
+
+    @Autowired
+    private InventoryTopUpCoalescer topUpCoalescer;
+
+    @Autowired
+    private InventoryJournal inventoryJournal;
+
+    @Autowired
+    private OffHeapStockStore stockStore;
+
+    @Autowired
+    private BackorderService backorderService;
+
+    @Autowired
+    private ParallelQueryExecutor parallelQueryExecutor;
+
+    @Autowired
+    private PageCache pageCache;
+
+    @Autowired
+    private ItemCatalog itemCatalog;
+
+    @Autowired
+    private ReadModel readModel;
+
+    @Autowired
+    private CacheInvalidationLog invalidationLog;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
     @Override
+    @Transactional(readOnly = true)
     public PageResponseDTO<InventoryResponseDTO> getAllInventoriesPaginated(int page, int size) {
         if (page < 1) {
             throw new IllegalArgumentException("Page number must be 1 or higher.");
         }
 
+        return pageCache.get(Listing.INVENTORY, page, size,
+                dto -> List.of(Listing.INVENTORY.key(dto.getId()), Listing.ITEM.key(dto.getItemId())),
+                () -> loadInventoryPage(page, size));
+    }
+
+    private PageResponseDTO<InventoryResponseDTO> loadInventoryPage(int page, int size) {
         Pageable pageable = PageRequest.of(page - 1, size);
-        Page<Inventory> inventoryPage = inventoryRepository.findAllByIsDeletedFalse(pageable);
+        if (shardRouter.isEnabled()) {
+            List<InventoryResponseDTO> dtoList = shardRouter.mergePage(inventoryRepository::findPageWithItem,
+                            Comparator.comparing(Inventory::getId), pageable).stream()
+                    .map(this::toDTO)
+                    .toList();
+            return PageResponseDTO.of(dtoList, page, size, shardRouter.sum(inventoryRepository::countByIsDeletedFalse));
+        }
+
+        CompletableFuture<List<Inventory>> content = parallelQueryExecutor.supply(() -> inventoryRepository.findPageWithItem(pageable));
+        CompletableFuture<Long> total = parallelQueryExecutor.supply(inventoryRepository::countByIsDeletedFalse);
 
-        List<InventoryResponseDTO> dtoList = inventoryPage.getContent().stream()
+        List<InventoryResponseDTO> dtoList = parallelQueryExecutor.join(content).stream()
                 .map(this::toDTO)
                 .toList();
 
-        return new PageResponseDTO<>(
-                dtoList,
-                inventoryPage.getNumber() + 1,
-                inventoryPage.getTotalPages(),
-                inventoryPage.getTotalElements(),
-                size
-        );
+        return PageResponseDTO.of(dtoList, page, size, parallelQueryExecutor.join(total));
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ShardedBy(value = "#id", key = ShardKey.INVENTORY)
     public InventoryResponseDTO getInventoryById(Integer id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("Inventory ID must be a positive number");
@@ -63,12 +130,34 @@ public class InventoryService implements IInventoryService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ShardedBy("#itemId")
+    public List<InventoryResponseDTO> getRecentMovements(Integer itemId) {
+        if (itemId == null || itemId <= 0) {
+            throw new IllegalArgumentException("Item ID must be a positive number");
+        }
+
+        if (readModel.isFresh()) {
+            readModel.served(true);
+            return readModel.recentMovements(itemId).stream()
+                    .map(this::toDTO)
+                    .toList();
+        }
+        readModel.served(false);
+        return inventoryRepository.findRecentWithItem(itemId, PageRequest.of(0, readModel.recentLimit())).stream()
+                .map(this::toDTO)
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    @ShardedBy("#requestDTO?.itemId")
     public InventoryResponseDTO createInventory(InventoryRequestDTO requestDTO) {
         if (requestDTO == null) {
             throw new IllegalArgumentException("InventoryRequestDTO must not be null");
         }
 
-        Item item = itemRepository.findById(requestDTO.getItemId())
+        Item item = findPrimaryItem(requestDTO.getItemId())
                 .orElseThrow(() -> new IllegalArgumentException("Item not found with id: " + requestDTO.getItemId()));
 
         if (requestDTO.getQty() == null || requestDTO.getQty() < 0) {
@@ -79,7 +168,33 @@ public class InventoryService implements IInventoryService {
             throw new IllegalArgumentException("Type must be 'T' or 'W'");
         }
 
-        validateStock(item.getId(), requestDTO.getQty(), requestDTO.getType(), null);
+        if ("T".equals(requestDTO.getType()) && topUpCoalescer.isEnabled()) {
+            String batchRef = topUpCoalescer.accept(item, requestDTO.getQty());
+            stockStore.add(item.getId(), "T", requestDTO.getQty());
+            backorderService.onTopUp(item.getId());
+            return toPendingDTO(item, requestDTO.getQty(), "T", batchRef);
+        }
+
+        // Withdrawals on items held by the stock store are booked atomically instead of check-then-write
+        boolean withdrawnFromStore = "W".equals(requestDTO.getType()) && stockStore.tracks(item.getId());
+        if (withdrawnFromStore) {
+            if (!stockStore.tryWithdraw(item.getId(), requestDTO.getQty())) {
+                throw new IllegalArgumentException("Insufficient top-up quantity. Withdrawal exceeds available stock.");
+            }
+        } else {
+            validateStock(item.getId(), requestDTO.getQty(), requestDTO.getType(), null);
+        }
+
+        // A store withdrawal stays booked only if the transaction commits, together with its ledger row
+        if (inventoryJournal.isEnabled()) {
+            InventoryResponseDTO pending = toPendingDTO(item, requestDTO.getQty(), requestDTO.getType(), null);
+            afterCommit(() -> appendToJournal(pending, withdrawnFromStore));
+            // Registered after the append, so the backorder check sees the new stock
+            if ("T".equals(requestDTO.getType())) {
+                backorderService.onTopUp(item.getId());
+            }
+            return pending;
+        }
 
         Inventory inventory = new Inventory();
         inventory.setItem(item);
@@ -88,10 +203,21 @@ public class InventoryService implements IInventoryService {
         inventory.setCreateBy("system");
 
         Inventory savedInventory = inventoryRepository.save(inventory);
+        pageCache.invalidate(Listing.INVENTORY);
+        invalidationLog.stockChanged(item.getId());
+        if (!withdrawnFromStore) {
+            stockStore.addOnCommit(item.getId(), requestDTO.getType(), requestDTO.getQty());
+        }
+        if ("T".equals(requestDTO.getType())) {
+            backorderService.onTopUp(item.getId());
+        }
         return toDTO(savedInventory);
     }
 
     @Override
+    @Transactional
+    @RetryOnConflict(entity = "inventory")
+    @ShardedBy(value = "#requestDTO?.id", key = ShardKey.INVENTORY)
     public InventoryResponseDTO updateInventory(InventoryUpdateRequestDTO requestDTO) {
         if (requestDTO.getId() == null || requestDTO.getId() <= 0) {
             throw new IllegalArgumentException("Inventory ID must be a positive number");
@@ -100,7 +226,11 @@ public class InventoryService implements IInventoryService {
         Inventory inventory = inventoryRepository.findById(requestDTO.getId())
                 .orElseThrow(() -> new ResourceNotFoundException("Inventory not found with id: " + requestDTO.getId()));
 
-        Item item = itemRepository.findById(requestDTO.getItemId())
+        if (requestDTO.getVersion() != null && !requestDTO.getVersion().equals(inventory.getVersion())) {
+            throw new StaleVersionException("Inventory", inventory.getId(), requestDTO.getVersion(), inventory.getVersion());
+        }
+
+        Item item = findPrimaryItem(requestDTO.getItemId())
                 .orElseThrow(() -> new IllegalArgumentException("Item not found with id: " + requestDTO.getItemId()));
 
         if (requestDTO.getQty() == null || requestDTO.getQty() < 0) {
@@ -111,18 +241,38 @@ public class InventoryService implements IInventoryService {
             throw new IllegalArgumentException("Type must be 'T' or 'W'");
         }
 
+        Integer previousItemId = inventory.getItem().getId();
+        if (shardRouter.shardOf(item.getId()) != shardRouter.shardOf(previousItemId)) {
+            throw new IllegalArgumentException("Inventory " + inventory.getId() + " cannot be moved to item " +
+                    item.getId() + ", the item is stored on another shard");
+        }
+
         validateStock(item.getId(), requestDTO.getQty(), requestDTO.getType(), null); // <= tambahkan ini
 
+        String previousType = inventory.getType();
+        Integer previousQty = inventory.getQty();
+
         inventory.setItem(item);
         inventory.setQty(requestDTO.getQty());
         inventory.setType(requestDTO.getType());
         inventory.setUpdateBy("system");
 
-        Inventory updatedInventory = inventoryRepository.save(inventory);
+        Inventory updatedInventory = inventoryRepository.saveAndFlush(inventory);
+        pageCache.invalidateRow(Listing.INVENTORY.key(updatedInventory.getId()));
+        readModel.refreshItem(previousItemId);
+        readModel.refreshItem(item.getId());
+        invalidationLog.stockChanged(List.of(previousItemId, item.getId()));
+        if (!Boolean.TRUE.equals(updatedInventory.getIsDeleted())) {
+            stockStore.addOnCommit(previousItemId, previousType, -previousQty);
+            stockStore.addOnCommit(item.getId(), requestDTO.getType(), requestDTO.getQty());
+        }
         return toDTO(updatedInventory);
     }
 
     @Override
+    @Transactional
+    @RetryOnConflict(entity = "inventory")
+    @ShardedBy(value = "#id", key = ShardKey.INVENTORY)
     public void deleteInventoryById(Integer id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("Inventory ID must be a positive number");
@@ -139,7 +289,11 @@ public class InventoryService implements IInventoryService {
         inventory.setDeleteBy("system");
         inventory.setDeleteDate(LocalDateTime.now());
 
-        inventoryRepository.save(inventory);
+        inventoryRepository.saveAndFlush(inventory);
+        pageCache.invalidate(Listing.INVENTORY);
+        readModel.refreshItem(inventory.getItem().getId());
+        invalidationLog.stockChanged(inventory.getItem().getId());
+        stockStore.addOnCommit(inventory.getItem().getId(), inventory.getType(), -inventory.getQty());
     }
 
 
@@ -147,17 +301,88 @@ public class InventoryService implements IInventoryService {
         InventoryResponseDTO dto = new InventoryResponseDTO();
         dto.setId(inventory.getId());
         dto.setItemId(inventory.getItem().getId());
-        dto.setItemName(inventory.getItem().getName());
+        dto.setItemName(itemCatalog.nameOf(inventory.getItem()));
         dto.setQty(inventory.getQty());
         dto.setType(inventory.getType());
         dto.setCreateBy(inventory.getCreateBy());
         dto.setCreateDate(inventory.getCreateDate());
+        dto.setBatchRef(inventory.getBatchRef());
+        dto.setVersion(inventory.getVersion());
+        return dto;
+    }
+
+    private InventoryResponseDTO toDTO(Movement movement) {
+        CatalogItem item = itemCatalog.find(movement.itemId());
+        InventoryResponseDTO dto = new InventoryResponseDTO();
+        dto.setId(movement.id());
+        dto.setItemId(movement.itemId());
+        dto.setItemName(item != null ? item.name() : movement.itemName());
+        dto.setQty(movement.qty());
+        dto.setType(movement.type());
+        dto.setCreateBy(movement.createBy());
+        dto.setCreateDate(movement.createDate());
+        dto.setBatchRef(movement.batchRef());
+        dto.setVersion(movement.version());
+        return dto;
+    }
+
+    /**
+     * The journal record is the movement itself and cannot be rolled back, so it is only appended once the
+     * transaction, and with it a store withdrawal, has committed. The caller still waits for it to be durable.
+     */
+    private void appendToJournal(InventoryResponseDTO pending, boolean withdrawnFromStore) {
+        long seq;
+        try {
+            seq = inventoryJournal.append(pending.getItemId(), pending.getQty(), pending.getType());
+        } catch (RuntimeException e) {
+            if (withdrawnFromStore) {
+                stockStore.add(pending.getItemId(), "W", -pending.getQty());
+            }
+            throw e;
+        }
+        if (!withdrawnFromStore) {
+            stockStore.add(pending.getItemId(), pending.getType(), pending.getQty());
+        }
+        pending.setBatchRef(InventoryJournal.batchRef(seq));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private InventoryResponseDTO toPendingDTO(Item item, Integer qty, String type, String batchRef) {
+        InventoryResponseDTO dto = new InventoryResponseDTO();
+        dto.setItemId(item.getId());
+        dto.setItemName(item.getName());
+        dto.setQty(qty);
+        dto.setType(type);
+        dto.setCreateBy("system");
+        dto.setCreateDate(LocalDateTime.now());
+        dto.setBatchRef(batchRef);
         return dto;
     }
 
     public void validateStock(Integer itemId, Integer changeQty, String changeType, Integer inventoryIdToExclude) {
-        int totalTopUp = inventoryRepository.sumQtyByItemIdAndType(itemId, "T").orElse(0);
-        int totalWithdrawal = inventoryRepository.sumQtyByItemIdAndType(itemId, "W").orElse(0);
+        long totalTopUp;
+        long totalWithdrawal;
+        if (stockStore.tracks(itemId)) {
+            totalTopUp = stockStore.topUp(itemId);
+            totalWithdrawal = stockStore.withdrawal(itemId);
+        } else {
+            totalTopUp = pendingStockTracker.sum(itemId, "T", () -> shardRouter.forItem(itemId,
+                    () -> inventoryRepository.sumQtyByItemIdAndType(itemId, "T").orElse(0)));
+            totalWithdrawal = pendingStockTracker.sum(itemId, "W", () -> shardRouter.forItem(itemId,
+                    () -> inventoryRepository.sumQtyByItemIdAndType(itemId, "W").orElse(0)));
+        }
 
         if (inventoryIdToExclude != null) {
             Inventory existing = inventoryRepository.findById(inventoryIdToExclude).orElse(null);
@@ -181,4 +406,7 @@ public class InventoryService implements IInventoryService {
         }
     }
 
+    private Optional<Item> findPrimaryItem(Integer itemId) {
+        return shardRouter.onPrimary(() -> itemRepository.findById(itemId));
+    }
 }
@@ -1,69 +1,154 @@
 package com.obssolution.service.impl;
 
+import com.obssolution.dto.item.AvailabilityLineRequestDTO;
+import com.obssolution.dto.item.AvailabilityLineResponseDTO;
 import com.obssolution.dto.item.ItemRequestDTO;
 import com.obssolution.dto.item.ItemResponseDTO;
 import com.obssolution.dto.item.ItemUpdateRequestDTO;
+import com.obssolution.dto.MultiGetResponseDTO;
 import com.obssolution.dto.PageResponseDTO;
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.ItemCatalog;
+import com.obssolution.cache.ItemCatalog.CatalogItem;
+import com.obssolution.cache.Listing;
+import com.obssolution.cache.PageCache;
+import com.obssolution.cache.SingleFlight;
+import com.obssolution.concurrency.ParallelQueryExecutor;
+import com.obssolution.concurrency.RetryOnConflict;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.exceptions.StaleVersionException;
 import com.obssolution.model.Item;
+import com.obssolution.readmodel.ReadModel;
 import com.obssolution.repository.InventoryRepository;
 import com.obssolution.repository.ItemRepository;
+import com.obssolution.repository.ItemStockTotals;
 import com.obssolution.service.IItemService;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import org.springframework.data.domain.Page;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.Pageable;
 
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class ItemService implements IItemService {
 
+    private static final int MAX_MULTI_GET = 200;
+
     @Autowired
     ItemRepository itemRepository;
 
     @Autowired
     InventoryRepository inventoryRepository;
 
+    @Autowired
+    PendingStockTracker pendingStockTracker;
+
+    @Autowired
+    OffHeapStockStore stockStore;
+
+    @Autowired
+    SingleFlight singleFlight;
+
+    @Autowired
+    ParallelQueryExecutor parallelQueryExecutor;
+
+    @Autowired
+    PageCache pageCache;
+
+    @Autowired
+    ItemCatalog itemCatalog;
+
+    @Autowired
+    ReadModel readModel;
+
+    @Autowired
+    CacheInvalidationLog invalidationLog;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Transactional(readOnly = true)
     public PageResponseDTO<ItemResponseDTO> getAllItemsPaginated(int page, int size) {
         if (page < 1) {
             throw new IllegalArgumentException("Page number must be 1 or higher.");
         }
 
+        return pageCache.get(Listing.ITEM, page, size, dto -> List.of(Listing.ITEM.key(dto.getId())),
+                () -> loadItemPage(page, size), this::withCurrentStock);
+    }
+
+    private PageResponseDTO<ItemResponseDTO> loadItemPage(int page, int size) {
         Pageable pageable = PageRequest.of(page - 1, size); // page-1 karena index 0
-        Page<Item> itemPage = itemRepository.findAllByIsDeletedFalse(pageable); // hanya ambil yg belum dihapus
 
-        List<ItemResponseDTO> dtoList = itemPage.getContent().stream()
-                .map(this::toDTO)
-                .toList();
+        // Isi halaman + stoknya dan COUNT jalan bersamaan; stok dicari begitu ID item sudah ada
+        CompletableFuture<List<ItemResponseDTO>> content = parallelQueryExecutor
+                .supply(() -> itemRepository.findPageByIsDeletedFalse(pageable)) // hanya ambil yg belum dihapus
+                .thenCompose(items -> parallelQueryExecutor.supply(() -> toDTOsWithStock(items)));
+        CompletableFuture<Long> total = parallelQueryExecutor.supply(itemRepository::countByIsDeletedFalse);
 
-        return new PageResponseDTO<>(
-                dtoList,
-                itemPage.getNumber() + 1,
-                itemPage.getTotalPages(),
-                itemPage.getTotalElements(),
-                size
-        );
+        return PageResponseDTO.of(parallelQueryExecutor.join(content), page, size, parallelQueryExecutor.join(total));
     }
 
-
+    /**
+     * Stock moves far more often than items change, so cached item pages are never invalidated for it;
+     * instead a cached page is copied with the current stock filled in.
+     */
+    private PageResponseDTO<ItemResponseDTO> withCurrentStock(PageResponseDTO<ItemResponseDTO> cached) {
+        Map<Integer, Integer> available = availableStock(
+                cached.getContent().stream().map(ItemResponseDTO::getId).toList());
+        List<ItemResponseDTO> content = new ArrayList<>(cached.getContent().size());
+        for (ItemResponseDTO row : cached.getContent()) {
+            ItemResponseDTO dto = new ItemResponseDTO();
+            dto.setId(row.getId());
+            dto.setName(row.getName());
+            dto.setPrice(row.getPrice());
+            dto.setCreateBy(row.getCreateBy());
+            dto.setCreateDate(row.getCreateDate());
+            dto.setVersion(row.getVersion());
+            dto.setRemainingStock(available.getOrDefault(row.getId(), 0));
+            content.add(dto);
+        }
+        return new PageResponseDTO<>(content, cached.getCurrentPage(), cached.getTotalPages(),
+                cached.getTotalElements(), cached.getPageSize());
+    }
 
     @Override
+    @Transactional(readOnly = true)
     public ItemResponseDTO getItemById(Integer id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("Item ID must be a positive number");
         }
 
-        Item item = itemRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + id));
-
-        return toDTO(item);
+        // A catalog hit still sums stock, so it goes through the same flight as a miss
+        return singleFlight.execute("item:" + id, () -> {
+            CatalogItem catalogItem = itemCatalog.find(id);
+            if (catalogItem != null) {
+                ItemResponseDTO dto = toDTOWithoutStock(catalogItem);
+                dto.setRemainingStock(remainingStock(id));
+                return dto;
+            }
+            Item item = itemRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + id));
+            return toDTO(item);
+        }, ItemService::copyOf);
     }
 
+    @Transactional
     public ItemResponseDTO createItem(ItemRequestDTO requestDTO) {
         if (requestDTO == null) {
             throw new IllegalArgumentException("ItemRequestDTO must not be null");
@@ -84,6 +169,10 @@ public class ItemService implements IItemService {
             item.setCreateBy("system");
 
             Item savedItem = itemRepository.save(item);
+            shardRouter.mirrorItem(savedItem);
+            itemCatalog.publish(savedItem);
+            pageCache.invalidate(Listing.ITEM);
+            invalidationLog.itemChanged(savedItem.getId());
             return toDTO(savedItem);
 
         } catch (Exception e) {
@@ -92,6 +181,8 @@ public class ItemService implements IItemService {
     }
 
 
+    @Transactional
+    @RetryOnConflict(entity = "item")
     public ItemResponseDTO updateItem(ItemUpdateRequestDTO requestDTO) {
         if (requestDTO.getId() == null || requestDTO.getId() <= 0) {
             throw new IllegalArgumentException("Item ID must be a positive number");
@@ -100,14 +191,24 @@ public class ItemService implements IItemService {
         Item item = itemRepository.findById(requestDTO.getId())
                 .orElseThrow(() -> new ResourceNotFoundException("Item not found with id: " + requestDTO.getId()));
 
+        if (requestDTO.getVersion() != null && !requestDTO.getVersion().equals(item.getVersion())) {
+            throw new StaleVersionException("Item", item.getId(), requestDTO.getVersion(), item.getVersion());
+        }
+
         item.setName(requestDTO.getName());
         item.setPrice(requestDTO.getPrice());
         item.setUpdateBy("system");
 
-        Item updatedItem = itemRepository.save(item);
+        Item updatedItem = itemRepository.saveAndFlush(item);
+        shardRouter.mirrorItem(updatedItem);
+        itemCatalog.publish(updatedItem);
+        pageCache.invalidateRow(Listing.ITEM.key(updatedItem.getId()));
+        invalidationLog.itemChanged(updatedItem.getId());
         return toDTO(updatedItem);
     }
 
+    @Transactional
+    @RetryOnConflict(entity = "item")
     public void deleteItemById(Integer id) {
         if (id == null || id <= 0) {
             throw new IllegalArgumentException("Item ID must be a positive number");
@@ -124,22 +225,195 @@ public class ItemService implements IItemService {
         item.setDeleteBy("system");
         item.setDeleteDate(LocalDateTime.now());
 
-        itemRepository.save(item);
+        itemRepository.saveAndFlush(item);
+        shardRouter.mirrorItem(item);
+        itemCatalog.publish(item);
+        pageCache.invalidate(Listing.ITEM);
+        invalidationLog.itemChanged(item.getId());
     }
 
+    /**
+     * Answers every line from the stock store where the item is tracked; the remaining items share one
+     * grouped ledger query. Items without any stock movements (or unknown ids) report 0 available.
+     */
+    @Override
+    public List<AvailabilityLineResponseDTO> checkAvailability(List<AvailabilityLineRequestDTO> lines) {
+        if (lines == null || lines.isEmpty()) {
+            throw new IllegalArgumentException("At least one line is required");
+        }
 
-    public ItemResponseDTO toDTO(Item item) {
+        Set<Integer> itemIds = new LinkedHashSet<>();
+        for (AvailabilityLineRequestDTO line : lines) {
+            itemIds.add(line.getItemId());
+        }
+        Map<Integer, Integer> available = availableStock(itemIds);
+
+        List<AvailabilityLineResponseDTO> result = new ArrayList<>(lines.size());
+        for (AvailabilityLineRequestDTO line : lines) {
+            int availableStock = available.getOrDefault(line.getItemId(), 0);
+            AvailabilityLineResponseDTO dto = new AvailabilityLineResponseDTO();
+            dto.setItemId(line.getItemId());
+            dto.setQty(line.getQty());
+            dto.setAvailable(availableStock);
+            dto.setSufficient(availableStock >= line.getQty());
+            result.add(dto);
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MultiGetResponseDTO<ItemResponseDTO, Integer> getItemsByIds(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one item ID is required");
+        }
+        Set<Integer> requested = new LinkedHashSet<>(ids);
+        if (requested.size() > MAX_MULTI_GET) {
+            throw new IllegalArgumentException("At most " + MAX_MULTI_GET + " item IDs can be requested at once");
+        }
+
+        // Active items come from the catalog; only deleted or unknown ids still need the database
+        Map<Integer, ItemResponseDTO> items = new HashMap<>();
+        List<Integer> notInCatalog = new ArrayList<>();
+        for (Integer id : requested) {
+            CatalogItem catalogItem = itemCatalog.find(id);
+            if (catalogItem != null) {
+                items.put(id, toDTOWithoutStock(catalogItem));
+            } else {
+                notInCatalog.add(id);
+            }
+        }
+        if (!notInCatalog.isEmpty()) {
+            for (Item item : itemRepository.findAllById(notInCatalog)) {
+                items.put(item.getId(), toDTOWithoutStock(item));
+            }
+        }
+        Map<Integer, Integer> available = availableStock(items.keySet());
+
+        List<ItemResponseDTO> results = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : requested) {
+            ItemResponseDTO dto = items.get(id);
+            if (dto == null) {
+                missing.add(id);
+                continue;
+            }
+            dto.setRemainingStock(available.getOrDefault(id, 0));
+            results.add(dto);
+        }
+        return new MultiGetResponseDTO<>(results, missing);
+    }
+
+    /**
+     * Remaining stock per item: tracked items come from the stock store, the rest from the read model
+     * (or one grouped ledger query when it is stale) plus pending movements.
+     */
+    private Map<Integer, Integer> availableStock(Collection<Integer> itemIds) {
+        Map<Integer, Integer> available = new HashMap<>();
+        List<Integer> ledgerItems = new ArrayList<>();
+        for (Integer itemId : itemIds) {
+            if (stockStore.tracks(itemId)) {
+                available.put(itemId, (int) stockStore.available(itemId));
+            } else {
+                ledgerItems.add(itemId);
+            }
+        }
+        if (ledgerItems.isEmpty()) {
+            return available;
+        }
+        if (readModel.isFresh()) {
+            readModel.served(true);
+            for (Integer itemId : ledgerItems) {
+                available.put(itemId, readModel.ledgerStock(itemId) + pendingStockTracker.pendingQty(itemId, "T")
+                        - pendingStockTracker.pendingQty(itemId, "W"));
+            }
+            return available;
+        }
+        readModel.served(false);
+        available.putAll(pendingStockTracker.readConsistent(() -> {
+            Map<Integer, Integer> result = new HashMap<>();
+            for (ItemStockTotals totals : shardRouter.forItems(ledgerItems, inventoryRepository::sumStockByItemIds)) {
+                result.put(totals.getItemId(), (int) (nullToZero(totals.getTopUp()) - nullToZero(totals.getWithdrawal())));
+            }
+            for (Integer itemId : ledgerItems) {
+                result.merge(itemId, pendingStockTracker.pendingQty(itemId, "T")
+                        - pendingStockTracker.pendingQty(itemId, "W"), Integer::sum);
+            }
+            return result;
+        }));
+        return available;
+    }
+
+    private List<ItemResponseDTO> toDTOsWithStock(List<Item> items) {
+        Map<Integer, Integer> available = availableStock(items.stream().map(Item::getId).toList());
+        List<ItemResponseDTO> result = new ArrayList<>(items.size());
+        for (Item item : items) {
+            ItemResponseDTO dto = toDTOWithoutStock(item);
+            dto.setRemainingStock(available.getOrDefault(item.getId(), 0));
+            result.add(dto);
+        }
+        return result;
+    }
+
+    private ItemResponseDTO toDTOWithoutStock(Item item) {
         ItemResponseDTO dto = new ItemResponseDTO();
         dto.setId(item.getId());
         dto.setName(item.getName());
         dto.setPrice(item.getPrice());
         dto.setCreateBy(item.getCreateBy());
         dto.setCreateDate(item.getCreateDate());
+        dto.setVersion(item.getVersion());
+        return dto;
+    }
 
-        int topUp = inventoryRepository.sumQtyByItemIdAndType(item.getId(), "T").orElse(0);
-        int withdrawal = inventoryRepository.sumQtyByItemIdAndType(item.getId(), "W").orElse(0);
-        dto.setRemainingStock(topUp - withdrawal);
+    private ItemResponseDTO toDTOWithoutStock(CatalogItem item) {
+        ItemResponseDTO dto = new ItemResponseDTO();
+        dto.setId(item.id());
+        dto.setName(item.name());
+        dto.setPrice(item.price());
+        dto.setCreateBy(item.createBy());
+        dto.setCreateDate(item.createDate());
+        dto.setVersion(item.version());
+        return dto;
+    }
 
+    private static ItemResponseDTO copyOf(ItemResponseDTO source) {
+        ItemResponseDTO dto = new ItemResponseDTO();
+        dto.setId(source.getId());
+        dto.setName(source.getName());
+        dto.setPrice(source.getPrice());
+        dto.setCreateBy(source.getCreateBy());
+        dto.setCreateDate(source.getCreateDate());
+        dto.setVersion(source.getVersion());
+        dto.setRemainingStock(source.getRemainingStock());
         return dto;
     }
+
+    public ItemResponseDTO toDTO(Item item) {
+        ItemResponseDTO dto = toDTOWithoutStock(item);
+        dto.setRemainingStock(remainingStock(item.getId()));
+        return dto;
+    }
+
+    private int remainingStock(Integer itemId) {
+        if (stockStore.tracks(itemId)) {
+            return (int) stockStore.available(itemId);
+        }
+        if (readModel.isFresh()) {
+            readModel.served(true);
+            return readModel.ledgerStock(itemId) + pendingStockTracker.pendingQty(itemId, "T")
+                    - pendingStockTracker.pendingQty(itemId, "W");
+        }
+        readModel.served(false);
+
+        int topUp = pendingStockTracker.sum(itemId, "T", () -> shardRouter.forItem(itemId,
+                () -> inventoryRepository.sumQtyByItemIdAndType(itemId, "T").orElse(0)));
+        int withdrawal = pendingStockTracker.sum(itemId, "W", () -> shardRouter.forItem(itemId,
+                () -> inventoryRepository.sumQtyByItemIdAndType(itemId, "W").orElse(0)));
+        return topUp - withdrawal;
+    }
+
+    private static long nullToZero(Long value) {
+        return value == null ? 0L : value;
+    }
 }
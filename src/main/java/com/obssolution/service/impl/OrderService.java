@@ -1,31 +1,86 @@
 package com.obssolution.service.impl;
 
+import com.obssolution.dto.order.BasketLineRequestDTO;
+import com.obssolution.dto.order.BasketLineResponseDTO;
+import com.obssolution.dto.order.BasketOrderRequestDTO;
+import com.obssolution.dto.order.BasketOrderResponseDTO;
 import com.obssolution.dto.order.OrderRequestDTO;
 import com.obssolution.dto.order.OrderResponseDTO;
+import com.obssolution.dto.order.OrderStatusDTO;
 import com.obssolution.dto.order.OrderUpdateRequestDTO;
+import com.obssolution.dto.MultiGetResponseDTO;
 import com.obssolution.dto.PageResponseDTO;
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.ItemCatalog;
+import com.obssolution.cache.ItemCatalog.CatalogItem;
+import com.obssolution.cache.Listing;
+import com.obssolution.cache.OrderNumberBloomFilter;
+import com.obssolution.cache.PageCache;
+import com.obssolution.cache.SingleFlight;
+import com.obssolution.concurrency.ParallelQueryExecutor;
+import com.obssolution.concurrency.RetryOnConflict;
+import com.obssolution.exceptions.InsufficientStockException;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.exceptions.StaleVersionException;
+import com.obssolution.model.Backorder;
 import com.obssolution.model.Inventory;
 import com.obssolution.model.Item;
 import com.obssolution.model.Order;
+import com.obssolution.model.OrderHeader;
+import com.obssolution.model.OrderLine;
+import com.obssolution.order.OrderNumberAllocator;
+import com.obssolution.order.OrderNumberRegistry;
+import com.obssolution.readmodel.ReadModel;
+import com.obssolution.readmodel.ReadModel.OrderView;
+import com.obssolution.repository.BackorderRepository;
 import com.obssolution.repository.CustomerOrderRepository;
 import com.obssolution.repository.InventoryRepository;
 import com.obssolution.repository.ItemRepository;
+import com.obssolution.repository.ItemStockTotals;
+import com.obssolution.repository.OrderHeaderRepository;
 import com.obssolution.service.IOrderService;
+import com.obssolution.shard.ShardKey;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.shard.ShardedBy;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService implements IOrderService {
 
+    public static final String STATUS_CREATED = "CREATED";
+    public static final String STATUS_BACKORDERED = "BACKORDERED";
+
+    private static final int MAX_MULTI_GET = 200;
+
+    private static final String INSERT_LINE_SQL =
+            "INSERT INTO ORDER_LINE (ORDER_NO, LINE_NO, ITEM_ID, QTY, PRICE) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_WITHDRAWAL_SQL =
+            "INSERT INTO INVENTORY (ITEM_ID, QTY, TYPE, CREATE_BY, CREATE_DATE, IS_DELETED) " +
+            "VALUES (?, ?, 'W', 'system', ?, FALSE)";
+
     @Autowired
     private CustomerOrderRepository orderRepository;
 
@@ -35,78 +90,347 @@ public class OrderService implements IOrderService {
     @Autowired
     private InventoryRepository inventoryRepository;
 
+    @Autowired
+    private PendingStockTracker pendingStockTracker;
+
+    @Autowired
+    private OffHeapStockStore stockStore;
+
+    @Autowired
+    private OrderNumberAllocator orderNumberAllocator;
+
+    @Autowired
+    private OrderNumberRegistry orderNumberRegistry;
+
+    @Autowired
+    private OrderNumberBloomFilter orderNumberFilter;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private OrderHeaderRepository orderHeaderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BackorderService backorderService;
+
+    @Autowired
+    private BackorderRepository backorderRepository;
+
+    @Autowired
+    private ParallelQueryExecutor parallelQueryExecutor;
+
+    @Autowired
+    private PageCache pageCache;
+
+    @Autowired
+    private ItemCatalog itemCatalog;
+
+    @Autowired
+    private ReadModel readModel;
+
+    @Autowired
+    private CacheInvalidationLog invalidationLog;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
     @Override
+    @Transactional(readOnly = true)
     public PageResponseDTO<OrderResponseDTO> getAllOrdersPaginated(int page, int size) {
         if (page < 1) {
             throw new IllegalArgumentException("Page number must be 1 or higher.");
         }
 
+        return pageCache.get(Listing.ORDER, page, size,
+                dto -> List.of(Listing.ORDER.key(dto.getOrderNo()), Listing.ITEM.key(dto.getItemId())),
+                () -> loadOrderPage(page, size));
+    }
+
+    private PageResponseDTO<OrderResponseDTO> loadOrderPage(int page, int size) {
         Pageable pageable = PageRequest.of(page - 1, size);
-        Page<Order> orderPage = orderRepository.findAllByIsDeletedFalse(pageable);
+        if (shardRouter.isEnabled()) {
+            List<OrderResponseDTO> dtoList = shardRouter.mergePage(orderRepository::findPageWithItem,
+                            Comparator.comparing(Order::getOrderNo), pageable).stream()
+                    .map(this::toDTO)
+                    .toList();
+            return PageResponseDTO.of(dtoList, page, size, shardRouter.sum(orderRepository::countByIsDeletedFalse));
+        }
+
+        CompletableFuture<List<Order>> content = parallelQueryExecutor.supply(() -> orderRepository.findPageWithItem(pageable));
+        CompletableFuture<Long> total = parallelQueryExecutor.supply(orderRepository::countByIsDeletedFalse);
 
-        List<OrderResponseDTO> dtoList = orderPage.getContent().stream()
+        List<OrderResponseDTO> dtoList = parallelQueryExecutor.join(content).stream()
                 .map(this::toDTO)
                 .toList();
 
-        return new PageResponseDTO<>(
-                dtoList,
-                orderPage.getNumber() + 1,
-                orderPage.getTotalPages(),
-                orderPage.getTotalElements(),
-                size
-        );
+        return PageResponseDTO.of(dtoList, page, size, parallelQueryExecutor.join(total));
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ShardedBy(value = "#orderNo", key = ShardKey.ORDER)
     public OrderResponseDTO getOrderByOrderNo(String orderNo) {
         if (orderNo == null || orderNo.isEmpty()) {
             throw new IllegalArgumentException("OrderNo must not be empty");
         }
 
-        Order order = orderRepository.findByOrderNo(orderNo);
-        if (order == null) {
-            throw new ResourceNotFoundException("Order not found with orderNo: " + orderNo);
+        if (readModel.isFresh()) {
+            OrderView view = readModel.order(orderNo);
+            if (view != null) {
+                readModel.served(true);
+                return toDTO(view);
+            }
         }
-
-        return toDTO(order);
+        readModel.served(false);
+
+        return singleFlight.execute("order:" + orderNo, () -> {
+            Order order = orderRepository.findByOrderNo(orderNo);
+            if (order == null) {
+                throw new ResourceNotFoundException("Order not found with orderNo: " + orderNo);
+            }
+            return toDTO(order);
+        }, OrderService::copyOf);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public MultiGetResponseDTO<OrderResponseDTO, String> getOrdersByOrderNos(List<String> orderNos) {
+        if (orderNos == null || orderNos.isEmpty()) {
+            throw new IllegalArgumentException("At least one orderNo is required");
+        }
+        Set<String> requested = new LinkedHashSet<>(orderNos);
+        if (requested.size() > MAX_MULTI_GET) {
+            throw new IllegalArgumentException("At most " + MAX_MULTI_GET + " orderNos can be requested at once");
+        }
+
+        // Orders the read model does not hold yet (or all of them, when it is stale) come from the database
+        Map<String, OrderResponseDTO> found = new HashMap<>();
+        List<String> notProjected = new ArrayList<>(requested);
+        if (readModel.isFresh()) {
+            notProjected.clear();
+            for (String orderNo : requested) {
+                OrderView view = readModel.order(orderNo);
+                if (view != null) {
+                    found.put(orderNo, toDTO(view));
+                } else {
+                    notProjected.add(orderNo);
+                }
+            }
+        }
+        readModel.served(notProjected.isEmpty());
+        if (!notProjected.isEmpty()) {
+            for (Order order : shardRouter.everyShard(() -> orderRepository.findWithItemByOrderNoIn(notProjected))) {
+                found.put(order.getOrderNo(), toDTO(order));
+            }
+        }
+
+        List<OrderResponseDTO> results = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        for (String orderNo : requested) {
+            OrderResponseDTO dto = found.get(orderNo);
+            if (dto == null) {
+                missing.add(orderNo);
+            } else {
+                results.add(dto);
+            }
+        }
+        return new MultiGetResponseDTO<>(results, missing);
+    }
 
     @Override
     @Transactional
+    @ShardedBy("#requestDTO?.itemId")
     public OrderResponseDTO createOrder(OrderRequestDTO requestDTO) {
         if (requestDTO == null) {
             throw new IllegalArgumentException("OrderRequestDTO must not be null");
         }
 
-        if (orderRepository.existsById(requestDTO.getOrderNo())) {
-            throw new IllegalArgumentException("Order with orderNo " + requestDTO.getOrderNo() + " already exists");
-        }
+        // An order that may end up as a backorder leaves CUSTOMER_ORDER's key space
+        boolean mayBackorder = Boolean.TRUE.equals(requestDTO.getBackorder()) && backorderService.isEnabled();
+        String orderNo = resolveOrderNo(requestDTO.getOrderNo(), mayBackorder);
 
-        Item item = itemRepository.findById(requestDTO.getItemId())
+        Item item = findPrimaryItem(requestDTO.getItemId())
                 .orElseThrow(() -> new IllegalArgumentException("Item not found with id: " + requestDTO.getItemId()));
 
-        validateStockAvailability(item.getId(), requestDTO.getQty());
+        try {
+            if (stockStore.tracks(item.getId())) {
+                if (!stockStore.tryWithdraw(item.getId(), requestDTO.getQty())) {
+                    throw insufficientStock(item.getId(), (int) stockStore.available(item.getId()), requestDTO.getQty());
+                }
+            } else {
+                validateStockAvailability(item.getId(), requestDTO.getQty());
+            }
+        } catch (InsufficientStockException e) {
+            if (!Boolean.TRUE.equals(requestDTO.getBackorder()) || !backorderService.isEnabled()) {
+                throw e;
+            }
+            Backorder backorder = backorderService.enqueue(orderNo, item, requestDTO.getQty());
+            orderNumberFilter.put(orderNo);
+            invalidationLog.orderChanged(orderNo);
+            return toBackorderedDTO(backorder);
+        }
+
+        return toDTO(saveOrder(orderNo, item, requestDTO.getQty()));
+    }
 
+    @Override
+    @Transactional(readOnly = true)
+    @ShardedBy(value = "#orderNo", key = ShardKey.ORDER)
+    public OrderStatusDTO getOrderStatus(String orderNo) {
+        if (orderNo == null || orderNo.isEmpty()) {
+            throw new IllegalArgumentException("OrderNo must not be empty");
+        }
+
+        Optional<Backorder> backorder = backorderRepository.findByOrderNo(orderNo);
+        OrderStatusDTO dto = new OrderStatusDTO();
+        dto.setOrderNo(orderNo);
+        if (backorder.isPresent()) {
+            Backorder found = backorder.get();
+            dto.setItemId(found.getItem().getId());
+            dto.setQty(found.getQty());
+            dto.setCreateDate(found.getCreateDate());
+            dto.setFulfilledDate(found.getFulfilledDate());
+            if (BackorderService.WAITING.equals(found.getStatus())) {
+                dto.setStatus(STATUS_BACKORDERED);
+                dto.setQueuePosition(backorderRepository.countWaitingAhead(found.getItem().getId(), found.getId()) + 1);
+            } else {
+                dto.setStatus(found.getStatus());
+            }
+            return dto;
+        }
+
+        Order order = orderRepository.findByOrderNo(orderNo);
+        if (order != null) {
+            dto.setStatus(STATUS_CREATED);
+            dto.setItemId(order.getItem().getId());
+            dto.setQty(order.getQty());
+            dto.setCreateDate(order.getCreateDate());
+            return dto;
+        }
+        Optional<OrderHeader> header = orderHeaderRepository.findById(orderNo);
+        if (header.isPresent()) {
+            dto.setStatus(STATUS_CREATED);
+            dto.setCreateDate(header.get().getCreateDate());
+            return dto;
+        }
+        throw new ResourceNotFoundException("Order not found with orderNo: " + orderNo);
+    }
+
+    /**
+     * Creates the order for stock that is already held by a reservation, so availability is not checked again.
+     */
+    @Override
+    @Transactional
+    @ShardedBy("#itemId")
+    public OrderResponseDTO createOrderFromReservation(String orderNo, Integer itemId, Integer qty) {
+        String resolvedOrderNo = resolveOrderNo(orderNo, false);
+        Item item = findPrimaryItem(itemId)
+                .orElseThrow(() -> new IllegalArgumentException("Item not found with id: " + itemId));
+        return toDTO(saveOrder(resolvedOrderNo, item, qty));
+    }
+
+    private Order saveOrder(String orderNo, Item item, Integer qty) {
         Order order = new Order();
-        order.setOrderNo(requestDTO.getOrderNo());
+        order.setOrderNo(orderNo);
         order.setItem(item);
-        order.setQty(requestDTO.getQty());
+        order.setQty(qty);
         order.setPrice(item.getPrice());
         order.setCreateBy("system");
         Order savedOrder = orderRepository.save(order);
+        orderNumberFilter.put(orderNo);
 
         Inventory inventory = new Inventory();
         inventory.setItem(item);
-        inventory.setQty(requestDTO.getQty());
+        inventory.setQty(qty);
         inventory.setType("W");
         inventory.setCreateBy("system");
         inventoryRepository.save(inventory);
-        return toDTO(savedOrder);
+        pageCache.invalidate(Listing.ORDER);
+        pageCache.invalidate(Listing.INVENTORY);
+        invalidationLog.orderChanged(orderNo);
+        invalidationLog.stockChanged(item.getId());
+        return savedOrder;
+    }
+
+    @Override
+    @Transactional
+    @ShardedBy("#requestDTO?.lines?.![itemId]")
+    public BasketOrderResponseDTO createBasketOrder(BasketOrderRequestDTO requestDTO) {
+        if (requestDTO == null || requestDTO.getLines() == null || requestDTO.getLines().isEmpty()) {
+            throw new IllegalArgumentException("Basket must contain at least one line");
+        }
+
+        String orderNo = resolveOrderNo(requestDTO.getOrderNo(), true);
+
+        // Combined per item, so an item on several lines is checked against its total qty
+        Map<Integer, Integer> qtyByItem = new LinkedHashMap<>();
+        for (BasketLineRequestDTO line : requestDTO.getLines()) {
+            qtyByItem.merge(line.getItemId(), line.getQty(), Integer::sum);
+        }
+
+        Map<Integer, Item> items = shardRouter.onPrimary(() -> itemRepository.findAllById(qtyByItem.keySet())).stream()
+                .collect(Collectors.toMap(Item::getId, Function.identity()));
+        for (Integer itemId : qtyByItem.keySet()) {
+            if (!items.containsKey(itemId)) {
+                throw new IllegalArgumentException("Item not found with id: " + itemId);
+            }
+        }
+
+        withdrawBasketStock(qtyByItem);
+
+        OrderHeader header = new OrderHeader(orderNo);
+        header.setCreateBy("system");
+        // Flushed first: the line rows below reference the header
+        OrderHeader savedHeader = orderHeaderRepository.saveAndFlush(header);
+        orderNumberFilter.put(orderNo);
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> lineRows = new ArrayList<>();
+        List<Object[]> withdrawalRows = new ArrayList<>();
+        List<BasketLineResponseDTO> lines = new ArrayList<>();
+        int lineNo = 1;
+        for (BasketLineRequestDTO line : requestDTO.getLines()) {
+            Item item = items.get(line.getItemId());
+            lineRows.add(new Object[]{orderNo, lineNo, item.getId(), line.getQty(), item.getPrice()});
+            withdrawalRows.add(new Object[]{item.getId(), line.getQty(), now});
+            lines.add(toLineDTO(lineNo, item, line.getQty(), item.getPrice()));
+            lineNo++;
+        }
+        jdbcTemplate.batchUpdate(INSERT_LINE_SQL, lineRows);
+        jdbcTemplate.batchUpdate(INSERT_WITHDRAWAL_SQL, withdrawalRows);
+        pageCache.invalidate(Listing.INVENTORY);
+        invalidationLog.orderChanged(orderNo);
+        invalidationLog.stockChanged(qtyByItem.keySet());
+
+        return toBasketDTO(savedHeader, lines);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @ShardedBy(value = "#orderNo", key = ShardKey.ORDER)
+    public BasketOrderResponseDTO getBasketOrder(String orderNo) {
+        if (orderNo == null || orderNo.isEmpty()) {
+            throw new IllegalArgumentException("OrderNo must not be empty");
+        }
+
+        OrderHeader header = orderHeaderRepository.findWithLinesByOrderNo(orderNo)
+                .orElseThrow(() -> new ResourceNotFoundException("Basket order not found with orderNo: " + orderNo));
+
+        List<BasketLineResponseDTO> lines = new ArrayList<>();
+        for (OrderLine line : header.getLines()) {
+            lines.add(toLineDTO(line.getLineNo(), line.getItem(), line.getQty(), line.getPrice()));
+        }
+        return toBasketDTO(header, lines);
     }
 
     @Override
     @Transactional
+    @RetryOnConflict(entity = "order")
+    @ShardedBy(value = "#requestDTO?.orderNo", key = ShardKey.ORDER)
     public OrderResponseDTO updateOrder(OrderUpdateRequestDTO requestDTO) {
         if (requestDTO.getOrderNo() == null || requestDTO.getOrderNo().isEmpty()) {
             throw new IllegalArgumentException("OrderNo must not be empty");
@@ -120,9 +444,17 @@ public class OrderService implements IOrderService {
             throw new ResourceNotFoundException("Order has been deleted");
         }
 
-        Item item = itemRepository.findById(requestDTO.getItemId())
+        if (requestDTO.getVersion() != null && !requestDTO.getVersion().equals(order.getVersion())) {
+            throw new StaleVersionException("Order", order.getOrderNo(), requestDTO.getVersion(), order.getVersion());
+        }
+
+        Item item = findPrimaryItem(requestDTO.getItemId())
                 .orElseThrow(() -> new IllegalArgumentException(
                         "Item not found with id: " + requestDTO.getItemId()));
+        if (shardRouter.shardOf(item.getId()) != shardRouter.shardOf(order.getItem().getId())) {
+            throw new IllegalArgumentException("Order " + order.getOrderNo() + " cannot be moved to item " +
+                    item.getId() + ", the item is stored on another shard");
+        }
 
         int qtyDifference = requestDTO.getQty() - order.getQty();
         if (qtyDifference > 0) {
@@ -135,12 +467,17 @@ public class OrderService implements IOrderService {
         order.setUpdateBy("system");
 
         Order updatedOrder = orderRepository.save(order);
+        pageCache.invalidateRow(Listing.ORDER.key(updatedOrder.getOrderNo()));
+        readModel.refreshOrder(updatedOrder.getOrderNo());
+        invalidationLog.orderChanged(updatedOrder.getOrderNo());
         return toDTO(updatedOrder);
     }
 
 
     @Override
     @Transactional
+    @RetryOnConflict(entity = "order")
+    @ShardedBy(value = "#orderNo", key = ShardKey.ORDER)
     public void deleteOrderByOrderNo(String orderNo) {
         if (orderNo == null || orderNo.isEmpty()) {
             throw new IllegalArgumentException("OrderNo must not be empty");
@@ -158,6 +495,9 @@ public class OrderService implements IOrderService {
         order.setDeleteDate(LocalDateTime.now());
 
         orderRepository.save(order);
+        pageCache.invalidate(Listing.ORDER);
+        readModel.refreshOrder(orderNo);
+        invalidationLog.orderChanged(orderNo);
     }
 
 
@@ -165,22 +505,182 @@ public class OrderService implements IOrderService {
         OrderResponseDTO dto = new OrderResponseDTO();
         dto.setOrderNo(order.getOrderNo());
         dto.setItemId(order.getItem().getId());
-        dto.setItemName(order.getItem().getName());
+        dto.setItemName(itemCatalog.nameOf(order.getItem()));
         dto.setQty(order.getQty());
         dto.setPrice(order.getPrice());
         dto.setCreateBy(order.getCreateBy());
         dto.setCreateDate(order.getCreateDate());
+        dto.setVersion(order.getVersion());
+        dto.setStatus(STATUS_CREATED);
+        return dto;
+    }
+
+    private static OrderResponseDTO copyOf(OrderResponseDTO source) {
+        OrderResponseDTO dto = new OrderResponseDTO();
+        dto.setOrderNo(source.getOrderNo());
+        dto.setItemId(source.getItemId());
+        dto.setItemName(source.getItemName());
+        dto.setQty(source.getQty());
+        dto.setPrice(source.getPrice());
+        dto.setCreateBy(source.getCreateBy());
+        dto.setCreateDate(source.getCreateDate());
+        dto.setVersion(source.getVersion());
+        dto.setStatus(source.getStatus());
+        return dto;
+    }
+
+    private OrderResponseDTO toDTO(OrderView order) {
+        CatalogItem item = itemCatalog.find(order.itemId());
+        OrderResponseDTO dto = new OrderResponseDTO();
+        dto.setOrderNo(order.orderNo());
+        dto.setItemId(order.itemId());
+        dto.setItemName(item != null ? item.name() : order.itemName());
+        dto.setQty(order.qty());
+        dto.setPrice(order.price());
+        dto.setCreateBy(order.createBy());
+        dto.setCreateDate(order.createDate());
+        dto.setVersion(order.version());
+        dto.setStatus(STATUS_CREATED);
+        return dto;
+    }
+
+    private OrderResponseDTO toBackorderedDTO(Backorder backorder) {
+        OrderResponseDTO dto = new OrderResponseDTO();
+        dto.setOrderNo(backorder.getOrderNo());
+        dto.setItemId(backorder.getItem().getId());
+        dto.setItemName(backorder.getItem().getName());
+        dto.setQty(backorder.getQty());
+        dto.setPrice(backorder.getItem().getPrice());
+        dto.setCreateBy(backorder.getCreateBy());
+        dto.setCreateDate(backorder.getCreateDate());
+        dto.setStatus(STATUS_BACKORDERED);
+        return dto;
+    }
+
+    /**
+     * Checks a client-supplied number, or allocates one. {@code outsideOrderKey} marks numbers that are not
+     * written to CUSTOMER_ORDER, whose primary key alone keeps single-line orders on one database unique.
+     */
+    private String resolveOrderNo(String orderNo, boolean outsideOrderKey) {
+        if (orderNo == null || orderNo.isBlank()) {
+            if (!orderNumberAllocator.isEnabled()) {
+                throw new IllegalArgumentException("OrderNo must not be empty");
+            }
+            // Allocated numbers are unique by construction, so no existence check is needed
+            return orderNumberAllocator.next();
+        }
+
+        if (orderNumberAllocator.isReserved(orderNo)) {
+            throw new IllegalArgumentException("OrderNo " + orderNo + " uses the prefix reserved for server-allocated numbers");
+        }
+        // Only probable duplicates need the round trip; the primary key or the claim below catches any that
+        // slip through
+        if (orderNumberFilter.mightContain(orderNo)) {
+            if (shardRouter.anyShard(() -> orderRepository.existsById(orderNo) || orderHeaderRepository.existsById(orderNo)
+                    || backorderRepository.existsByOrderNo(orderNo))) {
+                throw new IllegalArgumentException("Order with orderNo " + orderNo + " already exists");
+            }
+            orderNumberFilter.recordFalsePositive();
+        }
+        // The shared claim is only needed where no single primary key covers the number: across shards, and
+        // for basket orders and backorders, which live in tables of their own
+        if (outsideOrderKey || shardRouter.isEnabled()) {
+            orderNumberRegistry.claim(orderNo);
+        }
+        return orderNo;
+    }
+
+    /**
+     * Withdraws stock for every item in the basket. Items in the stock store are booked there; the rest
+     * are checked together with one grouped ledger query. Store bookings are undone if the order rolls back.
+     */
+    private void withdrawBasketStock(Map<Integer, Integer> qtyByItem) {
+        List<Integer> ledgerItems = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : qtyByItem.entrySet()) {
+            Integer itemId = entry.getKey();
+            if (!stockStore.tracks(itemId)) {
+                ledgerItems.add(itemId);
+            } else if (!stockStore.tryWithdraw(itemId, entry.getValue())) {
+                throw insufficientStock(itemId, (int) stockStore.available(itemId), entry.getValue());
+            }
+        }
+        if (ledgerItems.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, Integer> available = pendingStockTracker.readConsistent(() -> {
+            Map<Integer, Integer> result = new HashMap<>();
+            for (ItemStockTotals totals : inventoryRepository.sumStockByItemIds(ledgerItems)) {
+                result.put(totals.getItemId(), (int) (nullToZero(totals.getTopUp()) - nullToZero(totals.getWithdrawal())));
+            }
+            for (Integer itemId : ledgerItems) {
+                result.merge(itemId, pendingStockTracker.pendingQty(itemId, "T")
+                        - pendingStockTracker.pendingQty(itemId, "W"), Integer::sum);
+            }
+            return result;
+        });
+
+        for (Integer itemId : ledgerItems) {
+            int availableStock = available.getOrDefault(itemId, 0);
+            if (availableStock < qtyByItem.get(itemId)) {
+                throw insufficientStock(itemId, availableStock, qtyByItem.get(itemId));
+            }
+        }
+    }
+
+    private BasketOrderResponseDTO toBasketDTO(OrderHeader header, List<BasketLineResponseDTO> lines) {
+        BasketOrderResponseDTO dto = new BasketOrderResponseDTO();
+        dto.setOrderNo(header.getOrderNo());
+        dto.setLines(lines);
+        dto.setTotalPrice(lines.stream()
+                .map(line -> line.getPrice().multiply(BigDecimal.valueOf(line.getQty())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add));
+        dto.setCreateBy(header.getCreateBy());
+        dto.setCreateDate(header.getCreateDate());
+        dto.setVersion(header.getVersion());
+        return dto;
+    }
+
+    private BasketLineResponseDTO toLineDTO(Integer lineNo, Item item, Integer qty, BigDecimal price) {
+        BasketLineResponseDTO dto = new BasketLineResponseDTO();
+        dto.setLineNo(lineNo);
+        dto.setItemId(item.getId());
+        dto.setItemName(item.getName());
+        dto.setQty(qty);
+        dto.setPrice(price);
         return dto;
     }
 
     public void validateStockAvailability(Integer itemId, Integer requiredQty) {
-        int totalTopUp = inventoryRepository.sumQtyByItemIdAndType(itemId, "T").orElse(0);
-        int totalWithdrawal = inventoryRepository.sumQtyByItemIdAndType(itemId, "W").orElse(0);
+        if (stockStore.tracks(itemId)) {
+            int availableStock = (int) stockStore.available(itemId);
+            if (availableStock < requiredQty) {
+                throw insufficientStock(itemId, availableStock, requiredQty);
+            }
+            return;
+        }
+
+        int totalTopUp = pendingStockTracker.sum(itemId, "T", () -> shardRouter.forItem(itemId,
+                () -> inventoryRepository.sumQtyByItemIdAndType(itemId, "T").orElse(0)));
+        int totalWithdrawal = pendingStockTracker.sum(itemId, "W", () -> shardRouter.forItem(itemId,
+                () -> inventoryRepository.sumQtyByItemIdAndType(itemId, "W").orElse(0)));
         int availableStock = totalTopUp - totalWithdrawal;
 
         if (availableStock < requiredQty) {
-            throw new IllegalArgumentException("Insufficient stock for item ID " + itemId +
-                    ". Available: " + availableStock + ", Required: " + requiredQty);
+            throw insufficientStock(itemId, availableStock, requiredQty);
         }
     }
-}
\ No newline at end of file
+
+    private InsufficientStockException insufficientStock(Integer itemId, int availableStock, Integer requiredQty) {
+        return new InsufficientStockException(itemId, availableStock, requiredQty);
+    }
+
+    private static long nullToZero(Long value) {
+        return value == null ? 0L : value;
+    }
+
+    // Prices are read from shard 0; the item copies on the other shards may lag behind
+    private Optional<Item> findPrimaryItem(Integer itemId) {
+        return shardRouter.onPrimary(() -> itemRepository.findById(itemId));
+    }
+}
@@ -0,0 +1,303 @@
+package com.obssolution.service.impl;
+
+import com.obssolution.dto.admin.ReconciliationReportDTO;
+import com.obssolution.dto.admin.StockDriftDTO;
+import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.service.IReconciliationService;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compares the off-heap stock store against the INVENTORY ledger. The item ID space is split into
+ * ranges that are aggregated in parallel on a ForkJoinPool, each range query on its own connection.
+ */
+@Service
+public class ReconciliationService implements IReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReconciliationService.class);
+
+    private static final String RANGE_SUM_SQL =
+            "SELECT ITEM_ID, " +
+            "SUM(CASE WHEN TYPE = 'T' THEN QTY ELSE 0 END) AS TOP_UP, " +
+            "SUM(CASE WHEN TYPE = 'W' THEN QTY ELSE 0 END) AS WITHDRAWAL " +
+            "FROM INVENTORY WHERE ITEM_ID BETWEEN ? AND ? AND IS_DELETED = FALSE GROUP BY ITEM_ID";
+
+    private static final String MAX_ITEM_ID_SQL = "SELECT MAX(ITEM_ID) FROM INVENTORY";
+
+    private static final int MAX_JOBS_KEPT = 20;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PendingStockTracker pendingStockTracker;
+
+    @Autowired
+    private OffHeapStockStore stockStore;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${inventory.reconcile.range-size:10000}")
+    private int rangeSize;
+
+    @Value("${inventory.reconcile.parallelism:4}")
+    private int parallelism;
+
+    @Value("${inventory.reconcile.max-reported-drifts:1000}")
+    private int maxReportedDrifts;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicReference<Job> running = new AtomicReference<>();
+    private ForkJoinPool pool;
+
+    @PreDestroy
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Override
+    public ReconciliationReportDTO startReconciliation(boolean repair) {
+        if (!stockStore.isReady()) {
+            throw new IllegalStateException("Stock store is not enabled or not loaded; nothing to reconcile");
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), repair);
+        if (!running.compareAndSet(null, job)) {
+            throw new IllegalStateException("Reconciliation " + running.get().id + " is still running");
+        }
+        jobs.put(job.id, job);
+        evictOldJobs();
+
+        try {
+            int maxItemId = Math.max(
+                    shardRouter.perShard(() -> jdbcTemplate.queryForObject(MAX_ITEM_ID_SQL, Integer.class)).stream()
+                            .mapToInt(ReconciliationService::nullToZero).max().orElse(0),
+                    pendingStockTracker.snapshot().keySet().stream().mapToInt(Integer::intValue).max().orElse(0));
+            job.totalRanges = Math.max(1, (maxItemId + rangeSize - 1) / rangeSize);
+
+            pool().execute(() -> run(job, Math.max(maxItemId, 1)));
+        } catch (RuntimeException e) {
+            finish(job, "FAILED", e);
+            throw e;
+        }
+
+        log.info("Started stock reconciliation {} ({} ranges, repair: {})", job.id, job.totalRanges, repair);
+        return toDTO(job);
+    }
+
+    @Override
+    public ReconciliationReportDTO getReconciliation(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("Reconciliation job not found with id: " + jobId);
+        }
+        return toDTO(job);
+    }
+
+    private void run(Job job, int maxItemId) {
+        try {
+            new RangeTask(job, 1, maxItemId).invoke();
+            finish(job, "COMPLETED", null);
+            log.info("Stock reconciliation {} finished: {} items checked, {} drifted",
+                    job.id, job.itemsChecked.get(), job.driftCount.get());
+        } catch (RuntimeException e) {
+            log.error("Stock reconciliation {} failed: {}", job.id, e.getMessage(), e);
+            finish(job, "FAILED", e);
+        }
+    }
+
+    private void finish(Job job, String status, RuntimeException error) {
+        job.error = error == null ? null : error.getMessage();
+        job.finishedAt = LocalDateTime.now();
+        job.status = status;
+        running.compareAndSet(job, null);
+    }
+
+    private void reconcileRange(Job job, int from, int to) {
+        // The range query runs without the settle lock, so it never holds up pending movements being committed
+        // into the ledger. An item whose pending qty changes across the query may have been counted twice or
+        // not at all, so it is checked again on its own.
+        Map<Integer, int[]> pendingBefore = pendingIn(from, to);
+        Map<Integer, long[]> ledger = new HashMap<>();
+        // Every item lives on one shard, so the shards' rows never overlap
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shardRouter.onShard(shard, () -> jdbcTemplate.query(RANGE_SUM_SQL, rs -> {
+                ledger.put(rs.getInt("ITEM_ID"), new long[]{rs.getLong("TOP_UP"), rs.getLong("WITHDRAWAL")});
+            }, from, to));
+        }
+        Map<Integer, int[]> pendingAfter = pendingIn(from, to);
+        pendingAfter.forEach((itemId, qty) -> {
+            long[] total = ledger.computeIfAbsent(itemId, id -> new long[2]);
+            total[0] += qty[0];
+            total[1] += qty[1];
+        });
+
+        long checked = 0;
+        for (int itemId = from; itemId <= to; itemId++) {
+            if (!stockStore.tracks(itemId)) {
+                continue;
+            }
+            checked++;
+            long[] expected = ledger.getOrDefault(itemId, new long[2]);
+            boolean settling = !Arrays.equals(pendingBefore.get(itemId), pendingAfter.get(itemId));
+            if (!settling && matches(itemId, expected)) {
+                continue;
+            }
+
+            // A movement may have landed between the range query and the store read; check again on its own
+            expected = stockStore.ledgerTotals(itemId);
+            if (!matches(itemId, expected)) {
+                recordDrift(job, itemId, expected);
+            }
+        }
+        job.itemsChecked.addAndGet(checked);
+    }
+
+    private Map<Integer, int[]> pendingIn(int from, int to) {
+        Map<Integer, int[]> pending = pendingStockTracker.snapshot();
+        pending.keySet().removeIf(itemId -> itemId < from || itemId > to);
+        return pending;
+    }
+
+    // Movements of transactions still open are in the store but not yet in the ledger
+    private boolean matches(int itemId, long[] expected) {
+        return stockStore.topUp(itemId) - stockStore.unsettled(itemId, "T") == expected[0]
+                && stockStore.withdrawal(itemId) - stockStore.unsettled(itemId, "W") == expected[1];
+    }
+
+    private void recordDrift(Job job, int itemId, long[] expected) {
+        StockDriftDTO drift = new StockDriftDTO();
+        drift.setItemId(itemId);
+        drift.setLedgerTopUp(expected[0]);
+        drift.setLedgerWithdrawal(expected[1]);
+        drift.setStoredTopUp(stockStore.topUp(itemId));
+        drift.setStoredWithdrawal(stockStore.withdrawal(itemId));
+        drift.setRepaired(job.repair);
+
+        if (job.repair) {
+            stockStore.resync(itemId);
+        }
+        log.warn("Stock drift on item {}: ledger {}/{}, store {}/{}{}", itemId,
+                drift.getLedgerTopUp(), drift.getLedgerWithdrawal(),
+                drift.getStoredTopUp(), drift.getStoredWithdrawal(), job.repair ? " (repaired)" : "");
+
+        if (job.driftCount.incrementAndGet() <= maxReportedDrifts) {
+            job.drifts.add(drift);
+        }
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    private void evictOldJobs() {
+        while (jobs.size() > MAX_JOBS_KEPT) {
+            Job oldest = jobs.values().stream()
+                    .filter(j -> j.finishedAt != null)
+                    .min((a, b) -> a.startedAt.compareTo(b.startedAt))
+                    .orElse(null);
+            if (oldest == null) {
+                return;
+            }
+            jobs.remove(oldest.id);
+        }
+    }
+
+    private ReconciliationReportDTO toDTO(Job job) {
+        ReconciliationReportDTO dto = new ReconciliationReportDTO();
+        dto.setJobId(job.id);
+        dto.setStatus(job.status);
+        dto.setRepair(job.repair);
+        dto.setTotalRanges(job.totalRanges);
+        dto.setCompletedRanges(job.completedRanges.get());
+        dto.setItemsChecked(job.itemsChecked.get());
+        dto.setDriftCount(job.driftCount.get());
+        List<StockDriftDTO> drifts = new ArrayList<>(job.drifts);
+        drifts.sort((a, b) -> a.getItemId().compareTo(b.getItemId()));
+        dto.setDrifts(Collections.unmodifiableList(drifts));
+        dto.setStartedAt(job.startedAt);
+        dto.setFinishedAt(job.finishedAt);
+        dto.setError(job.error);
+        return dto;
+    }
+
+    private static int nullToZero(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private class RangeTask extends RecursiveAction {
+
+        private final Job job;
+        private final int from;
+        private final int to;
+
+        RangeTask(Job job, int from, int to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from + 1 <= rangeSize) {
+                reconcileRange(job, from, to);
+                job.completedRanges.incrementAndGet();
+                return;
+            }
+            // Split on a range boundary so progress counts whole ranges
+            int ranges = (to - from + rangeSize) / rangeSize;
+            int mid = from + (ranges / 2) * rangeSize - 1;
+            invokeAll(new RangeTask(job, from, mid), new RangeTask(job, mid + 1, to));
+        }
+    }
+
+    private static class Job {
+
+        private final String id;
+        private final boolean repair;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicInteger completedRanges = new AtomicInteger();
+        private final AtomicLong itemsChecked = new AtomicLong();
+        private final AtomicLong driftCount = new AtomicLong();
+        private final ConcurrentLinkedQueue<StockDriftDTO> drifts = new ConcurrentLinkedQueue<>();
+        private volatile int totalRanges;
+        private volatile String status = "RUNNING";
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        Job(String id, boolean repair) {
+            this.id = id;
+            this.repair = repair;
+        }
+    }
+}
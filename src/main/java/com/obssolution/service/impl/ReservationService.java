@@ -0,0 +1,419 @@
+package com.obssolution.service.impl;
+
+import com.obssolution.dto.order.OrderResponseDTO;
+import com.obssolution.dto.reservation.ReservationConfirmRequestDTO;
+import com.obssolution.dto.reservation.ReservationRequestDTO;
+import com.obssolution.dto.reservation.ReservationResponseDTO;
+import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.model.Item;
+import com.obssolution.model.StockReservation;
+import com.obssolution.repository.HeldReservation;
+import com.obssolution.repository.ItemRepository;
+import com.obssolution.repository.StockReservationRepository;
+import com.obssolution.service.IReservationService;
+import com.obssolution.shard.ShardKey;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.shard.ShardedBy;
+import com.obssolution.stock.HashedTimingWheel;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds stock for a limited time before it is turned into an order. A held quantity is recorded as a
+ * pending withdrawal in {@link PendingStockTracker} (and booked in the stock store), so every stock
+ * read counts it until the hold is confirmed, released or expires.
+ * <p>
+ * Expiry runs on a {@link HashedTimingWheel} advanced by a single thread, so an expiring hold costs
+ * O(1) and no timer or table scan exists per reservation. Holds still open are reloaded on startup.
+ */
+@Service
+public class ReservationService implements IReservationService, SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationService.class);
+
+    static final String HELD = "HELD";
+    static final String CONFIRMED = "CONFIRMED";
+    static final String RELEASED = "RELEASED";
+    static final String EXPIRED = "EXPIRED";
+
+    private static final String EXPIRE_SQL =
+            "UPDATE STOCK_RESERVATION SET STATUS = 'EXPIRED', UPDATE_BY = 'system', UPDATE_DATE = ?, " +
+            "VERSION = VERSION + 1 WHERE ID = ? AND STATUS = 'HELD'";
+    private static final String EXPIRE_STALE_SQL =
+            "UPDATE STOCK_RESERVATION SET STATUS = 'EXPIRED', UPDATE_BY = 'system', UPDATE_DATE = ?, " +
+            "VERSION = VERSION + 1 WHERE STATUS = 'HELD' AND EXPIRES_AT <= ?";
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    @Autowired
+    private ItemRepository itemRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private PendingStockTracker pendingStockTracker;
+
+    @Autowired
+    private OffHeapStockStore stockStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${inventory.reservation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.reservation.default-hold-seconds:300}")
+    private int defaultHoldSeconds;
+
+    @Value("${inventory.reservation.max-hold-seconds:1800}")
+    private int maxHoldSeconds;
+
+    @Value("${inventory.reservation.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${inventory.reservation.wheel-size:1024}")
+    private int wheelSize;
+
+    private final ConcurrentHashMap<String, Hold> holds = new ConcurrentHashMap<>();
+    private volatile HashedTimingWheel<Hold> wheel;
+    private ScheduledExecutorService ticker;
+    private Counter expiredCounter;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        initWheel(System.currentTimeMillis());
+        Gauge.builder("inventory.reservations.held", holds, ConcurrentHashMap::size)
+                .description("Stock reservations currently holding stock")
+                .register(meterRegistry);
+        expiredCounter = Counter.builder("inventory.reservations.expired")
+                .description("Stock reservations released by expiry")
+                .register(meterRegistry);
+
+        try {
+            reloadHeld();
+        } catch (RuntimeException e) {
+            log.error("Failed to reload open stock reservations: {}", e.getMessage(), e);
+        }
+
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reservation-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    void initWheel(long nowMs) {
+        wheel = new HashedTimingWheel<>(tickMs, wheelSize, nowMs);
+    }
+
+    private void reloadHeld() {
+        LocalDateTime now = LocalDateTime.now();
+        List<HeldReservation> held = shardRouter.everyShard(() -> reservationRepository.findHeld(now));
+        for (HeldReservation reservation : held) {
+            Hold hold = new Hold(reservation.getId(), reservation.getItemId(), reservation.getQty(),
+                    toMillis(reservation.getExpiresAt()));
+            holds.put(hold.id, hold);
+            pendingStockTracker.add(hold.itemId, "W", hold.qty);
+            // Callbacks run one after another: a store that is not loaded yet picks the hold up from the tracker
+            if (stockStore.isReady()) {
+                stockStore.add(hold.itemId, "W", hold.qty);
+            }
+            wheel.schedule(hold, hold.expiresAtMs);
+        }
+        long stale = shardRouter.sum(() -> (long) jdbcTemplate.update(EXPIRE_STALE_SQL, Timestamp.valueOf(now), Timestamp.valueOf(now)));
+        log.info("Reloaded {} open stock reservations ({} expired while stopped)", held.size(), stale);
+    }
+
+    @Override
+    @Transactional
+    @ShardedBy("#requestDTO?.itemId")
+    public ReservationResponseDTO reserve(ReservationRequestDTO requestDTO) {
+        requireEnabled();
+        if (requestDTO == null) {
+            throw new IllegalArgumentException("ReservationRequestDTO must not be null");
+        }
+
+        int holdSeconds = requestDTO.getHoldSeconds() == null ? defaultHoldSeconds : requestDTO.getHoldSeconds();
+        if (holdSeconds < 1 || holdSeconds > maxHoldSeconds) {
+            throw new IllegalArgumentException("Hold time must be between 1 and " + maxHoldSeconds + " seconds");
+        }
+
+        Item item = findPrimaryItem(requestDTO.getItemId())
+                .orElseThrow(() -> new IllegalArgumentException("Item not found with id: " + requestDTO.getItemId()));
+        int qty = requestDTO.getQty();
+
+        if (stockStore.tracks(item.getId())) {
+            if (!stockStore.tryWithdraw(item.getId(), qty)) {
+                throw new IllegalArgumentException("Insufficient stock for item ID " + item.getId() +
+                        ". Available: " + stockStore.available(item.getId()) + ", Required: " + qty);
+            }
+        } else {
+            orderService.validateStockAvailability(item.getId(), qty);
+        }
+
+        Hold hold = new Hold(UUID.randomUUID().toString(), item.getId(), qty,
+                System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(holdSeconds));
+
+        StockReservation reservation = new StockReservation();
+        reservation.setId(hold.id);
+        reservation.setItem(item);
+        reservation.setQty(qty);
+        reservation.setStatus(HELD);
+        reservation.setExpiresAt(toDateTime(hold.expiresAtMs));
+        reservation.setCreateBy("system");
+        reservationRepository.save(reservation);
+
+        pendingStockTracker.add(item.getId(), "W", qty);
+        afterTransaction(() -> {
+            holds.put(hold.id, hold);
+            wheel.schedule(hold, hold.expiresAtMs);
+        }, () -> pendingStockTracker.add(hold.itemId, "W", -hold.qty));
+
+        return toDTO(hold, HELD, null);
+    }
+
+    @Override
+    @Transactional
+    @ShardedBy(value = "#reservationId", key = ShardKey.RESERVATION)
+    public ReservationResponseDTO confirm(String reservationId, ReservationConfirmRequestDTO requestDTO) {
+        Hold hold = claim(reservationId, CONFIRMED);
+        afterTransaction(() -> holds.remove(hold.id, hold), () -> reopen(hold));
+
+        OrderResponseDTO order = orderService.createOrderFromReservation(
+                requestDTO == null ? null : requestDTO.getOrderNo(), hold.itemId, hold.qty);
+        markFinished(hold, CONFIRMED, order.getOrderNo());
+        // The order's ledger row carries the withdrawal from now on
+        pendingStockTracker.releaseOnCommit(hold.itemId, "W", hold.qty);
+
+        log.info("Reservation {} confirmed as order {}", hold.id, order.getOrderNo());
+        return toDTO(hold, CONFIRMED, order.getOrderNo());
+    }
+
+    @Override
+    @Transactional
+    @ShardedBy(value = "#reservationId", key = ShardKey.RESERVATION)
+    public ReservationResponseDTO release(String reservationId) {
+        Hold hold = claim(reservationId, RELEASED);
+        afterTransaction(() -> {
+            holds.remove(hold.id, hold);
+            returnStock(hold);
+        }, () -> reopen(hold));
+
+        markFinished(hold, RELEASED, null);
+        return toDTO(hold, RELEASED, null);
+    }
+
+    @Override
+    @ShardedBy(value = "#reservationId", key = ShardKey.RESERVATION)
+    public ReservationResponseDTO getReservation(String reservationId) {
+        Hold hold = holds.get(reservationId);
+        if (hold != null) {
+            return toDTO(hold, hold.status.get(), null);
+        }
+
+        StockReservation reservation = reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new ResourceNotFoundException("Reservation not found with id: " + reservationId));
+        ReservationResponseDTO dto = new ReservationResponseDTO();
+        dto.setReservationId(reservation.getId());
+        dto.setItemId(reservation.getItem().getId());
+        dto.setQty(reservation.getQty());
+        dto.setStatus(reservation.getStatus());
+        dto.setExpiresAt(reservation.getExpiresAt());
+        dto.setOrderNo(reservation.getOrderNo());
+        return dto;
+    }
+
+    private void tick() {
+        try {
+            expireDue(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            log.error("Reservation expiry tick failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void expireDue(long nowMs) {
+        List<Hold> expired = new ArrayList<>();
+        wheel.advance(nowMs, hold -> {
+            // Confirmed or released holds are still in the wheel; they lose this race and are skipped
+            if (hold.status.compareAndSet(HELD, EXPIRED)) {
+                expired.add(hold);
+            }
+        });
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = new Timestamp(nowMs);
+        shardRouter.groupByShard(expired, hold -> hold.itemId).forEach((shard, holdsOnShard) -> {
+            try {
+                shardRouter.onShard(shard, () -> new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(EXPIRE_SQL, holdsOnShard.stream()
+                                .map(hold -> new Object[]{now, hold.id})
+                                .toList())));
+            } catch (RuntimeException e) {
+                log.error("Failed to expire {} stock reservations, retrying on the next tick: {}",
+                        holdsOnShard.size(), e.getMessage(), e);
+                holdsOnShard.forEach(this::reopen);
+                return;
+            }
+            // The batch has committed, so the rows say EXPIRED before the stock is handed back
+            holdsOnShard.forEach(hold -> {
+                holds.remove(hold.id, hold);
+                returnStock(hold);
+            });
+            if (expiredCounter != null) {
+                expiredCounter.increment(holdsOnShard.size());
+            }
+            log.info("Expired {} stock reservations", holdsOnShard.size());
+        });
+    }
+
+    private Hold claim(String reservationId, String status) {
+        requireEnabled();
+        Hold hold = holds.get(reservationId);
+        if (hold == null) {
+            StockReservation reservation = reservationRepository.findById(reservationId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Reservation not found with id: " + reservationId));
+            throw new IllegalStateException("Reservation " + reservationId + " is " + reservation.getStatus());
+        }
+        if (!hold.status.compareAndSet(HELD, status)) {
+            throw new IllegalStateException("Reservation " + reservationId + " is " + hold.status.get());
+        }
+        return hold;
+    }
+
+    private void markFinished(Hold hold, String status, String orderNo) {
+        if (reservationRepository.finish(hold.id, status, orderNo) == 0) {
+            throw new IllegalStateException("Reservation " + hold.id + " is no longer held");
+        }
+    }
+
+    /**
+     * Puts a hold back after the transaction that tried to finish it rolled back. If it is already
+     * past its deadline the next tick expires it.
+     */
+    private void reopen(Hold hold) {
+        hold.status.set(HELD);
+        wheel.schedule(hold, hold.expiresAtMs);
+    }
+
+    // Store first: a resync in between then sees the hold as still taken, never as returned twice
+    private void returnStock(Hold hold) {
+        stockStore.add(hold.itemId, "W", -hold.qty);
+        pendingStockTracker.add(hold.itemId, "W", -hold.qty);
+    }
+
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new IllegalStateException("Stock reservations are disabled");
+        }
+    }
+
+    private static void afterTransaction(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+
+    private ReservationResponseDTO toDTO(Hold hold, String status, String orderNo) {
+        ReservationResponseDTO dto = new ReservationResponseDTO();
+        dto.setReservationId(hold.id);
+        dto.setItemId(hold.itemId);
+        dto.setQty(hold.qty);
+        dto.setStatus(status);
+        dto.setExpiresAt(toDateTime(hold.expiresAtMs));
+        dto.setOrderNo(orderNo);
+        return dto;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private Optional<Item> findPrimaryItem(Integer itemId) {
+        return shardRouter.onPrimary(() -> itemRepository.findById(itemId));
+    }
+
+    static final class Hold {
+
+        private final String id;
+        private final Integer itemId;
+        private final int qty;
+        private final long expiresAtMs;
+        private final AtomicReference<String> status = new AtomicReference<>(HELD);
+
+        Hold(String id, Integer itemId, int qty, long expiresAtMs) {
+            this.id = id;
+            this.itemId = itemId;
+            this.qty = qty;
+            this.expiresAtMs = expiresAtMs;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.obssolution.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * With database sharding enabled, puts the application DataSource behind a {@link ShardRoutingDataSource}:
+ * it stays shard 0, and every URL in inventory.db-sharding.urls gets a pool as shard 1, 2, ... Runs before
+ * the replica and deadline wrappers, so it ends up innermost and a lazily fetched connection is routed by
+ * the shard bound when the transaction runs its first statement.
+ */
+@Component
+public class ShardDataSourcePostProcessor implements BeanPostProcessor, EnvironmentAware, PriorityOrdered, DisposableBean {
+
+    private Environment environment;
+    private final List<HikariDataSource> shardPools = new ArrayList<>();
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource primary) || bean instanceof ShardRoutingDataSource
+                || !environment.getProperty("inventory.db-sharding.enabled", Boolean.class, false)) {
+            return bean;
+        }
+        String[] urls = environment.getProperty("inventory.db-sharding.urls", String[].class, new String[0]);
+        if (urls.length == 0) {
+            throw new IllegalStateException("inventory.db-sharding.urls must list the other shards when inventory.db-sharding.enabled is true");
+        }
+
+        Map<Object, Object> shards = new HashMap<>();
+        shards.put(ShardRoutingDataSource.PRIMARY, primary);
+        for (int i = 0; i < urls.length; i++) {
+            shards.put(i + 1, shardPool(i + 1, urls[i].trim()));
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(shards);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    // Connects on first use, like the replica pool, so an unreachable shard does not fail startup
+    private HikariDataSource shardPool(int shard, String url) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("inventory-shard-" + shard);
+        pool.setJdbcUrl(url);
+        pool.setUsername(environment.getProperty("inventory.db-sharding.username",
+                environment.getProperty("spring.datasource.username", "")));
+        pool.setPassword(environment.getProperty("inventory.db-sharding.password",
+                environment.getProperty("spring.datasource.password", "")));
+        String driver = environment.getProperty("spring.datasource.driver-class-name");
+        if (driver != null) {
+            pool.setDriverClassName(driver);
+        }
+        pool.setMaximumPoolSize(environment.getProperty("inventory.db-sharding.pool-size", Integer.class, 6));
+        shardPools.add(pool);
+        return pool;
+    }
+
+    @Override
+    public void destroy() {
+        shardPools.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,27 @@
+package com.obssolution.shard;
+
+/**
+ * What the key of a {@link ShardedBy} method identifies, and so how its shard is found.
+ */
+public enum ShardKey {
+
+    /**
+     * An item id, or a collection of item ids that must all live on one shard; mapped by hash.
+     */
+    ITEM,
+
+    /**
+     * An INVENTORY row id; looked up on the shards.
+     */
+    INVENTORY,
+
+    /**
+     * An order number of an order, basket order or backorder; looked up on the shards.
+     */
+    ORDER,
+
+    /**
+     * A stock reservation id; looked up on the shards.
+     */
+    RESERVATION
+}
@@ -0,0 +1,363 @@
+package com.obssolution.shard;
+
+import com.obssolution.concurrency.ParallelQueryExecutor;
+import com.obssolution.model.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Maps item ids to database shards and runs work on them. INVENTORY, CUSTOMER_ORDER, baskets, backorders and
+ * reservations of an item live on the item's shard, so everything done for one item stays in one shard's
+ * transaction. ITEM and the global tables (sequences, idempotency keys) live on shard 0; ITEM is mirrored
+ * to the other shards for their foreign keys and joins. With sharding disabled every call runs in place.
+ */
+@Component
+public class ShardRouter implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+
+    private static final String MAX_INVENTORY_ID_SQL = "SELECT COALESCE(MAX(ID), 0) FROM INVENTORY";
+    private static final String INVENTORY_ID_INCREMENT_SQL = "SELECT IDENTITY_INCREMENT FROM INFORMATION_SCHEMA.COLUMNS " +
+            "WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = 'INVENTORY' AND COLUMN_NAME = 'ID'";
+    private static final String ITEM_COLUMNS = "ID, NAME, PRICE, CREATE_BY, CREATE_DATE, UPDATE_BY, UPDATE_DATE, " +
+            "DELETE_BY, DELETE_DATE, IS_DELETED, VERSION";
+    private static final String ALL_ITEMS_SQL = "SELECT " + ITEM_COLUMNS + " FROM ITEM ORDER BY ID";
+    private static final String ITEM_SQL = "SELECT " + ITEM_COLUMNS + " FROM ITEM WHERE ID = ?";
+    private static final String DELETE_ITEM_SQL = "DELETE FROM ITEM WHERE ID = ?";
+    private static final String MIRROR_ITEM_SQL = "MERGE INTO ITEM (" + ITEM_COLUMNS + ") KEY (ID) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ParallelQueryExecutor parallelQueryExecutor;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${inventory.db-sharding.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.db-sharding.urls:}")
+    private String[] urls = new String[0];
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        log.info("Database sharding enabled across {} shards", shardCount());
+        // Overlapping inventory ids or missing item copies would corrupt writes, so a failure here stops startup
+        alignInventoryIds();
+        mirrorAllItems();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int shardCount() {
+        return enabled ? urls.length + 1 : 1;
+    }
+
+    public int shardOf(Integer itemId) {
+        if (!enabled || itemId == null) {
+            return ShardRoutingDataSource.PRIMARY;
+        }
+        // Spread sequential ids before taking the modulus
+        int hash = itemId * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shardCount());
+    }
+
+    /**
+     * Runs the work with connections of the given shard. Inside a transaction on another shard it runs in a
+     * transaction of its own, since the caller's is bound to its shard's connection.
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (!enabled || shard == ShardRoutingDataSource.currentOrPrimary()) {
+            return work.get();
+        }
+        return isolated(shard, work);
+    }
+
+    public void onShard(int shard, Runnable work) {
+        onShard(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T forItem(Integer itemId, Supplier<T> work) {
+        return onShard(shardOf(itemId), work);
+    }
+
+    public void forItem(Integer itemId, Runnable work) {
+        onShard(shardOf(itemId), work);
+    }
+
+    public <T> T onPrimary(Supplier<T> work) {
+        return onShard(ShardRoutingDataSource.PRIMARY, work);
+    }
+
+    /**
+     * Runs the query on every shard in parallel and returns the results in shard order.
+     */
+    public <T> List<T> perShard(Supplier<T> query) {
+        if (!enabled) {
+            List<T> result = new ArrayList<>(1);
+            result.add(query.get());
+            return result;
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (int shard = 0; shard < shardCount(); shard++) {
+            int target = shard;
+            futures.add(parallelQueryExecutor.supply(() -> isolated(target, query)));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(parallelQueryExecutor.join(future));
+        }
+        return results;
+    }
+
+    public <T> List<T> everyShard(Supplier<? extends Collection<T>> query) {
+        if (!enabled) {
+            return new ArrayList<>(query.get());
+        }
+        List<T> rows = new ArrayList<>();
+        perShard(query).forEach(rows::addAll);
+        return rows;
+    }
+
+    public long sum(Supplier<Long> count) {
+        return perShard(count).stream().mapToLong(Long::longValue).sum();
+    }
+
+    public boolean anyShard(BooleanSupplier probe) {
+        return perShard(probe::getAsBoolean).contains(true);
+    }
+
+    /**
+     * Finds the shard holding a row that cannot be mapped from its key, such as an order or inventory row
+     * looked up by its own id. Rows found nowhere are reported on shard 0.
+     */
+    public int locate(BooleanSupplier probe) {
+        if (!enabled) {
+            return ShardRoutingDataSource.PRIMARY;
+        }
+        int shard = perShard(probe::getAsBoolean).indexOf(true);
+        return shard < 0 ? ShardRoutingDataSource.PRIMARY : shard;
+    }
+
+    public <T> Map<Integer, List<T>> groupByShard(Collection<T> values, Function<T, Integer> itemIdOf) {
+        Map<Integer, List<T>> byShard = new TreeMap<>();
+        for (T value : values) {
+            byShard.computeIfAbsent(shardOf(itemIdOf.apply(value)), shard -> new ArrayList<>()).add(value);
+        }
+        return byShard;
+    }
+
+    /**
+     * Runs a query over a set of items with one call per shard holding some of them, in parallel.
+     */
+    public <T> List<T> forItems(Collection<Integer> itemIds, Function<List<Integer>, List<T>> query) {
+        if (!enabled) {
+            return query.apply(new ArrayList<>(itemIds));
+        }
+        List<CompletableFuture<List<T>>> futures = new ArrayList<>();
+        groupByShard(itemIds, Function.identity()).forEach((shard, ids) ->
+                futures.add(parallelQueryExecutor.supply(() -> isolated(shard, () -> query.apply(ids)))));
+        List<T> rows = new ArrayList<>();
+        for (CompletableFuture<List<T>> future : futures) {
+            rows.addAll(parallelQueryExecutor.join(future));
+        }
+        return rows;
+    }
+
+    /**
+     * Returns one page of a listing spread over all shards. Each shard returns its rows up to the end of the
+     * page in the listing's order; they are merge-sorted and the page is cut from the merged run.
+     */
+    public <T> List<T> mergePage(Function<Pageable, List<T>> query, Comparator<? super T> order, Pageable pageable) {
+        if (!enabled) {
+            return query.apply(pageable);
+        }
+        int offset = (int) pageable.getOffset();
+        Pageable head = PageRequest.of(0, offset + pageable.getPageSize());
+        return merge(perShard(() -> query.apply(head)), order, offset, pageable.getPageSize());
+    }
+
+    static <T> List<T> merge(List<List<T>> sortedRuns, Comparator<? super T> order, int skip, int limit) {
+        PriorityQueue<Cursor<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.head(), b.head()));
+        for (List<T> run : sortedRuns) {
+            if (!run.isEmpty()) {
+                heads.add(new Cursor<>(run));
+            }
+        }
+        List<T> page = new ArrayList<>(limit);
+        for (int position = 0; !heads.isEmpty() && page.size() < limit; position++) {
+            Cursor<T> cursor = heads.poll();
+            if (position >= skip) {
+                page.add(cursor.head());
+            }
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Copies an item row written on shard 0 to the other shards. Called inside the item's transaction: each copy
+     * commits on its own, and a copy that fails fails the item write. If the item write rolls back, the copies
+     * are put back in line with shard 0. The copies only serve foreign keys and joins; item validity and prices
+     * are read from shard 0.
+     */
+    public void mirrorItem(Item item) {
+        if (!enabled) {
+            return;
+        }
+        Object[] row = {item.getId(), item.getName(), item.getPrice(), item.getCreateBy(),
+                timestamp(item.getCreateDate()), item.getUpdateBy(), timestamp(item.getUpdateDate()),
+                item.getDeleteBy(), timestamp(item.getDeleteDate()), Boolean.TRUE.equals(item.getIsDeleted()),
+                item.getVersion()};
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        restoreMirror(item.getId());
+                    }
+                }
+            });
+        }
+        for (int shard = 1; shard < shardCount(); shard++) {
+            onShard(shard, () -> jdbcTemplate.update(MIRROR_ITEM_SQL, row));
+        }
+    }
+
+    private void restoreMirror(Integer itemId) {
+        // The rolled back transaction is still bound to the thread here, so the restore runs in one of its own
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transaction.executeWithoutResult(status -> {
+                List<Object[]> rows = onPrimary(() -> jdbcTemplate.query(ITEM_SQL, ShardRouter::itemRow, itemId));
+                for (int shard = 1; shard < shardCount(); shard++) {
+                    onShard(shard, () -> rows.isEmpty()
+                            ? jdbcTemplate.update(DELETE_ITEM_SQL, itemId)
+                            : jdbcTemplate.update(MIRROR_ITEM_SQL, rows.get(0)));
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to restore the copies of item {} after a rolled back write, they are repaired at the next startup: {}",
+                    itemId, e.getMessage(), e);
+        }
+    }
+
+    private void mirrorAllItems() {
+        List<Object[]> items = onPrimary(() -> jdbcTemplate.query(ALL_ITEMS_SQL, ShardRouter::itemRow));
+        for (int shard = 1; shard < shardCount(); shard++) {
+            onShard(shard, () -> jdbcTemplate.batchUpdate(MIRROR_ITEM_SQL, items));
+        }
+        log.info("Mirrored {} items to {} shards", items.size(), shardCount() - 1);
+    }
+
+    /**
+     * Inventory rows are looked up by id without knowing their item, so ids must not repeat across shards.
+     * Shard i hands out ids i + 1, i + 1 + n, i + 1 + 2n, ... above the highest id in use anywhere. Already
+     * aligned shards are left alone.
+     */
+    private void alignInventoryIds() {
+        int shards = shardCount();
+        List<Long> increments = perShard(() -> jdbcTemplate.queryForObject(INVENTORY_ID_INCREMENT_SQL, Long.class));
+        if (increments.stream().allMatch(increment -> increment != null && increment == shards)) {
+            return;
+        }
+        long maxId = perShard(() -> jdbcTemplate.queryForObject(MAX_INVENTORY_ID_SQL, Long.class)).stream()
+                .mapToLong(Long::longValue).max().orElse(0);
+        for (int shard = 0; shard < shards; shard++) {
+            long start = maxId + 1 + Math.floorMod(shard + 1 - (maxId + 1), shards);
+            onShard(shard, () -> {
+                jdbcTemplate.execute("ALTER TABLE INVENTORY ALTER COLUMN ID RESTART WITH " + start);
+                jdbcTemplate.execute("ALTER TABLE INVENTORY ALTER COLUMN ID SET INCREMENT BY " + shards);
+            });
+        }
+        log.info("Aligned INVENTORY ids of {} shards above id {}", shards, maxId);
+    }
+
+    private <T> T isolated(int shard, Supplier<T> work) {
+        Integer previous = ShardRoutingDataSource.current();
+        ShardRoutingDataSource.bind(shard);
+        try {
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                return work.get();
+            }
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transaction.setReadOnly(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+            return transaction.execute(status -> work.get());
+        } finally {
+            ShardRoutingDataSource.bind(previous);
+        }
+    }
+
+    private static Object[] itemRow(ResultSet rs, int rowNum) throws SQLException {
+        Object[] row = new Object[11];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = rs.getObject(i + 1);
+        }
+        return row;
+    }
+
+    private static Timestamp timestamp(LocalDateTime dateTime) {
+        return dateTime == null ? null : Timestamp.valueOf(dateTime);
+    }
+
+    private static final class Cursor<T> {
+
+        private final List<T> run;
+        private int index;
+
+        Cursor(List<T> run) {
+            this.run = run;
+        }
+
+        T head() {
+            return run.get(index);
+        }
+
+        boolean advance() {
+            return ++index < run.size();
+        }
+    }
+}
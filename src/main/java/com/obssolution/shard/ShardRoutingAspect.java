@@ -0,0 +1,120 @@
+package com.obssolution.shard;
+
+import com.obssolution.repository.BackorderRepository;
+import com.obssolution.repository.CustomerOrderRepository;
+import com.obssolution.repository.InventoryRepository;
+import com.obssolution.repository.OrderHeaderRepository;
+import com.obssolution.repository.StockReservationRepository;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.Ordered;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.Order;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Binds {@link ShardedBy} methods to the shard of their key. Ordered after the optimistic retry, so every
+ * attempt is routed afresh, and ahead of the transaction interceptor, so the transaction's connection
+ * comes from that shard.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 200)
+public class ShardRoutingAspect {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+    private static final ParameterNameDiscoverer PARAMETER_NAMES = new DefaultParameterNameDiscoverer();
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private CustomerOrderRepository orderRepository;
+
+    @Autowired
+    private OrderHeaderRepository orderHeaderRepository;
+
+    @Autowired
+    private BackorderRepository backorderRepository;
+
+    @Autowired
+    private StockReservationRepository reservationRepository;
+
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    @Around("@annotation(shardedBy)")
+    public Object route(ProceedingJoinPoint joinPoint, ShardedBy shardedBy) throws Throwable {
+        if (!shardRouter.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        Object key = evaluate(joinPoint, shardedBy.value());
+        Integer shard = key == null ? null : shardOf(shardedBy.key(), key);
+        if (shard == null || shard == ShardRoutingDataSource.currentOrPrimary()) {
+            return joinPoint.proceed();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException(joinPoint.getSignature().toShortString() + " needs shard " + shard +
+                    " but runs inside a transaction on shard " + ShardRoutingDataSource.currentOrPrimary());
+        }
+
+        Integer previous = ShardRoutingDataSource.current();
+        ShardRoutingDataSource.bind(shard);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ShardRoutingDataSource.bind(previous);
+        }
+    }
+
+    private Object evaluate(ProceedingJoinPoint joinPoint, String expression) {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(
+                null, signature.getMethod(), joinPoint.getArgs(), PARAMETER_NAMES);
+        return expressions.computeIfAbsent(expression, PARSER::parseExpression).getValue(context);
+    }
+
+    private Integer shardOf(ShardKey type, Object key) {
+        return switch (type) {
+            case ITEM -> itemShard(key);
+            case INVENTORY -> shardRouter.locate(() -> inventoryRepository.existsById((Integer) key));
+            case ORDER -> {
+                String orderNo = (String) key;
+                yield shardRouter.locate(() -> orderRepository.existsById(orderNo)
+                        || orderHeaderRepository.existsById(orderNo) || backorderRepository.existsByOrderNo(orderNo));
+            }
+            case RESERVATION -> shardRouter.locate(() -> reservationRepository.existsById((String) key));
+        };
+    }
+
+    private Integer itemShard(Object key) {
+        if (!(key instanceof Collection<?> itemIds)) {
+            return shardRouter.shardOf((Integer) key);
+        }
+        Set<Integer> shards = itemIds.stream()
+                .filter(Objects::nonNull)
+                .map(itemId -> shardRouter.shardOf((Integer) itemId))
+                .collect(Collectors.toSet());
+        if (shards.size() > 1) {
+            throw new IllegalArgumentException("Items " + itemIds + " are stored on different shards and cannot be written together");
+        }
+        return shards.isEmpty() ? null : shards.iterator().next();
+    }
+}
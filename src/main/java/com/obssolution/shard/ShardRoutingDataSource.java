@@ -0,0 +1,40 @@
+package com.obssolution.shard;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out connections of the database shard the current thread is bound to. Unbound threads use shard
+ * 0, the primary database, which also holds the tables that are not sharded.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final int PRIMARY = 0;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    public static void bind(Integer shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    public static int currentOrPrimary() {
+        Integer shard = CURRENT.get();
+        return shard == null ? PRIMARY : shard;
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return currentOrPrimary();
+    }
+}
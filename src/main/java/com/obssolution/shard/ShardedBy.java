@@ -0,0 +1,23 @@
+package com.obssolution.shard;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a service method, and the transaction it starts, on the database shard of the key it works on.
+ * The binding wraps the transaction, so each method call stays on one shard.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardedBy {
+
+    /**
+     * SpEL expression over the method parameters giving the key, e.g. {@code #requestDTO?.itemId}. A null
+     * key leaves the call on the current shard, so the method's own validation reports it.
+     */
+    String value();
+
+    ShardKey key() default ShardKey.ITEM;
+}
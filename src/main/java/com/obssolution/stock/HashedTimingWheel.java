@@ -0,0 +1,76 @@
+package com.obssolution.stock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: a ring of buckets, one per tick, where a task lands in the bucket of the tick
+ * its deadline falls in. Scheduling is a single queue append and each tick only visits its own bucket,
+ * so the cost per task is O(1) regardless of how many tasks are waiting. Deadlines further out than
+ * one rotation simply stay in their bucket until the rotation they are due in.
+ * <p>
+ * There is no cancel: callers mark the task as done themselves and ignore it when it comes due.
+ * {@link #advance} must only be called from one thread at a time.
+ */
+public final class HashedTimingWheel<T> {
+
+    private final long tickMs;
+    private final int mask;
+    private final Queue<Timeout<T>>[] buckets;
+    private final long startMs;
+    private volatile long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.startMs = startMs;
+    }
+
+    public void schedule(T task, long deadlineMs) {
+        long tick = Math.floorDiv(deadlineMs - startMs + tickMs - 1, tickMs);
+        // A tick that has already been processed would only be seen again one full rotation later
+        tick = Math.max(tick, currentTick + 1);
+        buckets[(int) (tick & mask)].add(new Timeout<>(task, deadlineMs));
+    }
+
+    /**
+     * Processes every tick up to {@code nowMs}, handing tasks whose deadline has passed to {@code onExpired}.
+     */
+    public void advance(long nowMs, Consumer<T> onExpired) {
+        long targetTick = Math.floorDiv(nowMs - startMs, tickMs);
+        List<Timeout<T>> notYetDue = new ArrayList<>();
+        while (currentTick <= targetTick) {
+            Queue<Timeout<T>> bucket = buckets[(int) (currentTick & mask)];
+            Timeout<T> timeout;
+            while ((timeout = bucket.poll()) != null) {
+                if (timeout.deadlineMs() <= nowMs) {
+                    onExpired.accept(timeout.task());
+                } else {
+                    notYetDue.add(timeout);
+                }
+            }
+            bucket.addAll(notYetDue);
+            notYetDue.clear();
+            currentTick++;
+        }
+    }
+
+    public int wheelSize() {
+        return buckets.length;
+    }
+
+    private record Timeout<T>(T task, long deadlineMs) {
+    }
+}
@@ -0,0 +1,475 @@
+package com.obssolution.stock;
+
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.Listing;
+import com.obssolution.cache.PageCache;
+import com.obssolution.shard.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped journal of stock movements used as the write path when
+ * {@code inventory.persistence.mode=journal}. Appends return once the record has been fsynced
+ * (group commit); a background thread replays durable records into INVENTORY with batched inserts.
+ *
+ * <p>Layout: a 64 byte header (magic, applied position, applied sequence) followed by fixed 32 byte
+ * records (seq, itemId, qty, type, timestamp, crc32). A record is only valid if its checksum matches and
+ * its sequence follows the previous one, so torn writes and records from an earlier lap are ignored.
+ */
+@Component
+public class InventoryJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryJournal.class);
+
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 32;
+    // A MappedByteBuffer is indexed by int, so the journal has to stay below 2 GB
+    static final int MAX_SIZE_MB = 2047;
+    private static final int MAGIC = 0x494A524E;
+
+    private static final String INSERT_SQL = "INSERT INTO INVENTORY (ITEM_ID, QTY, TYPE, BATCH_REF, CREATE_BY, CREATE_DATE, IS_DELETED) "
+            + "VALUES (?, ?, ?, ?, 'system', ?, FALSE)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PendingStockTracker pendingStockTracker;
+
+    @Autowired
+    private PageCache pageCache;
+
+    @Autowired
+    private CacheInvalidationLog invalidationLog;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${inventory.persistence.mode:database}")
+    private String persistenceMode;
+
+    @Value("${inventory.journal.path:./data/inventory.journal}")
+    private String path;
+
+    @Value("${inventory.journal.size-mb:64}")
+    private int sizeMb;
+
+    @Value("${inventory.journal.fsync-interval-ms:2}")
+    private long fsyncIntervalMs;
+
+    @Value("${inventory.journal.apply-interval-ms:200}")
+    private long applyIntervalMs;
+
+    @Value("${inventory.journal.apply-batch-size:500}")
+    private int applyBatchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition syncNeeded = lock.newCondition();
+    private final Condition durableAdvanced = lock.newCondition();
+    private final Condition applyNeeded = lock.newCondition();
+    private final Condition appliedAdvanced = lock.newCondition();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+
+    // Guarded by lock
+    private int writePosition;
+    private long writtenSeq;
+    private int durablePosition;
+    private long durableSeq;
+    private int appliedPosition;
+    private long appliedSeq;
+    private boolean recovering;
+    private volatile boolean running;
+
+    // Recovered records that were already in INVENTORY and so never counted as pending; only touched by
+    // whoever applies
+    private final Set<Long> appliedBeforeStart = new HashSet<>();
+
+    private Thread syncThread;
+    private Thread applyThread;
+
+    public boolean isEnabled() {
+        return "journal".equalsIgnoreCase(persistenceMode);
+    }
+
+    public static String batchRef(long seq) {
+        return "J-" + seq;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+        if (sizeMb < 1 || sizeMb > MAX_SIZE_MB) {
+            throw new IllegalStateException("inventory.journal.size-mb must be between 1 and " + MAX_SIZE_MB
+                    + " (a memory-mapped journal cannot reach 2 GB), got " + sizeMb);
+        }
+        open();
+        running = true;
+        syncThread = new Thread(this::syncLoop, "inventory-journal-sync");
+        applyThread = new Thread(this::applyLoop, "inventory-journal-apply");
+        syncThread.setDaemon(true);
+        applyThread.setDaemon(true);
+        syncThread.start();
+        applyThread.start();
+        log.info("Inventory journal opened at {} ({} unapplied record(s) to replay)",
+                path, writtenSeq - appliedSeq);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException, IOException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        lock.lock();
+        try {
+            syncNeeded.signalAll();
+            applyNeeded.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        syncThread.join();
+        applyThread.join();
+        forceWritten();
+        try {
+            applyPending();
+        } catch (RuntimeException e) {
+            log.warn("Unapplied journal records will be replayed on next start: {}", e.getMessage());
+        }
+        channel.close();
+    }
+
+    /**
+     * Appends a movement and blocks until it is durable on disk. Returns the journal sequence number.
+     */
+    public long append(Integer itemId, int qty, String type) {
+        long seq;
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Inventory journal is not running");
+            }
+            ensureCapacity();
+            seq = writtenSeq + 1;
+            writeRecord(writePosition, seq, itemId, qty, type, System.currentTimeMillis());
+            writePosition += RECORD_SIZE;
+            writtenSeq = seq;
+            pendingStockTracker.add(itemId, type, qty);
+            syncNeeded.signal();
+
+            while (durableSeq < seq) {
+                durableAdvanced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return seq;
+    }
+
+    /**
+     * Replays durable but unapplied records into INVENTORY. Called by the apply thread; visible for tests.
+     */
+    void applyPending() {
+        while (true) {
+            int from;
+            int to;
+            long expectedSeq;
+            boolean dedupe;
+            lock.lock();
+            try {
+                from = appliedPosition;
+                to = Math.min(durablePosition, appliedPosition + applyBatchSize * RECORD_SIZE);
+                expectedSeq = appliedSeq + 1;
+                // A batch commits once per shard, so retrying a partly applied batch must skip the shards already done
+                dedupe = recovering || shardRouter.isEnabled();
+            } finally {
+                lock.unlock();
+            }
+            if (from >= to) {
+                return;
+            }
+
+            List<JournalRecord> batch = new ArrayList<>();
+            for (int pos = from; pos < to; pos += RECORD_SIZE) {
+                JournalRecord record = readRecord(pos, expectedSeq++);
+                if (record == null) {
+                    throw new IllegalStateException("Corrupt journal record at position " + pos);
+                }
+                batch.add(record);
+            }
+
+            shardRouter.groupByShard(batch, JournalRecord::itemId).forEach((shard, records) ->
+                    shardRouter.onShard(shard, () -> apply(records, dedupe)));
+
+            lock.lock();
+            try {
+                appliedPosition = to;
+                appliedSeq = batch.get(batch.size() - 1).seq();
+                writeHeader();
+                buffer.force(0, HEADER_SIZE);
+                appliedAdvanced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void apply(List<JournalRecord> records, boolean dedupe) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Set<String> alreadyApplied = dedupe ? findAppliedRefs(records) : Collections.emptySet();
+            List<Object[]> rows = new ArrayList<>();
+            for (JournalRecord record : records) {
+                if (!alreadyApplied.contains(batchRef(record.seq()))) {
+                    rows.add(new Object[]{record.itemId(), record.qty(), record.type(),
+                            batchRef(record.seq()), new Timestamp(record.timestamp())});
+                }
+            }
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+                pageCache.invalidate(Listing.INVENTORY);
+                invalidationLog.stockChanged(rows.stream().map(row -> (Integer) row[0]).toList());
+            }
+            records.stream().filter(record -> !appliedBeforeStart.remove(record.seq())).forEach(record ->
+                    pendingStockTracker.releaseOnCommit(record.itemId(), record.type(), record.qty()));
+        });
+    }
+
+    private void open() throws IOException {
+        Path file = Path.of(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        capacity = (int) (HEADER_SIZE + (sizeMb * 1024L * 1024L - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        if (buffer.getInt(0) != MAGIC) {
+            appliedPosition = HEADER_SIZE;
+            appliedSeq = 0;
+            writeHeader();
+            buffer.force(0, HEADER_SIZE);
+        } else {
+            appliedPosition = buffer.getInt(8);
+            appliedSeq = buffer.getLong(16);
+        }
+
+        writePosition = appliedPosition;
+        writtenSeq = appliedSeq;
+        List<JournalRecord> recovered = new ArrayList<>();
+        while (writePosition + RECORD_SIZE <= capacity) {
+            JournalRecord record = readRecord(writePosition, writtenSeq + 1);
+            if (record == null) {
+                break;
+            }
+            recovered.add(record);
+            writePosition += RECORD_SIZE;
+            writtenSeq = record.seq();
+        }
+        durablePosition = writePosition;
+        durableSeq = writtenSeq;
+        recovering = writtenSeq > appliedSeq;
+
+        // A crash between a batch commit and the header write leaves applied records after the watermark;
+        // they are already in the ledger and must not be counted again as pending
+        appliedBeforeStart.addAll(findAppliedSeqs(recovered));
+        for (JournalRecord record : recovered) {
+            if (!appliedBeforeStart.contains(record.seq())) {
+                pendingStockTracker.add(record.itemId(), record.type(), record.qty());
+            }
+        }
+    }
+
+    private Set<Long> findAppliedSeqs(List<JournalRecord> recovered) {
+        Set<Long> applied = new HashSet<>();
+        try {
+            for (int from = 0; from < recovered.size(); from += applyBatchSize) {
+                List<JournalRecord> chunk = recovered.subList(from, Math.min(from + applyBatchSize, recovered.size()));
+                shardRouter.groupByShard(chunk, JournalRecord::itemId).forEach((shard, records) ->
+                        shardRouter.onShard(shard, () -> findAppliedRefs(records)).forEach(ref ->
+                                applied.add(Long.parseLong(ref.substring(2)))));
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not check which journal records are already applied, counting all as pending: {}",
+                    e.getMessage());
+            applied.clear();
+        }
+        return applied;
+    }
+
+    // Caller holds lock. Wraps to the start of the file once every written record has been applied.
+    private void ensureCapacity() {
+        if (writePosition + RECORD_SIZE <= capacity) {
+            return;
+        }
+        while (appliedSeq < writtenSeq) {
+            applyNeeded.signal();
+            appliedAdvanced.awaitUninterruptibly();
+        }
+        writePosition = HEADER_SIZE;
+        durablePosition = HEADER_SIZE;
+        appliedPosition = HEADER_SIZE;
+        writeHeader();
+        buffer.force(0, HEADER_SIZE);
+    }
+
+    private void syncLoop() {
+        while (running) {
+            lock.lock();
+            try {
+                while (running && writtenSeq == durableSeq) {
+                    syncNeeded.awaitUninterruptibly();
+                }
+            } finally {
+                lock.unlock();
+            }
+            sleepQuietly(fsyncIntervalMs);
+            forceWritten();
+        }
+    }
+
+    private void forceWritten() {
+        int from;
+        int to;
+        long seq;
+        lock.lock();
+        try {
+            from = durablePosition;
+            to = writePosition;
+            seq = writtenSeq;
+        } finally {
+            lock.unlock();
+        }
+        if (to > from) {
+            buffer.force(from, to - from);
+        }
+        lock.lock();
+        try {
+            durablePosition = to;
+            durableSeq = seq;
+            durableAdvanced.signalAll();
+            applyNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void applyLoop() {
+        while (running) {
+            try {
+                applyPending();
+                lock.lock();
+                try {
+                    recovering = false;
+                    if (running && appliedSeq == durableSeq) {
+                        applyNeeded.await(applyIntervalMs, TimeUnit.MILLISECONDS);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to apply inventory journal, retrying: {}", e.getMessage(), e);
+                awaitRetry();
+            }
+        }
+    }
+
+    // Unlike the regular wait this ignores new records, so a failing database is not retried on every
+    // append; shutdown still ends it
+    private void awaitRetry() {
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(applyIntervalMs);
+            while (running && nanos > 0) {
+                nanos = applyNeeded.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Set<String> findAppliedRefs(List<JournalRecord> batch) {
+        String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+        Object[] refs = batch.stream().map(r -> batchRef(r.seq())).toArray();
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT BATCH_REF FROM INVENTORY WHERE BATCH_REF IN (" + placeholders + ")", String.class, refs));
+    }
+
+    private void writeHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(8, appliedPosition);
+        buffer.putLong(16, appliedSeq);
+    }
+
+    private void writeRecord(int pos, long seq, Integer itemId, int qty, String type, long timestamp) {
+        buffer.putLong(pos, seq);
+        buffer.putInt(pos + 8, itemId);
+        buffer.putInt(pos + 12, qty);
+        buffer.put(pos + 16, (byte) type.charAt(0));
+        buffer.putLong(pos + 20, timestamp);
+        buffer.putInt(pos + 28, checksum(pos));
+    }
+
+    private JournalRecord readRecord(int pos, long expectedSeq) {
+        long seq = buffer.getLong(pos);
+        if (seq != expectedSeq || buffer.getInt(pos + 28) != checksum(pos)) {
+            return null;
+        }
+        return new JournalRecord(seq, buffer.getInt(pos + 8), buffer.getInt(pos + 12),
+                String.valueOf((char) buffer.get(pos + 16)), buffer.getLong(pos + 20));
+    }
+
+    private int checksum(int pos) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(pos, RECORD_SIZE - 4));
+        return (int) crc.getValue();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    record JournalRecord(long seq, int itemId, int qty, String type, long timestamp) {
+    }
+}
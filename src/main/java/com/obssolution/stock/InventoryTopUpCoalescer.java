@@ -0,0 +1,181 @@
+package com.obssolution.stock;
+
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.Listing;
+import com.obssolution.cache.PageCache;
+import com.obssolution.model.Inventory;
+import com.obssolution.model.Item;
+import com.obssolution.repository.InventoryRepository;
+import com.obssolution.shard.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers 'T' top-ups per item and writes each buffer as one aggregated INVENTORY row.
+ * Buffered quantities are registered in {@link PendingStockTracker} so stock reads see them immediately.
+ */
+@Component
+public class InventoryTopUpCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryTopUpCoalescer.class);
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private PendingStockTracker pendingStockTracker;
+
+    @Autowired
+    private PageCache pageCache;
+
+    @Autowired
+    private CacheInvalidationLog invalidationLog;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${inventory.coalescing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.coalescing.window-ms:500}")
+    private long windowMs;
+
+    @Value("${inventory.coalescing.max-count:100}")
+    private int maxCount;
+
+    private final ConcurrentHashMap<Integer, TopUpBuffer> buffers = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<TopUpBuffer> failedBuffers = new ConcurrentLinkedQueue<>();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "inventory-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = Math.max(windowMs / 2, 10);
+        flusher.scheduleWithFixedDelay(this::flushDue, tick, tick, TimeUnit.MILLISECONDS);
+        log.info("Top-up coalescing enabled (window: {} ms, max count: {})", windowMs, maxCount);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(windowMs + 5000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds a top-up to the item's current buffer and returns the batch reference of the row it will be written to.
+     */
+    public String accept(Item item, int qty) {
+        TopUpBuffer buffer = buffers.compute(item.getId(), (id, current) -> {
+            pendingStockTracker.add(id, "T", qty);
+            return current == null
+                    ? new TopUpBuffer(item, qty, 1, "TB-" + UUID.randomUUID(), System.currentTimeMillis())
+                    : current.plus(qty);
+        });
+
+        if (buffer.count() >= maxCount && flusher != null && !flusher.isShutdown()) {
+            flusher.execute(() -> flush(item.getId()));
+        }
+        return buffer.batchRef();
+    }
+
+    public void flushAll() {
+        retryFailed();
+        for (Integer itemId : new ArrayList<>(buffers.keySet())) {
+            flush(itemId);
+        }
+    }
+
+    void flushDue() {
+        retryFailed();
+        long cutoff = System.currentTimeMillis() - windowMs;
+        buffers.forEach((itemId, buffer) -> {
+            if (buffer.firstAt() <= cutoff) {
+                flush(itemId);
+            }
+        });
+    }
+
+    void flush(Integer itemId) {
+        TopUpBuffer buffer = buffers.remove(itemId);
+        if (buffer != null && !write(buffer)) {
+            failedBuffers.add(buffer);
+        }
+    }
+
+    private void retryFailed() {
+        List<TopUpBuffer> retries = new ArrayList<>();
+        TopUpBuffer buffer;
+        while ((buffer = failedBuffers.poll()) != null) {
+            retries.add(buffer);
+        }
+        retries.stream().filter(b -> !write(b)).forEach(failedBuffers::add);
+    }
+
+    private boolean write(TopUpBuffer buffer) {
+        try {
+            shardRouter.forItem(buffer.item().getId(), () -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                Inventory inventory = new Inventory();
+                inventory.setItem(buffer.item());
+                inventory.setQty(buffer.qty());
+                inventory.setType("T");
+                inventory.setBatchRef(buffer.batchRef());
+                inventory.setCreateBy("system");
+                inventoryRepository.save(inventory);
+                pageCache.invalidate(Listing.INVENTORY);
+                invalidationLog.stockChanged(buffer.item().getId());
+
+                pendingStockTracker.releaseOnCommit(buffer.item().getId(), "T", buffer.qty());
+            }));
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to flush top-up batch {} for item {}: {}",
+                    buffer.batchRef(), buffer.item().getId(), e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private record TopUpBuffer(Item item, int qty, int count, String batchRef, long firstAt) {
+
+        TopUpBuffer plus(int moreQty) {
+            return new TopUpBuffer(item, qty + moreQty, count + 1, batchRef, firstAt);
+        }
+    }
+}
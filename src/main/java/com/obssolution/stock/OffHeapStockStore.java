@@ -0,0 +1,431 @@
+package com.obssolution.stock;
+
+import com.obssolution.repository.InventoryRepository;
+import com.obssolution.repository.ItemStockTotals;
+import com.obssolution.shard.ShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stock totals per item kept outside the Java heap: one 32-byte slot per {@code Item.id} holding the
+ * top-up and withdrawal totals as primitive longs. Slots are updated with CAS / atomic adds, so reads
+ * never allocate and never touch the database.
+ * <p>
+ * The store mirrors every accepted movement (ledger rows plus movements still pending in
+ * {@link PendingStockTracker}) and is rebuilt from the INVENTORY table on startup. Movements written by
+ * transactions that have not completed yet are also counted per slot as unsettled, always on the safe side
+ * (withdrawals booked early, top-ups applied after the commit), so that a resync against the ledger can keep
+ * them instead of overwriting them.
+ * <p>
+ * Items whose withdrawals keep losing CAS races are promoted to a {@link ShardedStockCounter}, after
+ * which their withdrawals are spread over per-shard budgets instead of the single slot. Budgets are
+ * booked in the slot's withdrawal total when handed out, so the slot never double-allocates stock.
+ */
+@Component
+public class OffHeapStockStore implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapStockStore.class);
+
+    private static final int SLOT_BYTES = 32;
+    private static final int TOP_UP_OFFSET = 0;
+    private static final int WITHDRAWAL_OFFSET = 8;
+    // How far the totals are ahead of the committed ledger because of transactions still open;
+    // never positive for top-ups, never negative for withdrawals
+    private static final int UNSETTLED_TOP_UP_OFFSET = 16;
+    private static final int UNSETTLED_WITHDRAWAL_OFFSET = 24;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private PendingStockTracker pendingStockTracker;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${inventory.stock-store.enabled:false}")
+    private boolean enabled;
+
+    @Value("${inventory.stock-store.capacity:4194304}")
+    private int capacity;
+
+    @Value("${inventory.sharding.enabled:false}")
+    private boolean shardingEnabled;
+
+    @Value("${inventory.sharding.shards:0}")
+    private int shardCount;
+
+    @Value("${inventory.sharding.contention-threshold:64}")
+    private int contentionThreshold;
+
+    @Value("${inventory.sharding.window-ms:1000}")
+    private long contentionWindowMs;
+
+    @Value("${inventory.sharding.max-hot-items:64}")
+    private int maxHotItems;
+
+    private ByteBuffer slots;
+    private volatile boolean ready;
+
+    // Copy-on-write so the lookup on every read is a scan over a handful of ints, without boxing
+    private volatile HotItems hotItems = HotItems.NONE;
+    private final ConcurrentHashMap<Integer, ContentionWindow> contention = new ConcurrentHashMap<>();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Failed to build off-heap stock store, falling back to ledger sums: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reloads all slots from the INVENTORY table and the pending movements. The store is not used
+     * for reads while it is being rebuilt.
+     * <p>
+     * Like {@link #resync}, every slot is read before the ledger and then moved by the difference, so movements
+     * recorded while the ledger is read are kept and the unsettled counts of open transactions stay as they are.
+     */
+    public synchronized void rebuild() {
+        ready = false;
+        hotItems = HotItems.NONE;
+        contention.clear();
+        Map<Integer, long[]> before = new HashMap<>();
+        if (slots == null) {
+            slots = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, SLOT_BYTES)).order(ByteOrder.nativeOrder());
+        } else {
+            for (int itemId = 1; itemId < capacity; itemId++) {
+                long[] fields = readSlot(itemId);
+                if (fields[0] != 0 || fields[1] != 0 || fields[2] != 0 || fields[3] != 0) {
+                    before.put(itemId, fields);
+                }
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        Snapshot snapshot = pendingStockTracker.readConsistent(
+                () -> new Snapshot(shardRouter.everyShard(inventoryRepository::sumStockGroupedByItem), pendingStockTracker.snapshot()));
+
+        Map<Integer, long[]> totals = new HashMap<>();
+        int skipped = 0;
+        for (ItemStockTotals row : snapshot.ledger()) {
+            if (!covers(row.getItemId())) {
+                skipped++;
+                continue;
+            }
+            long[] item = totals.computeIfAbsent(row.getItemId(), id -> new long[2]);
+            item[0] += nullToZero(row.getTopUp());
+            item[1] += nullToZero(row.getWithdrawal());
+        }
+        snapshot.pending().forEach((itemId, qty) -> {
+            if (covers(itemId)) {
+                long[] item = totals.computeIfAbsent(itemId, id -> new long[2]);
+                item[0] += qty[0];
+                item[1] += qty[1];
+            }
+        });
+        before.keySet().forEach(itemId -> totals.putIfAbsent(itemId, new long[2]));
+
+        long[] untouched = new long[4];
+        totals.forEach((itemId, target) -> {
+            long[] was = before.getOrDefault(itemId, untouched);
+            int slot = slot(itemId);
+            // A transaction completing since the slot was read is still counted as open
+            long unsettledTopUp = Math.min(was[2], (long) LONGS.getVolatile(slots, slot + UNSETTLED_TOP_UP_OFFSET));
+            long unsettledWithdrawal = Math.max(was[3], (long) LONGS.getVolatile(slots, slot + UNSETTLED_WITHDRAWAL_OFFSET));
+            addTo(itemId, TOP_UP_OFFSET, target[0] + unsettledTopUp - was[0]);
+            addTo(itemId, WITHDRAWAL_OFFSET, target[1] + unsettledWithdrawal - was[1]);
+        });
+
+        ready = true;
+        log.info("Off-heap stock store loaded {} items in {} ms (capacity: {}, outside capacity: {})",
+                snapshot.ledger().size(), System.currentTimeMillis() - start, capacity, skipped);
+    }
+
+    // [topUp, withdrawal, unsettledTopUp, unsettledWithdrawal], unsettled read first as in resync
+    private long[] readSlot(int itemId) {
+        int slot = slot(itemId);
+        long unsettledTopUp = (long) LONGS.getVolatile(slots, slot + UNSETTLED_TOP_UP_OFFSET);
+        long unsettledWithdrawal = (long) LONGS.getVolatile(slots, slot + UNSETTLED_WITHDRAWAL_OFFSET);
+        return new long[]{(long) LONGS.getVolatile(slots, slot + TOP_UP_OFFSET),
+                (long) LONGS.getVolatile(slots, slot + WITHDRAWAL_OFFSET), unsettledTopUp, unsettledWithdrawal};
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns true when stock for the item can be read from this store instead of the ledger.
+     */
+    public boolean tracks(Integer itemId) {
+        return ready && covers(itemId);
+    }
+
+    public long topUp(int itemId) {
+        return (long) LONGS.getVolatile(slots, slot(itemId) + TOP_UP_OFFSET);
+    }
+
+    public long withdrawal(int itemId) {
+        long withdrawal = (long) LONGS.getVolatile(slots, slot(itemId) + WITHDRAWAL_OFFSET);
+        ShardedStockCounter counter = hotItems.get(itemId);
+        return counter == null ? withdrawal : withdrawal - counter.budget();
+    }
+
+    public long available(int itemId) {
+        long withdrawal = withdrawal(itemId);
+        return topUp(itemId) - withdrawal;
+    }
+
+    public boolean isSharded(int itemId) {
+        return hotItems.get(itemId) != null;
+    }
+
+    /**
+     * Records an accepted movement; a negative qty reverses one. Ignored for items the store does not cover.
+     */
+    public void add(Integer itemId, String type, long qty) {
+        if (slots == null || !covers(itemId)) {
+            return;
+        }
+        addTo(itemId, "T".equals(type) ? TOP_UP_OFFSET : WITHDRAWAL_OFFSET, qty);
+    }
+
+    /**
+     * Records a movement whose ledger row is written by the current transaction. Movements that reduce
+     * the available stock count at once and are reversed if the transaction rolls back; movements that
+     * add stock only count once it has committed. Outside a transaction this is {@link #add}.
+     */
+    public void addOnCommit(Integer itemId, String type, long qty) {
+        if (slots == null || !covers(itemId) || qty == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(itemId, type, qty);
+            return;
+        }
+        boolean topUp = "T".equals(type);
+        int field = topUp ? TOP_UP_OFFSET : WITHDRAWAL_OFFSET;
+        int unsettled = topUp ? UNSETTLED_TOP_UP_OFFSET : UNSETTLED_WITHDRAWAL_OFFSET;
+        boolean reducesStock = topUp ? qty < 0 : qty > 0;
+        if (reducesStock) {
+            addTo(itemId, unsettled, qty);
+            addTo(itemId, field, qty);
+            settleOnCompletion(itemId, field, unsettled, qty);
+            return;
+        }
+
+        addTo(itemId, unsettled, -qty);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                addTo(itemId, field, qty);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                addTo(itemId, unsettled, qty);
+            }
+        });
+    }
+
+    public long unsettled(int itemId, String type) {
+        return (long) LONGS.getVolatile(slots, slot(itemId) + ("T".equals(type) ? UNSETTLED_TOP_UP_OFFSET : UNSETTLED_WITHDRAWAL_OFFSET));
+    }
+
+    /**
+     * Returns the item's committed ledger totals plus its pending movements as {@code [topUp, withdrawal]}.
+     */
+    public long[] ledgerTotals(int itemId) {
+        return pendingStockTracker.readConsistent(() -> shardRouter.forItem(itemId, () -> new long[]{
+                inventoryRepository.sumQtyByItemIdAndType(itemId, "T").orElse(0) + (long) pendingStockTracker.pendingQty(itemId, "T"),
+                inventoryRepository.sumQtyByItemIdAndType(itemId, "W").orElse(0) + (long) pendingStockTracker.pendingQty(itemId, "W")}));
+    }
+
+    /**
+     * Brings the item's totals in line with {@link #ledgerTotals}, keeping the movements of transactions
+     * that are still open and anything recorded while the ledger is read: the slot is read first and then
+     * moved by the difference. Races with open transactions can only leave the totals on the safe side
+     * (less available) until the next resync. Sharded items are left alone, their slot also holds
+     * budgets handed out to the shards.
+     */
+    public void resync(int itemId) {
+        if (slots == null || !covers(itemId) || isSharded(itemId)) {
+            return;
+        }
+        int slot = slot(itemId);
+        long unsettledTopUp = (long) LONGS.getVolatile(slots, slot + UNSETTLED_TOP_UP_OFFSET);
+        long unsettledWithdrawal = (long) LONGS.getVolatile(slots, slot + UNSETTLED_WITHDRAWAL_OFFSET);
+        long topUp = (long) LONGS.getVolatile(slots, slot + TOP_UP_OFFSET);
+        long withdrawal = (long) LONGS.getVolatile(slots, slot + WITHDRAWAL_OFFSET);
+        // Read again after the totals: a transaction completing in between is then counted as still open
+        unsettledTopUp = Math.min(unsettledTopUp, (long) LONGS.getVolatile(slots, slot + UNSETTLED_TOP_UP_OFFSET));
+        unsettledWithdrawal = Math.max(unsettledWithdrawal, (long) LONGS.getVolatile(slots, slot + UNSETTLED_WITHDRAWAL_OFFSET));
+
+        long[] ledger = ledgerTotals(itemId);
+        addTo(itemId, TOP_UP_OFFSET, ledger[0] + unsettledTopUp - topUp);
+        addTo(itemId, WITHDRAWAL_OFFSET, ledger[1] + unsettledWithdrawal - withdrawal);
+    }
+
+    /**
+     * Atomically books a withdrawal if enough stock is available. Inside a transaction the withdrawal
+     * counts as unsettled until the transaction completes, and is reversed again when it rolls back.
+     */
+    public boolean tryWithdraw(int itemId, long qty) {
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        // Marked unsettled before it is booked, so a resync never sees the booking without the mark
+        if (inTransaction) {
+            addTo(itemId, UNSETTLED_WITHDRAWAL_OFFSET, qty);
+        }
+        ShardedStockCounter counter = hotItems.get(itemId);
+        boolean booked = counter != null
+                ? counter.tryDraw(qty, (returned, wanted) -> allocateToShards(itemId, returned, wanted))
+                : casWithdraw(itemId, qty);
+        if (!inTransaction) {
+            return booked;
+        }
+        if (!booked) {
+            addTo(itemId, UNSETTLED_WITHDRAWAL_OFFSET, -qty);
+            return false;
+        }
+        settleOnCompletion(itemId, WITHDRAWAL_OFFSET, UNSETTLED_WITHDRAWAL_OFFSET, qty);
+        return true;
+    }
+
+    private void settleOnCompletion(int itemId, int field, int unsettled, long qty) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    addTo(itemId, field, -qty);
+                }
+                addTo(itemId, unsettled, -qty);
+            }
+        });
+    }
+
+    private boolean casWithdraw(int itemId, long qty) {
+        int slot = slot(itemId);
+        while (true) {
+            long withdrawal = (long) LONGS.getVolatile(slots, slot + WITHDRAWAL_OFFSET);
+            long topUp = (long) LONGS.getVolatile(slots, slot + TOP_UP_OFFSET);
+            if (topUp - withdrawal < qty) {
+                return false;
+            }
+            if (LONGS.compareAndSet(slots, slot + WITHDRAWAL_OFFSET, withdrawal, withdrawal + qty)) {
+                return true;
+            }
+            if (shardingEnabled && recordContention(itemId)) {
+                return hotItems.get(itemId).tryDraw(qty, (returned, wanted) -> allocateToShards(itemId, returned, wanted));
+            }
+        }
+    }
+
+    private long allocateToShards(int itemId, long returned, long qty) {
+        int slot = slot(itemId);
+        while (true) {
+            long withdrawal = (long) LONGS.getVolatile(slots, slot + WITHDRAWAL_OFFSET);
+            long topUp = (long) LONGS.getVolatile(slots, slot + TOP_UP_OFFSET);
+            long free = topUp - (withdrawal - returned);
+            long granted = free >= qty ? free : 0;
+            if (LONGS.compareAndSet(slots, slot + WITHDRAWAL_OFFSET, withdrawal, withdrawal - returned + granted)) {
+                return free >= qty ? granted : -1;
+            }
+        }
+    }
+
+    /**
+     * Counts a lost CAS race on the item and returns true once the item has been promoted to sharded mode.
+     */
+    private boolean recordContention(int itemId) {
+        long now = System.currentTimeMillis();
+        ContentionWindow window = contention.compute(itemId, (id, current) ->
+                current == null || now - current.startedAt() > contentionWindowMs
+                        ? new ContentionWindow(now, 1)
+                        : new ContentionWindow(current.startedAt(), current.failures() + 1));
+        if (window.failures() < contentionThreshold) {
+            return false;
+        }
+        return promote(itemId);
+    }
+
+    private synchronized boolean promote(int itemId) {
+        if (hotItems.get(itemId) != null) {
+            return true;
+        }
+        if (hotItems.ids().length >= maxHotItems) {
+            return false;
+        }
+        int shards = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        hotItems = hotItems.with(itemId, new ShardedStockCounter(shards));
+        contention.remove(itemId);
+        log.info("Item {} promoted to sharded stock counter ({} shards)", itemId, shards);
+        return true;
+    }
+
+    private void addTo(int itemId, int fieldOffset, long delta) {
+        LONGS.getAndAdd(slots, slot(itemId) + fieldOffset, delta);
+    }
+
+    private boolean covers(Integer itemId) {
+        return itemId != null && itemId > 0 && itemId < capacity;
+    }
+
+    private static int slot(int itemId) {
+        return itemId * SLOT_BYTES;
+    }
+
+    private static long nullToZero(Long value) {
+        return value == null ? 0L : value;
+    }
+
+    private record ContentionWindow(long startedAt, int failures) {
+    }
+
+    private record HotItems(int[] ids, ShardedStockCounter[] counters) {
+
+        static final HotItems NONE = new HotItems(new int[0], new ShardedStockCounter[0]);
+
+        ShardedStockCounter get(int itemId) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == itemId) {
+                    return counters[i];
+                }
+            }
+            return null;
+        }
+
+        HotItems with(int itemId, ShardedStockCounter counter) {
+            int[] newIds = Arrays.copyOf(ids, ids.length + 1);
+            ShardedStockCounter[] newCounters = Arrays.copyOf(counters, counters.length + 1);
+            newIds[ids.length] = itemId;
+            newCounters[counters.length] = counter;
+            return new HotItems(newIds, newCounters);
+        }
+    }
+
+    private record Snapshot(List<ItemStockTotals> ledger, Map<Integer, int[]> pending) {
+    }
+}
@@ -0,0 +1,158 @@
+package com.obssolution.stock;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Keeps track of stock movements that have been accepted but are not yet in the INVENTORY table,
+ * so that stock reads can add them on top of the ledger sums.
+ */
+@Component
+public class PendingStockTracker {
+
+    private final ConcurrentHashMap<Integer, PendingQty> pending = new ConcurrentHashMap<>();
+
+    // Write-locked only while a batch of pending movements is committed into the ledger,
+    // so readers never count a movement twice (or not at all) while it moves across.
+    private final StampedLock settleLock = new StampedLock();
+
+    public void add(Integer itemId, String type, int qty) {
+        pending.compute(itemId, (id, current) -> (current == null ? PendingQty.ZERO : current).plus(type, qty));
+    }
+
+    public int pendingQty(Integer itemId, String type) {
+        PendingQty current = pending.get(itemId);
+        return current == null ? 0 : current.get(type);
+    }
+
+    public int sum(Integer itemId, String type, IntSupplier ledgerSum) {
+        long stamp = settleLock.tryOptimisticRead();
+        int total = ledgerSum.getAsInt() + pendingQty(itemId, type);
+        if (settleLock.validate(stamp)) {
+            return total;
+        }
+
+        stamp = settleLock.readLock();
+        try {
+            return ledgerSum.getAsInt() + pendingQty(itemId, type);
+        } finally {
+            settleLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs a ledger read that must not overlap with pending movements being settled into the ledger,
+     * e.g. a full rebuild that combines ledger totals with {@link #snapshot()}.
+     */
+    public <T> T readConsistent(Supplier<T> read) {
+        long stamp = settleLock.tryOptimisticRead();
+        T result = read.get();
+        if (settleLock.validate(stamp)) {
+            return result;
+        }
+
+        stamp = settleLock.readLock();
+        try {
+            return read.get();
+        } finally {
+            settleLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the pending top-up and withdrawal quantities per item as {@code [topUp, withdrawal]}.
+     */
+    public Map<Integer, int[]> snapshot() {
+        Map<Integer, int[]> result = new HashMap<>();
+        pending.forEach((itemId, qty) -> result.put(itemId, new int[]{qty.topUp(), qty.withdrawal()}));
+        return result;
+    }
+
+    /**
+     * Removes a pending movement once the ledger row that represents it has been committed.
+     * Must be called inside the transaction that writes the ledger row.
+     */
+    public void releaseOnCommit(Integer itemId, String type, int qty) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            long stamp = settleLock.writeLock();
+            try {
+                release(itemId, type, qty);
+            } finally {
+                settleLock.unlockWrite(stamp);
+            }
+            return;
+        }
+
+        SettleBatch batch = (SettleBatch) TransactionSynchronizationManager.getResource(this);
+        if (batch == null) {
+            batch = new SettleBatch();
+            TransactionSynchronizationManager.bindResource(this, batch);
+            TransactionSynchronizationManager.registerSynchronization(batch);
+        }
+        batch.releases.add(new Release(itemId, type, qty));
+    }
+
+    private void release(Integer itemId, String type, int qty) {
+        pending.computeIfPresent(itemId, (id, current) -> {
+            PendingQty next = current.plus(type, -qty);
+            return next.isZero() ? null : next;
+        });
+    }
+
+    private record PendingQty(int topUp, int withdrawal) {
+
+        static final PendingQty ZERO = new PendingQty(0, 0);
+
+        PendingQty plus(String type, int qty) {
+            return "T".equals(type)
+                    ? new PendingQty(topUp + qty, withdrawal)
+                    : new PendingQty(topUp, withdrawal + qty);
+        }
+
+        int get(String type) {
+            return "T".equals(type) ? topUp : withdrawal;
+        }
+
+        boolean isZero() {
+            return topUp == 0 && withdrawal == 0;
+        }
+    }
+
+    private record Release(Integer itemId, String type, int qty) {
+    }
+
+    private class SettleBatch implements TransactionSynchronization {
+
+        private final List<Release> releases = new ArrayList<>();
+        private long stamp;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            stamp = settleLock.writeLock();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PendingStockTracker.this);
+            try {
+                if (status == STATUS_COMMITTED) {
+                    releases.forEach(r -> release(r.itemId(), r.type(), r.qty()));
+                }
+            } finally {
+                if (stamp != 0) {
+                    settleLock.unlockWrite(stamp);
+                }
+            }
+        }
+    }
+}
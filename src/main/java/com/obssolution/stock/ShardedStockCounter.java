@@ -0,0 +1,93 @@
+package com.obssolution.stock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Splits a hot item's available stock across N sub-counters so concurrent withdrawals on the same
+ * item touch different cache lines. Budgets handed to the shards are booked as withdrawn in the
+ * store slot up front; a draw only takes from its shard's budget, and unused budget is handed back
+ * on the next rebalance.
+ */
+final class ShardedStockCounter {
+
+    // 8 longs = 64 bytes per shard so neighbouring shards never share a cache line
+    private static final int STRIDE = 8;
+
+    /**
+     * Books budget for the shards against the store slot.
+     */
+    interface SlotAllocator {
+
+        /**
+         * Returns {@code returned} unused budget to the slot and, if at least {@code qty} is then
+         * available, books everything available and returns that amount; otherwise returns -1.
+         */
+        long allocate(long returned, long qty);
+    }
+
+    private final int shards;
+    private final AtomicLongArray budgets;
+
+    ShardedStockCounter(int shards) {
+        this.shards = shards;
+        this.budgets = new AtomicLongArray(shards * STRIDE);
+    }
+
+    int shards() {
+        return shards;
+    }
+
+    /**
+     * Stock booked for the shards that has not been drawn yet.
+     */
+    long budget() {
+        long total = 0;
+        for (int i = 0; i < shards; i++) {
+            total += budgets.get(i * STRIDE);
+        }
+        return total;
+    }
+
+    /**
+     * Draws qty from the calling thread's shard, rebalancing all shards only when that shard runs dry.
+     */
+    boolean tryDraw(long qty, SlotAllocator allocator) {
+        int shard = (int) (Thread.currentThread().getId() % shards);
+        return drawFromShard(shard, qty) || rebalanceAndDraw(shard, qty, allocator);
+    }
+
+    private boolean drawFromShard(int shard, long qty) {
+        int index = shard * STRIDE;
+        while (true) {
+            long budget = budgets.get(index);
+            if (budget < qty) {
+                return false;
+            }
+            if (budgets.compareAndSet(index, budget, budget - qty)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized boolean rebalanceAndDraw(int shard, long qty, SlotAllocator allocator) {
+        if (drawFromShard(shard, qty)) {
+            return true;
+        }
+
+        long returned = 0;
+        for (int i = 0; i < shards; i++) {
+            returned += budgets.getAndSet(i * STRIDE, 0);
+        }
+        long granted = allocator.allocate(returned, qty);
+        if (granted < 0) {
+            return false;
+        }
+
+        long free = granted - qty;
+        long share = free / shards;
+        for (int i = 0; i < shards; i++) {
+            budgets.set(i * STRIDE, i == 0 ? share + free % shards : share);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,87 @@
+package com.obssolution.bulkhead;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadConfigTest {
+
+    private static BulkheadConfig.PoolSlices slices(MockEnvironment environment) {
+        BulkheadConfig.PoolSlices slices = new BulkheadConfig.PoolSlices();
+        ReflectionTestUtils.setField(slices, "readPoolSize", 4);
+        ReflectionTestUtils.setField(slices, "readMaxConcurrent", 4);
+        ReflectionTestUtils.setField(slices, "readMaxWaitMs", 5000L);
+        ReflectionTestUtils.setField(slices, "writePoolSize", 6);
+        ReflectionTestUtils.setField(slices, "writeMaxConcurrent", 6);
+        ReflectionTestUtils.setField(slices, "writeMaxWaitMs", 5000L);
+        ReflectionTestUtils.setField(slices, "backgroundPoolSize", 3);
+        ReflectionTestUtils.setField(slices, "environment", environment);
+        return slices;
+    }
+
+    private static BulkheadRoutingDataSource routing(BulkheadConfig.PoolSlices slices) throws Exception {
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl("jdbc:h2:mem:bulkhead");
+        properties.afterPropertiesSet();
+
+        BulkheadRoutingDataSource routing = (BulkheadRoutingDataSource) slices.dataSource(properties);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    @Test
+    void dataSource_ShouldApplyHikariSettingsToEverySliceButKeepItsOwnSize() throws Exception {
+        Map<Object, DataSource> pools = routing(slices(new MockEnvironment()
+                .withProperty("spring.datasource.hikari.connection-timeout", "1234")
+                .withProperty("spring.datasource.hikari.maximum-pool-size", "50"))).getResolvedDataSources();
+
+        try (HikariDataSource read = (HikariDataSource) pools.get(Bulkhead.READ);
+             HikariDataSource write = (HikariDataSource) pools.get(Bulkhead.WRITE)) {
+            assertEquals(1234, read.getConnectionTimeout());
+            assertEquals(1234, write.getConnectionTimeout());
+            assertEquals(4, read.getMaximumPoolSize());
+            assertEquals(6, write.getMaximumPoolSize());
+            assertEquals("inventory-read", read.getPoolName());
+        }
+    }
+
+    @Test
+    void dataSource_OutsideAnyRequest_ShouldUseTheBackgroundPool() throws Exception {
+        BulkheadRoutingDataSource routing = routing(slices(new MockEnvironment()));
+
+        try (HikariDataSource background = (HikariDataSource) routing.getResolvedDefaultDataSource()) {
+            assertEquals("inventory-background", background.getPoolName());
+            assertEquals(3, background.getMaximumPoolSize());
+            assertNotSame(background, routing.getResolvedDataSources().get(Bulkhead.WRITE));
+        }
+    }
+
+    @Test
+    void dataSource_ShouldWaitForAConnectionNoLongerThanTheBulkheadWaits() throws Exception {
+        BulkheadConfig.PoolSlices slices = slices(new MockEnvironment());
+        ReflectionTestUtils.setField(slices, "readMaxWaitMs", 500L);
+        Map<Object, DataSource> pools = routing(slices).getResolvedDataSources();
+
+        try (HikariDataSource read = (HikariDataSource) pools.get(Bulkhead.READ);
+             HikariDataSource write = (HikariDataSource) pools.get(Bulkhead.WRITE)) {
+            assertEquals(500, read.getConnectionTimeout());
+            assertEquals(5000, write.getConnectionTimeout());
+        }
+    }
+
+    @Test
+    void dataSource_WhenABulkheadAdmitsMoreRequestsThanItsPoolHasConnections_ShouldFailStartup() {
+        BulkheadConfig.PoolSlices slices = slices(new MockEnvironment());
+        ReflectionTestUtils.setField(slices, "writeMaxConcurrent", 40);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> routing(slices));
+        assertTrue(e.getMessage().contains("inventory.bulkhead.write.pool-size"));
+    }
+}
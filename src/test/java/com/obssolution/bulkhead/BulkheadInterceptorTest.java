@@ -0,0 +1,86 @@
+package com.obssolution.bulkhead;
+
+import com.obssolution.controller.ItemController;
+import com.obssolution.dto.item.AvailabilityRequestDTO;
+import com.obssolution.dto.item.ItemRequestDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BulkheadInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new BulkheadInterceptor();
+        ReflectionTestUtils.setField(interceptor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(interceptor, "enabled", true);
+        ReflectionTestUtils.setField(interceptor, "readMaxConcurrent", 1);
+        ReflectionTestUtils.setField(interceptor, "readMaxQueue", 0);
+        ReflectionTestUtils.setField(interceptor, "readMaxWaitMs", 0L);
+        ReflectionTestUtils.setField(interceptor, "writeMaxConcurrent", 1);
+        ReflectionTestUtils.setField(interceptor, "writeMaxQueue", 0);
+        ReflectionTestUtils.setField(interceptor, "writeMaxWaitMs", 0L);
+        ReflectionTestUtils.setField(interceptor, "retryAfterSeconds", 1);
+        ReflectionTestUtils.invokeMethod(interceptor, "init");
+    }
+
+    @Test
+    void preHandle_WhenReadBulkheadIsFull_ShouldRejectReadsButAdmitWrites() throws Exception {
+        MockHttpServletRequest firstRead = new MockHttpServletRequest("GET", "/api/inventory");
+        assertTrue(interceptor.preHandle(firstRead, new MockHttpServletResponse(), null));
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest("GET", "/api/inventory"), rejected, null));
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+
+        MockHttpServletRequest write = new MockHttpServletRequest("POST", "/api/orders/save");
+        assertTrue(interceptor.preHandle(write, new MockHttpServletResponse(), null));
+        assertEquals(1.0, meterRegistry.get("inventory.bulkhead.rejected").tag("bulkhead", "read").counter().count());
+
+        interceptor.afterCompletion(write, new MockHttpServletResponse(), null, null);
+        interceptor.afterCompletion(firstRead, new MockHttpServletResponse(), null, null);
+    }
+
+    @Test
+    void afterCompletion_ShouldFreeTheSlot() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", "/api/item/edit");
+        assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), null));
+        assertEquals(1, interceptor.bulkhead(Bulkhead.WRITE).active());
+
+        interceptor.afterCompletion(request, new MockHttpServletResponse(), null, null);
+
+        assertEquals(0, interceptor.bulkhead(Bulkhead.WRITE).active());
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest("PUT", "/api/item/edit"),
+                new MockHttpServletResponse(), null));
+    }
+
+    @Test
+    void classify_ShouldTreatGetAndHeadAsReads() {
+        assertEquals(Bulkhead.READ, BulkheadInterceptor.classify(new MockHttpServletRequest("GET", "/api/item")));
+        assertEquals(Bulkhead.READ, BulkheadInterceptor.classify(new MockHttpServletRequest("HEAD", "/api/item")));
+        assertEquals(Bulkhead.WRITE, BulkheadInterceptor.classify(new MockHttpServletRequest("POST", "/api/item/save")));
+    }
+
+    @Test
+    void classify_ShouldTreatReadOnlyHandlersAsReadsWhateverTheirMethod() throws Exception {
+        HandlerMethod availability = new HandlerMethod(new ItemController(),
+                ItemController.class.getMethod("checkAvailability", AvailabilityRequestDTO.class));
+        HandlerMethod save = new HandlerMethod(new ItemController(),
+                ItemController.class.getMethod("createItem", String.class, ItemRequestDTO.class));
+
+        assertEquals(Bulkhead.READ, BulkheadInterceptor.classify(
+                new MockHttpServletRequest("POST", "/api/item/availability"), availability));
+        assertEquals(Bulkhead.WRITE, BulkheadInterceptor.classify(new MockHttpServletRequest("POST", "/api/item/save"), save));
+    }
+}
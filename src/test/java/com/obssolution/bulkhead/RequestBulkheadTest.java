@@ -0,0 +1,66 @@
+package com.obssolution.bulkhead;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestBulkheadTest {
+
+    @Test
+    void tryEnter_WithFreeSlot_ShouldEnterImmediately() throws Exception {
+        RequestBulkhead bulkhead = new RequestBulkhead(2, 0, 0);
+
+        assertTrue(bulkhead.tryEnter());
+        assertTrue(bulkhead.tryEnter());
+        assertEquals(2, bulkhead.active());
+        assertFalse(bulkhead.tryEnter());
+    }
+
+    @Test
+    void tryEnter_WhenFull_ShouldWaitForReleasedSlot() throws Exception {
+        RequestBulkhead bulkhead = new RequestBulkhead(1, 1, 5000);
+        assertTrue(bulkhead.tryEnter());
+
+        AtomicBoolean entered = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                entered.set(bulkhead.tryEnter());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+        waiter.start();
+        while (bulkhead.queueDepth() == 0) {
+            Thread.onSpinWait();
+        }
+        bulkhead.exit();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(entered.get());
+    }
+
+    @Test
+    void tryEnter_WhenQueueIsFull_ShouldRejectWithoutWaiting() throws Exception {
+        RequestBulkhead bulkhead = new RequestBulkhead(1, 0, 5000);
+        assertTrue(bulkhead.tryEnter());
+
+        long start = System.nanoTime();
+        assertFalse(bulkhead.tryEnter());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+
+    @Test
+    void tryEnter_WhenWaitTimesOut_ShouldReject() throws Exception {
+        RequestBulkhead bulkhead = new RequestBulkhead(1, 5, 20);
+        assertTrue(bulkhead.tryEnter());
+
+        assertFalse(bulkhead.tryEnter());
+        assertEquals(0, bulkhead.queueDepth());
+    }
+}
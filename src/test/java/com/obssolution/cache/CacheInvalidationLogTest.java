@@ -0,0 +1,154 @@
+package com.obssolution.cache;
+
+import com.obssolution.readmodel.ReadModel;
+import com.obssolution.repository.InventoryRepository;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CacheInvalidationLogTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private CacheInvalidationLog writer;
+    private CacheInvalidationLog reader;
+    private PageCache pageCache;
+    private ItemCatalog itemCatalog;
+    private OrderNumberBloomFilter orderNumberFilter;
+    private OffHeapStockStore stockStore;
+    private ReadModel readModel;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE CACHE_INVALIDATION (SEQ BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "NODE_ID VARCHAR(36) NOT NULL, KIND VARCHAR(10) NOT NULL, CACHE_KEY VARCHAR(40) NOT NULL, " +
+                "CREATE_DATE TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+
+        writer = node();
+        pageCache = mock(PageCache.class);
+        itemCatalog = mock(ItemCatalog.class);
+        orderNumberFilter = mock(OrderNumberBloomFilter.class);
+        stockStore = mock(OffHeapStockStore.class);
+        readModel = mock(ReadModel.class);
+        reader = node();
+        ReflectionTestUtils.setField(reader, "pageCache", pageCache);
+        ReflectionTestUtils.setField(reader, "itemCatalog", itemCatalog);
+        ReflectionTestUtils.setField(reader, "orderNumberFilter", orderNumberFilter);
+        ReflectionTestUtils.setField(reader, "stockStore", stockStore);
+        ReflectionTestUtils.setField(reader, "readModel", readModel);
+        reader.poll();
+    }
+
+    private CacheInvalidationLog node() {
+        CacheInvalidationLog node = new CacheInvalidationLog();
+        ReflectionTestUtils.setField(node, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(node, "shardRouter", new ShardRouter());
+        ReflectionTestUtils.setField(node, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(node, "enabled", true);
+        ReflectionTestUtils.setField(node, "applied", new SimpleMeterRegistry().counter("applied"));
+        return node;
+    }
+
+    @Test
+    void poll_ShouldApplyChangesWrittenByOtherNodes() {
+        when(stockStore.tracks(5)).thenReturn(true);
+
+        writer.itemChanged(1);
+        writer.stockChanged(List.of(5, 5));
+        writer.orderChanged("O42");
+        reader.poll();
+
+        verify(itemCatalog).refresh(1);
+        verify(pageCache).invalidateRow(Listing.ITEM.key(1));
+        verify(pageCache).invalidate(Listing.ITEM);
+        verify(stockStore).resync(5);
+        verify(readModel).refreshItem(5);
+        verify(pageCache).invalidate(Listing.INVENTORY);
+        verify(orderNumberFilter).put("O42");
+        verify(readModel).refreshOrder("O42");
+        verify(pageCache).invalidate(Listing.ORDER);
+    }
+
+    @Test
+    void poll_ShouldSkipItsOwnChangesAndNotApplyAnEntryTwice() {
+        reader.itemChanged(1);
+        writer.itemChanged(2);
+        writer.itemChanged(2);
+        reader.poll();
+        reader.poll();
+
+        verify(itemCatalog, never()).refresh(1);
+        verify(itemCatalog, times(1)).refresh(2);
+    }
+
+    @Test
+    void poll_ShouldPickUpEntriesThatCommitBehindTheWatermark() {
+        String otherNode = UUID.randomUUID().toString();
+        jdbcTemplate.update("INSERT INTO CACHE_INVALIDATION (SEQ, NODE_ID, KIND, CACHE_KEY) VALUES (2, ?, 'ORDER', 'O2')",
+                otherNode);
+        reader.poll();
+        verify(orderNumberFilter).put("O2");
+
+        jdbcTemplate.update("INSERT INTO CACHE_INVALIDATION (SEQ, NODE_ID, KIND, CACHE_KEY) VALUES (1, ?, 'ORDER', 'O1')",
+                otherNode);
+        reader.poll();
+
+        verify(orderNumberFilter).put("O1");
+        verify(orderNumberFilter, times(1)).put("O2");
+    }
+
+    @Test
+    void poll_WithAWithdrawalStillInFlight_ShouldKeepTheBooking() {
+        InventoryRepository inventoryRepository = mock(InventoryRepository.class);
+        when(inventoryRepository.sumStockGroupedByItem()).thenReturn(List.of());
+        OffHeapStockStore store = new OffHeapStockStore();
+        ReflectionTestUtils.setField(store, "inventoryRepository", inventoryRepository);
+        ReflectionTestUtils.setField(store, "pendingStockTracker", new PendingStockTracker());
+        ReflectionTestUtils.setField(store, "shardRouter", new ShardRouter());
+        ReflectionTestUtils.setField(store, "capacity", 1024);
+        store.rebuild();
+        store.add(5, "T", 30);
+        ReflectionTestUtils.setField(reader, "stockStore", store);
+
+        // Another node tops up 10; its ledger row is committed, this node's withdrawal of 4 is not
+        when(inventoryRepository.sumQtyByItemIdAndType(5, "T")).thenReturn(Optional.of(40));
+        when(inventoryRepository.sumQtyByItemIdAndType(5, "W")).thenReturn(Optional.of(0));
+        writer.stockChanged(5);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        transaction.executeWithoutResult(status -> {
+            assertTrue(store.tryWithdraw(5, 4));
+            reader.poll();
+
+            assertEquals(40, store.topUp(5));
+            assertEquals(4, store.withdrawal(5));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(40, store.available(5));
+    }
+
+    @Test
+    void append_WhenDisabled_ShouldNotWrite() {
+        ReflectionTestUtils.setField(writer, "enabled", false);
+
+        writer.orderChanged("O1");
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM CACHE_INVALIDATION", Integer.class));
+    }
+}
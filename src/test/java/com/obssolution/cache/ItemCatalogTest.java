@@ -0,0 +1,125 @@
+package com.obssolution.cache;
+
+import com.obssolution.model.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ItemCatalogTest {
+
+    private ItemCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new ItemCatalog();
+        ReflectionTestUtils.setField(catalog, "enabled", true);
+        ReflectionTestUtils.setField(catalog, "loading", true);
+    }
+
+    private void load(Item... items) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        JdbcTemplate streaming = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Item item : items) {
+                when(rs.getInt("ID")).thenReturn(item.getId());
+                when(rs.getString("NAME")).thenReturn(item.getName());
+                when(rs.getBigDecimal("PRICE")).thenReturn(item.getPrice());
+                when(rs.getString("CREATE_BY")).thenReturn("system");
+                when(rs.getTimestamp("CREATE_DATE")).thenReturn(Timestamp.valueOf(LocalDateTime.of(2026, 1, 1, 0, 0)));
+                when(rs.getObject("VERSION", Long.class)).thenReturn(item.getVersion());
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(streaming).query(anyString(), any(RowCallbackHandler.class));
+        catalog.load(streaming);
+    }
+
+    private static Item item(int id, String name, String price, long version) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setPrice(new BigDecimal(price));
+        item.setVersion(version);
+        return item;
+    }
+
+    @Test
+    void find_BeforeLoad_ShouldReturnNull() {
+        assertFalse(catalog.isReady());
+        assertNull(catalog.find(1));
+    }
+
+    @Test
+    void find_AfterLoad_ShouldServeLoadedItems() throws Exception {
+        load(item(1, "Pen", "10.5", 0), item(3, "Ink", "2.25", 4));
+
+        ItemCatalog.CatalogItem ink = catalog.find(3);
+        assertEquals("Ink", ink.name());
+        assertEquals(new BigDecimal("2.25"), ink.price());
+        assertEquals(4L, ink.version());
+        assertEquals(new BigDecimal("10.50"), catalog.find(1).price());
+        assertNull(catalog.find(2));
+    }
+
+    @Test
+    void publish_ShouldInsertUpdateAndRemoveInIdOrder() throws Exception {
+        load(item(1, "Pen", "1.00", 0), item(5, "Ink", "2.00", 0));
+
+        catalog.publish(item(3, "Pad", "3.00", 0));
+        catalog.publish(item(1, "Pencil", "1.50", 1));
+        Item deleted = item(5, "Ink", "2.00", 1);
+        deleted.setIsDeleted(true);
+        catalog.publish(deleted);
+
+        assertEquals("Pad", catalog.find(3).name());
+        assertEquals("Pencil", catalog.find(1).name());
+        assertEquals("system", catalog.find(1).createBy());
+        assertNull(catalog.find(5));
+    }
+
+    @Test
+    void publish_OlderVersionOrUpdateAfterDelete_ShouldBeIgnored() throws Exception {
+        load(item(1, "Pen", "1.00", 2), item(2, "Ink", "2.00", 0));
+
+        catalog.publish(item(1, "Old pen", "1.00", 1));
+        Item deleted = item(2, "Ink", "2.00", 1);
+        deleted.setIsDeleted(true);
+        catalog.publish(deleted);
+        catalog.publish(item(2, "Ink", "2.50", 1));
+
+        assertEquals("Pen", catalog.find(1).name());
+        assertNull(catalog.find(2));
+    }
+
+    @Test
+    void publish_WhileLoading_ShouldBeReplayedOntoLoadedSnapshot() throws Exception {
+        catalog.publish(item(1, "Renamed", "1.00", 1));
+        catalog.publish(item(7, "New", "7.00", 0));
+
+        load(item(1, "Pen", "1.00", 0));
+
+        assertEquals("Renamed", catalog.find(1).name());
+        assertEquals("New", catalog.find(7).name());
+    }
+
+    @Test
+    void nameOf_ShouldFallBackToEntityForItemsNotHeld() throws Exception {
+        load(item(1, "Pen", "1.00", 0));
+
+        assertEquals("Pen", catalog.nameOf(item(1, "stale", "1.00", 0)));
+        assertEquals("Deleted", catalog.nameOf(item(9, "Deleted", "1.00", 0)));
+    }
+}
@@ -0,0 +1,95 @@
+package com.obssolution.cache;
+
+import com.obssolution.shard.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class OrderNumberBloomFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private OrderNumberBloomFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new OrderNumberBloomFilter();
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(filter, "shardRouter", new ShardRouter());
+        ReflectionTestUtils.setField(filter, "expectedInsertions", 10_000L);
+        ReflectionTestUtils.setField(filter, "fpp", 0.01);
+        filter.allocate();
+        filter.registerMetrics();
+    }
+
+    private void load(String... orderNos) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        JdbcTemplate streaming = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (String orderNo : orderNos) {
+                when(rs.getString(1)).thenReturn(orderNo);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(streaming).query(anyString(), any(RowCallbackHandler.class));
+        filter.load(streaming);
+    }
+
+    @Test
+    void mightContain_BeforeLoad_ShouldAlwaysAnswerMaybe() {
+        assertTrue(filter.mightContain("ORD1"));
+    }
+
+    @Test
+    void load_ShouldContainStreamedAndLaterInsertedOrderNumbers() throws Exception {
+        load("ORD1", "ORD2");
+        filter.put("ORD3");
+
+        assertTrue(filter.mightContain("ORD1"));
+        assertTrue(filter.mightContain("ORD2"));
+        assertTrue(filter.mightContain("ORD3"));
+    }
+
+    @Test
+    void mightContain_ShouldHaveNoFalseNegativesAndFewFalsePositives() throws Exception {
+        load();
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("O" + i);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("O" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("X" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void recordFalsePositive_ShouldBeReportedAsRate() throws Exception {
+        load("ORD1");
+        filter.mightContain("ORD2");
+        filter.mightContain("ORD3");
+        filter.mightContain("ORD4");
+        filter.recordFalsePositive();
+
+        double negatives = meterRegistry.get("inventory.order-bloom.negatives").functionCounter().count();
+        double rate = meterRegistry.get("inventory.order-bloom.false-positive-rate").gauge().value();
+        assertEquals(1.0 / (negatives + 1), rate, 1e-9);
+    }
+}
@@ -0,0 +1,117 @@
+package com.obssolution.cache;
+
+import com.obssolution.dto.PageResponseDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCacheTest {
+
+    private static final Function<String, Collection<String>> ITEM_ROWS = row -> List.of(Listing.ITEM.key(row));
+
+    private final PageCache pageCache = new PageCache();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(pageCache, "singleFlight", new SingleFlight());
+        ReflectionTestUtils.setField(pageCache, "enabled", true);
+        ReflectionTestUtils.setField(pageCache, "maxPages", 3);
+        ReflectionTestUtils.setField(pageCache, "maxSize", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private PageResponseDTO<String> get(Listing listing, int page, String... rows) {
+        return pageCache.get(listing, page, 10, ITEM_ROWS, () -> {
+            loads.incrementAndGet();
+            return PageResponseDTO.of(List.of(rows), page, 10, rows.length);
+        });
+    }
+
+    @Test
+    void get_ShouldCacheFirstPagesAndBypassDeeperOnes() {
+        get(Listing.ITEM, 1, "1", "2");
+        get(Listing.ITEM, 1, "1", "2");
+        assertEquals(1, loads.get());
+
+        get(Listing.ITEM, 4, "31");
+        get(Listing.ITEM, 4, "31");
+        assertEquals(3, loads.get());
+        assertEquals(1, pageCache.size(Listing.ITEM));
+    }
+
+    @Test
+    void get_OnHit_ShouldApplyRefresh() {
+        PageResponseDTO<String> loaded = get(Listing.ITEM, 1, "1");
+        PageResponseDTO<String> hit = pageCache.get(Listing.ITEM, 1, 10, ITEM_ROWS, () -> {
+            throw new AssertionError("should be served from cache");
+        }, page -> PageResponseDTO.of(List.of("fresh"), 1, 10, 1));
+
+        assertEquals(List.of("1"), loaded.getContent());
+        assertEquals(List.of("fresh"), hit.getContent());
+    }
+
+    @Test
+    void invalidate_ShouldDropEveryPageOfTheListingOnly() {
+        get(Listing.ITEM, 1, "1");
+        get(Listing.ITEM, 2, "2");
+        get(Listing.ORDER, 1, "1");
+
+        pageCache.invalidate(Listing.ITEM);
+
+        assertEquals(0, pageCache.size(Listing.ITEM));
+        assertEquals(1, pageCache.size(Listing.ORDER));
+    }
+
+    @Test
+    void invalidateRow_ShouldDropOnlyPagesShowingTheRow() {
+        get(Listing.ITEM, 1, "1", "2");
+        get(Listing.ITEM, 2, "3", "4");
+        get(Listing.INVENTORY, 1, "2");
+
+        pageCache.invalidateRow(Listing.ITEM.key("2"));
+
+        assertEquals(1, pageCache.size(Listing.ITEM));
+        assertEquals(0, pageCache.size(Listing.INVENTORY));
+        get(Listing.ITEM, 2, "3", "4");
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void invalidate_InsideTransaction_ShouldWaitForCommit() {
+        get(Listing.ORDER, 1, "1");
+        TransactionSynchronizationManager.initSynchronization();
+
+        pageCache.invalidate(Listing.ORDER);
+        assertEquals(1, pageCache.size(Listing.ORDER));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(0, pageCache.size(Listing.ORDER));
+    }
+
+    @Test
+    void get_WhenInvalidatedDuringLoad_ShouldNotStoreResult() {
+        pageCache.get(Listing.ITEM, 1, 10, ITEM_ROWS, () -> {
+            pageCache.invalidate(Listing.ITEM);
+            return PageResponseDTO.of(List.of("stale"), 1, 10, 1);
+        });
+
+        assertEquals(0, pageCache.size(Listing.ITEM));
+    }
+}
@@ -0,0 +1,170 @@
+package com.obssolution.cache;
+
+import com.obssolution.deadline.RequestDeadline;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @Test
+    void concurrentCallsForSameKey_ShouldShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("item:1", () -> {
+                loads.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "value";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(executor.submit(() -> singleFlight.execute("item:1", () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            while (singleFlight.sharedCount() < 7) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> follower : followers) {
+                assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void joiner_ShouldGetItsOwnCopyOfTheResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<StringBuilder> leader = executor.submit(() -> singleFlight.execute("item:1", () -> {
+                started.countDown();
+                await(release);
+                return new StringBuilder("value");
+            }, StringBuilder::new));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<StringBuilder> joiner = executor.submit(() -> singleFlight.execute("item:1",
+                    () -> new StringBuilder("other"), StringBuilder::new));
+            while (singleFlight.sharedCount() < 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            StringBuilder own = leader.get(5, TimeUnit.SECONDS);
+            StringBuilder copy = joiner.get(5, TimeUnit.SECONDS);
+            assertNotSame(own, copy);
+            assertEquals("value", copy.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void joiner_ShouldWaitNoLongerThanItsOwnDeadline() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("item:1", () -> {
+                started.countDown();
+                await(release);
+                return "value";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            RequestDeadline.start(50);
+            try {
+                assertThrows(QueryTimeoutException.class, () -> singleFlight.execute("item:1", () -> "other"));
+            } finally {
+                RequestDeadline.clear();
+            }
+            release.countDown();
+            assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void joiner_WhenTheLeaderRunsOutOfTime_ShouldLoadItself() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("item:1", () -> {
+                started.countDown();
+                await(release);
+                throw new QueryTimeoutException("leader deadline exceeded");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<String> joiner = executor.submit(() -> singleFlight.execute("item:1", () -> "own"));
+            while (singleFlight.sharedCount() < 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertEquals("own", joiner.get(5, TimeUnit.SECONDS));
+            assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void callAfterLoadFinished_ShouldLoadAgain() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(1, singleFlight.execute("order:A", loads::incrementAndGet));
+        assertEquals(2, singleFlight.execute("order:A", loads::incrementAndGet));
+    }
+
+    @Test
+    void failedLoad_ShouldPropagateToCallerAndNotBeRemembered() {
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("item:2", () -> {
+            throw new IllegalStateException("db down");
+        }));
+
+        assertEquals("ok", singleFlight.execute("item:2", () -> "ok"));
+    }
+
+    @Test
+    void differentKeys_ShouldNotShare() {
+        assertEquals("a", singleFlight.execute("item:1", () -> "a"));
+        assertEquals("b", singleFlight.execute("item:2", () -> "b"));
+        assertEquals(0, singleFlight.sharedCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
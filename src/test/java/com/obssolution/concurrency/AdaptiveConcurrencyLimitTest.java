@@ -0,0 +1,67 @@
+package com.obssolution.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long TARGET = 100_000_000L;
+
+    @Test
+    void tryAcquire_ShouldRejectOnceLimitIsReached() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, TARGET, 0.5);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+    }
+
+    @Test
+    void release_WithSlowSample_ShouldCutLimitMultiplicatively() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 20, TARGET, 0.5);
+
+        limit.tryAcquire();
+        limit.release(TARGET + 1, false);
+
+        assertEquals(5, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void release_WithFailure_ShouldNotGoBelowMinimum() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(3, 2, 20, TARGET, 0.5);
+
+        for (int i = 0; i < 5; i++) {
+            limit.tryAcquire();
+            limit.release(1, true);
+        }
+
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    void release_WithFastSamplesUnderLoad_ShouldGrowByOne() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 5, TARGET, 0.5);
+        for (int i = 0; i < 4; i++) {
+            limit.tryAcquire();
+        }
+
+        limit.release(1, false);
+        limit.release(1, false);
+        limit.release(1, false);
+
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    void release_WithFastSamplesUnderLightLoad_ShouldKeepLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 20, TARGET, 0.5);
+
+        limit.tryAcquire();
+        limit.release(1, false);
+
+        assertEquals(10, limit.getLimit());
+    }
+}
@@ -0,0 +1,121 @@
+package com.obssolution.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdmissionControlAspect aspect;
+    private WriteEndpoint endpoint;
+    private WriteEndpoint proxy;
+
+    static class WriteEndpoint {
+
+        CountDownLatch release;
+        HttpStatus status = HttpStatus.CREATED;
+        long waitOnOtherRequestMs;
+
+        @AdmissionControlled
+        public ResponseEntity<?> save() throws InterruptedException {
+            if (release != null) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            if (waitOnOtherRequestMs > 0) {
+                Thread.sleep(waitOnOtherRequestMs);
+                AdmissionControlAspect.excludeFromLatency(TimeUnit.MILLISECONDS.toNanos(waitOnOtherRequestMs));
+            }
+            return ResponseEntity.status(status).body("saved");
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        aspect = new AdmissionControlAspect();
+        ReflectionTestUtils.setField(aspect, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(aspect, "enabled", true);
+        ReflectionTestUtils.setField(aspect, "initialLimit", 1);
+        ReflectionTestUtils.setField(aspect, "minLimit", 1);
+        ReflectionTestUtils.setField(aspect, "maxLimit", 4);
+        ReflectionTestUtils.setField(aspect, "targetLatencyMs", 10_000L);
+        ReflectionTestUtils.setField(aspect, "backoffRatio", 0.5);
+        ReflectionTestUtils.setField(aspect, "retryAfterSeconds", 2);
+        aspect.init();
+
+        endpoint = new WriteEndpoint();
+        AspectJProxyFactory factory = new AspectJProxyFactory(endpoint);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        proxy = factory.getProxy();
+    }
+
+    @Test
+    void admit_WhenSaturated_ShouldReturn429WithRetryAfter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        endpoint.release = release;
+        Thread holder = new Thread(() -> {
+            try {
+                proxy.save();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        holder.start();
+        while (aspect.limit().getInFlight() == 0) {
+            Thread.onSpinWait();
+        }
+
+        ResponseEntity<?> response = proxy.save();
+
+        release.countDown();
+        holder.join(5000);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("2", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, meterRegistry.get("inventory.admission.rejected").counter().count());
+    }
+
+    @Test
+    void admit_WithServerError_ShouldLowerLimit() throws Exception {
+        ReflectionTestUtils.setField(aspect, "initialLimit", 4);
+        aspect.init();
+        endpoint.status = HttpStatus.INTERNAL_SERVER_ERROR;
+
+        ResponseEntity<?> response = proxy.save();
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+        assertEquals(2, aspect.limit().getLimit());
+        assertEquals(0, aspect.limit().getInFlight());
+    }
+
+    @Test
+    void admit_ShouldLeaveTimeWaitingOnAnotherRequestOutOfTheLatency() throws Exception {
+        ReflectionTestUtils.setField(aspect, "initialLimit", 4);
+        ReflectionTestUtils.setField(aspect, "targetLatencyMs", 50L);
+        aspect.init();
+        endpoint.waitOnOtherRequestMs = 200;
+
+        proxy.save();
+
+        assertEquals(4, aspect.limit().getLimit());
+    }
+
+    @Test
+    void admit_WhenDisabled_ShouldAlwaysProceed() throws Exception {
+        ReflectionTestUtils.setField(aspect, "enabled", false);
+
+        assertEquals(HttpStatus.CREATED, proxy.save().getStatusCode());
+        assertEquals(0, aspect.limit().getInFlight());
+    }
+}
@@ -0,0 +1,85 @@
+package com.obssolution.concurrency;
+
+import com.obssolution.exceptions.StaleVersionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimisticRetryAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConflictingService service;
+    private ConflictingService proxy;
+
+    static class ConflictingService {
+
+        final AtomicInteger calls = new AtomicInteger();
+        int failures;
+        RuntimeException failure;
+
+        @RetryOnConflict(entity = "item")
+        public String update() {
+            if (calls.incrementAndGet() <= failures) {
+                throw failure;
+            }
+            return "updated";
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        OptimisticRetryAspect aspect = new OptimisticRetryAspect();
+        ReflectionTestUtils.setField(aspect, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(aspect, "maxAttempts", 3);
+        ReflectionTestUtils.setField(aspect, "backoffMs", 1L);
+        ReflectionTestUtils.setField(aspect, "maxBackoffMs", 5L);
+
+        service = new ConflictingService();
+        AspectJProxyFactory factory = new AspectJProxyFactory(service);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        proxy = factory.getProxy();
+    }
+
+    private double conflicts(String outcome) {
+        return meterRegistry.counter("inventory.optimistic.conflicts", "entity", "item", "outcome", outcome).count();
+    }
+
+    @Test
+    void retry_ShouldReRunMethodAfterOptimisticConflict() {
+        service.failures = 2;
+        service.failure = new ObjectOptimisticLockingFailureException("Item", 1);
+
+        assertEquals("updated", proxy.update());
+        assertEquals(3, service.calls.get());
+        assertEquals(2, conflicts("retried"));
+    }
+
+    @Test
+    void retry_ShouldGiveUpAfterMaxAttempts() {
+        service.failures = 5;
+        service.failure = new ObjectOptimisticLockingFailureException("Item", 1);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> proxy.update());
+        assertEquals(3, service.calls.get());
+        assertEquals(1, conflicts("exhausted"));
+    }
+
+    @Test
+    void retry_ShouldNotRetryStaleClientVersion() {
+        service.failures = 1;
+        service.failure = new StaleVersionException("Item", 1, 1L, 2L);
+
+        assertThrows(StaleVersionException.class, () -> proxy.update());
+        assertEquals(1, service.calls.get());
+        assertEquals(1, conflicts("stale-version"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.obssolution.concurrency;
+
+import com.obssolution.bulkhead.Bulkhead;
+import com.obssolution.bulkhead.BulkheadRoutingDataSource;
+import com.obssolution.deadline.RequestDeadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelQueryExecutorTest {
+
+    private final ParallelQueryExecutor executor = new ParallelQueryExecutor();
+
+    @AfterEach
+    void tearDown() {
+        RequestDeadline.clear();
+        BulkheadRoutingDataSource.clear();
+        ReflectionTestUtils.invokeMethod(executor, "shutdown");
+    }
+
+    @Test
+    void supply_ShouldRunQueriesConcurrently() {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        CompletableFuture<Boolean> content = executor.supply(() -> awaitOther(bothStarted));
+        CompletableFuture<Boolean> count = executor.supply(() -> awaitOther(bothStarted));
+
+        assertTrue(executor.join(content));
+        assertTrue(executor.join(count));
+    }
+
+    @Test
+    void supply_ShouldCarryDeadlineAndBulkheadToWorker() {
+        RequestDeadline.start(5000);
+        BulkheadRoutingDataSource.bind(Bulkhead.READ);
+
+        long remaining = executor.join(executor.supply(RequestDeadline::remainingMillis));
+        Bulkhead bulkhead = executor.join(executor.supply(BulkheadRoutingDataSource::current));
+
+        assertTrue(remaining > 4000 && remaining <= 5000);
+        assertEquals(Bulkhead.READ, bulkhead);
+    }
+
+    @Test
+    void join_ShouldRethrowQueryException() {
+        CompletableFuture<Object> failed = executor.supply(() -> {
+            throw new IllegalStateException("count failed");
+        });
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> executor.join(failed));
+        assertEquals("count failed", e.getMessage());
+    }
+
+    @Test
+    void supply_WhenDisabled_ShouldRunOnCaller() {
+        ReflectionTestUtils.setField(executor, "enabled", false);
+        Thread caller = Thread.currentThread();
+
+        assertSame(caller, executor.join(executor.supply(Thread::currentThread)));
+    }
+
+    private static boolean awaitOther(CountDownLatch bothStarted) {
+        bothStarted.countDown();
+        try {
+            return bothStarted.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.obssolution.controller;
+
+import com.obssolution.dto.admin.ReconciliationReportDTO;
+import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.service.impl.ReconciliationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class AdminControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private ReconciliationService reconciliationService;
+
+    @InjectMocks
+    private AdminController adminController;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(adminController).build();
+    }
+
+    @Test
+    void startReconciliation_ShouldReturnAccepted() throws Exception {
+        ReconciliationReportDTO report = new ReconciliationReportDTO();
+        report.setJobId("job-1");
+        report.setStatus("RUNNING");
+        report.setRepair(true);
+        given(reconciliationService.startReconciliation(true)).willReturn(report);
+
+        mockMvc.perform(post("/api/admin/reconcile").param("repair", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.jobId").value("job-1"))
+                .andExpect(jsonPath("$.status").value("RUNNING"));
+    }
+
+    @Test
+    void startReconciliation_WhenAlreadyRunning_ShouldReturnConflict() throws Exception {
+        given(reconciliationService.startReconciliation(false))
+                .willThrow(new IllegalStateException("Reconciliation job-1 is still running"));
+
+        mockMvc.perform(post("/api/admin/reconcile"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void getReconciliation_WithUnknownJob_ShouldReturnNotFound() throws Exception {
+        given(reconciliationService.getReconciliation("missing"))
+                .willThrow(new ResourceNotFoundException("Reconciliation job not found with id: missing"));
+
+        mockMvc.perform(get("/api/admin/reconcile/missing"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -6,16 +6,19 @@ import com.obssolution.dto.inventory.InventoryRequestDTO;
 import com.obssolution.dto.inventory.InventoryResponseDTO;
 import com.obssolution.dto.inventory.InventoryUpdateRequestDTO;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.idempotency.IdempotencyStore;
 import com.obssolution.service.impl.InventoryService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -25,6 +28,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -36,6 +41,9 @@ class InventoryControllerTest {
     @Mock
     private InventoryService inventoryService;
 
+    @Spy
+    private IdempotencyStore idempotencyStore = new IdempotencyStore();
+
     @InjectMocks
     private InventoryController inventoryController;
 
@@ -101,6 +109,32 @@ class InventoryControllerTest {
                 .andExpect(jsonPath("$.createBy").value("SYSTEM"));
     }
 
+    @Test
+    void createInventory_WithSameIdempotencyKey_ShouldReplayWithoutCallingService() throws Exception {
+        ReflectionTestUtils.setField(idempotencyStore, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(idempotencyStore, "enabled", true);
+        ReflectionTestUtils.setField(idempotencyStore, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(idempotencyStore, "maxEntries", 100);
+        ReflectionTestUtils.setField(idempotencyStore, "waitMs", 2000L);
+        InventoryRequestDTO request = new InventoryRequestDTO();
+        request.setItemId(1);
+        request.setQty(5);
+        request.setType("T");
+        given(inventoryService.createInventory(any(InventoryRequestDTO.class)))
+                .willReturn(createSampleInventoryResponseDTO(1, 1, "Pen", 5, "T"));
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mockMvc.perform(post("/api/inventory/save")
+                            .header(IdempotencyStore.HEADER, "retry-1")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.id").value(1));
+        }
+
+        verify(inventoryService, times(1)).createInventory(any(InventoryRequestDTO.class));
+    }
+
     @Test
     void createInventory_ShouldReturnCreatedInventory() throws Exception {
         InventoryRequestDTO request = new InventoryRequestDTO();
@@ -1,17 +1,24 @@
 package com.obssolution.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.obssolution.dto.MultiGetResponseDTO;
 import com.obssolution.dto.PageResponseDTO;
+import com.obssolution.dto.item.AvailabilityLineRequestDTO;
+import com.obssolution.dto.item.AvailabilityLineResponseDTO;
+import com.obssolution.dto.item.AvailabilityRequestDTO;
 import com.obssolution.dto.item.ItemRequestDTO;
 import com.obssolution.dto.item.ItemResponseDTO;
 import com.obssolution.dto.item.ItemUpdateRequestDTO;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.idempotency.IdempotencyStore;
+import com.obssolution.exceptions.StaleVersionException;
 import com.obssolution.service.impl.ItemService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.http.MediaType;
@@ -24,6 +31,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doThrow;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -37,6 +45,9 @@ class ItemControllerTest {
     @Mock
     private ItemService itemService;
 
+    @Spy
+    private IdempotencyStore idempotencyStore = new IdempotencyStore();
+
     @InjectMocks
     private ItemController itemController;
 
@@ -132,6 +143,23 @@ class ItemControllerTest {
                 .andExpect(jsonPath("$.price").value(6.00));
     }
 
+    @Test
+    void updateItem_WithStaleVersion_ShouldReturnConflict() throws Exception {
+        ItemUpdateRequestDTO request = new ItemUpdateRequestDTO();
+        request.setId(1);
+        request.setName("Updated Pen");
+        request.setPrice(BigDecimal.valueOf(6.00));
+        request.setVersion(1L);
+
+        given(itemService.updateItem(any(ItemUpdateRequestDTO.class)))
+                .willThrow(new StaleVersionException("Item", 1, 1L, 2L));
+
+        mockMvc.perform(put("/api/item/edit")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     void deleteItem_ShouldReturnSuccessMessage() throws Exception {
         mockMvc.perform(put("/api/item/delete/1"))
@@ -147,4 +175,48 @@ class ItemControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(content().string("Item not found"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void checkAvailability_ShouldReturnOneResultPerLine() throws Exception {
+        AvailabilityLineRequestDTO line = new AvailabilityLineRequestDTO();
+        line.setItemId(1);
+        line.setQty(3);
+        AvailabilityRequestDTO request = new AvailabilityRequestDTO();
+        request.setLines(List.of(line));
+
+        AvailabilityLineResponseDTO result = new AvailabilityLineResponseDTO();
+        result.setItemId(1);
+        result.setQty(3);
+        result.setAvailable(2);
+        result.setSufficient(false);
+        given(itemService.checkAvailability(anyList())).willReturn(List.of(result));
+
+        mockMvc.perform(post("/api/item/availability")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].itemId").value(1))
+                .andExpect(jsonPath("$[0].available").value(2))
+                .andExpect(jsonPath("$[0].sufficient").value(false));
+    }
+
+    @Test
+    void checkAvailability_ShouldReturnBadRequest_WhenNoLines() throws Exception {
+        mockMvc.perform(post("/api/item/availability")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"lines\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getItemsByIds_ShouldReturnResultsAndMissingIds() throws Exception {
+        ItemResponseDTO item = createSampleItemResponseDTO(1, "Pen", 5.0);
+        given(itemService.getItemsByIds(List.of(1, 9)))
+                .willReturn(new MultiGetResponseDTO<>(List.of(item), List.of(9)));
+
+        mockMvc.perform(get("/api/item").param("ids", "1,9"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].id").value(1))
+                .andExpect(jsonPath("$.missing[0]").value(9));
+    }
+}
@@ -1,18 +1,26 @@
 package com.obssolution.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.obssolution.dto.MultiGetResponseDTO;
 import com.obssolution.dto.PageResponseDTO;
+import com.obssolution.dto.order.BasketLineRequestDTO;
+import com.obssolution.dto.order.BasketOrderRequestDTO;
+import com.obssolution.dto.order.BasketOrderResponseDTO;
 import com.obssolution.dto.order.OrderRequestDTO;
 import com.obssolution.dto.order.OrderResponseDTO;
+import com.obssolution.dto.order.OrderStatusDTO;
 import com.obssolution.dto.order.OrderUpdateRequestDTO;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.idempotency.IdempotencyStore;
 import com.obssolution.service.impl.OrderService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -37,6 +45,9 @@ class OrderControllerTest {
     @Mock
     private OrderService orderService;
 
+    @Spy
+    private IdempotencyStore idempotencyStore = new IdempotencyStore();
+
     @InjectMocks
     private OrderController orderController;
 
@@ -175,6 +186,112 @@ class OrderControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void createOrder_ShouldReturnBadRequest_WhenServiceRejectsRequest() throws Exception {
+        OrderRequestDTO request = new OrderRequestDTO();
+        request.setItemId(1);
+        request.setQty(1);
+
+        given(orderService.createOrder(any(OrderRequestDTO.class)))
+                .willThrow(new IllegalArgumentException("OrderNo must not be empty"));
+
+        mockMvc.perform(post("/api/orders/save")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void createOrder_ShouldReturnConflict_WhenPrimaryKeyRejectsDuplicate() throws Exception {
+        OrderRequestDTO request = new OrderRequestDTO();
+        request.setOrderNo("ORD001");
+        request.setItemId(1);
+        request.setQty(1);
+
+        given(orderService.createOrder(any(OrderRequestDTO.class)))
+                .willThrow(new DataIntegrityViolationException("duplicate key"));
+
+        mockMvc.perform(post("/api/orders/save")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void createOrder_ShouldReturnAccepted_WhenOrderIsBackordered() throws Exception {
+        OrderRequestDTO request = new OrderRequestDTO();
+        request.setOrderNo("ORD009");
+        request.setItemId(1);
+        request.setQty(50);
+        request.setBackorder(true);
+
+        OrderResponseDTO response = createSampleOrderResponseDTO("ORD009", 1, "Pen", 50, BigDecimal.valueOf(5.00));
+        response.setStatus(OrderService.STATUS_BACKORDERED);
+        given(orderService.createOrder(any(OrderRequestDTO.class))).willReturn(response);
+
+        mockMvc.perform(post("/api/orders/save")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("BACKORDERED"));
+    }
+
+    @Test
+    void getOrderStatus_ShouldReturnQueuePosition() throws Exception {
+        OrderStatusDTO orderStatus = new OrderStatusDTO();
+        orderStatus.setOrderNo("ORD009");
+        orderStatus.setStatus(OrderService.STATUS_BACKORDERED);
+        orderStatus.setQueuePosition(2L);
+        given(orderService.getOrderStatus("ORD009")).willReturn(orderStatus);
+
+        mockMvc.perform(get("/api/orders/status/ORD009"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("BACKORDERED"))
+                .andExpect(jsonPath("$.queuePosition").value(2));
+    }
+
+    @Test
+    void getOrderStatus_ShouldReturnNotFound_WhenOrderNotExists() throws Exception {
+        given(orderService.getOrderStatus("NOPE"))
+                .willThrow(new ResourceNotFoundException("Order not found with orderNo: NOPE"));
+
+        mockMvc.perform(get("/api/orders/status/NOPE"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createBasketOrder_ShouldReturnCreatedOrder() throws Exception {
+        BasketLineRequestDTO line = new BasketLineRequestDTO();
+        line.setItemId(1);
+        line.setQty(2);
+        BasketOrderRequestDTO request = new BasketOrderRequestDTO();
+        request.setOrderNo("B1");
+        request.setLines(List.of(line));
+
+        BasketOrderResponseDTO response = new BasketOrderResponseDTO();
+        response.setOrderNo("B1");
+        response.setTotalPrice(BigDecimal.TEN);
+        given(orderService.createBasketOrder(any(BasketOrderRequestDTO.class))).willReturn(response);
+
+        mockMvc.perform(post("/api/orders/basket")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.orderNo").value("B1"));
+    }
+
+    @Test
+    void createBasketOrder_ShouldReturnBadRequest_WhenBasketIsEmpty() throws Exception {
+        BasketOrderRequestDTO request = new BasketOrderRequestDTO();
+        request.setOrderNo("B1");
+        request.setLines(List.of());
+
+        mockMvc.perform(post("/api/orders/basket")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void updateOrder_ShouldReturnNotFound_WhenOrderNotExists() throws Exception {
         OrderUpdateRequestDTO request = new OrderUpdateRequestDTO();
@@ -202,4 +319,16 @@ class OrderControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(content().string("Order not found"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getOrdersByOrderNos_ShouldReturnResultsAndMissingOrderNos() throws Exception {
+        OrderResponseDTO order = createSampleOrderResponseDTO("ORD001", 1, "Pen", 5, BigDecimal.valueOf(5.00));
+        given(orderService.getOrdersByOrderNos(List.of("ORD001", "ORD404")))
+                .willReturn(new MultiGetResponseDTO<>(List.of(order), List.of("ORD404")));
+
+        mockMvc.perform(get("/api/orders").param("orderNos", "ORD001,ORD404"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results[0].orderNo").value("ORD001"))
+                .andExpect(jsonPath("$.missing[0]").value("ORD404"));
+    }
+}
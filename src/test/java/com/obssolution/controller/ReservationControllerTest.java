@@ -0,0 +1,111 @@
+package com.obssolution.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.obssolution.dto.reservation.ReservationRequestDTO;
+import com.obssolution.dto.reservation.ReservationResponseDTO;
+import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.idempotency.IdempotencyStore;
+import com.obssolution.service.impl.ReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private ReservationService reservationService;
+
+    @Spy
+    private IdempotencyStore idempotencyStore = new IdempotencyStore();
+
+    @InjectMocks
+    private ReservationController reservationController;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(reservationController).build();
+    }
+
+    private ReservationResponseDTO response(String status) {
+        ReservationResponseDTO dto = new ReservationResponseDTO();
+        dto.setReservationId("r-1");
+        dto.setItemId(1);
+        dto.setQty(3);
+        dto.setStatus(status);
+        return dto;
+    }
+
+    @Test
+    void reserve_ShouldReturnCreatedReservation() throws Exception {
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setItemId(1);
+        request.setQty(3);
+        given(reservationService.reserve(any(ReservationRequestDTO.class))).willReturn(response("HELD"));
+
+        mockMvc.perform(post("/api/reservations/save")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.reservationId").value("r-1"))
+                .andExpect(jsonPath("$.status").value("HELD"));
+    }
+
+    @Test
+    void reserve_WithInsufficientStock_ShouldReturnBadRequest() throws Exception {
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setItemId(1);
+        request.setQty(300);
+        given(reservationService.reserve(any(ReservationRequestDTO.class)))
+                .willThrow(new IllegalArgumentException("Insufficient stock for item ID 1"));
+
+        mockMvc.perform(post("/api/reservations/save")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void confirm_ShouldReturnConfirmedReservation() throws Exception {
+        given(reservationService.confirm(eq("r-1"), isNull())).willReturn(response("CONFIRMED"));
+
+        mockMvc.perform(put("/api/reservations/confirm/r-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CONFIRMED"));
+    }
+
+    @Test
+    void release_WhenAlreadyExpired_ShouldReturnConflict() throws Exception {
+        given(reservationService.release("r-1")).willThrow(new IllegalStateException("Reservation r-1 is EXPIRED"));
+
+        mockMvc.perform(put("/api/reservations/release/r-1"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void getReservation_WithUnknownId_ShouldReturnNotFound() throws Exception {
+        given(reservationService.getReservation("missing"))
+                .willThrow(new ResourceNotFoundException("Reservation not found with id: missing"));
+
+        mockMvc.perform(get("/api/reservations/missing"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,104 @@
+package com.obssolution.deadline;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineAspectTest {
+
+    private MockHttpServletRequest request;
+    private Handler handler;
+    private Handler proxy;
+
+    @RestController
+    static class Handler {
+
+        long seenBudget;
+        boolean sleepPastDeadline;
+
+        @RequestTimeout(millis = 1500)
+        public ResponseEntity<?> list() throws InterruptedException {
+            seenBudget = RequestDeadline.remainingMillis();
+            if (sleepPastDeadline) {
+                Thread.sleep(seenBudget + 5);
+                return ResponseEntity.internalServerError().body("query failed");
+            }
+            return ResponseEntity.ok("ok");
+        }
+
+        public ResponseEntity<?> save() {
+            seenBudget = RequestDeadline.remainingMillis();
+            throw new QueryTimeoutException("timed out");
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        DeadlineAspect aspect = new DeadlineAspect();
+        ReflectionTestUtils.setField(aspect, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(aspect, "enabled", true);
+        ReflectionTestUtils.setField(aspect, "defaultMs", 10_000L);
+        ReflectionTestUtils.setField(aspect, "maxMs", 20_000L);
+
+        handler = new Handler();
+        AspectJProxyFactory factory = new AspectJProxyFactory(handler);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        proxy = factory.getProxy();
+
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void withDeadline_ShouldUseEndpointDefaultAndClearAfterwards() throws Exception {
+        proxy.list();
+
+        assertTrue(handler.seenBudget > 1000 && handler.seenBudget <= 1500);
+        assertFalse(RequestDeadline.isSet());
+    }
+
+    @Test
+    void withDeadline_ShouldPreferHeaderCappedAtMaximum() throws Exception {
+        request.addHeader(DeadlineAspect.HEADER, "60000");
+
+        proxy.list();
+
+        assertTrue(handler.seenBudget > 19_000 && handler.seenBudget <= 20_000);
+    }
+
+    @Test
+    void withDeadline_WhenHandlerFailsPastDeadline_ShouldReturn504() throws Exception {
+        request.addHeader(DeadlineAspect.HEADER, "20");
+        handler.sleepPastDeadline = true;
+
+        ResponseEntity<?> response = proxy.list();
+
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.getStatusCode());
+    }
+
+    @Test
+    void withDeadline_WhenQueryTimeoutEscapes_ShouldReturn504() {
+        ResponseEntity<?> response = proxy.save();
+
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, response.getStatusCode());
+        assertTrue(handler.seenBudget > 9000);
+    }
+}
@@ -0,0 +1,72 @@
+package com.obssolution.deadline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DeadlineAwareDataSourceTest {
+
+    @AfterEach
+    void tearDown() {
+        RequestDeadline.clear();
+    }
+
+    private PreparedStatement prepare(PreparedStatement statement) throws Exception {
+        DataSource target = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        when(target.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement("SELECT 1")).thenReturn(statement);
+        return new DeadlineAwareDataSource(target).getConnection().prepareStatement("SELECT 1");
+    }
+
+    @Test
+    void execute_WithDeadline_ShouldSetRemainingBudgetAsQueryTimeout() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        RequestDeadline.start(2500);
+
+        prepare(statement).executeQuery();
+
+        verify(statement).setQueryTimeout(3);
+        verify(statement).executeQuery();
+    }
+
+    @Test
+    void execute_WithShorterExistingTimeout_ShouldKeepIt() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.getQueryTimeout()).thenReturn(1);
+        RequestDeadline.start(10_000);
+
+        prepare(statement).executeUpdate();
+
+        verify(statement, never()).setQueryTimeout(anyInt());
+        verify(statement).executeUpdate();
+    }
+
+    @Test
+    void execute_AfterDeadline_ShouldNotSendStatement() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        RequestDeadline.start(-1);
+
+        PreparedStatement wrapped = prepare(statement);
+
+        assertThrows(SQLTimeoutException.class, wrapped::executeQuery);
+        verify(statement, never()).executeQuery();
+    }
+
+    @Test
+    void execute_WithoutDeadline_ShouldLeaveTimeoutAlone() throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+
+        prepare(statement).execute();
+
+        verify(statement, never()).setQueryTimeout(anyInt());
+        verify(statement).execute();
+    }
+}
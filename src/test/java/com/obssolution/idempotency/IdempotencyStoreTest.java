@@ -0,0 +1,303 @@
+package com.obssolution.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.obssolution.deadline.RequestDeadline;
+import com.obssolution.shard.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyStoreTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter();
+
+    @InjectMocks
+    private IdempotencyStore idempotencyStore;
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(idempotencyStore, "enabled", true);
+        ReflectionTestUtils.setField(idempotencyStore, "persist", false);
+        ReflectionTestUtils.setField(idempotencyStore, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(idempotencyStore, "maxEntries", 100);
+        ReflectionTestUtils.setField(idempotencyStore, "waitMs", 2000L);
+    }
+
+    private ResponseEntity<?> created() {
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", calls.incrementAndGet()));
+    }
+
+    @Test
+    void execute_WithoutKey_ShouldAlwaysRunAction() {
+        idempotencyStore.execute("orders", null, Map.of("qty", 1), this::created);
+        idempotencyStore.execute("orders", null, Map.of("qty", 1), this::created);
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void execute_WithSameKey_ShouldReplayFirstResponse() {
+        ResponseEntity<?> first = idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+        ResponseEntity<?> second = idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.CREATED, second.getStatusCode());
+        assertEquals(first.getBody(), second.getBody());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+    }
+
+    @Test
+    void execute_WithSameKeyInOtherScope_ShouldRunAction() {
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+        idempotencyStore.execute("inventory", "k1", Map.of("qty", 1), this::created);
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void execute_WithSameKeyAndDifferentRequest_ShouldReturnUnprocessableEntity() {
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+        ResponseEntity<?> response = idempotencyStore.execute("orders", "k1", Map.of("qty", 2), this::created);
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_AfterServerError_ShouldRunActionAgain() {
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.internalServerError().body("db down");
+        });
+        ResponseEntity<?> retry = idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void execute_AfterClientError_ShouldRunActionAgain() {
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.badRequest().body("Insufficient stock");
+        });
+        ResponseEntity<?> retry = idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void execute_WithConcurrentDuplicate_ShouldWaitForInFlightRequest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<?>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("orders", "k1", Map.of("qty", 1), () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return created();
+                }));
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        CompletableFuture<ResponseEntity<?>> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created));
+        Thread.sleep(50);
+        assertFalse(duplicate.isDone());
+        release.countDown();
+
+        assertEquals(first.get(2, TimeUnit.SECONDS).getBody(), duplicate.get(2, TimeUnit.SECONDS).getBody());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_WhenOverCapacity_ShouldEvictOldestKeys() {
+        ReflectionTestUtils.setField(idempotencyStore, "maxEntries", 2);
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+        idempotencyStore.execute("orders", "k2", Map.of("qty", 1), this::created);
+        idempotencyStore.execute("orders", "k3", Map.of("qty", 1), this::created);
+        idempotencyStore.execute("orders", "k4", Map.of("qty", 1), this::created);
+
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+
+        assertEquals(5, calls.get());
+    }
+
+    @Test
+    void execute_WhenOverCapacity_ShouldKeepKeysStillInFlight() throws Exception {
+        ReflectionTestUtils.setField(idempotencyStore, "maxEntries", 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<?>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("orders", "k1", Map.of("qty", 1), () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return created();
+                }));
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        idempotencyStore.execute("orders", "k2", Map.of("qty", 1), this::created);
+        CompletableFuture<ResponseEntity<?>> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created));
+        Thread.sleep(50);
+        assertFalse(duplicate.isDone());
+        release.countDown();
+
+        assertEquals(first.get(2, TimeUnit.SECONDS).getBody(), duplicate.get(2, TimeUnit.SECONDS).getBody());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void execute_WhenExpired_ShouldRunActionAgain() {
+        ReflectionTestUtils.setField(idempotencyStore, "ttlSeconds", 0L);
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void execute_WithPersistedKey_ShouldReplayStoredResponseWithoutRunningAction() {
+        ReflectionTestUtils.setField(idempotencyStore, "persist", true);
+        String hash = idempotencyStore.fingerprint(Map.of("qty", 1));
+        doReturn(List.of(new IdempotencyStore.StoredResponse(hash, 201, MediaType.APPLICATION_JSON_VALUE, "{\"id\":7}")))
+                .when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+
+        ResponseEntity<?> response = idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals("{\"id\":7}", response.getBody());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void execute_WithPersistEnabled_ShouldStoreResponse() {
+        ReflectionTestUtils.setField(idempotencyStore, "persist", true);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(List.of());
+
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+
+        verify(jdbcTemplate).update(startsWith("INSERT INTO IDEMPOTENCY_KEY"), eq("orders:k1"), anyString(), eq(201),
+                eq(MediaType.APPLICATION_JSON_VALUE), eq("{\"id\":1}"), any());
+    }
+
+    @Test
+    void execute_WhenTheDeadlineRunsOutDuringTheAction_ShouldStillStoreResponse() {
+        ReflectionTestUtils.setField(idempotencyStore, "persist", true);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(List.of());
+        doAnswer(inv -> {
+            assertFalse(RequestDeadline.isSet());
+            return 1;
+        }).when(jdbcTemplate).update(startsWith("INSERT INTO IDEMPOTENCY_KEY"), any(Object[].class));
+
+        RequestDeadline.start(60_000);
+        try {
+            idempotencyStore.execute("orders", "k1", Map.of("qty", 1), () -> {
+                RequestDeadline.start(0);
+                return created();
+            });
+            assertTrue(RequestDeadline.isExpired());
+        } finally {
+            RequestDeadline.clear();
+        }
+
+        verify(jdbcTemplate).update(startsWith("INSERT INTO IDEMPOTENCY_KEY"), any(Object[].class));
+    }
+
+    private List<TransactionSynchronization> writeInTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            idempotencyStore.afterBegin(mock(TransactionExecution.class), null);
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void execute_WithPersistEnabled_ShouldWriteTheKeyInTheBusinessTransaction() {
+        ReflectionTestUtils.setField(idempotencyStore, "persist", true);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(List.of());
+
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), () -> {
+            List<TransactionSynchronization> synchronizations = writeInTransaction();
+            synchronizations.forEach(sync -> sync.beforeCommit(false));
+            verify(jdbcTemplate).update(startsWith("INSERT INTO IDEMPOTENCY_KEY"), eq("orders:k1"), anyString(), eq(0),
+                    isNull(), isNull(), any());
+            synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            return created();
+        });
+
+        verify(jdbcTemplate).update(startsWith("UPDATE IDEMPOTENCY_KEY"), eq(201), eq(MediaType.APPLICATION_JSON_VALUE),
+                eq("{\"id\":1}"), eq("orders:k1"));
+        verify(jdbcTemplate, times(1)).update(startsWith("INSERT INTO IDEMPOTENCY_KEY"), any(Object[].class));
+    }
+
+    @Test
+    void execute_WhenTheBusinessTransactionRollsBack_ShouldNotKeepTheKey() {
+        ReflectionTestUtils.setField(idempotencyStore, "persist", true);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(List.of());
+
+        idempotencyStore.execute("orders", "k1", Map.of("qty", 1), () -> {
+            writeInTransaction().forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Stock was changed by another request");
+        });
+
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void execute_WhenTheWriteCommittedWithoutAStoredResponse_ShouldReturnConflict() {
+        ReflectionTestUtils.setField(idempotencyStore, "persist", true);
+        String hash = idempotencyStore.fingerprint(Map.of("qty", 1));
+        doReturn(List.of(new IdempotencyStore.StoredResponse(hash, 0, null, null)))
+                .when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+
+        ResponseEntity<?> response = idempotencyStore.execute("orders", "k1", Map.of("qty", 1), this::created);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals(0, calls.get());
+    }
+}
@@ -0,0 +1,92 @@
+package com.obssolution.order;
+
+import com.obssolution.shard.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderNumberAllocatorTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter();
+
+    @InjectMocks
+    private OrderNumberAllocator allocator;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(allocator, "enabled", true);
+        ReflectionTestUtils.setField(allocator, "prefix", "N");
+        ReflectionTestUtils.setField(allocator, "blockSize", 4);
+        lenient().when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenAnswer(inv -> sequence.incrementAndGet());
+    }
+
+    @Test
+    void next_ShouldHandOutConsecutiveNumbersFromReservedBlocks() {
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            numbers.add(allocator.next());
+        }
+
+        assertEquals(List.of("N000000004", "N000000005", "N000000006", "N000000007", "N000000008", "N000000009"),
+                numbers);
+        assertEquals(2, sequence.get());
+    }
+
+    @Test
+    void next_UnderContention_ShouldNeverRepeatANumber() throws Exception {
+        ReflectionTestUtils.setField(allocator, "blockSize", 50);
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String orderNo = allocator.next();
+                    assertTrue(orderNo.length() <= 10);
+                    assertTrue(seen.add(orderNo), "duplicate " + orderNo);
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(4000, seen.size());
+    }
+
+    @Test
+    void isReserved_ShouldMatchOnlyTheServerPrefix() {
+        assertTrue(allocator.isReserved("N000000001"));
+        assertFalse(allocator.isReserved("ORD123"));
+    }
+}
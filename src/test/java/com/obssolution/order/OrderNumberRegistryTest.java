@@ -0,0 +1,126 @@
+package com.obssolution.order;
+
+import com.obssolution.concurrency.ParallelQueryExecutor;
+import com.obssolution.shard.ShardDataSourcePostProcessor;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.shard.ShardRoutingDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderNumberRegistryTest {
+
+    private final ShardDataSourcePostProcessor postProcessor = new ShardDataSourcePostProcessor();
+    private final ParallelQueryExecutor parallelQueryExecutor = new ParallelQueryExecutor();
+    private final ShardRouter router = new ShardRouter();
+    private final OrderNumberRegistry registry = new OrderNumberRegistry();
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        String shardUrl = memoryUrl();
+        DataSource primary = new DriverManagerDataSource(memoryUrl(), "sa", "");
+        new JdbcTemplate(primary).execute("CREATE TABLE ORDER_NO_CLAIM (ORDER_NO VARCHAR(10) PRIMARY KEY, " +
+                "CREATE_DATE TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        new JdbcTemplate(new DriverManagerDataSource(shardUrl, "sa", "")).execute("CREATE TABLE CUSTOMER_ORDER (ORDER_NO VARCHAR(10))");
+
+        postProcessor.setEnvironment(new MockEnvironment()
+                .withProperty("inventory.db-sharding.enabled", "true")
+                .withProperty("inventory.db-sharding.urls", shardUrl)
+                .withProperty("spring.datasource.username", "sa"));
+        DataSource dataSource = (DataSource) postProcessor.postProcessAfterInitialization(primary, "dataSource");
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transaction = new TransactionTemplate(transactionManager);
+        ReflectionTestUtils.setField(parallelQueryExecutor, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(router, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(router, "parallelQueryExecutor", parallelQueryExecutor);
+        ReflectionTestUtils.setField(router, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(router, "enabled", true);
+        ReflectionTestUtils.setField(router, "urls", new String[]{shardUrl});
+        ReflectionTestUtils.setField(registry, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(registry, "shardRouter", router);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ShardRoutingDataSource.clear();
+        ReflectionTestUtils.invokeMethod(parallelQueryExecutor, "shutdown");
+        postProcessor.destroy();
+    }
+
+    private static String memoryUrl() {
+        return "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private int claims() {
+        return router.onPrimary(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ORDER_NO_CLAIM", Integer.class));
+    }
+
+    @Test
+    void claim_WhenTheNumberIsTaken_ShouldReject() {
+        registry.claim("C1");
+
+        assertThrows(IllegalArgumentException.class, () -> registry.claim("C1"));
+        assertEquals(1, claims());
+    }
+
+    @Test
+    void claim_WhenTheOrderRollsBack_ShouldBeUndone() {
+        transaction.executeWithoutResult(status -> {
+            registry.claim("C2");
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, claims());
+        registry.claim("C2");
+    }
+
+    @Test
+    void claim_OnAnotherShard_ShouldRollBackWithTheOrder() {
+        ShardRoutingDataSource.bind(1);
+        transaction.executeWithoutResult(status -> {
+            registry.claim("C4");
+            jdbcTemplate.update("INSERT INTO CUSTOMER_ORDER VALUES ('C4')");
+            status.setRollbackOnly();
+        });
+        ShardRoutingDataSource.clear();
+
+        assertEquals(0, claims());
+        registry.claim("C4");
+    }
+
+    @Test
+    void claim_OnAnotherShard_ShouldStayUncommittedUntilTheOrderCommits() {
+        ShardRoutingDataSource.bind(1);
+        transaction.executeWithoutResult(status -> {
+            registry.claim("C5");
+            assertEquals(0, claims());
+        });
+        ShardRoutingDataSource.clear();
+
+        assertEquals(1, claims());
+    }
+
+    @Test
+    void claim_OnAnotherShard_ShouldKeepTheClaimOnCommit() {
+        ShardRoutingDataSource.bind(1);
+        transaction.executeWithoutResult(status -> registry.claim("C3"));
+        ShardRoutingDataSource.clear();
+
+        assertEquals(1, claims());
+    }
+}
@@ -0,0 +1,177 @@
+package com.obssolution.readmodel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadModelTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private ReadModel readModel;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE ITEM (ID INT PRIMARY KEY, NAME VARCHAR(50))");
+        jdbcTemplate.execute("CREATE TABLE INVENTORY (ID INT PRIMARY KEY, ITEM_ID INT, QTY INT, TYPE CHAR(1), " +
+                "BATCH_REF VARCHAR(40), CREATE_BY VARCHAR(50), CREATE_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "IS_DELETED BOOLEAN DEFAULT FALSE, VERSION BIGINT DEFAULT 0)");
+        jdbcTemplate.execute("CREATE TABLE CUSTOMER_ORDER (ORDER_NO VARCHAR(10) PRIMARY KEY, ID BIGINT UNIQUE, " +
+                "ITEM_ID INT, QTY INT, PRICE DECIMAL(10,2), CREATE_BY VARCHAR(50), " +
+                "CREATE_DATE TIMESTAMP DEFAULT CURRENT_TIMESTAMP, IS_DELETED BOOLEAN DEFAULT FALSE, VERSION BIGINT DEFAULT 0)");
+        jdbcTemplate.update("INSERT INTO ITEM VALUES (1, 'Pen'), (2, 'Book')");
+
+        readModel = new ReadModel();
+        ReflectionTestUtils.setField(readModel, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(readModel, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(readModel, "enabled", true);
+        ReflectionTestUtils.setField(readModel, "recentLimit", 2);
+        readModel.registerMeters();
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void poll_ShouldProjectStockAndRecentMovements() {
+        insertMovement(1, 1, 10, "T", false);
+        insertMovement(2, 1, 3, "W", false);
+        insertMovement(3, 1, 50, "T", true);
+        insertMovement(4, 1, 4, "T", false);
+        insertMovement(5, 2, 7, "T", false);
+
+        assertFalse(readModel.isFresh());
+        readModel.poll();
+
+        assertTrue(readModel.isFresh());
+        assertEquals(11, readModel.ledgerStock(1));
+        assertEquals(7, readModel.ledgerStock(2));
+        assertEquals(0, readModel.ledgerStock(99));
+        assertEquals(List.of(4, 2), readModel.recentMovements(1).stream().map(ReadModel.Movement::id).toList());
+        assertEquals("Pen", readModel.recentMovements(1).get(0).itemName());
+    }
+
+    @Test
+    void poll_ShouldPickUpRowsThatCommitBehindTheWatermark() {
+        insertMovement(1, 1, 10, "T", false);
+        insertMovement(3, 1, 5, "T", false);
+        readModel.poll();
+        assertEquals(15, readModel.ledgerStock(1));
+
+        insertMovement(2, 1, 4, "W", false);
+        readModel.poll();
+        readModel.poll();
+
+        assertEquals(11, readModel.ledgerStock(1));
+        assertEquals(List.of(3, 2), readModel.recentMovements(1).stream().map(ReadModel.Movement::id).toList());
+    }
+
+    @Test
+    void poll_ShouldRebuildTheItemWhenARowCommitsAfterItsGapExpired() {
+        ReflectionTestUtils.setField(readModel, "gapGraceMs", 0L);
+        insertMovement(1, 1, 10, "T", false);
+        insertMovement(3, 1, 5, "T", false);
+        readModel.poll();
+        readModel.poll();
+
+        insertMovement(2, 1, 4, "W", false);
+        readModel.poll();
+        readModel.poll();
+
+        assertEquals(11, readModel.ledgerStock(1));
+        assertEquals(List.of(3, 2), readModel.recentMovements(1).stream().map(ReadModel.Movement::id).toList());
+    }
+
+    @Test
+    void refreshItem_ShouldApplyInPlaceUpdatesAndDeletesWithoutDoubleCounting() {
+        insertMovement(1, 1, 10, "T", false);
+        insertMovement(2, 1, 4, "W", false);
+        insertMovement(4, 1, 1, "T", false);
+        readModel.poll();
+        assertEquals(7, readModel.ledgerStock(1));
+
+        jdbcTemplate.update("UPDATE INVENTORY SET QTY = 20 WHERE ID = 1");
+        jdbcTemplate.update("UPDATE INVENTORY SET IS_DELETED = TRUE WHERE ID = 2");
+        insertMovement(3, 1, 100, "T", false);
+        readModel.refreshItem(1);
+        readModel.poll();
+
+        assertEquals(121, readModel.ledgerStock(1));
+        assertEquals(List.of(4, 3), readModel.recentMovements(1).stream().map(ReadModel.Movement::id).toList());
+    }
+
+    @Test
+    void poll_ShouldProjectOrdersAndRefreshThemOnRequest() {
+        jdbcTemplate.update("INSERT INTO CUSTOMER_ORDER (ORDER_NO, ID, ITEM_ID, QTY, PRICE, CREATE_BY) " +
+                "VALUES ('O1', 1, 1, 2, 5, 'SYSTEM')");
+        readModel.poll();
+        assertEquals(2, readModel.order("O1").qty());
+        assertEquals("Pen", readModel.order("O1").itemName());
+        assertNull(readModel.order("O2"));
+
+        jdbcTemplate.update("UPDATE CUSTOMER_ORDER SET QTY = 3, ITEM_ID = 2 WHERE ORDER_NO = 'O1'");
+        readModel.refreshOrder("O1");
+        readModel.poll();
+
+        assertEquals(3, readModel.order("O1").qty());
+        assertEquals(2, readModel.order("O1").itemId());
+    }
+
+    @Test
+    void poll_ShouldKeepOnlyTheMostRecentlyUsedOrders() {
+        ReflectionTestUtils.setField(readModel, "maxOrders", 2);
+        for (int id = 1; id <= 3; id++) {
+            jdbcTemplate.update("INSERT INTO CUSTOMER_ORDER (ORDER_NO, ID, ITEM_ID, QTY, PRICE, CREATE_BY) " +
+                    "VALUES (?, ?, 1, 1, 5, 'SYSTEM')", "O" + id, id);
+        }
+        readModel.poll();
+
+        assertNull(readModel.order("O1"));
+        assertNotNull(readModel.order("O2"));
+        assertNotNull(readModel.order("O3"));
+    }
+
+    @Test
+    void served_ShouldReportDatabaseWhenAnyPartOfTheRequestFellBack() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        readModel.served(true);
+        assertEquals(ReadModel.PROJECTION, request.getAttribute(ReadModel.SERVED_BY_ATTRIBUTE));
+        readModel.served(false);
+        readModel.served(true);
+        assertEquals(ReadModel.DATABASE, request.getAttribute(ReadModel.SERVED_BY_ATTRIBUTE));
+    }
+
+    @Test
+    void isFresh_ShouldTurnFalseOnceStalenessExceedsTheBound() throws Exception {
+        ReflectionTestUtils.setField(readModel, "maxStalenessMs", 20L);
+        readModel.poll();
+        assertTrue(readModel.isFresh());
+
+        Thread.sleep(50);
+
+        assertFalse(readModel.isFresh());
+        assertTrue(readModel.stalenessMillis() >= 50);
+    }
+
+    private void insertMovement(int id, int itemId, int qty, String type, boolean deleted) {
+        jdbcTemplate.update("INSERT INTO INVENTORY (ID, ITEM_ID, QTY, TYPE, CREATE_BY, IS_DELETED) VALUES (?, ?, ?, ?, 'SYSTEM', ?)",
+                id, itemId, qty, type, deleted);
+    }
+}
@@ -0,0 +1,92 @@
+package com.obssolution.replica;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaDataSourcePostProcessorTest {
+
+    private final ReplicaDataSourcePostProcessor postProcessor = new ReplicaDataSourcePostProcessor();
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() {
+        String replicaUrl = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        DataSource primary = database("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "primary");
+        database(replicaUrl, "replica");
+
+        postProcessor.setEnvironment(new MockEnvironment()
+                .withProperty("inventory.replica.enabled", "true")
+                .withProperty("inventory.replica.url", replicaUrl)
+                .withProperty("spring.datasource.username", "sa"));
+        DataSource dataSource = (DataSource) postProcessor.postProcessAfterInitialization(primary, "dataSource");
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+
+        request = new MockHttpServletRequest("GET", "/api/item");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        postProcessor.destroy();
+    }
+
+    private static DataSource database(String url, String name) {
+        DataSource dataSource = new DriverManagerDataSource(url, "sa", "");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("CREATE TABLE NODE (NAME VARCHAR(10))");
+        template.update("INSERT INTO NODE VALUES (?)", name);
+        return dataSource;
+    }
+
+    private String node(TransactionTemplate transaction) {
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT NAME FROM NODE", String.class));
+    }
+
+    @Test
+    void readOnlyTransaction_OfARequestRoutedToTheReplica_ShouldReadTheReplica() {
+        request.setAttribute(ReplicaRoutingDataSource.ROUTE_ATTRIBUTE, ReplicaRoutingDataSource.Route.REPLICA);
+
+        assertEquals("replica", node(readOnly));
+        assertEquals("primary", node(readWrite));
+        assertEquals("primary", jdbcTemplate.queryForObject("SELECT NAME FROM NODE", String.class));
+    }
+
+    @Test
+    void readOnlyTransaction_OfARequestKeptOnThePrimary_ShouldReadThePrimary() {
+        assertEquals("primary", node(readOnly));
+
+        RequestContextHolder.resetRequestAttributes();
+        assertEquals("primary", node(readOnly));
+    }
+
+    @Test
+    void onPrimary_ShouldOverrideTheReplicaRouteForTheLoadOnly() {
+        request.setAttribute(ReplicaRoutingDataSource.ROUTE_ATTRIBUTE, ReplicaRoutingDataSource.Route.REPLICA);
+
+        assertEquals("primary", ReplicaRoutingDataSource.onPrimary(() -> node(readOnly)));
+        assertEquals("replica", node(readOnly));
+    }
+}
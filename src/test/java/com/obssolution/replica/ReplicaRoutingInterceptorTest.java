@@ -0,0 +1,62 @@
+package com.obssolution.replica;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaRoutingInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReplicaRoutingInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new ReplicaRoutingInterceptor();
+        ReflectionTestUtils.setField(interceptor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(interceptor, "enabled", true);
+        ReflectionTestUtils.invokeMethod(interceptor, "init");
+    }
+
+    private Object route(MockHttpServletRequest request, MockHttpServletResponse response) {
+        assertTrue(interceptor.preHandle(request, response, null));
+        return request.getAttribute(ReplicaRoutingDataSource.ROUTE_ATTRIBUTE);
+    }
+
+    @Test
+    void preHandle_ShouldRouteReadsToTheReplicaAndStampWrites() {
+        assertEquals(ReplicaRoutingDataSource.Route.REPLICA,
+                route(new MockHttpServletRequest("GET", "/api/item"), new MockHttpServletResponse()));
+
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        assertNull(route(new MockHttpServletRequest("POST", "/api/orders/save"), writeResponse));
+        assertNotNull(writeResponse.getHeader(ReplicaRoutingInterceptor.LAST_WRITE_HEADER));
+    }
+
+    @Test
+    void preHandle_AfterTheClientsOwnRecentWrite_ShouldKeepTheReadOnThePrimary() {
+        MockHttpServletRequest recent = new MockHttpServletRequest("GET", "/api/orders/O1");
+        recent.addHeader(ReplicaRoutingInterceptor.LAST_WRITE_HEADER, String.valueOf(System.currentTimeMillis()));
+        MockHttpServletRequest old = new MockHttpServletRequest("GET", "/api/orders/O1");
+        old.addHeader(ReplicaRoutingInterceptor.LAST_WRITE_HEADER, String.valueOf(System.currentTimeMillis() - 60_000));
+
+        assertNull(route(recent, new MockHttpServletResponse()));
+        assertEquals(ReplicaRoutingDataSource.Route.REPLICA, route(old, new MockHttpServletResponse()));
+        assertEquals(1.0, meterRegistry.get("inventory.replica.reads").tag("route", "primary").counter().count());
+    }
+
+    @Test
+    void preHandle_WhenDisabled_ShouldLeaveEveryRequestOnThePrimary() {
+        ReflectionTestUtils.setField(interceptor, "enabled", false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(route(new MockHttpServletRequest("GET", "/api/item"), response));
+        assertNull(route(new MockHttpServletRequest("PUT", "/api/item/edit"), response));
+        assertNull(response.getHeader(ReplicaRoutingInterceptor.LAST_WRITE_HEADER));
+    }
+}
@@ -0,0 +1,208 @@
+package com.obssolution.service;
+
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.PageCache;
+import com.obssolution.model.Backorder;
+import com.obssolution.model.Item;
+import com.obssolution.repository.BackorderRepository;
+import com.obssolution.repository.InventoryRepository;
+import com.obssolution.repository.ItemRepository;
+import com.obssolution.service.impl.BackorderService;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BackorderServiceTest {
+
+    @Mock
+    private BackorderRepository backorderRepository;
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Spy
+    private PendingStockTracker pendingStockTracker = new PendingStockTracker();
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter();
+
+    @Mock
+    private OffHeapStockStore stockStore;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private PageCache pageCache;
+
+    @Mock
+    private CacheInvalidationLog invalidationLog;
+
+    @InjectMocks
+    private BackorderService backorderService;
+
+    private Item item;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(backorderService, "enabled", true);
+        ReflectionTestUtils.setField(backorderService, "batchSize", 500);
+
+        item = new Item();
+        item.setId(1);
+        item.setName("Pen");
+        item.setPrice(BigDecimal.valueOf(5));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void waiting(Object[]... rows) {
+        when(jdbcTemplate.query(startsWith("SELECT ID, ORDER_NO, QTY FROM BACKORDER"), any(RowMapper.class), eq(1), eq(500)))
+                .thenAnswer(inv -> {
+                    RowMapper<Object> mapper = inv.getArgument(1);
+                    List<Object> result = new ArrayList<>();
+                    for (Object[] row : rows) {
+                        ResultSet rs = mock(ResultSet.class);
+                        when(rs.getInt("ID")).thenReturn((Integer) row[0]);
+                        when(rs.getString("ORDER_NO")).thenReturn((String) row[1]);
+                        when(rs.getInt("QTY")).thenReturn((Integer) row[2]);
+                        result.add(mapper.mapRow(rs, result.size()));
+                    }
+                    return result;
+                });
+    }
+
+    private int fulfill() {
+        return ReflectionTestUtils.invokeMethod(backorderService, "fulfill", 1);
+    }
+
+    @Test
+    void enqueue_ShouldSaveWaitingBackorder() {
+        when(backorderRepository.save(any(Backorder.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        Backorder result = backorderService.enqueue("B1", item, 4);
+
+        assertEquals("WAITING", result.getStatus());
+        assertEquals(4, result.getQty());
+        assertEquals("B1", result.getOrderNo());
+    }
+
+    @Test
+    void enqueue_ShouldLookForStockOnceTheBackorderHasCommitted() {
+        when(backorderRepository.save(any(Backorder.class))).thenAnswer(inv -> inv.getArgument(0));
+        waiting();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            backorderService.enqueue("B1", item, 4);
+            verifyNoInteractions(jdbcTemplate);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(jdbcTemplate, timeout(2000)).query(startsWith("SELECT ID, ORDER_NO, QTY FROM BACKORDER"),
+                any(RowMapper.class), eq(1), eq(500));
+        ReflectionTestUtils.invokeMethod(backorderService, "shutdown");
+    }
+
+    @Test
+    void fulfill_ShouldFillInArrivalOrderAndStopAtFirstOrderThatDoesNotFit() {
+        waiting(new Object[]{1, "B1", 4}, new Object[]{2, "B2", 5}, new Object[]{3, "B3", 1});
+        when(itemRepository.findById(1)).thenReturn(Optional.of(item));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(10));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(4));
+
+        assertEquals(1, fulfill());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> orders = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO CUSTOMER_ORDER"), orders.capture());
+        assertEquals(1, orders.getValue().size());
+        assertEquals("B1", orders.getValue().get(0)[0]);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO INVENTORY"), anyList());
+        verify(jdbcTemplate).batchUpdate(startsWith("UPDATE BACKORDER"), anyList());
+    }
+
+    @Test
+    void fulfill_WithTrackedItem_ShouldBookWholeBatchInStockStore() {
+        waiting(new Object[]{1, "B1", 4}, new Object[]{2, "B2", 5});
+        when(itemRepository.findById(1)).thenReturn(Optional.of(item));
+        when(stockStore.tracks(1)).thenReturn(true);
+        when(stockStore.available(1)).thenReturn(20L);
+        when(stockStore.tryWithdraw(1, 9L)).thenReturn(true);
+
+        assertEquals(2, fulfill());
+
+        verify(inventoryRepository, never()).sumQtyByItemIdAndType(any(), any());
+    }
+
+    @Test
+    void fulfill_WhenStockTakenMeanwhile_ShouldWriteNothing() {
+        waiting(new Object[]{1, "B1", 4});
+        when(itemRepository.findById(1)).thenReturn(Optional.of(item));
+        when(stockStore.tracks(1)).thenReturn(true);
+        when(stockStore.available(1)).thenReturn(4L);
+        when(stockStore.tryWithdraw(1, 4L)).thenReturn(false);
+
+        assertEquals(0, fulfill());
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void fulfill_WithoutStock_ShouldLeaveQueueWaiting() {
+        waiting(new Object[]{1, "B1", 4});
+        when(itemRepository.findById(1)).thenReturn(Optional.of(item));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(3));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(0));
+
+        assertEquals(0, fulfill());
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void onTopUp_WhenDisabled_ShouldDoNothing() {
+        ReflectionTestUtils.setField(backorderService, "enabled", false);
+
+        backorderService.onTopUp(1);
+
+        verifyNoInteractions(jdbcTemplate, transactionManager);
+    }
+}
@@ -1,5 +1,9 @@
 package com.obssolution.service;
 
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.ItemCatalog;
+import com.obssolution.cache.PageCache;
+import com.obssolution.concurrency.ParallelQueryExecutor;
 import com.obssolution.dto.PageResponseDTO;
 import com.obssolution.dto.inventory.InventoryRequestDTO;
 import com.obssolution.dto.inventory.InventoryResponseDTO;
@@ -7,19 +11,26 @@ import com.obssolution.dto.inventory.InventoryUpdateRequestDTO;
 import com.obssolution.exceptions.ResourceNotFoundException;
 import com.obssolution.model.Inventory;
 import com.obssolution.model.Item;
+import com.obssolution.readmodel.ReadModel;
 import com.obssolution.repository.InventoryRepository;
 import com.obssolution.repository.ItemRepository;
+import com.obssolution.service.impl.BackorderService;
 import com.obssolution.service.impl.InventoryService;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.InventoryJournal;
+import com.obssolution.stock.InventoryTopUpCoalescer;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -39,6 +50,39 @@ class InventoryServiceTest {
     @Mock
     private ItemRepository itemRepository;
 
+    @Spy
+    private PendingStockTracker pendingStockTracker = new PendingStockTracker();
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter();
+
+    @Mock
+    private OffHeapStockStore stockStore;
+
+    @Mock
+    private InventoryTopUpCoalescer topUpCoalescer;
+
+    @Mock
+    private InventoryJournal inventoryJournal;
+
+    @Mock
+    private BackorderService backorderService;
+
+    @Spy
+    private ParallelQueryExecutor parallelQueryExecutor = new ParallelQueryExecutor();
+
+    @Spy
+    private PageCache pageCache = new PageCache();
+
+    @Spy
+    private ItemCatalog itemCatalog = new ItemCatalog();
+
+    @Spy
+    private ReadModel readModel = new ReadModel();
+
+    @Mock
+    private CacheInvalidationLog invalidationLog;
+
     @InjectMocks
     private InventoryService inventoryService;
 
@@ -77,10 +121,8 @@ class InventoryServiceTest {
 
     @Test
     void getAllInventoriesPaginated_ShouldReturnPageResponse() {
-        Pageable pageable = PageRequest.of(0, 10);
-        Page<Inventory> inventoryPage = new PageImpl<>(Collections.singletonList(testInventory), pageable, 1);
-
-        when(inventoryRepository.findAllByIsDeletedFalse(any(Pageable.class))).thenReturn(inventoryPage);
+        when(inventoryRepository.findPageWithItem(any(Pageable.class))).thenReturn(Collections.singletonList(testInventory));
+        when(inventoryRepository.countByIsDeletedFalse()).thenReturn(1L);
 
         PageResponseDTO<InventoryResponseDTO> result = inventoryService.getAllInventoriesPaginated(1, 10);
 
@@ -146,6 +188,88 @@ class InventoryServiceTest {
         verify(inventoryRepository, times(1)).save(any(Inventory.class));
     }
 
+    @Test
+    void createInventory_WithCoalescingEnabled_ShouldBufferTopUp() {
+        inventoryRequestDTO.setType("T");
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(topUpCoalescer.isEnabled()).thenReturn(true);
+        when(topUpCoalescer.accept(testItem, 5)).thenReturn("TB-1");
+
+        InventoryResponseDTO result = inventoryService.createInventory(inventoryRequestDTO);
+
+        assertNull(result.getId());
+        assertEquals(5, result.getQty());
+        assertEquals("T", result.getType());
+        assertEquals("TB-1", result.getBatchRef());
+        verify(inventoryRepository, never()).save(any(Inventory.class));
+        verify(inventoryRepository, never()).sumQtyByItemIdAndType(anyInt(), anyString());
+    }
+
+    @Test
+    void createInventory_WithTopUp_ShouldNotifyBackorders() {
+        inventoryRequestDTO.setType("T");
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(inventoryRepository.save(any(Inventory.class))).thenReturn(testInventory);
+
+        inventoryService.createInventory(inventoryRequestDTO);
+
+        verify(backorderService).onTopUp(1);
+    }
+
+    @Test
+    void createInventory_InJournalMode_ShouldAppendOnlyOnceTheTransactionCommits() {
+        inventoryRequestDTO.setType("T");
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(inventoryJournal.isEnabled()).thenReturn(true);
+        when(inventoryJournal.append(1, 5, "T")).thenReturn(7L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            InventoryResponseDTO result = inventoryService.createInventory(inventoryRequestDTO);
+            verify(inventoryJournal, never()).append(any(), anyInt(), any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            verify(inventoryJournal).append(1, 5, "T");
+            verify(stockStore).add(1, "T", 5);
+            assertEquals("J-7", result.getBatchRef());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void createInventory_InJournalMode_WhenTheTransactionRollsBack_ShouldNotAppend() {
+        inventoryRequestDTO.setType("T");
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(inventoryJournal.isEnabled()).thenReturn(true);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            inventoryService.createInventory(inventoryRequestDTO);
+            TransactionSynchronizationManager.getSynchronizations().forEach(sync ->
+                    sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(inventoryJournal, never()).append(any(), anyInt(), any());
+        verify(stockStore, never()).add(any(), any(), anyLong());
+    }
+
+    @Test
+    void createInventory_WithWithdrawal_ShouldNotNotifyBackorders() {
+        inventoryRequestDTO.setType("W");
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(inventoryRepository.save(any(Inventory.class))).thenReturn(testInventory);
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(100));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(50));
+
+        inventoryService.createInventory(inventoryRequestDTO);
+
+        verify(backorderService, never()).onTopUp(any());
+    }
+
     @Test
     void createInventory_WithNullRequest_ShouldThrowException() {
         assertThrows(IllegalArgumentException.class, () -> inventoryService.createInventory(null));
@@ -177,7 +301,7 @@ class InventoryServiceTest {
     void updateInventory_ShouldReturnUpdatedInventory() {
         when(inventoryRepository.findById(1)).thenReturn(Optional.of(testInventory));
         when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
-        when(inventoryRepository.save(any(Inventory.class))).thenReturn(testInventory);
+        when(inventoryRepository.saveAndFlush(any(Inventory.class))).thenReturn(testInventory);
         when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(100));
         when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(50));
 
@@ -185,7 +309,7 @@ class InventoryServiceTest {
 
         assertNotNull(result);
         assertEquals(1, result.getId());
-        verify(inventoryRepository, times(1)).save(any(Inventory.class));
+        verify(inventoryRepository, times(1)).saveAndFlush(any(Inventory.class));
     }
 
     @Test
@@ -213,7 +337,7 @@ class InventoryServiceTest {
         assertTrue(testInventory.getIsDeleted());
         assertNotNull(testInventory.getDeleteDate());
         assertEquals("system", testInventory.getDeleteBy());
-        verify(inventoryRepository, times(1)).save(testInventory);
+        verify(inventoryRepository, times(1)).saveAndFlush(testInventory);
     }
 
     @Test
@@ -252,4 +376,24 @@ class InventoryServiceTest {
         assertThrows(IllegalArgumentException.class,
                 () -> inventoryService.validateStock(1, 60, "W", null));
     }
-}
\ No newline at end of file
+
+    @Test
+    void validateStock_ShouldCountPendingTopUps() {
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(10));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(25));
+        pendingStockTracker.add(1, "T", 20);
+
+        assertDoesNotThrow(() -> inventoryService.validateStock(1, 5, "W", null));
+        assertThrows(IllegalArgumentException.class, () -> inventoryService.validateStock(1, 6, "W", null));
+    }
+
+    @Test
+    void validateStock_WithStoreTotalsBeyondIntRange_ShouldCompareThemInFull() {
+        when(stockStore.tracks(1)).thenReturn(true);
+        when(stockStore.topUp(1)).thenReturn(2_147_483_650L);
+        when(stockStore.withdrawal(1)).thenReturn(2_147_483_640L);
+
+        assertDoesNotThrow(() -> inventoryService.validateStock(1, 5, "W", null));
+        assertThrows(IllegalArgumentException.class, () -> inventoryService.validateStock(1, 11, "W", null));
+    }
+}
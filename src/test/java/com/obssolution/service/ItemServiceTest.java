@@ -1,24 +1,38 @@
 package com.obssolution.service;
 
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.ItemCatalog;
+import com.obssolution.cache.Listing;
+import com.obssolution.cache.PageCache;
+import com.obssolution.cache.SingleFlight;
+import com.obssolution.concurrency.ParallelQueryExecutor;
+import com.obssolution.dto.MultiGetResponseDTO;
 import com.obssolution.dto.PageResponseDTO;
+import com.obssolution.dto.item.AvailabilityLineRequestDTO;
+import com.obssolution.dto.item.AvailabilityLineResponseDTO;
 import com.obssolution.dto.item.ItemRequestDTO;
 import com.obssolution.dto.item.ItemResponseDTO;
 import com.obssolution.dto.item.ItemUpdateRequestDTO;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.exceptions.StaleVersionException;
 import com.obssolution.model.Item;
+import com.obssolution.readmodel.ReadModel;
 import com.obssolution.repository.InventoryRepository;
 import com.obssolution.repository.ItemRepository;
+import com.obssolution.repository.ItemStockTotals;
 import com.obssolution.service.impl.ItemService;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -28,6 +42,7 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,6 +54,33 @@ class ItemServiceTest {
     @Mock
     private InventoryRepository inventoryRepository;
 
+    @Spy
+    private PendingStockTracker pendingStockTracker = new PendingStockTracker();
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter();
+
+    @Mock
+    private OffHeapStockStore stockStore;
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight();
+
+    @Spy
+    private ParallelQueryExecutor parallelQueryExecutor = new ParallelQueryExecutor();
+
+    @Spy
+    private PageCache pageCache = new PageCache();
+
+    @Spy
+    private ItemCatalog itemCatalog = new ItemCatalog();
+
+    @Spy
+    private ReadModel readModel = new ReadModel();
+
+    @Mock
+    private CacheInvalidationLog invalidationLog;
+
     @InjectMocks
     private ItemService itemService;
 
@@ -68,12 +110,9 @@ class ItemServiceTest {
 
     @Test
     void getAllItemsPaginated_ShouldReturnPageResponse() {
-        Pageable pageable = PageRequest.of(0, 10);
-        Page<Item> itemPage = new PageImpl<>(Collections.singletonList(testItem), pageable, 1);
-
-        when(itemRepository.findAllByIsDeletedFalse(any(Pageable.class))).thenReturn(itemPage);
-        when(inventoryRepository.sumQtyByItemIdAndType(anyInt(), eq("T"))).thenReturn(Optional.of(100));
-        when(inventoryRepository.sumQtyByItemIdAndType(anyInt(), eq("W"))).thenReturn(Optional.of(50));
+        when(itemRepository.findPageByIsDeletedFalse(any(Pageable.class))).thenReturn(Collections.singletonList(testItem));
+        when(itemRepository.countByIsDeletedFalse()).thenReturn(1L);
+        when(inventoryRepository.sumStockByItemIds(List.of(1))).thenReturn(List.of(totals(1, 100, 50)));
 
         PageResponseDTO<ItemResponseDTO> result = itemService.getAllItemsPaginated(1, 10);
 
@@ -91,6 +130,38 @@ class ItemServiceTest {
         assertEquals(50, dto.getRemainingStock());
     }
 
+    @Test
+    void getAllItemsPaginated_ShouldCountTotalPagesFromSeparateCount() {
+        when(itemRepository.findPageByIsDeletedFalse(any(Pageable.class))).thenReturn(Collections.singletonList(testItem));
+        when(itemRepository.countByIsDeletedFalse()).thenReturn(21L);
+        when(inventoryRepository.sumStockByItemIds(List.of(1))).thenReturn(List.of());
+
+        PageResponseDTO<ItemResponseDTO> result = itemService.getAllItemsPaginated(3, 10);
+
+        assertEquals(3, result.getCurrentPage());
+        assertEquals(3, result.getTotalPages());
+        assertEquals(21, result.getTotalElements());
+        assertEquals(0, result.getContent().get(0).getRemainingStock());
+        verify(inventoryRepository, never()).sumQtyByItemIdAndType(anyInt(), anyString());
+    }
+
+    @Test
+    void getAllItemsPaginated_FromCache_ShouldFillInCurrentStock() {
+        ReflectionTestUtils.setField(pageCache, "enabled", true);
+        ReflectionTestUtils.setField(pageCache, "singleFlight", singleFlight);
+        when(itemRepository.findPageByIsDeletedFalse(any(Pageable.class))).thenReturn(Collections.singletonList(testItem));
+        when(itemRepository.countByIsDeletedFalse()).thenReturn(1L);
+        when(inventoryRepository.sumStockByItemIds(List.of(1)))
+                .thenReturn(List.of(totals(1, 100, 50)))
+                .thenReturn(List.of(totals(1, 100, 80)));
+
+        itemService.getAllItemsPaginated(1, 10);
+        PageResponseDTO<ItemResponseDTO> cached = itemService.getAllItemsPaginated(1, 10);
+
+        verify(itemRepository, times(1)).findPageByIsDeletedFalse(any(Pageable.class));
+        assertEquals(20, cached.getContent().get(0).getRemainingStock());
+    }
+
     @Test
     void getAllItemsPaginated_WithInvalidPage_ShouldThrowException() {
         assertThrows(IllegalArgumentException.class, () -> itemService.getAllItemsPaginated(0, 10));
@@ -111,6 +182,35 @@ class ItemServiceTest {
         assertEquals(70, result.getRemainingStock());
     }
 
+    @Test
+    void getItemById_WhenInCatalog_ShouldNotLoadItem() {
+        doReturn(new ItemCatalog.CatalogItem(1, "Test Item", BigDecimal.valueOf(10.99), "system", null, 0L))
+                .when(itemCatalog).find(1);
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(100));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(30));
+
+        ItemResponseDTO result = itemService.getItemById(1);
+
+        assertEquals("Test Item", result.getName());
+        assertEquals(70, result.getRemainingStock());
+        verify(itemRepository, never()).findById(any());
+        verify(singleFlight).execute(eq("item:1"), any(), any());
+    }
+
+    @Test
+    void getItemById_WhenReadModelIsFresh_ShouldNotQueryLedger() {
+        doReturn(new ItemCatalog.CatalogItem(1, "Test Item", BigDecimal.valueOf(10.99), "system", null, 0L))
+                .when(itemCatalog).find(1);
+        doReturn(true).when(readModel).isFresh();
+        doReturn(70).when(readModel).ledgerStock(1);
+        pendingStockTracker.add(1, "T", 5);
+
+        ItemResponseDTO result = itemService.getItemById(1);
+
+        assertEquals(75, result.getRemainingStock());
+        verify(inventoryRepository, never()).sumQtyByItemIdAndType(any(), any());
+    }
+
     @Test
     void getItemById_WithInvalidId_ShouldThrowException() {
         assertThrows(IllegalArgumentException.class, () -> itemService.getItemById(0));
@@ -153,13 +253,35 @@ class ItemServiceTest {
     @Test
     void updateItem_ShouldReturnUpdatedItem() {
         when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
-        when(itemRepository.save(any(Item.class))).thenReturn(testItem);
+        when(itemRepository.saveAndFlush(any(Item.class))).thenReturn(testItem);
 
         ItemResponseDTO result = itemService.updateItem(itemUpdateRequestDTO);
 
         assertNotNull(result);
         assertEquals(1, result.getId());
-        verify(itemRepository, times(1)).save(any(Item.class));
+        verify(itemRepository, times(1)).saveAndFlush(any(Item.class));
+    }
+
+    @Test
+    void updateAndDelete_ShouldInvalidateCachedPages() {
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(itemRepository.saveAndFlush(any(Item.class))).thenReturn(testItem);
+
+        itemService.updateItem(itemUpdateRequestDTO);
+        itemService.deleteItemById(1);
+
+        verify(pageCache).invalidateRow(Listing.ITEM.key(1));
+        verify(pageCache).invalidate(Listing.ITEM);
+    }
+
+    @Test
+    void updateItem_WithStaleVersion_ShouldThrowWithoutSaving() {
+        testItem.setVersion(3L);
+        itemUpdateRequestDTO.setVersion(2L);
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+
+        assertThrows(StaleVersionException.class, () -> itemService.updateItem(itemUpdateRequestDTO));
+        verify(itemRepository, never()).saveAndFlush(any(Item.class));
     }
 
     @Test
@@ -187,7 +309,7 @@ class ItemServiceTest {
         assertTrue(testItem.getIsDeleted());
         assertNotNull(testItem.getDeleteDate());
         assertEquals("system", testItem.getDeleteBy());
-        verify(itemRepository, times(1)).save(testItem);
+        verify(itemRepository, times(1)).saveAndFlush(testItem);
     }
 
     @Test
@@ -233,4 +355,111 @@ class ItemServiceTest {
 
         assertEquals(0, result.getRemainingStock());
     }
+
+    @Test
+    void toDTO_WithStockStore_ShouldReadStockFromStore() {
+        when(stockStore.tracks(1)).thenReturn(true);
+        when(stockStore.available(1)).thenReturn(42L);
+
+        ItemResponseDTO result = itemService.toDTO(testItem);
+
+        assertEquals(42, result.getRemainingStock());
+        verify(inventoryRepository, never()).sumQtyByItemIdAndType(any(), any());
+    }
+
+    @Test
+    void checkAvailability_ShouldUseStockStoreAndOneGroupedQueryForTheRest() {
+        when(stockStore.tracks(1)).thenReturn(true);
+        when(stockStore.available(1)).thenReturn(8L);
+        ItemStockTotals totals = totals(2, 10, 7);
+        when(inventoryRepository.sumStockByItemIds(anyCollection())).thenReturn(List.of(totals));
+
+        List<AvailabilityLineResponseDTO> result = itemService.checkAvailability(
+                List.of(line(1, 5), line(2, 4), line(3, 1)));
+
+        assertEquals(3, result.size());
+        assertEquals(8, result.get(0).getAvailable());
+        assertTrue(result.get(0).isSufficient());
+        assertEquals(3, result.get(1).getAvailable());
+        assertFalse(result.get(1).isSufficient());
+        assertEquals(0, result.get(2).getAvailable());
+        assertFalse(result.get(2).isSufficient());
+        verify(inventoryRepository, times(1)).sumStockByItemIds(anyCollection());
+        verify(inventoryRepository, never()).sumQtyByItemIdAndType(any(), any());
+    }
+
+    @Test
+    void checkAvailability_WithOnlyTrackedItems_ShouldNotQueryLedger() {
+        when(stockStore.tracks(1)).thenReturn(true);
+        when(stockStore.available(1)).thenReturn(2L);
+
+        List<AvailabilityLineResponseDTO> result = itemService.checkAvailability(List.of(line(1, 2)));
+
+        assertTrue(result.get(0).isSufficient());
+        verifyNoInteractions(inventoryRepository);
+    }
+
+    @Test
+    void checkAvailability_ShouldCountPendingMovements() {
+        pendingStockTracker.add(2, "T", 5);
+        when(inventoryRepository.sumStockByItemIds(anyCollection())).thenReturn(List.of());
+
+        List<AvailabilityLineResponseDTO> result = itemService.checkAvailability(List.of(line(2, 5)));
+
+        assertEquals(5, result.get(0).getAvailable());
+        assertTrue(result.get(0).isSufficient());
+    }
+
+    @Test
+    void checkAvailability_WithNoLines_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> itemService.checkAvailability(List.of()));
+    }
+
+    @Test
+    void getItemsByIds_ShouldKeepRequestOrderAndListMissingIds() {
+        Item other = new Item();
+        other.setId(3);
+        other.setName("Other");
+        other.setPrice(BigDecimal.ONE);
+        when(itemRepository.findAllById(anyCollection())).thenReturn(List.of(testItem, other));
+        ItemStockTotals stock1 = totals(1, 10, 4);
+        when(inventoryRepository.sumStockByItemIds(anyCollection())).thenReturn(List.of(stock1));
+
+        MultiGetResponseDTO<ItemResponseDTO, Integer> result = itemService.getItemsByIds(List.of(3, 2, 1, 3));
+
+        assertEquals(List.of(3, 1), result.getResults().stream().map(ItemResponseDTO::getId).toList());
+        assertEquals(0, result.getResults().get(0).getRemainingStock());
+        assertEquals(6, result.getResults().get(1).getRemainingStock());
+        assertEquals(List.of(2), result.getMissing());
+        verify(inventoryRepository, times(1)).sumStockByItemIds(anyCollection());
+        verify(inventoryRepository, never()).sumQtyByItemIdAndType(any(), any());
+    }
+
+    @Test
+    void getItemsByIds_WithNoIds_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> itemService.getItemsByIds(List.of()));
+    }
+
+    private AvailabilityLineRequestDTO line(int itemId, int qty) {
+        AvailabilityLineRequestDTO line = new AvailabilityLineRequestDTO();
+        line.setItemId(itemId);
+        line.setQty(qty);
+        return line;
+    }
+
+    private ItemStockTotals totals(int itemId, long topUp, long withdrawal) {
+        return new ItemStockTotals() {
+            public Integer getItemId() {
+                return itemId;
+            }
+
+            public Long getTopUp() {
+                return topUp;
+            }
+
+            public Long getWithdrawal() {
+                return withdrawal;
+            }
+        };
+    }
 }
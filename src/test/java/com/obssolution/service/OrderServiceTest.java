@@ -1,35 +1,63 @@
 package com.obssolution.service;
 
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.ItemCatalog;
+import com.obssolution.cache.OrderNumberBloomFilter;
+import com.obssolution.cache.PageCache;
+import com.obssolution.cache.SingleFlight;
+import com.obssolution.concurrency.ParallelQueryExecutor;
+import com.obssolution.dto.MultiGetResponseDTO;
 import com.obssolution.dto.PageResponseDTO;
+import com.obssolution.dto.order.BasketLineRequestDTO;
+import com.obssolution.dto.order.BasketOrderRequestDTO;
+import com.obssolution.dto.order.BasketOrderResponseDTO;
 import com.obssolution.dto.order.OrderRequestDTO;
 import com.obssolution.dto.order.OrderResponseDTO;
+import com.obssolution.dto.order.OrderStatusDTO;
 import com.obssolution.dto.order.OrderUpdateRequestDTO;
+import com.obssolution.exceptions.InsufficientStockException;
 import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.exceptions.StaleVersionException;
+import com.obssolution.model.Backorder;
 import com.obssolution.model.Inventory;
 import com.obssolution.model.Item;
 import com.obssolution.model.Order;
+import com.obssolution.model.OrderHeader;
+import com.obssolution.order.OrderNumberAllocator;
+import com.obssolution.order.OrderNumberRegistry;
+import com.obssolution.readmodel.ReadModel;
+import com.obssolution.repository.BackorderRepository;
 import com.obssolution.repository.CustomerOrderRepository;
 import com.obssolution.repository.InventoryRepository;
 import com.obssolution.repository.ItemRepository;
+import com.obssolution.repository.ItemStockTotals;
+import com.obssolution.repository.OrderHeaderRepository;
+import com.obssolution.service.impl.BackorderService;
 import com.obssolution.service.impl.OrderService;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -44,6 +72,54 @@ class OrderServiceTest {
     @Mock
     private InventoryRepository inventoryRepository;
 
+    @Spy
+    private PendingStockTracker pendingStockTracker = new PendingStockTracker();
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter();
+
+    @Mock
+    private OffHeapStockStore stockStore;
+
+    @Mock
+    private OrderNumberAllocator orderNumberAllocator;
+
+    @Mock
+    private OrderNumberRegistry orderNumberRegistry;
+
+    @Spy
+    private OrderNumberBloomFilter orderNumberFilter = new OrderNumberBloomFilter();
+
+    @Spy
+    private SingleFlight singleFlight = new SingleFlight();
+
+    @Mock
+    private OrderHeaderRepository orderHeaderRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private BackorderService backorderService;
+
+    @Mock
+    private BackorderRepository backorderRepository;
+
+    @Spy
+    private ParallelQueryExecutor parallelQueryExecutor = new ParallelQueryExecutor();
+
+    @Spy
+    private PageCache pageCache = new PageCache();
+
+    @Spy
+    private ItemCatalog itemCatalog = new ItemCatalog();
+
+    @Spy
+    private ReadModel readModel = new ReadModel();
+
+    @Mock
+    private CacheInvalidationLog invalidationLog;
+
     @InjectMocks
     private OrderService orderService;
 
@@ -82,10 +158,8 @@ class OrderServiceTest {
 
     @Test
     void getAllOrdersPaginated_ShouldReturnPageResponse() {
-        Pageable pageable = PageRequest.of(0, 10);
-        Page<Order> orderPage = new PageImpl<>(Collections.singletonList(testOrder), pageable, 1);
-
-        when(orderRepository.findAllByIsDeletedFalse(any(Pageable.class))).thenReturn(orderPage);
+        when(orderRepository.findPageWithItem(any(Pageable.class))).thenReturn(Collections.singletonList(testOrder));
+        when(orderRepository.countByIsDeletedFalse()).thenReturn(1L);
 
         PageResponseDTO<OrderResponseDTO> result = orderService.getAllOrdersPaginated(1, 10);
 
@@ -122,6 +196,21 @@ class OrderServiceTest {
         assertEquals(5, result.getQty());
     }
 
+    @Test
+    void getOrderByOrderNo_WhenReadModelHoldsOrder_ShouldNotQueryDatabase() {
+        doReturn(true).when(readModel).isFresh();
+        doReturn(new ReadModel.OrderView("ORD123", 1, "Test Item", 5, BigDecimal.valueOf(10.99), "system", null, 0L))
+                .when(readModel).order("ORD123");
+
+        OrderResponseDTO result = orderService.getOrderByOrderNo("ORD123");
+
+        assertEquals("ORD123", result.getOrderNo());
+        assertEquals("Test Item", result.getItemName());
+        assertEquals(5, result.getQty());
+        assertEquals(OrderService.STATUS_CREATED, result.getStatus());
+        verify(orderRepository, never()).findByOrderNo(any());
+    }
+
     @Test
     void getOrderByOrderNo_WithEmptyOrderNo_ShouldThrowException() {
         assertThrows(IllegalArgumentException.class, () -> orderService.getOrderByOrderNo(""));
@@ -135,6 +224,34 @@ class OrderServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> orderService.getOrderByOrderNo("NONEXISTENT"));
     }
 
+    @Test
+    void getOrdersByOrderNos_ShouldKeepRequestOrderAndListMissing() {
+        Order second = new Order();
+        second.setOrderNo("ORD200");
+        second.setItem(testItem);
+        second.setQty(1);
+        second.setPrice(testItem.getPrice());
+        when(orderRepository.findWithItemByOrderNoIn(any())).thenReturn(List.of(testOrder, second));
+
+        MultiGetResponseDTO<OrderResponseDTO, String> result =
+                orderService.getOrdersByOrderNos(List.of("ORD200", "NOPE", "ORD123"));
+
+        assertEquals(List.of("ORD200", "ORD123"),
+                result.getResults().stream().map(OrderResponseDTO::getOrderNo).toList());
+        assertEquals(List.of("NOPE"), result.getMissing());
+        verify(orderRepository, never()).findByOrderNo(any());
+    }
+
+    @Test
+    void getOrdersByOrderNos_WithTooManyOrderNos_ShouldThrowException() {
+        List<String> orderNos = new ArrayList<>();
+        for (int i = 0; i < 201; i++) {
+            orderNos.add("O" + i);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> orderService.getOrdersByOrderNos(orderNos));
+    }
+
     @Test
     void createOrder_ShouldReturnCreatedOrder() {
         when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
@@ -152,6 +269,67 @@ class OrderServiceTest {
         verify(inventoryRepository, times(1)).save(any(Inventory.class));
     }
 
+    @Test
+    void createOrder_WithoutOrderNo_ShouldAllocateNumberAndSkipExistenceCheck() {
+        orderRequestDTO.setOrderNo(null);
+        when(orderNumberAllocator.isEnabled()).thenReturn(true);
+        when(orderNumberAllocator.next()).thenReturn("N000000042");
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(orderRepository.save(any(Order.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(100));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(50));
+
+        OrderResponseDTO result = orderService.createOrder(orderRequestDTO);
+
+        assertEquals("N000000042", result.getOrderNo());
+        verify(orderRepository, never()).existsById(any());
+    }
+
+    @Test
+    void createOrder_WithoutOrderNoAndAllocatorDisabled_ShouldThrowException() {
+        orderRequestDTO.setOrderNo(" ");
+
+        assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(orderRequestDTO));
+    }
+
+    @Test
+    void createOrder_WithReservedOrderNo_ShouldThrowException() {
+        orderRequestDTO.setOrderNo("N000000001");
+        when(orderNumberAllocator.isReserved("N000000001")).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(orderRequestDTO));
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void createOrder_WhenBloomFilterRulesOutOrderNo_ShouldSkipExistenceCheck() {
+        doReturn(false).when(orderNumberFilter).mightContain("ORD456");
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(100));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(50));
+
+        orderService.createOrder(orderRequestDTO);
+
+        verify(orderRepository, never()).existsById(any());
+        verify(orderNumberFilter).put("ORD456");
+        verifyNoInteractions(orderNumberRegistry);
+    }
+
+    @Test
+    void createOrder_WithSharding_ShouldClaimOrderNo() {
+        doReturn(true).when(shardRouter).isEnabled();
+        doReturn(false).when(orderNumberFilter).mightContain("ORD456");
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(100));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(50));
+
+        orderService.createOrder(orderRequestDTO);
+
+        verify(orderNumberRegistry).claim("ORD456");
+    }
+
     @Test
     void createOrder_WithNullRequest_ShouldThrowException() {
         assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(null));
@@ -182,6 +360,122 @@ class OrderServiceTest {
         assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(orderRequestDTO));
     }
 
+    @Test
+    void createOrder_WithStockStore_ShouldWithdrawFromStoreWithoutLedgerSums() {
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(orderRepository.existsById("ORD456")).thenReturn(false);
+        when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
+        when(stockStore.tracks(1)).thenReturn(true);
+        when(stockStore.tryWithdraw(1, orderRequestDTO.getQty())).thenReturn(true);
+
+        orderService.createOrder(orderRequestDTO);
+
+        verify(stockStore).tryWithdraw(1, orderRequestDTO.getQty());
+        verify(inventoryRepository, never()).sumQtyByItemIdAndType(any(), any());
+        verify(inventoryRepository, times(1)).save(any(Inventory.class));
+    }
+
+    @Test
+    void createOrder_WithStockStoreAndInsufficientStock_ShouldThrowException() {
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(orderRepository.existsById("ORD456")).thenReturn(false);
+        when(stockStore.tracks(1)).thenReturn(true);
+        when(stockStore.tryWithdraw(1, orderRequestDTO.getQty())).thenReturn(false);
+        when(stockStore.available(1)).thenReturn(0L);
+
+        assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(orderRequestDTO));
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void createOrder_WithInsufficientStockAndBackorder_ShouldQueueOrder() {
+        orderRequestDTO.setBackorder(true);
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(10));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(10));
+        when(backorderService.isEnabled()).thenReturn(true);
+        Backorder backorder = backorder(7, "WAITING");
+        when(backorderService.enqueue("ORD456", testItem, 3)).thenReturn(backorder);
+
+        OrderResponseDTO result = orderService.createOrder(orderRequestDTO);
+
+        assertEquals(OrderService.STATUS_BACKORDERED, result.getStatus());
+        assertEquals("ORD456", result.getOrderNo());
+        verify(orderNumberRegistry).claim("ORD456");
+        verify(orderRepository, never()).save(any(Order.class));
+        verify(inventoryRepository, never()).save(any(Inventory.class));
+    }
+
+    @Test
+    void createOrder_WithInsufficientStockAndBackorderDisabled_ShouldThrowException() {
+        orderRequestDTO.setBackorder(true);
+        when(itemRepository.findById(1)).thenReturn(Optional.of(testItem));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "T")).thenReturn(Optional.of(10));
+        when(inventoryRepository.sumQtyByItemIdAndType(1, "W")).thenReturn(Optional.of(10));
+
+        assertThrows(InsufficientStockException.class, () -> orderService.createOrder(orderRequestDTO));
+        verify(backorderService, never()).enqueue(any(), any(), anyInt());
+    }
+
+    @Test
+    void createOrder_WithBackorderedOrderNo_ShouldThrowException() {
+        when(backorderRepository.existsByOrderNo("ORD456")).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> orderService.createOrder(orderRequestDTO));
+    }
+
+    @Test
+    void getOrderStatus_ForWaitingBackorder_ShouldReturnQueuePosition() {
+        Backorder backorder = backorder(7, "WAITING");
+        when(backorderRepository.findByOrderNo("ORD456")).thenReturn(Optional.of(backorder));
+        when(backorderRepository.countWaitingAhead(1, 7)).thenReturn(2L);
+
+        OrderStatusDTO status = orderService.getOrderStatus("ORD456");
+
+        assertEquals(OrderService.STATUS_BACKORDERED, status.getStatus());
+        assertEquals(3L, status.getQueuePosition());
+    }
+
+    @Test
+    void getOrderStatus_ForFulfilledBackorder_ShouldReturnFulfilled() {
+        Backorder backorder = backorder(7, "FULFILLED");
+        when(backorderRepository.findByOrderNo("ORD456")).thenReturn(Optional.of(backorder));
+
+        OrderStatusDTO status = orderService.getOrderStatus("ORD456");
+
+        assertEquals("FULFILLED", status.getStatus());
+        assertNull(status.getQueuePosition());
+    }
+
+    @Test
+    void getOrderStatus_ForPlainOrder_ShouldReturnCreated() {
+        when(backorderRepository.findByOrderNo("ORD123")).thenReturn(Optional.empty());
+        when(orderRepository.findByOrderNo("ORD123")).thenReturn(testOrder);
+
+        OrderStatusDTO status = orderService.getOrderStatus("ORD123");
+
+        assertEquals(OrderService.STATUS_CREATED, status.getStatus());
+        assertEquals(5, status.getQty());
+    }
+
+    @Test
+    void getOrderStatus_WhenMissing_ShouldThrowNotFound() {
+        when(backorderRepository.findByOrderNo("NOPE")).thenReturn(Optional.empty());
+        when(orderHeaderRepository.findById("NOPE")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> orderService.getOrderStatus("NOPE"));
+    }
+
+    private Backorder backorder(int id, String status) {
+        Backorder backorder = new Backorder();
+        backorder.setId(id);
+        backorder.setOrderNo("ORD456");
+        backorder.setItem(testItem);
+        backorder.setQty(3);
+        backorder.setStatus(status);
+        return backorder;
+    }
+
     @Test
     void updateOrder_ShouldReturnUpdatedOrder() {
         when(orderRepository.findById("ORD123")).thenReturn(Optional.of(testOrder));
@@ -222,6 +516,16 @@ class OrderServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> orderService.updateOrder(orderUpdateRequestDTO));
     }
 
+    @Test
+    void updateOrder_WithStaleVersion_ShouldThrowException() {
+        testOrder.setVersion(5L);
+        orderUpdateRequestDTO.setVersion(4L);
+        when(orderRepository.findById("ORD123")).thenReturn(Optional.of(testOrder));
+
+        assertThrows(StaleVersionException.class, () -> orderService.updateOrder(orderUpdateRequestDTO));
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
     @Test
     void updateOrder_WithInvalidItem_ShouldThrowException() {
         when(orderRepository.findById("ORD123")).thenReturn(Optional.of(testOrder));
@@ -278,4 +582,124 @@ class OrderServiceTest {
         assertThrows(IllegalArgumentException.class,
                 () -> orderService.validateStockAvailability(1, 60));
     }
-}
\ No newline at end of file
+
+    private BasketOrderRequestDTO basket(String orderNo, int... itemIdAndQty) {
+        BasketOrderRequestDTO request = new BasketOrderRequestDTO();
+        request.setOrderNo(orderNo);
+        List<BasketLineRequestDTO> lines = new ArrayList<>();
+        for (int i = 0; i < itemIdAndQty.length; i += 2) {
+            BasketLineRequestDTO line = new BasketLineRequestDTO();
+            line.setItemId(itemIdAndQty[i]);
+            line.setQty(itemIdAndQty[i + 1]);
+            lines.add(line);
+        }
+        request.setLines(lines);
+        return request;
+    }
+
+    private ItemStockTotals totals(int itemId, long topUp, long withdrawal) {
+        return new ItemStockTotals() {
+            public Integer getItemId() {
+                return itemId;
+            }
+
+            public Long getTopUp() {
+                return topUp;
+            }
+
+            public Long getWithdrawal() {
+                return withdrawal;
+            }
+        };
+    }
+
+    private Item item(int id, String name, double price) {
+        Item item = new Item();
+        item.setId(id);
+        item.setName(name);
+        item.setPrice(BigDecimal.valueOf(price));
+        return item;
+    }
+
+    @Test
+    void createBasketOrder_ShouldCheckStockOnceAndBatchInsertLines() {
+        when(itemRepository.findAllById(any())).thenReturn(List.of(testItem, item(2, "Other", 10.00)));
+        when(inventoryRepository.sumStockByItemIds(anyList()))
+                .thenReturn(List.of(totals(1, 100, 50), totals(2, 20, 0)));
+        when(orderHeaderRepository.saveAndFlush(any(OrderHeader.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        BasketOrderResponseDTO result = orderService.createBasketOrder(basket("B1", 1, 10, 2, 5, 1, 20));
+
+        assertEquals("B1", result.getOrderNo());
+        assertEquals(3, result.getLines().size());
+        assertEquals(3, result.getLines().get(2).getLineNo());
+        assertEquals(0, BigDecimal.valueOf(3050).compareTo(result.getTotalPrice()));
+        verify(inventoryRepository, times(1)).sumStockByItemIds(anyList());
+        verify(inventoryRepository, never()).sumQtyByItemIdAndType(any(), any());
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO ORDER_LINE"), argThat((List<Object[]> rows) -> rows.size() == 3));
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO INVENTORY"), argThat((List<Object[]> rows) -> rows.size() == 3));
+        verify(orderNumberFilter).put("B1");
+        verify(orderNumberRegistry).claim("B1");
+    }
+
+    @Test
+    void createBasketOrder_WithItemOnSeveralLines_ShouldCheckCombinedQty() {
+        when(itemRepository.findAllById(any())).thenReturn(List.of(testItem));
+        when(inventoryRepository.sumStockByItemIds(anyList())).thenReturn(List.of(totals(1, 100, 50)));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> orderService.createBasketOrder(basket("B1", 1, 30, 1, 30)));
+
+        assertTrue(ex.getMessage().contains("Insufficient stock for item ID 1"));
+        verify(orderHeaderRepository, never()).saveAndFlush(any());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void createBasketOrder_WithUnknownItem_ShouldThrowException() {
+        when(itemRepository.findAllById(any())).thenReturn(List.of(testItem));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> orderService.createBasketOrder(basket("B1", 1, 1, 9, 1)));
+
+        assertEquals("Item not found with id: 9", ex.getMessage());
+    }
+
+    @Test
+    void createBasketOrder_WithTrackedItem_ShouldWithdrawFromStockStore() {
+        when(itemRepository.findAllById(any())).thenReturn(List.of(testItem));
+        when(stockStore.tracks(1)).thenReturn(true);
+        when(stockStore.tryWithdraw(1, 15)).thenReturn(true);
+        when(orderHeaderRepository.saveAndFlush(any(OrderHeader.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        orderService.createBasketOrder(basket("B1", 1, 10, 1, 5));
+
+        verify(stockStore).tryWithdraw(1, 15);
+        verify(inventoryRepository, never()).sumStockByItemIds(anyList());
+    }
+
+    @Test
+    void createBasketOrder_WithExistingOrderNo_ShouldThrowException() {
+        when(orderHeaderRepository.existsById("B1")).thenReturn(true);
+
+        assertThrows(IllegalArgumentException.class, () -> orderService.createBasketOrder(basket("B1", 1, 1)));
+        verifyNoInteractions(itemRepository);
+    }
+
+    @Test
+    void createBasketOrder_WithOrderNoClaimedByAnotherKindOfOrder_ShouldThrowException() {
+        doReturn(false).when(orderNumberFilter).mightContain("B1");
+        doThrow(new IllegalArgumentException("Order with orderNo B1 already exists")).when(orderNumberRegistry).claim("B1");
+
+        assertThrows(IllegalArgumentException.class, () -> orderService.createBasketOrder(basket("B1", 1, 1)));
+        verify(orderHeaderRepository, never()).saveAndFlush(any());
+        verifyNoInteractions(stockStore, jdbcTemplate);
+    }
+
+    @Test
+    void getBasketOrder_WhenMissing_ShouldThrowNotFound() {
+        when(orderHeaderRepository.findWithLinesByOrderNo("B404")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> orderService.getBasketOrder("B404"));
+    }
+}
@@ -0,0 +1,160 @@
+package com.obssolution.service;
+
+import com.obssolution.dto.admin.ReconciliationReportDTO;
+import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.service.impl.ReconciliationService;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReconciliationServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Spy
+    private PendingStockTracker pendingStockTracker = new PendingStockTracker();
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter();
+
+    @Mock
+    private OffHeapStockStore stockStore;
+
+    @InjectMocks
+    private ReconciliationService reconciliationService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(reconciliationService, "rangeSize", 2);
+        ReflectionTestUtils.setField(reconciliationService, "parallelism", 2);
+        ReflectionTestUtils.setField(reconciliationService, "maxReportedDrifts", 100);
+
+        when(stockStore.isReady()).thenReturn(true);
+        when(stockStore.tracks(anyInt())).thenReturn(true);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(3);
+
+        // Ledger: item 1 = 10 in / 2 out, item 2 = 5 in, item 3 has no rows
+        stubRange(1, 2, Map.of(1, new long[]{10, 2}, 2, new long[]{5, 0}));
+        stubRange(3, 3, Map.of());
+        when(stockStore.ledgerTotals(2)).thenReturn(new long[]{5, 0});
+
+        stubStore(1, 10, 2);
+        stubStore(2, 5, 1);
+        stubStore(3, 0, 0);
+    }
+
+    private void stubRange(int from, int to, Map<Integer, long[]> rows) throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Map.Entry<Integer, long[]> row : rows.entrySet()) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getInt("ITEM_ID")).thenReturn(row.getKey());
+                when(rs.getLong("TOP_UP")).thenReturn(row.getValue()[0]);
+                when(rs.getLong("WITHDRAWAL")).thenReturn(row.getValue()[1]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(from), eq(to));
+    }
+
+    private void stubStore(int itemId, long topUp, long withdrawal) {
+        when(stockStore.topUp(itemId)).thenReturn(topUp);
+        when(stockStore.withdrawal(itemId)).thenReturn(withdrawal);
+    }
+
+    private ReconciliationReportDTO awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        ReconciliationReportDTO report = reconciliationService.getReconciliation(jobId);
+        while ("RUNNING".equals(report.getStatus()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            report = reconciliationService.getReconciliation(jobId);
+        }
+        return report;
+    }
+
+    @Test
+    void startReconciliation_ShouldReportDriftPerItem() throws Exception {
+        ReconciliationReportDTO started = reconciliationService.startReconciliation(false);
+        assertEquals(2, started.getTotalRanges());
+
+        ReconciliationReportDTO report = awaitFinished(started.getJobId());
+
+        assertEquals("COMPLETED", report.getStatus());
+        assertEquals(2, report.getCompletedRanges());
+        assertEquals(3, report.getItemsChecked());
+        assertEquals(1, report.getDriftCount());
+        assertEquals(2, report.getDrifts().get(0).getItemId());
+        assertEquals(0, report.getDrifts().get(0).getLedgerWithdrawal());
+        assertEquals(1, report.getDrifts().get(0).getStoredWithdrawal());
+        verify(stockStore, never()).resync(anyInt());
+    }
+
+    @Test
+    void startReconciliation_WithRepair_ShouldResetDriftedItems() throws Exception {
+        ReconciliationReportDTO report = awaitFinished(reconciliationService.startReconciliation(true).getJobId());
+
+        assertEquals("COMPLETED", report.getStatus());
+        assertTrue(report.getDrifts().get(0).getRepaired());
+        verify(stockStore).resync(2);
+    }
+
+    @Test
+    void startReconciliation_WhenPendingStockSettlesDuringTheRangeQuery_ShouldNotBlockItOrReportDrift() throws Exception {
+        pendingStockTracker.add(1, "T", 3);
+        stubStore(1, 13, 2);
+        when(stockStore.ledgerTotals(1)).thenReturn(new long[]{13, 2});
+        // The settle takes the write lock on another thread, which waits forever if the query holds the read lock
+        doAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> pendingStockTracker.releaseOnCommit(1, "T", 3)).get(2, TimeUnit.SECONDS);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getInt("ITEM_ID")).thenReturn(1);
+            when(rs.getLong("TOP_UP")).thenReturn(10L);
+            when(rs.getLong("WITHDRAWAL")).thenReturn(2L);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(1), eq(2));
+
+        ReconciliationReportDTO report = awaitFinished(reconciliationService.startReconciliation(false).getJobId());
+
+        assertEquals("COMPLETED", report.getStatus());
+        assertTrue(report.getDrifts().stream().noneMatch(drift -> drift.getItemId() == 1));
+        verify(stockStore).ledgerTotals(1);
+    }
+
+    @Test
+    void startReconciliation_WhenStoreNotReady_ShouldThrowException() {
+        when(stockStore.isReady()).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> reconciliationService.startReconciliation(false));
+    }
+
+    @Test
+    void getReconciliation_WithUnknownJob_ShouldThrowException() {
+        assertThrows(ResourceNotFoundException.class, () -> reconciliationService.getReconciliation("missing"));
+    }
+}
@@ -0,0 +1,246 @@
+package com.obssolution.service;
+
+import com.obssolution.dto.order.OrderResponseDTO;
+import com.obssolution.dto.reservation.ReservationConfirmRequestDTO;
+import com.obssolution.dto.reservation.ReservationRequestDTO;
+import com.obssolution.dto.reservation.ReservationResponseDTO;
+import com.obssolution.exceptions.ResourceNotFoundException;
+import com.obssolution.model.Item;
+import com.obssolution.model.StockReservation;
+import com.obssolution.repository.ItemRepository;
+import com.obssolution.repository.StockReservationRepository;
+import com.obssolution.service.impl.OrderService;
+import com.obssolution.service.impl.ReservationService;
+import com.obssolution.shard.ShardRouter;
+import com.obssolution.stock.OffHeapStockStore;
+import com.obssolution.stock.PendingStockTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationServiceTest {
+
+    @Mock
+    private StockReservationRepository reservationRepository;
+
+    @Mock
+    private ItemRepository itemRepository;
+
+    @Mock
+    private OrderService orderService;
+
+    @Spy
+    private PendingStockTracker pendingStockTracker = new PendingStockTracker();
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter();
+
+    @Mock
+    private OffHeapStockStore stockStore;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private ReservationService reservationService;
+
+    private Item item;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(reservationService, "enabled", true);
+        ReflectionTestUtils.setField(reservationService, "defaultHoldSeconds", 300);
+        ReflectionTestUtils.setField(reservationService, "maxHoldSeconds", 1800);
+        ReflectionTestUtils.setField(reservationService, "tickMs", 100L);
+        ReflectionTestUtils.setField(reservationService, "wheelSize", 64);
+        ReflectionTestUtils.invokeMethod(reservationService, "initWheel", System.currentTimeMillis());
+
+        item = new Item();
+        item.setId(1);
+        item.setName("Pen");
+        item.setPrice(BigDecimal.valueOf(5));
+    }
+
+    private ReservationRequestDTO request(int qty, Integer holdSeconds) {
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setItemId(1);
+        request.setQty(qty);
+        request.setHoldSeconds(holdSeconds);
+        return request;
+    }
+
+    private ReservationResponseDTO reserve(int qty, Integer holdSeconds) {
+        when(itemRepository.findById(1)).thenReturn(Optional.of(item));
+        return reservationService.reserve(request(qty, holdSeconds));
+    }
+
+    private StockReservation stored(String id, String status) {
+        StockReservation reservation = new StockReservation();
+        reservation.setId(id);
+        reservation.setItem(item);
+        reservation.setQty(3);
+        reservation.setStatus(status);
+        return reservation;
+    }
+
+    private void expireAllDue() {
+        ReflectionTestUtils.invokeMethod(reservationService, "expireDue", System.currentTimeMillis() + 60_000);
+    }
+
+    @Test
+    void reserve_ShouldHoldStockAsPendingWithdrawal() {
+        ReservationResponseDTO result = reserve(3, null);
+
+        assertEquals("HELD", result.getStatus());
+        assertEquals(3, pendingStockTracker.pendingQty(1, "W"));
+        verify(orderService).validateStockAvailability(1, 3);
+        verify(reservationRepository).save(any(StockReservation.class));
+        assertEquals("HELD", reservationService.getReservation(result.getReservationId()).getStatus());
+    }
+
+    @Test
+    void reserve_WithInsufficientStock_ShouldNotHoldAnything() {
+        when(itemRepository.findById(1)).thenReturn(Optional.of(item));
+        doThrow(new IllegalArgumentException("Insufficient stock for item ID 1"))
+                .when(orderService).validateStockAvailability(1, 3);
+
+        assertThrows(IllegalArgumentException.class, () -> reservationService.reserve(request(3, null)));
+        assertEquals(0, pendingStockTracker.pendingQty(1, "W"));
+        verify(reservationRepository, never()).save(any());
+    }
+
+    @Test
+    void reserve_WithTrackedItem_ShouldBookInStockStore() {
+        when(stockStore.tracks(1)).thenReturn(true);
+        when(stockStore.tryWithdraw(1, 3)).thenReturn(false);
+        when(itemRepository.findById(1)).thenReturn(Optional.of(item));
+
+        assertThrows(IllegalArgumentException.class, () -> reservationService.reserve(request(3, null)));
+        verify(orderService, never()).validateStockAvailability(any(), any());
+    }
+
+    @Test
+    void reserve_WithHoldLongerThanMaximum_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> reservationService.reserve(request(3, 3600)));
+    }
+
+    @Test
+    void reserve_WhenDisabled_ShouldThrowIllegalState() {
+        ReflectionTestUtils.setField(reservationService, "enabled", false);
+
+        assertThrows(IllegalStateException.class, () -> reservationService.reserve(request(3, null)));
+    }
+
+    @Test
+    void expireDue_ShouldReturnHeldStockAndMarkRowsExpired() {
+        ReservationResponseDTO held = reserve(3, 1);
+
+        expireAllDue();
+
+        assertEquals(0, pendingStockTracker.pendingQty(1, "W"));
+        verify(stockStore).add(1, "W", -3);
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        when(reservationRepository.findById(held.getReservationId()))
+                .thenReturn(Optional.of(stored(held.getReservationId(), "EXPIRED")));
+        assertThrows(IllegalStateException.class, () -> reservationService.confirm(held.getReservationId(), null));
+    }
+
+    @Test
+    void expireDue_WhenTheRowsCannotBeMarked_ShouldKeepTheStockHeldAndRetry() {
+        ReservationResponseDTO held = reserve(3, 1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new QueryTimeoutException("db down"))
+                .thenReturn(new int[]{1});
+
+        expireAllDue();
+
+        assertEquals(3, pendingStockTracker.pendingQty(1, "W"));
+        verify(stockStore, never()).add(1, "W", -3);
+        assertEquals("HELD", reservationService.getReservation(held.getReservationId()).getStatus());
+
+        ReflectionTestUtils.invokeMethod(reservationService, "expireDue", System.currentTimeMillis() + 61_000);
+
+        assertEquals(0, pendingStockTracker.pendingQty(1, "W"));
+        verify(stockStore).add(1, "W", -3);
+    }
+
+    @Test
+    void expireDue_ShouldNotTouchHoldsBeforeTheirDeadline() {
+        reserve(3, 300);
+
+        ReflectionTestUtils.invokeMethod(reservationService, "expireDue", System.currentTimeMillis() + 1000);
+
+        assertEquals(3, pendingStockTracker.pendingQty(1, "W"));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void confirm_ShouldCreateOrderAndHandPendingStockToLedger() {
+        ReservationResponseDTO held = reserve(3, null);
+        OrderResponseDTO order = new OrderResponseDTO();
+        order.setOrderNo("ORD1");
+        when(orderService.createOrderFromReservation("ORD1", 1, 3)).thenReturn(order);
+        when(reservationRepository.finish(held.getReservationId(), "CONFIRMED", "ORD1")).thenReturn(1);
+        ReservationConfirmRequestDTO confirm = new ReservationConfirmRequestDTO();
+        confirm.setOrderNo("ORD1");
+
+        ReservationResponseDTO result = reservationService.confirm(held.getReservationId(), confirm);
+
+        assertEquals("CONFIRMED", result.getStatus());
+        assertEquals("ORD1", result.getOrderNo());
+        assertEquals(0, pendingStockTracker.pendingQty(1, "W"));
+        verify(stockStore, never()).add(anyInt(), anyString(), anyLong());
+
+        expireAllDue();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void release_ShouldReturnStockOnce() {
+        ReservationResponseDTO held = reserve(3, null);
+        when(reservationRepository.finish(held.getReservationId(), "RELEASED", null)).thenReturn(1);
+
+        ReservationResponseDTO result = reservationService.release(held.getReservationId());
+
+        assertEquals("RELEASED", result.getStatus());
+        assertEquals(0, pendingStockTracker.pendingQty(1, "W"));
+        verify(stockStore).add(1, "W", -3);
+
+        when(reservationRepository.findById(held.getReservationId()))
+                .thenReturn(Optional.of(stored(held.getReservationId(), "RELEASED")));
+        assertThrows(IllegalStateException.class, () -> reservationService.release(held.getReservationId()));
+    }
+
+    @Test
+    void release_WithUnknownReservation_ShouldThrowNotFound() {
+        when(reservationRepository.findById("missing")).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> reservationService.release("missing"));
+        verify(reservationRepository, never()).finish(anyString(), anyString(), isNull());
+    }
+}
@@ -0,0 +1,203 @@
+package com.obssolution.shard;
+
+import com.obssolution.concurrency.ParallelQueryExecutor;
+import com.obssolution.model.Item;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRouterTest {
+
+    private final ShardDataSourcePostProcessor postProcessor = new ShardDataSourcePostProcessor();
+    private final ParallelQueryExecutor parallelQueryExecutor = new ParallelQueryExecutor();
+    private final ShardRouter router = new ShardRouter();
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        String[] urls = {memoryUrl(), memoryUrl()};
+        DataSource primary = database(memoryUrl(), "shard-0");
+        database(urls[0], "shard-1");
+        database(urls[1], "shard-2");
+
+        postProcessor.setEnvironment(new MockEnvironment()
+                .withProperty("inventory.db-sharding.enabled", "true")
+                .withProperty("inventory.db-sharding.urls", String.join(",", urls))
+                .withProperty("spring.datasource.username", "sa"));
+        DataSource dataSource = (DataSource) postProcessor.postProcessAfterInitialization(primary, "dataSource");
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transaction = new TransactionTemplate(transactionManager);
+        ReflectionTestUtils.setField(parallelQueryExecutor, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(router, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(router, "parallelQueryExecutor", parallelQueryExecutor);
+        ReflectionTestUtils.setField(router, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(router, "enabled", true);
+        ReflectionTestUtils.setField(router, "urls", urls);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ShardRoutingDataSource.clear();
+        ReflectionTestUtils.invokeMethod(parallelQueryExecutor, "shutdown");
+        postProcessor.destroy();
+    }
+
+    private static String memoryUrl() {
+        return "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static DataSource database(String url, String name) {
+        DataSource dataSource = new DriverManagerDataSource(url, "sa", "");
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        template.execute("CREATE TABLE NODE (NAME VARCHAR(10))");
+        template.execute("CREATE TABLE MOVEMENT (ID INT PRIMARY KEY, ITEM_ID INT)");
+        template.execute("CREATE TABLE ITEM (ID INT PRIMARY KEY, NAME VARCHAR(50), PRICE DECIMAL(10,2), CREATE_BY VARCHAR(50), " +
+                "CREATE_DATE TIMESTAMP, UPDATE_BY VARCHAR(50), UPDATE_DATE TIMESTAMP, DELETE_BY VARCHAR(50), " +
+                "DELETE_DATE TIMESTAMP, IS_DELETED BOOLEAN, VERSION BIGINT)");
+        template.update("INSERT INTO NODE VALUES (?)", name);
+        return dataSource;
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("SELECT NAME FROM NODE", String.class);
+    }
+
+    private void insertMovements(int count) {
+        for (int id = 1; id <= count; id++) {
+            int itemId = id;
+            router.forItem(itemId, () -> jdbcTemplate.update("INSERT INTO MOVEMENT VALUES (?, ?)", itemId, itemId));
+        }
+    }
+
+    @Test
+    void forItem_ShouldRunOnTheShardOfTheItem() {
+        Set<Integer> used = new HashSet<>();
+        for (int itemId = 1; itemId <= 30; itemId++) {
+            assertEquals("shard-" + router.shardOf(itemId), router.forItem(itemId, this::node));
+            used.add(router.shardOf(itemId));
+        }
+
+        assertEquals(Set.of(0, 1, 2), used);
+        assertEquals("shard-0", node());
+    }
+
+    @Test
+    void forItem_InsideATransactionOnAnotherShard_ShouldCommitInATransactionOfItsOwn() {
+        int itemId = IntStream.rangeClosed(1, 30).filter(id -> router.shardOf(id) == 2).findFirst().orElseThrow();
+
+        transaction.executeWithoutResult(status -> {
+            assertEquals("shard-0", node());
+            router.forItem(itemId, () -> jdbcTemplate.update("INSERT INTO MOVEMENT VALUES (?, ?)", 1, itemId));
+            assertEquals("shard-0", node());
+            status.setRollbackOnly();
+        });
+
+        assertEquals(1, router.onShard(2, () -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM MOVEMENT", Integer.class)));
+    }
+
+    @Test
+    void mergePage_ShouldMergeShardsInListingOrder() {
+        insertMovements(30);
+
+        List<Integer> page = router.mergePage(pageable -> jdbcTemplate.queryForList(
+                        "SELECT ID FROM MOVEMENT ORDER BY ID LIMIT ? OFFSET ?", Integer.class,
+                        pageable.getPageSize(), pageable.getOffset()),
+                Comparator.naturalOrder(), PageRequest.of(2, 5));
+
+        assertEquals(List.of(11, 12, 13, 14, 15), page);
+    }
+
+    @Test
+    void sumAndEveryShard_ShouldCoverAllShards() {
+        insertMovements(30);
+
+        assertEquals(30, router.sum(() -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM MOVEMENT", Long.class)));
+        List<Integer> ids = new ArrayList<>(router.everyShard(() -> jdbcTemplate.queryForList("SELECT ID FROM MOVEMENT", Integer.class)));
+        ids.sort(Comparator.naturalOrder());
+        assertEquals(IntStream.rangeClosed(1, 30).boxed().toList(), ids);
+    }
+
+    @Test
+    void locate_ShouldFindTheShardHoldingTheRow() {
+        insertMovements(30);
+
+        assertEquals(router.shardOf(17), router.locate(() -> jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM MOVEMENT WHERE ID = 17", Integer.class) > 0));
+        assertEquals(ShardRoutingDataSource.PRIMARY, router.locate(() -> false));
+    }
+
+    @Test
+    void forItems_ShouldQueryEachShardForItsOwnItems() {
+        insertMovements(30);
+
+        List<Integer> found = new ArrayList<>(router.forItems(List.of(3, 8, 21, 29), itemIds -> jdbcTemplate.queryForList(
+                "SELECT ITEM_ID FROM MOVEMENT WHERE ITEM_ID IN (" + itemIds.stream().map(String::valueOf)
+                        .collect(Collectors.joining(",")) + ")", Integer.class)));
+        found.sort(Comparator.naturalOrder());
+
+        assertEquals(List.of(3, 8, 21, 29), found);
+    }
+
+    @Test
+    void merge_ShouldSkipAndLimitAcrossRuns() {
+        List<List<Integer>> runs = List.of(List.of(1, 4, 7), List.of(), List.of(2, 3, 8, 9));
+
+        assertEquals(List.of(3, 4, 7), ShardRouter.merge(runs, Comparator.naturalOrder(), 2, 3));
+        assertEquals(List.of(9), ShardRouter.merge(runs, Comparator.naturalOrder(), 6, 3));
+    }
+
+    @Test
+    void mirrorItem_WhenTheItemWriteRollsBack_ShouldRestoreTheCopies() {
+        Item item = new Item(7, "Pen", new BigDecimal("2.50"));
+        item.setCreateBy("system");
+
+        transaction.executeWithoutResult(status -> {
+            router.mirrorItem(item);
+            assertEquals(1, router.onShard(1, () -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ITEM", Integer.class)));
+            status.setRollbackOnly();
+        });
+
+        for (int shard = 1; shard < router.shardCount(); shard++) {
+            assertEquals(0, router.onShard(shard, () -> jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ITEM", Integer.class)));
+        }
+    }
+
+    @Test
+    void afterSingletonsInstantiated_WhenAShardCannotBePrepared_ShouldFailStartup() {
+        // The test shards have no INVENTORY table to align
+        assertThrows(RuntimeException.class, router::afterSingletonsInstantiated);
+    }
+
+    @Test
+    void disabledRouter_ShouldRunEverythingInPlace() {
+        ShardRouter disabled = new ShardRouter();
+
+        assertEquals(1, disabled.shardCount());
+        assertEquals(ShardRoutingDataSource.PRIMARY, disabled.shardOf(42));
+        assertEquals("shard-0", disabled.forItem(42, this::node));
+        assertEquals(List.of("shard-0"), disabled.perShard(this::node));
+    }
+}
@@ -0,0 +1,107 @@
+package com.obssolution.shard;
+
+import com.obssolution.repository.BackorderRepository;
+import com.obssolution.repository.CustomerOrderRepository;
+import com.obssolution.repository.OrderHeaderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ShardRoutingAspectTest {
+
+    private ShardRouter shardRouter;
+    private CustomerOrderRepository orderRepository;
+    private ShardedService proxy;
+
+    static class ShardedService {
+
+        @ShardedBy("#itemId")
+        public Integer forItem(Integer itemId) {
+            return ShardRoutingDataSource.current();
+        }
+
+        @ShardedBy("#itemIds")
+        public Integer forItems(List<Integer> itemIds) {
+            return ShardRoutingDataSource.current();
+        }
+
+        @ShardedBy(value = "#orderNo", key = ShardKey.ORDER)
+        public Integer forOrder(String orderNo) {
+            return ShardRoutingDataSource.current();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        shardRouter = mock(ShardRouter.class);
+        when(shardRouter.isEnabled()).thenReturn(true);
+        when(shardRouter.shardOf(any())).thenAnswer(inv -> (Integer) inv.getArgument(0) % 3);
+        when(shardRouter.locate(any())).thenAnswer(inv -> ((BooleanSupplier) inv.getArgument(0)).getAsBoolean() ? 2 : 0);
+        orderRepository = mock(CustomerOrderRepository.class);
+
+        ShardRoutingAspect aspect = new ShardRoutingAspect();
+        ReflectionTestUtils.setField(aspect, "shardRouter", shardRouter);
+        ReflectionTestUtils.setField(aspect, "orderRepository", orderRepository);
+        ReflectionTestUtils.setField(aspect, "orderHeaderRepository", mock(OrderHeaderRepository.class));
+        ReflectionTestUtils.setField(aspect, "backorderRepository", mock(BackorderRepository.class));
+
+        AspectJProxyFactory factory = new AspectJProxyFactory(new ShardedService());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(aspect);
+        proxy = factory.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ShardRoutingDataSource.clear();
+    }
+
+    @Test
+    void route_ShouldBindTheShardOfTheItemForTheCallOnly() {
+        assertEquals(2, proxy.forItem(5));
+        assertNull(ShardRoutingDataSource.current());
+        assertNull(proxy.forItem(null));
+    }
+
+    @Test
+    void route_WithItemsOnDifferentShards_ShouldReject() {
+        assertEquals(1, proxy.forItems(List.of(1, 4)));
+        assertThrows(IllegalArgumentException.class, () -> proxy.forItems(List.of(1, 2)));
+    }
+
+    @Test
+    void route_ByOrderNumber_ShouldUseTheShardHoldingTheOrder() {
+        when(orderRepository.existsById("ORD1")).thenReturn(true);
+
+        assertEquals(2, proxy.forOrder("ORD1"));
+        assertNull(proxy.forOrder("ORD2"));
+    }
+
+    @Test
+    void route_InsideATransactionOnAnotherShard_ShouldReject() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThrows(IllegalStateException.class, () -> proxy.forItem(5));
+            assertNull(proxy.forItem(3));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    void route_WhenDisabled_ShouldNotBind() {
+        when(shardRouter.isEnabled()).thenReturn(false);
+
+        assertNull(proxy.forItem(5));
+    }
+}
@@ -0,0 +1,76 @@
+package com.obssolution.stock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    @Test
+    void advance_ShouldExpireTasksOnlyOnceTheirDeadlinePassed() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 500);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(200, expired::add);
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(300, expired::add);
+        assertEquals(List.of("a"), expired);
+
+        wheel.advance(500, expired::add);
+        assertEquals(List.of("a", "b"), expired);
+    }
+
+    @Test
+    void advance_ShouldKeepTasksDueInALaterRotation() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 4, 0);
+        wheel.schedule("far", 95);
+        List<String> expired = new ArrayList<>();
+
+        for (long now = 0; now < 90; now += 10) {
+            wheel.advance(now, expired::add);
+        }
+        assertTrue(expired.isEmpty());
+
+        wheel.advance(100, expired::add);
+        assertEquals(List.of("far"), expired);
+    }
+
+    @Test
+    void schedule_WithDeadlineInProcessedTick_ShouldExpireWithinTwoTicks() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(10, 4, 0);
+        wheel.advance(50, task -> fail("nothing scheduled yet"));
+        wheel.schedule("late", 20);
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(70, expired::add);
+
+        assertEquals(List.of("late"), expired);
+    }
+
+    @Test
+    void advance_ShouldExpireManyTasksExactlyOnce() {
+        HashedTimingWheel<Integer> wheel = new HashedTimingWheel<>(1, 64, 0);
+        for (int i = 0; i < 100_000; i++) {
+            wheel.schedule(i, 1 + i % 1000);
+        }
+        boolean[] seen = new boolean[100_000];
+        int[] count = {0};
+
+        for (long now = 0; now <= 1000; now += 7) {
+            wheel.advance(now, i -> {
+                assertFalse(seen[i]);
+                seen[i] = true;
+                count[0]++;
+            });
+        }
+        wheel.advance(1001, i -> count[0]++);
+
+        assertEquals(100_000, count[0]);
+    }
+}
@@ -0,0 +1,157 @@
+package com.obssolution.stock;
+
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.PageCache;
+import com.obssolution.shard.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InventoryJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private JdbcTemplate jdbcTemplate;
+    private PendingStockTracker pendingStockTracker;
+    private InventoryJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        pendingStockTracker = new PendingStockTracker();
+        journal = newJournal(jdbcTemplate, pendingStockTracker);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        journal.shutdown();
+    }
+
+    private InventoryJournal newJournal(JdbcTemplate jdbc, PendingStockTracker tracker) {
+        InventoryJournal instance = new InventoryJournal();
+        ReflectionTestUtils.setField(instance, "jdbcTemplate", jdbc);
+        ReflectionTestUtils.setField(instance, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(instance, "pendingStockTracker", tracker);
+        ReflectionTestUtils.setField(instance, "pageCache", mock(PageCache.class));
+        ReflectionTestUtils.setField(instance, "invalidationLog", mock(CacheInvalidationLog.class));
+        ReflectionTestUtils.setField(instance, "shardRouter", new ShardRouter());
+        ReflectionTestUtils.setField(instance, "persistenceMode", "journal");
+        ReflectionTestUtils.setField(instance, "path", tempDir.resolve("inventory.journal").toString());
+        ReflectionTestUtils.setField(instance, "sizeMb", 1);
+        ReflectionTestUtils.setField(instance, "fsyncIntervalMs", 1L);
+        ReflectionTestUtils.setField(instance, "applyIntervalMs", 50L);
+        ReflectionTestUtils.setField(instance, "applyBatchSize", 500);
+        return instance;
+    }
+
+    private void failInserts(JdbcTemplate jdbc) {
+        when(jdbc.batchUpdate(anyString(), anyList())).thenThrow(new DataAccessResourceFailureException("db down"));
+    }
+
+    @Test
+    void start_WithASizeAMappedBufferCannotHold_ShouldFailWithAClearMessage() {
+        ReflectionTestUtils.setField(journal, "sizeMb", 2048);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> journal.start());
+        assertTrue(e.getMessage().contains("inventory.journal.size-mb"));
+        assertFalse(tempDir.resolve("inventory.journal").toFile().exists());
+    }
+
+    @Test
+    void append_ShouldReturnIncreasingSequenceAndTrackPendingStock() throws Exception {
+        failInserts(jdbcTemplate);
+        journal.start();
+
+        long first = journal.append(1, 5, "T");
+        long second = journal.append(1, 2, "W");
+
+        assertEquals(first + 1, second);
+        assertEquals(5, pendingStockTracker.pendingQty(1, "T"));
+        assertEquals(2, pendingStockTracker.pendingQty(1, "W"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void append_ShouldBeReplayedIntoInventoryAndReleasePendingStock() throws Exception {
+        journal.start();
+
+        long seq = journal.append(1, 5, "T");
+
+        verify(jdbcTemplate, timeout(2000)).batchUpdate(anyString(),
+                argThat((List<Object[]> rows) -> rows.size() == 1 && InventoryJournal.batchRef(seq).equals(rows.get(0)[3])));
+        journal.shutdown();
+        assertEquals(0, pendingStockTracker.pendingQty(1, "T"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void start_ShouldReplayUnappliedTailAfterRestart() throws Exception {
+        failInserts(jdbcTemplate);
+        journal.start();
+        journal.append(1, 4, "T");
+        journal.append(1, 1, "W");
+        journal.shutdown();
+
+        JdbcTemplate restartedJdbc = mock(JdbcTemplate.class);
+        PendingStockTracker restartedTracker = new PendingStockTracker();
+        InventoryJournal restarted = newJournal(restartedJdbc, restartedTracker);
+        ReflectionTestUtils.setField(restarted, "applyIntervalMs", 60_000L);
+        failInserts(restartedJdbc);
+        restarted.start();
+        try {
+            assertEquals(4, restartedTracker.pendingQty(1, "T"));
+            assertEquals(1, restartedTracker.pendingQty(1, "W"));
+        } finally {
+            restarted.shutdown();
+        }
+
+        JdbcTemplate recoveredJdbc = mock(JdbcTemplate.class);
+        InventoryJournal recovered = newJournal(recoveredJdbc, new PendingStockTracker());
+        recovered.start();
+        try {
+            verify(recoveredJdbc, timeout(2000)).queryForList(anyString(), eq(String.class), any(Object[].class));
+            verify(recoveredJdbc, timeout(2000)).batchUpdate(anyString(),
+                    argThat((List<Object[]> rows) -> rows.size() == 2));
+        } finally {
+            recovered.shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void start_ShouldNotCountRecordsAlreadyInTheLedgerAsPending() throws Exception {
+        failInserts(jdbcTemplate);
+        journal.start();
+        long first = journal.append(1, 4, "T");
+        journal.append(1, 1, "W");
+        journal.shutdown();
+
+        JdbcTemplate restartedJdbc = mock(JdbcTemplate.class);
+        when(restartedJdbc.queryForList(anyString(), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of(InventoryJournal.batchRef(first)));
+        PendingStockTracker restartedTracker = new PendingStockTracker();
+        InventoryJournal restarted = newJournal(restartedJdbc, restartedTracker);
+        restarted.start();
+        try {
+            assertEquals(0, restartedTracker.pendingQty(1, "T"));
+            verify(restartedJdbc, timeout(2000)).batchUpdate(anyString(), argThat((List<Object[]> rows) -> rows.size() == 1));
+        } finally {
+            restarted.shutdown();
+        }
+        assertEquals(0, restartedTracker.pendingQty(1, "T"));
+        assertEquals(0, restartedTracker.pendingQty(1, "W"));
+    }
+}
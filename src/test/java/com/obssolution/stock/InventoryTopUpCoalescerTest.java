@@ -0,0 +1,109 @@
+package com.obssolution.stock;
+
+import com.obssolution.cache.CacheInvalidationLog;
+import com.obssolution.cache.PageCache;
+import com.obssolution.model.Inventory;
+import com.obssolution.model.Item;
+import com.obssolution.repository.InventoryRepository;
+import com.obssolution.shard.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryTopUpCoalescerTest {
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Spy
+    private PendingStockTracker pendingStockTracker = new PendingStockTracker();
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter();
+
+    @Mock
+    private PageCache pageCache;
+
+    @Mock
+    private CacheInvalidationLog invalidationLog;
+
+    @InjectMocks
+    private InventoryTopUpCoalescer coalescer;
+
+    private Item testItem;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(coalescer, "enabled", true);
+        ReflectionTestUtils.setField(coalescer, "windowMs", 500L);
+        ReflectionTestUtils.setField(coalescer, "maxCount", 100);
+
+        testItem = new Item(1, "Pen", BigDecimal.valueOf(5));
+    }
+
+    @Test
+    void accept_ShouldBufferTopUpsUnderOneBatchRef() {
+        String first = coalescer.accept(testItem, 1);
+        String second = coalescer.accept(testItem, 2);
+
+        assertEquals(first, second);
+        assertEquals(3, pendingStockTracker.pendingQty(1, "T"));
+        verify(inventoryRepository, never()).save(any(Inventory.class));
+    }
+
+    @Test
+    void flushAll_ShouldWriteOneAggregatedRowAndReleasePendingQty() {
+        String batchRef = coalescer.accept(testItem, 1);
+        coalescer.accept(testItem, 1);
+        coalescer.accept(testItem, 1);
+
+        coalescer.flushAll();
+
+        ArgumentCaptor<Inventory> captor = ArgumentCaptor.forClass(Inventory.class);
+        verify(inventoryRepository, times(1)).save(captor.capture());
+        assertEquals(3, captor.getValue().getQty());
+        assertEquals("T", captor.getValue().getType());
+        assertEquals(batchRef, captor.getValue().getBatchRef());
+        assertEquals(0, pendingStockTracker.pendingQty(1, "T"));
+    }
+
+    @Test
+    void flushAll_WhenWriteFails_ShouldKeepPendingQtyAndRetry() {
+        when(inventoryRepository.save(any(Inventory.class)))
+                .thenThrow(new RuntimeException("db down"))
+                .thenReturn(new Inventory());
+        coalescer.accept(testItem, 4);
+
+        coalescer.flushAll();
+        assertEquals(4, pendingStockTracker.pendingQty(1, "T"));
+
+        coalescer.flushAll();
+        assertEquals(0, pendingStockTracker.pendingQty(1, "T"));
+        verify(inventoryRepository, times(2)).save(any(Inventory.class));
+    }
+
+    @Test
+    void sum_ShouldAddPendingQtyToLedgerSum() {
+        coalescer.accept(testItem, 7);
+
+        assertEquals(17, pendingStockTracker.sum(1, "T", () -> 10));
+        assertEquals(10, pendingStockTracker.sum(1, "W", () -> 10));
+    }
+}
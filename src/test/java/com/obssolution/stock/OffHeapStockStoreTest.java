@@ -0,0 +1,200 @@
+package com.obssolution.stock;
+
+import com.obssolution.repository.InventoryRepository;
+import com.obssolution.repository.ItemStockTotals;
+import com.obssolution.shard.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OffHeapStockStoreTest {
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+
+    @Spy
+    private PendingStockTracker pendingStockTracker = new PendingStockTracker();
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter();
+
+    @InjectMocks
+    private OffHeapStockStore stockStore;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(stockStore, "enabled", true);
+        ReflectionTestUtils.setField(stockStore, "capacity", 1024);
+        ReflectionTestUtils.setField(stockStore, "contentionThreshold", 64);
+        ReflectionTestUtils.setField(stockStore, "contentionWindowMs", 1000L);
+        ReflectionTestUtils.setField(stockStore, "maxHotItems", 64);
+    }
+
+    private ItemStockTotals totals(int itemId, long topUp, long withdrawal) {
+        ItemStockTotals totals = mock(ItemStockTotals.class);
+        when(totals.getItemId()).thenReturn(itemId);
+        when(totals.getTopUp()).thenReturn(topUp);
+        when(totals.getWithdrawal()).thenReturn(withdrawal);
+        return totals;
+    }
+
+    @Test
+    void afterSingletonsInstantiated_ShouldLoadLedgerAndPendingTotals() {
+        List<ItemStockTotals> rows = List.of(totals(1, 100, 30), totals(2, 5, 0));
+        when(inventoryRepository.sumStockGroupedByItem()).thenReturn(rows);
+        pendingStockTracker.add(1, "T", 10);
+
+        stockStore.afterSingletonsInstantiated();
+
+        assertTrue(stockStore.tracks(1));
+        assertEquals(110, stockStore.topUp(1));
+        assertEquals(30, stockStore.withdrawal(1));
+        assertEquals(80, stockStore.available(1));
+        assertEquals(5, stockStore.available(2));
+        assertFalse(stockStore.tracks(1024));
+    }
+
+    @Test
+    void afterSingletonsInstantiated_WhenLoadFails_ShouldNotTrackAnyItem() {
+        when(inventoryRepository.sumStockGroupedByItem()).thenThrow(new RuntimeException("db down"));
+
+        stockStore.afterSingletonsInstantiated();
+
+        assertFalse(stockStore.tracks(1));
+    }
+
+    @Test
+    void tryWithdraw_ShouldRejectWithdrawalAboveAvailableStock() {
+        when(inventoryRepository.sumStockGroupedByItem()).thenReturn(List.of());
+        stockStore.rebuild();
+        stockStore.add(3, "T", 5);
+
+        assertTrue(stockStore.tryWithdraw(3, 4));
+        assertFalse(stockStore.tryWithdraw(3, 2));
+        assertEquals(1, stockStore.available(3));
+    }
+
+    @Test
+    void tryWithdraw_UnderContention_ShouldNeverOverdraw() throws Exception {
+        when(inventoryRepository.sumStockGroupedByItem()).thenReturn(List.of());
+        stockStore.rebuild();
+        stockStore.add(7, "T", 1000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(executor.submit(() -> {
+                int booked = 0;
+                for (int i = 0; i < 500; i++) {
+                    if (stockStore.tryWithdraw(7, 1)) {
+                        booked++;
+                    }
+                }
+                return booked;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1000, total);
+        assertEquals(0, stockStore.available(7));
+    }
+
+    @Test
+    void rebuild_ShouldKeepOpenTransactionsAndMovementsRecordedWhileTheLedgerIsRead() {
+        List<ItemStockTotals> rows = List.of(totals(3, 100, 0));
+        when(inventoryRepository.sumStockGroupedByItem()).thenReturn(rows);
+        stockStore.rebuild();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(stockStore.tryWithdraw(3, 10));
+            when(inventoryRepository.sumStockGroupedByItem()).thenAnswer(inv -> {
+                stockStore.add(3, "T", 5);
+                return rows;
+            });
+
+            stockStore.rebuild();
+
+            assertEquals(10, stockStore.unsettled(3, "W"));
+            assertEquals(10, stockStore.withdrawal(3));
+            assertEquals(105, stockStore.topUp(3));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void tryWithdraw_OnShardedItem_ShouldKeepTotalsConsistent() {
+        List<ItemStockTotals> rows = List.of(totals(9, 100, 10));
+        when(inventoryRepository.sumStockGroupedByItem()).thenReturn(rows);
+        ReflectionTestUtils.setField(stockStore, "shardingEnabled", true);
+        ReflectionTestUtils.setField(stockStore, "shardCount", 4);
+        stockStore.rebuild();
+
+        ReflectionTestUtils.invokeMethod(stockStore, "promote", 9);
+
+        assertTrue(stockStore.isSharded(9));
+        assertTrue(stockStore.tryWithdraw(9, 30));
+        assertEquals(40, stockStore.withdrawal(9));
+        assertEquals(60, stockStore.available(9));
+
+        stockStore.add(9, "T", 5);
+        assertTrue(stockStore.tryWithdraw(9, 65));
+        assertFalse(stockStore.tryWithdraw(9, 1));
+        assertEquals(0, stockStore.available(9));
+    }
+
+    @Test
+    void tryWithdraw_WithLowContentionThreshold_ShouldPromoteWithoutOverdrawing() throws Exception {
+        when(inventoryRepository.sumStockGroupedByItem()).thenReturn(List.of());
+        ReflectionTestUtils.setField(stockStore, "shardingEnabled", true);
+        ReflectionTestUtils.setField(stockStore, "contentionThreshold", 1);
+        ReflectionTestUtils.setField(stockStore, "contentionWindowMs", 60_000L);
+        stockStore.rebuild();
+        stockStore.add(11, "T", 4000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(executor.submit(() -> {
+                int booked = 0;
+                for (int i = 0; i < 1000; i++) {
+                    if (stockStore.tryWithdraw(11, 1)) {
+                        booked++;
+                    }
+                }
+                return booked;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(4000, total);
+        assertEquals(0, stockStore.available(11));
+    }
+}
@@ -0,0 +1,107 @@
+package com.obssolution.stock;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedStockCounterTest {
+
+    /**
+     * Slot stand-in: a fixed top-up total and a withdrawal total that includes booked shard budget.
+     */
+    private static class Slot implements ShardedStockCounter.SlotAllocator {
+
+        final AtomicLong topUp = new AtomicLong();
+        final AtomicLong withdrawal = new AtomicLong();
+
+        Slot(long topUp) {
+            this.topUp.set(topUp);
+        }
+
+        @Override
+        public long allocate(long returned, long qty) {
+            while (true) {
+                long current = withdrawal.get();
+                long free = topUp.get() - (current - returned);
+                long granted = free >= qty ? free : 0;
+                if (withdrawal.compareAndSet(current, current - returned + granted)) {
+                    return free >= qty ? granted : -1;
+                }
+            }
+        }
+    }
+
+    @Test
+    void tryDraw_ShouldRebalanceFromSlotWhenShardRunsDry() {
+        ShardedStockCounter counter = new ShardedStockCounter(4);
+        Slot slot = new Slot(10);
+
+        assertTrue(counter.tryDraw(3, slot));
+        assertEquals(3, slot.withdrawal.get() - counter.budget());
+
+        // The remaining 7 are spread over the shards; drawing all of them forces further rebalances
+        assertTrue(counter.tryDraw(7, slot));
+        assertFalse(counter.tryDraw(1, slot));
+        assertEquals(10, slot.withdrawal.get() - counter.budget());
+    }
+
+    @Test
+    void tryDraw_WhenInsufficient_ShouldReturnBudgetToSlot() {
+        ShardedStockCounter counter = new ShardedStockCounter(2);
+        Slot slot = new Slot(4);
+
+        assertTrue(counter.tryDraw(1, slot));
+        assertFalse(counter.tryDraw(10, slot));
+
+        assertEquals(0, counter.budget());
+        assertEquals(1, slot.withdrawal.get());
+    }
+
+    @Test
+    void tryDraw_ShouldPickUpTopUpsOnNextRebalance() {
+        ShardedStockCounter counter = new ShardedStockCounter(2);
+        Slot slot = new Slot(1);
+
+        assertTrue(counter.tryDraw(1, slot));
+        assertFalse(counter.tryDraw(1, slot));
+
+        slot.topUp.addAndGet(5);
+        assertTrue(counter.tryDraw(5, slot));
+    }
+
+    @Test
+    void tryDraw_UnderContention_ShouldNeverOverdraw() throws Exception {
+        ShardedStockCounter counter = new ShardedStockCounter(8);
+        Slot slot = new Slot(5000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(executor.submit(() -> {
+                int booked = 0;
+                for (int i = 0; i < 1000; i++) {
+                    if (counter.tryDraw(1, slot)) {
+                        booked++;
+                    }
+                }
+                return booked;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(5000, total);
+        assertEquals(5000, slot.withdrawal.get() - counter.budget());
+    }
+}